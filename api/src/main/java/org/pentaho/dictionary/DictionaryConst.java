@@ -155,6 +155,11 @@ public class DictionaryConst {
    */
   public static final String PROPERTY_LOGICAL_ID = "logicalId";
 
+  /**
+   * Property key for the "logicalIdSource", the JSON logical id a hashed "logicalId" is the digest of
+   */
+  public static final String PROPERTY_LOGICAL_ID_SOURCE = "logicalIdSource";
+
   /**
    * Property key for the "hostName"
    */
@@ -529,52 +534,65 @@ public class DictionaryConst {
    */
   public static final String CONTEXT_DEFAULT = CONTEXT_STATIC;
 
-  public static final ILogicalIdGenerator LOGICAL_ID_GENERATOR_DEFAULT = new MetaverseLogicalIdGenerator( new String[] {
-    PROPERTY_NAMESPACE,
-    PROPERTY_TYPE,
-    PROPERTY_NAME,
-  } );
-
-  public static final ILogicalIdGenerator LOGICAL_ID_GENERATOR_TARGET_AWARE = new MetaverseLogicalIdGenerator( new String[] {
-    PROPERTY_NAMESPACE,
-    PROPERTY_TYPE,
-    PROPERTY_NAME,
-    PROPERTY_TARGET_STEP } );
-
-  public static final ILogicalIdGenerator LOGICAL_ID_GENERATOR_FILE = new MetaverseLogicalIdGenerator( new String[] {
-    PROPERTY_PATH,
-    PROPERTY_NAMESPACE
-  } );
-
-  public static final ILogicalIdGenerator LOGICAL_ID_GENERATOR_DB_JDBC = new MetaverseLogicalIdGenerator( new String[] {
-    PROPERTY_TYPE,
-    PROPERTY_HOST_NAME,
-    PROPERTY_USER_NAME,
-    PROPERTY_PORT,
-    PROPERTY_DATABASE_NAME,
-    "accessTypeDesc"
-  } );
-
-  public static final ILogicalIdGenerator LOGICAL_ID_GENERATOR_DB_JNDI = new MetaverseLogicalIdGenerator( new String[] {
-    PROPERTY_TYPE,
-    PROPERTY_NAME,
-    "accessTypeDesc"
-  } );
-
-  public static final ILogicalIdGenerator LOGICAL_ID_GENERATOR_LOCATOR = new MetaverseLogicalIdGenerator( new String[] {
-    PROPERTY_TYPE,
-    PROPERTY_NAME
-  } );
+  /**
+   * System property naming the logical id generators below that produce compact digests (see
+   * {@link org.pentaho.metaverse.api.LogicalIdLookup}) instead of JSON logical ids: a comma-separated list of
+   * generator names (default, targetAware, file, dbJdbc, dbJndi, locator, document, dbTable, dbQuery), or "all"
+   */
+  public static final String LOGICAL_ID_HASHED_GENERATORS = "pentaho.metaverse.logicalId.hashed";
+
+  public static final ILogicalIdGenerator LOGICAL_ID_GENERATOR_DEFAULT =
+    createLogicalIdGenerator( "default", new String[] {
+      PROPERTY_NAMESPACE,
+      PROPERTY_TYPE,
+      PROPERTY_NAME,
+    } );
+
+  public static final ILogicalIdGenerator LOGICAL_ID_GENERATOR_TARGET_AWARE =
+    createLogicalIdGenerator( "targetAware", new String[] {
+      PROPERTY_NAMESPACE,
+      PROPERTY_TYPE,
+      PROPERTY_NAME,
+      PROPERTY_TARGET_STEP } );
+
+  public static final ILogicalIdGenerator LOGICAL_ID_GENERATOR_FILE =
+    createLogicalIdGenerator( "file", new String[] {
+      PROPERTY_PATH,
+      PROPERTY_NAMESPACE
+    } );
+
+  public static final ILogicalIdGenerator LOGICAL_ID_GENERATOR_DB_JDBC =
+    createLogicalIdGenerator( "dbJdbc", new String[] {
+      PROPERTY_TYPE,
+      PROPERTY_HOST_NAME,
+      PROPERTY_USER_NAME,
+      PROPERTY_PORT,
+      PROPERTY_DATABASE_NAME,
+      "accessTypeDesc"
+    } );
+
+  public static final ILogicalIdGenerator LOGICAL_ID_GENERATOR_DB_JNDI =
+    createLogicalIdGenerator( "dbJndi", new String[] {
+      PROPERTY_TYPE,
+      PROPERTY_NAME,
+      "accessTypeDesc"
+    } );
+
+  public static final ILogicalIdGenerator LOGICAL_ID_GENERATOR_LOCATOR =
+    createLogicalIdGenerator( "locator", new String[] {
+      PROPERTY_TYPE,
+      PROPERTY_NAME
+    } );
 
   public static final ILogicalIdGenerator LOGICAL_ID_GENERATOR_DOCUMENT =
-    new MetaverseLogicalIdGenerator( new String[] {
+    createLogicalIdGenerator( "document", new String[] {
       PROPERTY_TYPE,
       PROPERTY_PATH,
       PROPERTY_NAMESPACE
     } );
 
   public static final ILogicalIdGenerator LOGICAL_ID_GENERATOR_DB_TABLE =
-    new MetaverseLogicalIdGenerator( new String[] {
+    createLogicalIdGenerator( "dbTable", new String[] {
       PROPERTY_NAMESPACE,
       PROPERTY_TYPE,
       PROPERTY_NAME,
@@ -582,12 +600,38 @@ public class DictionaryConst {
     } );
 
   public static final ILogicalIdGenerator LOGICAL_ID_GENERATOR_DB_QUERY =
-    new MetaverseLogicalIdGenerator( new String[] {
+    createLogicalIdGenerator( "dbQuery", new String[] {
       PROPERTY_NAMESPACE,
       PROPERTY_TYPE,
       PROPERTY_QUERY
     } );
 
+  /**
+   * Creates a logical id generator, hashed if its name is selected by the {@link #LOGICAL_ID_HASHED_GENERATORS} system
+   * property
+   *
+   * @param name the name of the generator
+   * @param keys the property keys that make up the logical id
+   * @return the generator
+   */
+  static ILogicalIdGenerator createLogicalIdGenerator( String name, String... keys ) {
+    MetaverseLogicalIdGenerator generator = new MetaverseLogicalIdGenerator( keys );
+    generator.setHashed( isHashedLogicalIdGenerator( name, System.getProperty( LOGICAL_ID_HASHED_GENERATORS ) ) );
+    return generator;
+  }
+
+  static boolean isHashedLogicalIdGenerator( String name, String selection ) {
+    if ( selection != null ) {
+      for ( String selected : selection.split( "," ) ) {
+        selected = selected.trim();
+        if ( selected.equalsIgnoreCase( "all" ) || selected.equalsIgnoreCase( name ) ) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
   /**
    * Hides the constructor so that this class cannot be instanced
    */
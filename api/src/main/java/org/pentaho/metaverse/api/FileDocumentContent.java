@@ -0,0 +1,61 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.api;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Document content read from a file when it is analyzed
+ */
+public class FileDocumentContent implements IDocumentContent {
+
+  private final File file;
+
+  public FileDocumentContent( File file ) {
+    this.file = file;
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  @Override
+  public InputStream openStream() throws IOException {
+    return new BufferedInputStream( new FileInputStream( file ) );
+  }
+
+  @Override
+  public long getLength() {
+    return file.isFile() ? file.length() : -1;
+  }
+
+  @Override
+  public String toString() {
+    return file.getPath();
+  }
+
+}
@@ -0,0 +1,50 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.api;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The content of a document that is read when an analyzer consumes it, rather than held in memory while the
+ * document waits to be analyzed. Documents whose content is an IDocumentContent only hold on to where the content
+ * comes from; every call to {@link #openStream()} reads it again.
+ */
+public interface IDocumentContent {
+
+  /**
+   * Opens a stream of the content's bytes. The caller closes it.
+   *
+   * @return a new stream of the content
+   * @throws IOException if the content can't be read
+   */
+  InputStream openStream() throws IOException;
+
+  /**
+   * Returns the length of the content in bytes, if known
+   *
+   * @return the length of the content, or -1 if unknown
+   */
+  long getLength();
+
+}
@@ -0,0 +1,63 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.api;
+
+/**
+ * A bulk load of nodes and links into the metaverse. Calls made to it are staged rather than applied: nodes and links
+ * added more than once are merged, and the whole load is applied to the metaverse in one pass by {@link #commit()}, or
+ * dropped by {@link #rollback()}. Once committed or rolled back, the bulk load can no longer be used.
+ * <p/>
+ * A bulk load is itself an IMetaverseBuilder, so it can be handed to analyzers in place of the builder it came from.
+ */
+public interface IMetaverseBulkLoad extends IMetaverseBuilder {
+
+  /**
+   * Applies the staged nodes and links to the metaverse
+   *
+   * @throws MetaverseException if the load could not be applied. Whatever it had added is taken out again.
+   * @throws IllegalStateException if the bulk load was already committed or rolled back
+   */
+  void commit() throws MetaverseException;
+
+  /**
+   * Drops the staged nodes and links without touching the metaverse. Does nothing if the bulk load was already
+   * committed or rolled back.
+   */
+  void rollback();
+
+  /**
+   * @return true until the bulk load is committed or rolled back
+   */
+  boolean isOpen();
+
+  /**
+   * @return the number of distinct nodes staged to be added or updated
+   */
+  int getNodeCount();
+
+  /**
+   * @return the number of distinct links staged to be added
+   */
+  int getLinkCount();
+
+}
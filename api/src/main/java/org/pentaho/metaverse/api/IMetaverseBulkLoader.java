@@ -0,0 +1,37 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.api;
+
+/**
+ * Implemented by metaverse builders that can stage nodes and links and apply them in one go
+ */
+public interface IMetaverseBulkLoader {
+
+  /**
+   * Starts a bulk load into this builder's metaverse
+   *
+   * @return the bulk load, to stage nodes and links on and then commit or roll back
+   */
+  IMetaverseBulkLoad beginBulkLoad();
+
+}
@@ -73,9 +73,12 @@ public interface IMetaverseReader {
   IMetaverseLink findLink( String leftNodeID, String linkType, String rightNodeID, Direction direction );
 
   /**
-   * Gets the metaverse graph model
+   * Gets the metaverse graph model. The graph returned is a read-only view (the reference implementation returns an
+   * EnhancedGraph, which adds localized types, categories and colors to the elements as they are read): anything that
+   * would modify it throws an {@link UnsupportedOperationException}. Use an {@link IMetaverseBuilder} to change the
+   * metaverse.
    * 
-   * @return a graph of the metaverse
+   * @return a read-only graph of the metaverse
    */
   Graph getMetaverse();
 
@@ -0,0 +1,284 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.api;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Turns logical ids into compact digests and keeps the table needed to turn them back.
+ * <p/>
+ * A digest is the first 128 bits of the SHA-256 of the logical id, written as {@link #DIGEST_LENGTH} lowercase hex
+ * characters. The same logical id always gives the same digest, across runs and servers. A node whose namespace is a
+ * digest embeds only that digest in its own logical id, so ids no longer grow with nesting depth.
+ * <p/>
+ * The table maps the digests handed out back to the logical ids they were made from. {@link Namespace} uses it to
+ * navigate to parent and sibling namespaces, and {@link #expand(String)} rebuilds the full nested form for debugging.
+ * It holds the most recently used {@link #getMaxSize()} digests (see {@link #MAX_SIZE_PROPERTY}). Nodes with hashed
+ * logical ids also carry the JSON form in the {@link org.pentaho.dictionary.DictionaryConst#PROPERTY_LOGICAL_ID_SOURCE}
+ * property, so digests that were dropped from the table, or handed out before a restart, are looked up in the graph
+ * through the {@link Source} set with {@link #setSource(Source)}.
+ */
+public class LogicalIdLookup {
+
+  /**
+   * The number of characters in a digest
+   */
+  public static final int DIGEST_LENGTH = 32;
+
+  /**
+   * System property holding the maximum number of digests kept in the table of the shared instance
+   */
+  public static final String MAX_SIZE_PROPERTY = "pentaho.metaverse.logicalId.lookup.size";
+
+  /**
+   * The default maximum number of digests kept in the table
+   */
+  public static final int DEFAULT_MAX_SIZE = 100000;
+
+  /**
+   * Where the logical ids of digests that are not in the table are looked up, typically the metaverse graph
+   */
+  public interface Source {
+
+    /**
+     * Returns the logical id a digest was made from
+     *
+     * @param digest the digest
+     * @return the logical id, or null if it is not known
+     */
+    String getLogicalIdSource( String digest );
+  }
+
+  private static final Logger log = LoggerFactory.getLogger( LogicalIdLookup.class );
+
+  private static final LogicalIdLookup INSTANCE =
+    new LogicalIdLookup( parseMaxSize( System.getProperty( MAX_SIZE_PROPERTY ) ) );
+
+  private static final Pattern DIGEST = Pattern.compile( "[0-9a-f]{" + DIGEST_LENGTH + "}" );
+
+  private static final Pattern QUOTED_DIGEST = Pattern.compile( "\"(" + DIGEST.pattern() + ")\"" );
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private static final ThreadLocal<MessageDigest> SHA256 = new ThreadLocal<MessageDigest>() {
+    @Override
+    protected MessageDigest initialValue() {
+      try {
+        return MessageDigest.getInstance( "SHA-256" );
+      } catch ( NoSuchAlgorithmException e ) {
+        // every Java platform is required to support SHA-256
+        throw new IllegalStateException( e );
+      }
+    }
+  };
+
+  private final int maxSize;
+
+  /**
+   * The table, in access order; all access is synchronized on it
+   */
+  private final Map<String, String> logicalIds;
+
+  private volatile Source source;
+
+  /**
+   * Creates a lookup holding up to {@link #DEFAULT_MAX_SIZE} digests
+   */
+  public LogicalIdLookup() {
+    this( DEFAULT_MAX_SIZE );
+  }
+
+  /**
+   * Creates a lookup holding up to the given number of digests
+   *
+   * @param maxSize the maximum number of digests in the table, the least recently used are dropped first
+   */
+  public LogicalIdLookup( int maxSize ) {
+    this.maxSize = maxSize > 0 ? maxSize : DEFAULT_MAX_SIZE;
+    logicalIds = new LinkedHashMap<String, String>( 16, 0.75f, true ) {
+      @Override
+      protected boolean removeEldestEntry( Map.Entry<String, String> eldest ) {
+        return size() > LogicalIdLookup.this.maxSize;
+      }
+    };
+  }
+
+  public static LogicalIdLookup getInstance() {
+    return INSTANCE;
+  }
+
+  static int parseMaxSize( String value ) {
+    if ( value != null ) {
+      try {
+        return Integer.parseInt( value.trim() );
+      } catch ( NumberFormatException e ) {
+        log.warn( "Ignoring " + MAX_SIZE_PROPERTY + "=" + value + ", it is not a number" );
+      }
+    }
+    return DEFAULT_MAX_SIZE;
+  }
+
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  public Source getSource() {
+    return source;
+  }
+
+  /**
+   * Sets where digests that are not in the table are looked up
+   *
+   * @param source the source, or null for none
+   */
+  public void setSource( Source source ) {
+    this.source = source;
+  }
+
+  /**
+   * Returns the digest of a logical id, recording it so that it can be looked up later
+   *
+   * @param logicalId the logical id
+   * @return the digest
+   */
+  public String digest( String logicalId ) {
+    if ( logicalId == null ) {
+      return null;
+    }
+    MessageDigest md = SHA256.get();
+    byte[] hash = md.digest( logicalId.getBytes( StandardCharsets.UTF_8 ) );
+    char[] chars = new char[ DIGEST_LENGTH ];
+    for ( int i = 0; i < DIGEST_LENGTH / 2; i++ ) {
+      chars[ 2 * i ] = HEX[ ( hash[ i ] >> 4 ) & 0xF ];
+      chars[ 2 * i + 1 ] = HEX[ hash[ i ] & 0xF ];
+    }
+    String digest = new String( chars );
+    String previous;
+    synchronized ( logicalIds ) {
+      previous = logicalIds.get( digest );
+      if ( previous == null ) {
+        logicalIds.put( digest, logicalId );
+      }
+    }
+    if ( previous != null && !previous.equals( logicalId ) ) {
+      log.error( "Logical id digest collision on " + digest + ": [" + previous + "] and [" + logicalId + "]" );
+    }
+    return digest;
+  }
+
+  /**
+   * @param id a logical id or namespace
+   * @return true if the id has the form of a digest
+   */
+  public static boolean isDigest( String id ) {
+    return id != null && id.length() == DIGEST_LENGTH && DIGEST.matcher( id ).matches();
+  }
+
+  /**
+   * Returns the logical id a digest was made from, from the table or else from the source
+   *
+   * @param digest the digest
+   * @return the logical id, or null if neither the table nor the source know the digest
+   */
+  public String lookup( String digest ) {
+    if ( digest == null ) {
+      return null;
+    }
+    String logicalId;
+    synchronized ( logicalIds ) {
+      logicalId = logicalIds.get( digest );
+    }
+    Source current = source;
+    if ( logicalId == null && current != null && isDigest( digest ) ) {
+      logicalId = current.getLogicalIdSource( digest );
+      if ( logicalId != null ) {
+        synchronized ( logicalIds ) {
+          logicalIds.put( digest, logicalId );
+        }
+      }
+    }
+    return logicalId;
+  }
+
+  /**
+   * Returns the logical id a digest was made from, or the id itself if it is not a known digest
+   *
+   * @param id a logical id or digest
+   * @return the logical id behind it
+   */
+  public String resolve( String id ) {
+    String logicalId = lookup( id );
+    return logicalId == null ? id : logicalId;
+  }
+
+  /**
+   * Rebuilds the fully nested form of a logical id, replacing every known digest in it (quoted, as the id generator
+   * writes them) with the logical id it stands for. For ids made entirely by hashing generators this is the id the
+   * JSON generators would have produced.
+   *
+   * @param id a logical id or digest
+   * @return the expanded logical id
+   */
+  public String expand( String id ) {
+    String logicalId = lookup( id );
+    if ( logicalId == null ) {
+      return id;
+    }
+    Matcher matcher = QUOTED_DIGEST.matcher( logicalId );
+    StringBuffer expanded = new StringBuffer( logicalId.length() );
+    while ( matcher.find() ) {
+      String nested = expand( matcher.group( 1 ) );
+      String replacement = nested.startsWith( MetaverseLogicalIdGenerator.LEFT_BRACE ) ? nested : matcher.group();
+      matcher.appendReplacement( expanded, Matcher.quoteReplacement( replacement ) );
+    }
+    matcher.appendTail( expanded );
+    return expanded.toString();
+  }
+
+  /**
+   * @return the number of digests in the table
+   */
+  public int size() {
+    synchronized ( logicalIds ) {
+      return logicalIds.size();
+    }
+  }
+
+  /**
+   * Empties the table. Digests handed out before can only be looked up through the source.
+   */
+  public void clear() {
+    synchronized ( logicalIds ) {
+      logicalIds.clear();
+    }
+  }
+}
@@ -32,9 +32,16 @@ import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
+/**
+ * Generates logical ids from a node's values for a fixed set of property keys. By default the id is a JSON object of
+ * those keys and values, sorted by key, with a namespace that is itself a JSON logical id embedded as-is. When hashed,
+ * the id is instead the {@link LogicalIdLookup} digest of that JSON, a fixed-width value whose JSON form can be looked
+ * up again; the JSON is kept in the node's {@link DictionaryConst#PROPERTY_LOGICAL_ID_SOURCE} property.
+ */
 public class MetaverseLogicalIdGenerator implements ILogicalIdGenerator {
 
   protected SortedSet<String> logicalIdPropertyKeys;
+  protected boolean hashed;
   protected static final String DEFUALT_DATE_FORMAT = "yyyy-MM-dd HH:mm:ss";
   protected DateFormat dateFormat;
   protected static final String LEFT_BRACE = "{";
@@ -47,6 +54,22 @@ public class MetaverseLogicalIdGenerator implements ILogicalIdGenerator {
     setDateFormat( new SimpleDateFormat( DEFUALT_DATE_FORMAT ) );
   }
 
+  /**
+   * @return true if this generator produces digests rather than JSON logical ids
+   */
+  public boolean isHashed() {
+    return hashed;
+  }
+
+  /**
+   * Sets whether this generator produces {@link LogicalIdLookup} digests rather than JSON logical ids
+   *
+   * @param hashed true for digests
+   */
+  public void setHashed( boolean hashed ) {
+    this.hashed = hashed;
+  }
+
   public DateFormat getDateFormat() {
     return dateFormat;
   }
@@ -119,6 +142,11 @@ public class MetaverseLogicalIdGenerator implements ILogicalIdGenerator {
         sb.append( RIGHT_BRACE );
       }
       logicalId = sb.toString();
+      if ( isHashed() ) {
+        // keep the JSON form on the node so the digest can still be resolved from the graph
+        propertiesNode.setProperty( DictionaryConst.PROPERTY_LOGICAL_ID_SOURCE, logicalId );
+        logicalId = LogicalIdLookup.getInstance().digest( logicalId );
+      }
       propertiesNode.setProperty( DictionaryConst.PROPERTY_LOGICAL_ID, logicalId );
     }
     return logicalId;
@@ -27,12 +27,18 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.pentaho.dictionary.DictionaryConst;
+import org.pentaho.metaverse.api.messages.Messages;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
- * This is the default implementation for namespace objects and includes methods for working with namespaces
+ * This is the default implementation for namespace objects and includes methods for working with namespaces. Namespaces
+ * are logical ids, either JSON or digests that {@link LogicalIdLookup} can resolve to JSON.
  */
 public class Namespace implements INamespace {
 
+  private static final Logger log = LoggerFactory.getLogger( Namespace.class );
+
   // Single re-usable ObjectMapper for JSON-to-Java conversions
   private static final ObjectMapper objectMapper = new ObjectMapper();
 
@@ -51,7 +57,11 @@ public class Namespace implements INamespace {
   public INamespace getParentNamespace() {
     if ( namespace != null ) {
       try {
-        JsonNode jsonObject = objectMapper.readTree( namespace );
+        String resolved = resolve( LogicalIdLookup.getInstance() );
+        if ( resolved == null ) {
+          return null;
+        }
+        JsonNode jsonObject = objectMapper.readTree( resolved );
         JsonNode namespaceNode = jsonObject.get( DictionaryConst.PROPERTY_NAMESPACE );
         if ( namespaceNode == null ) {
           return null;
@@ -66,6 +76,7 @@ public class Namespace implements INamespace {
 
         return new Namespace( parent );
       } catch ( Exception e ) {
+        log.debug( "Could not read namespace " + namespace, e );
         return null;
       }
     }
@@ -76,7 +87,12 @@ public class Namespace implements INamespace {
   public INamespace getSiblingNamespace( String name, String type ) {
     if ( namespace != null ) {
       try {
-        JsonNode jsonObject = objectMapper.readTree( namespace );
+        LogicalIdLookup lookup = LogicalIdLookup.getInstance();
+        String resolved = resolve( lookup );
+        if ( resolved == null ) {
+          return null;
+        }
+        JsonNode jsonObject = objectMapper.readTree( resolved );
 
         if ( jsonObject.isObject() ) {
           ObjectNode object = (ObjectNode) jsonObject;
@@ -84,11 +100,31 @@ public class Namespace implements INamespace {
           object.put( DictionaryConst.PROPERTY_TYPE, type );
         }
 
-        return new Namespace( objectMapper.writeValueAsString( jsonObject ) );
+        String sibling = objectMapper.writeValueAsString( jsonObject );
+        // a hashed namespace has hashed siblings
+        return new Namespace( LogicalIdLookup.isDigest( namespace ) ? lookup.digest( sibling ) : sibling );
       } catch ( Exception e ) {
+        log.debug( "Could not read namespace " + namespace, e );
         return null;
       }
     }
     return null;
   }
+
+  /**
+   * Resolves this namespace to its JSON form
+   *
+   * @param lookup the lookup resolving digests
+   * @return the JSON form, or null (with a warning) if this namespace is a digest that can't be resolved
+   */
+  private String resolve( LogicalIdLookup lookup ) {
+    if ( LogicalIdLookup.isDigest( namespace ) ) {
+      String logicalId = lookup.lookup( namespace );
+      if ( logicalId == null ) {
+        log.warn( Messages.getString( "WARNING.Namespace.UnknownDigest", namespace ) );
+      }
+      return logicalId;
+    }
+    return namespace;
+  }
 }
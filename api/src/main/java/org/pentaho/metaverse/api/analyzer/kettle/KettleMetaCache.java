@@ -0,0 +1,404 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.api.analyzer.kettle;
+
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.job.JobMeta;
+import org.pentaho.di.repository.ObjectId;
+import org.pentaho.di.repository.Repository;
+import org.pentaho.di.repository.RepositoryDirectoryInterface;
+import org.pentaho.di.repository.RepositoryObject;
+import org.pentaho.di.repository.RepositoryObjectType;
+import org.pentaho.di.trans.TransMeta;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, least-recently-used cache of the transformations and jobs that analyzers load to follow a reference to a
+ * sub-transformation or sub-job (Transformation Executor, Job Executor, Transformation and Job job entries).
+ * <p/>
+ * Entries are keyed by the normalized file path or by the repository and object id, and are stamped with the file's
+ * modification time and size or the repository object's modification date. A lookup whose stamp no longer matches
+ * drops the entry, so a changed file or repository object is loaded again. Objects whose stamp cannot be determined
+ * are never cached.
+ * <p/>
+ * Cached metadata is shared between analyses, possibly running concurrently, and must be treated as read-only. Two
+ * analyses missing on the same object at the same time may both load it; the last one loaded is kept.
+ */
+public class KettleMetaCache {
+
+  public static final int DEFAULT_MAX_ENTRIES = 100;
+
+  private static final Logger log = LoggerFactory.getLogger( KettleMetaCache.class );
+
+  private static class Holder {
+    private static final KettleMetaCache INSTANCE = new KettleMetaCache();
+  }
+
+  private static class Entry {
+    private final Object stamp;
+    private final Object value;
+
+    Entry( Object stamp, Object value ) {
+      this.stamp = stamp;
+      this.value = value;
+    }
+  }
+
+  /**
+   * Cached entries in access order, guarded by this
+   */
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>( 16, 0.75f, true );
+
+  private volatile int maxEntries = DEFAULT_MAX_ENTRIES;
+
+  private final AtomicLong hits = new AtomicLong();
+
+  private final AtomicLong misses = new AtomicLong();
+
+  private final AtomicLong invalidations = new AtomicLong();
+
+  private final AtomicLong evictions = new AtomicLong();
+
+  private final AtomicLong uncached = new AtomicLong();
+
+  public KettleMetaCache() {
+  }
+
+  /**
+   * Returns the cache shared by the analyzers
+   *
+   * @return the shared cache
+   */
+  public static KettleMetaCache getInstance() {
+    return Holder.INSTANCE;
+  }
+
+  /**
+   * Returns the stamp identifying the current version of a local file
+   *
+   * @param filePath the path of the file
+   * @return the stamp, or null if the file does not exist
+   */
+  public static Object getFileStamp( String filePath ) {
+    if ( filePath == null ) {
+      return null;
+    }
+    File file = new File( filePath );
+    long modified = file.lastModified();
+    return modified == 0L ? null : modified + ":" + file.length();
+  }
+
+  /**
+   * Returns the transformation cached for a file, if the file has not changed since it was cached
+   *
+   * @param filePath the normalized path of the file
+   * @return the cached transformation, or null if it has to be loaded (and {@link #putTransMeta} called)
+   */
+  public TransMeta getTransMeta( String filePath ) {
+    return get( TransMeta.class, fileKey( "trans", filePath ), getFileStamp( filePath ) );
+  }
+
+  /**
+   * Caches the transformation loaded from a file
+   *
+   * @param filePath  the normalized path of the file
+   * @param transMeta the transformation loaded from it
+   */
+  public void putTransMeta( String filePath, TransMeta transMeta ) {
+    put( fileKey( "trans", filePath ), getFileStamp( filePath ), transMeta );
+  }
+
+  /**
+   * Returns the job cached for a file, if the file has not changed since it was cached
+   *
+   * @param filePath the normalized path of the file
+   * @return the cached job, or null if it has to be loaded (and {@link #putJobMeta} called)
+   */
+  public JobMeta getJobMeta( String filePath ) {
+    return get( JobMeta.class, fileKey( "job", filePath ), getFileStamp( filePath ) );
+  }
+
+  /**
+   * Caches the job loaded from a file
+   *
+   * @param filePath the normalized path of the file
+   * @param jobMeta  the job loaded from it
+   */
+  public void putJobMeta( String filePath, JobMeta jobMeta ) {
+    put( fileKey( "job", filePath ), getFileStamp( filePath ), jobMeta );
+  }
+
+  /**
+   * Loads a transformation by name from a repository, as {@link Repository#loadTransformation(String,
+   * RepositoryDirectoryInterface, org.pentaho.di.core.ProgressMonitorListener, boolean, String)} does, returning the
+   * cached copy if the repository object has not changed.
+   *
+   * @param repo      the repository
+   * @param name      the name of the transformation
+   * @param directory the directory containing it
+   * @return the transformation
+   * @throws KettleException if the transformation cannot be loaded
+   */
+  public TransMeta loadTransformation( Repository repo, String name, RepositoryDirectoryInterface directory )
+    throws KettleException {
+    ObjectId id = findId( repo, name, directory, RepositoryObjectType.TRANSFORMATION );
+    String key = repositoryKey( "trans", repo, id );
+    Object stamp = getRepositoryStamp( repo, id, RepositoryObjectType.TRANSFORMATION );
+    TransMeta transMeta = get( TransMeta.class, key, stamp );
+    if ( transMeta == null ) {
+      transMeta = repo.loadTransformation( name, directory, null, true, null );
+      put( key, stamp, transMeta );
+    }
+    return transMeta;
+  }
+
+  /**
+   * Loads a transformation by object id from a repository, as {@link Repository#loadTransformation(ObjectId, String)}
+   * does, returning the cached copy if the repository object has not changed.
+   *
+   * @param repo the repository
+   * @param id   the object id of the transformation
+   * @return the transformation
+   * @throws KettleException if the transformation cannot be loaded
+   */
+  public TransMeta loadTransformation( Repository repo, ObjectId id ) throws KettleException {
+    String key = repositoryKey( "trans", repo, id );
+    Object stamp = getRepositoryStamp( repo, id, RepositoryObjectType.TRANSFORMATION );
+    TransMeta transMeta = get( TransMeta.class, key, stamp );
+    if ( transMeta == null ) {
+      transMeta = repo.loadTransformation( id, null );
+      put( key, stamp, transMeta );
+    }
+    return transMeta;
+  }
+
+  /**
+   * Loads a job by name from a repository, as {@link Repository#loadJob(String, RepositoryDirectoryInterface,
+   * org.pentaho.di.core.ProgressMonitorListener, String)} does, returning the cached copy if the repository object has
+   * not changed.
+   *
+   * @param repo      the repository
+   * @param name      the name of the job
+   * @param directory the directory containing it
+   * @return the job
+   * @throws KettleException if the job cannot be loaded
+   */
+  public JobMeta loadJob( Repository repo, String name, RepositoryDirectoryInterface directory )
+    throws KettleException {
+    ObjectId id = findId( repo, name, directory, RepositoryObjectType.JOB );
+    String key = repositoryKey( "job", repo, id );
+    Object stamp = getRepositoryStamp( repo, id, RepositoryObjectType.JOB );
+    JobMeta jobMeta = get( JobMeta.class, key, stamp );
+    if ( jobMeta == null ) {
+      jobMeta = repo.loadJob( name, directory, null, null );
+      put( key, stamp, jobMeta );
+    }
+    return jobMeta;
+  }
+
+  /**
+   * Loads a job by object id from a repository, as {@link Repository#loadJob(ObjectId, String)} does, returning the
+   * cached copy if the repository object has not changed.
+   *
+   * @param repo the repository
+   * @param id   the object id of the job
+   * @return the job
+   * @throws KettleException if the job cannot be loaded
+   */
+  public JobMeta loadJob( Repository repo, ObjectId id ) throws KettleException {
+    String key = repositoryKey( "job", repo, id );
+    Object stamp = getRepositoryStamp( repo, id, RepositoryObjectType.JOB );
+    JobMeta jobMeta = get( JobMeta.class, key, stamp );
+    if ( jobMeta == null ) {
+      jobMeta = repo.loadJob( id, null );
+      put( key, stamp, jobMeta );
+    }
+    return jobMeta;
+  }
+
+  /**
+   * Drops every cached transformation and job
+   */
+  public synchronized void clear() {
+    entries.clear();
+  }
+
+  /**
+   * Returns the number of cached transformations and jobs
+   *
+   * @return the number of entries
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public int getMaxEntries() {
+    return maxEntries;
+  }
+
+  /**
+   * Sets the number of transformations and jobs kept. Zero or less disables the cache.
+   *
+   * @param maxEntries the maximum number of entries
+   */
+  public void setMaxEntries( int maxEntries ) {
+    this.maxEntries = maxEntries;
+    synchronized ( this ) {
+      trim();
+    }
+  }
+
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  /**
+   * Returns the number of entries dropped because the file or repository object changed
+   *
+   * @return the number of invalidated entries
+   */
+  public long getInvalidationCount() {
+    return invalidations.get();
+  }
+
+  /**
+   * Returns the number of entries dropped to stay within {@link #getMaxEntries()}
+   *
+   * @return the number of evicted entries
+   */
+  public long getEvictionCount() {
+    return evictions.get();
+  }
+
+  /**
+   * Returns the number of lookups for objects whose version could not be determined, which are never cached
+   *
+   * @return the number of uncached lookups
+   */
+  public long getUncachedCount() {
+    return uncached.get();
+  }
+
+  public void resetStatistics() {
+    hits.set( 0 );
+    misses.set( 0 );
+    invalidations.set( 0 );
+    evictions.set( 0 );
+    uncached.set( 0 );
+  }
+
+  @Override
+  public String toString() {
+    return "KettleMetaCache{size=" + size() + ", maxEntries=" + maxEntries + ", hits=" + hits + ", misses=" + misses
+      + ", invalidations=" + invalidations + ", evictions=" + evictions + ", uncached=" + uncached + "}";
+  }
+
+  <T> T get( Class<T> type, String key, Object stamp ) {
+    if ( key == null || stamp == null || maxEntries <= 0 ) {
+      uncached.incrementAndGet();
+      return null;
+    }
+    synchronized ( this ) {
+      Entry entry = entries.get( key );
+      if ( entry != null ) {
+        if ( stamp.equals( entry.stamp ) && type.isInstance( entry.value ) ) {
+          hits.incrementAndGet();
+          return type.cast( entry.value );
+        }
+        entries.remove( key );
+        invalidations.incrementAndGet();
+      }
+    }
+    misses.incrementAndGet();
+    return null;
+  }
+
+  synchronized void put( String key, Object stamp, Object value ) {
+    if ( key == null || stamp == null || value == null || maxEntries <= 0 ) {
+      return;
+    }
+    entries.put( key, new Entry( stamp, value ) );
+    trim();
+  }
+
+  /**
+   * Evicts the least recently used entries over the limit, must be called holding the lock
+   */
+  private void trim() {
+    int limit = Math.max( 0, maxEntries );
+    Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+    while ( entries.size() > limit && it.hasNext() ) {
+      it.next();
+      it.remove();
+      evictions.incrementAndGet();
+    }
+  }
+
+  private static String fileKey( String kind, String filePath ) {
+    return filePath == null ? null : kind + ":file:" + filePath;
+  }
+
+  private static String repositoryKey( String kind, Repository repo, ObjectId id ) {
+    return id == null || id.getId() == null ? null : kind + ":repo:" + repo.getName() + ":" + id.getId();
+  }
+
+  private static ObjectId findId( Repository repo, String name, RepositoryDirectoryInterface directory,
+                                  RepositoryObjectType objectType ) {
+    if ( name == null || directory == null ) {
+      return null;
+    }
+    try {
+      return objectType == RepositoryObjectType.JOB
+        ? repo.getJobId( name, directory ) : repo.getTransformationID( name, directory );
+    } catch ( KettleException e ) {
+      log.debug( "Could not get the object id of " + name + ", it will not be cached", e );
+      return null;
+    }
+  }
+
+  private static Object getRepositoryStamp( Repository repo, ObjectId id, RepositoryObjectType objectType ) {
+    if ( id == null ) {
+      return null;
+    }
+    try {
+      RepositoryObject info = repo.getObjectInformation( id, objectType );
+      Date modified = info == null ? null : info.getModifiedDate();
+      return modified == null ? null : modified.getTime();
+    } catch ( KettleException e ) {
+      log.debug( "Could not get the modification date of " + id.getId() + ", it will not be cached", e );
+      return null;
+    }
+  }
+}
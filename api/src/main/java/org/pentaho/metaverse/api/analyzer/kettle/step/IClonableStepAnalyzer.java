@@ -0,0 +1,44 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.metaverse.api.analyzer.kettle.step;
+
+import org.pentaho.di.trans.step.BaseStepMeta;
+
+/**
+ * The IClonableStepAnalyzer interface is implemented by step analyzers that can hand out an independent copy of
+ * themselves. Step analyzers are registered as singletons and keep the state of the step under analysis in member
+ * fields, so a copy is needed whenever more than one step is analyzed at the same time.
+ * <p/>
+ * Every {@link StepAnalyzer} implements it. Analyzers that don't are used under their own lock, one step at a time.
+ */
+public interface IClonableStepAnalyzer<T extends BaseStepMeta> extends IStepAnalyzer<T> {
+
+  /**
+   * Returns a copy of this analyzer that shares its configuration (connection analyzer, external resource consumer,
+   * metaverse builder, etc.) but none of its per-analysis state.
+   *
+   * @return a new analyzer instance
+   */
+  IClonableStepAnalyzer<T> cloneAnalyzer();
+}
@@ -0,0 +1,303 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.api.analyzer.kettle.step;
+
+import org.pentaho.di.core.ProgressNullMonitorListener;
+import org.pentaho.di.core.exception.KettleStepException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.StepMeta;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Memoizes the row metadata of the steps of a transformation for the duration of one analysis pass.
+ * <p/>
+ * Asking a TransMeta for the fields of a step walks the transformation back to its start, so doing that for every
+ * step makes analysis quadratic in the number of steps. While a pass is open for a TransMeta (see
+ * {@link #open(TransMeta)}), the static lookup methods of this class return the row metadata computed the first time
+ * a step was asked for. Outside of a pass they simply delegate to the TransMeta.
+ * <p/>
+ * Cached row metadata is shared between callers and must be treated as read-only; clone it before modifying it.
+ * Lookups that miss are serialized on the TransMeta, since Kettle's own step field cache is not thread-safe.
+ */
+public class RowMetaCache {
+
+  private static final Map<TransMeta, RowMetaCache> ACTIVE = new IdentityHashMap<>();
+
+  private static final AtomicLong totalHits = new AtomicLong();
+
+  private static final AtomicLong totalMisses = new AtomicLong();
+
+  private final TransMeta transMeta;
+
+  private final ConcurrentMap<String, RowMetaInterface> prevStepFields = new ConcurrentHashMap<>();
+
+  private final ConcurrentMap<String, RowMetaInterface> stepFields = new ConcurrentHashMap<>();
+
+  private final ConcurrentMap<String, RowMetaInterface> namedStepFields = new ConcurrentHashMap<>();
+
+  private final AtomicLong hits = new AtomicLong();
+
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * Number of times the pass has been opened and not yet closed, guarded by ACTIVE
+   */
+  private int openCount;
+
+  private RowMetaCache( TransMeta transMeta ) {
+    this.transMeta = transMeta;
+  }
+
+  /**
+   * Opens an analysis pass for the given transformation. If a pass is already open for it (for example when a
+   * sub-transformation is also the transformation under analysis) the existing cache is shared. Every call must be
+   * matched by a call to {@link #close()}.
+   *
+   * @param transMeta the transformation being analyzed
+   * @return the cache for the pass
+   */
+  public static RowMetaCache open( TransMeta transMeta ) {
+    synchronized ( ACTIVE ) {
+      RowMetaCache cache = ACTIVE.get( transMeta );
+      if ( cache == null ) {
+        cache = new RowMetaCache( transMeta );
+        ACTIVE.put( transMeta, cache );
+      }
+      cache.openCount++;
+      return cache;
+    }
+  }
+
+  /**
+   * Returns the cache of the pass currently open for the given transformation
+   *
+   * @param transMeta the transformation
+   * @return the cache, or null if no pass is open for the transformation
+   */
+  public static RowMetaCache getActive( TransMeta transMeta ) {
+    if ( transMeta == null ) {
+      return null;
+    }
+    synchronized ( ACTIVE ) {
+      return ACTIVE.get( transMeta );
+    }
+  }
+
+  /**
+   * Closes the pass. Once every {@link #open(TransMeta)} has been matched, the cached row metadata is dropped.
+   */
+  public void close() {
+    synchronized ( ACTIVE ) {
+      if ( openCount > 0 && --openCount == 0 ) {
+        ACTIVE.remove( transMeta );
+        prevStepFields.clear();
+        stepFields.clear();
+        namedStepFields.clear();
+      }
+    }
+  }
+
+  /**
+   * Returns the fields coming into the given step, as {@link TransMeta#getPrevStepFields(StepMeta,
+   * org.pentaho.di.core.ProgressMonitorListener)} does.
+   *
+   * @param transMeta the transformation containing the step
+   * @param stepMeta  the step
+   * @return the input fields of the step
+   * @throws KettleStepException if the fields cannot be determined
+   */
+  public static RowMetaInterface getPrevStepFields( TransMeta transMeta, StepMeta stepMeta )
+    throws KettleStepException {
+    RowMetaCache cache = getActive( transMeta );
+    String key = stepMeta == null ? null : stepMeta.getName();
+    if ( cache == null || key == null ) {
+      synchronized ( transMeta ) {
+        return loadPrevStepFields( transMeta, stepMeta );
+      }
+    }
+    RowMetaInterface rmi = cache.prevStepFields.get( key );
+    if ( rmi != null ) {
+      cache.hit();
+      return rmi;
+    }
+    synchronized ( transMeta ) {
+      rmi = cache.prevStepFields.get( key );
+      if ( rmi != null ) {
+        cache.hit();
+        return rmi;
+      }
+      cache.miss();
+      rmi = loadPrevStepFields( transMeta, stepMeta );
+      cache.put( cache.prevStepFields, key, rmi );
+      return rmi;
+    }
+  }
+
+  /**
+   * Returns the fields coming out of the given step, as {@link TransMeta#getStepFields(StepMeta,
+   * org.pentaho.di.core.ProgressMonitorListener)} does.
+   *
+   * @param transMeta the transformation containing the step
+   * @param stepMeta  the step
+   * @return the output fields of the step
+   * @throws KettleStepException if the fields cannot be determined
+   */
+  public static RowMetaInterface getStepFields( TransMeta transMeta, StepMeta stepMeta ) throws KettleStepException {
+    RowMetaCache cache = getActive( transMeta );
+    String key = stepMeta == null ? null : stepMeta.getName();
+    if ( cache == null || key == null ) {
+      synchronized ( transMeta ) {
+        return loadStepFields( transMeta, stepMeta );
+      }
+    }
+    RowMetaInterface rmi = cache.stepFields.get( key );
+    if ( rmi != null ) {
+      cache.hit();
+      return rmi;
+    }
+    synchronized ( transMeta ) {
+      rmi = cache.stepFields.get( key );
+      if ( rmi != null ) {
+        cache.hit();
+        return rmi;
+      }
+      cache.miss();
+      rmi = loadStepFields( transMeta, stepMeta );
+      cache.put( cache.stepFields, key, rmi );
+      return rmi;
+    }
+  }
+
+  /**
+   * Returns the fields coming out of the named step, as {@link TransMeta#getStepFields(String)} does.
+   *
+   * @param transMeta the transformation containing the step
+   * @param stepName  the name of the step
+   * @return the output fields of the step
+   * @throws KettleStepException if the fields cannot be determined
+   */
+  public static RowMetaInterface getStepFields( TransMeta transMeta, String stepName ) throws KettleStepException {
+    RowMetaCache cache = getActive( transMeta );
+    if ( cache == null || stepName == null ) {
+      synchronized ( transMeta ) {
+        return transMeta.getStepFields( stepName );
+      }
+    }
+    RowMetaInterface rmi = cache.namedStepFields.get( stepName );
+    if ( rmi != null ) {
+      cache.hit();
+      return rmi;
+    }
+    synchronized ( transMeta ) {
+      rmi = cache.namedStepFields.get( stepName );
+      if ( rmi != null ) {
+        cache.hit();
+        return rmi;
+      }
+      cache.miss();
+      rmi = transMeta.getStepFields( stepName );
+      cache.put( cache.namedStepFields, stepName, rmi );
+      return rmi;
+    }
+  }
+
+  /**
+   * @return the number of lookups answered from this cache
+   */
+  public long getHits() {
+    return hits.get();
+  }
+
+  /**
+   * @return the number of lookups that had to be computed by the TransMeta
+   */
+  public long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * @return the number of lookups answered from any cache since startup (or the last reset)
+   */
+  public static long getTotalHits() {
+    return totalHits.get();
+  }
+
+  /**
+   * @return the number of lookups that missed any cache since startup (or the last reset)
+   */
+  public static long getTotalMisses() {
+    return totalMisses.get();
+  }
+
+  /**
+   * Resets the process-wide hit and miss counters
+   */
+  public static void resetTotals() {
+    totalHits.set( 0 );
+    totalMisses.set( 0 );
+  }
+
+  @Override
+  public String toString() {
+    return "RowMetaCache[" + transMeta.getName() + ", hits=" + hits + ", misses=" + misses + "]";
+  }
+
+  private void hit() {
+    hits.incrementAndGet();
+    totalHits.incrementAndGet();
+  }
+
+  private void miss() {
+    misses.incrementAndGet();
+    totalMisses.incrementAndGet();
+  }
+
+  private void put( ConcurrentMap<String, RowMetaInterface> map, String key, RowMetaInterface rmi ) {
+    // a closed pass must not be refilled, and null results are simply not remembered
+    if ( rmi != null && getActive( transMeta ) == this ) {
+      map.put( key, rmi );
+    }
+  }
+
+  private static RowMetaInterface loadPrevStepFields( TransMeta transMeta, StepMeta stepMeta )
+    throws KettleStepException {
+    ProgressNullMonitorListener progressMonitor = new ProgressNullMonitorListener();
+    RowMetaInterface rmi = transMeta.getPrevStepFields( stepMeta, progressMonitor );
+    progressMonitor.done();
+    return rmi;
+  }
+
+  private static RowMetaInterface loadStepFields( TransMeta transMeta, StepMeta stepMeta )
+    throws KettleStepException {
+    ProgressNullMonitorListener progressMonitor = new ProgressNullMonitorListener();
+    RowMetaInterface rmi = transMeta.getStepFields( stepMeta, progressMonitor );
+    progressMonitor.done();
+    return rmi;
+  }
+}
@@ -26,7 +26,6 @@ import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.MapUtils;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
-import org.pentaho.di.core.ProgressNullMonitorListener;
 import org.pentaho.di.core.exception.KettleStepException;
 import org.pentaho.di.core.plugins.PluginRegistry;
 import org.pentaho.di.core.plugins.StepPluginType;
@@ -63,7 +62,7 @@ import java.util.Set;
 import java.util.UUID;
 
 public abstract class StepAnalyzer<T extends BaseStepMeta> extends BaseKettleMetaverseComponent implements
-  IStepAnalyzer<T>, IFieldLineageMetadataProvider<T> {
+  IClonableStepAnalyzer<T>, IFieldLineageMetadataProvider<T>, Cloneable {
 
   private static final Logger LOGGER = LoggerFactory.getLogger( StepAnalyzer.class );
   public static final String NONE = "_none_";
@@ -539,10 +538,8 @@ public abstract class StepAnalyzer<T extends BaseStepMeta> extends BaseKettleMet
     if ( parentTransMeta != null ) {
       try {
         rowMeta = new HashMap<String, RowMetaInterface>();
-        ProgressNullMonitorListener progressMonitor = new ProgressNullMonitorListener();
         prevStepNames = parentTransMeta.getPrevStepNames( parentStepMeta );
-        RowMetaInterface rmi = parentTransMeta.getPrevStepFields( parentStepMeta, progressMonitor );
-        progressMonitor.done();
+        RowMetaInterface rmi = getPrevStepFields( parentStepMeta );
         if ( !ArrayUtils.isEmpty( prevStepNames ) ) {
           rowMeta.put( prevStepNames[0], rmi );
         }
@@ -563,9 +560,7 @@ public abstract class StepAnalyzer<T extends BaseStepMeta> extends BaseKettleMet
     }
     if ( parentTransMeta != null ) {
       try {
-        ProgressNullMonitorListener progressMonitor = new ProgressNullMonitorListener();
-        rmi = parentTransMeta.getStepFields( parentStepMeta, progressMonitor );
-        progressMonitor.done();
+        rmi = getStepFields( parentStepMeta );
       } catch ( KettleStepException e ) {
         rmi = null;
       }
@@ -573,6 +568,90 @@ public abstract class StepAnalyzer<T extends BaseStepMeta> extends BaseKettleMet
     return rmi;
   }
 
+  /**
+   * Returns the fields coming into the given step of the transformation under analysis. The result comes from the
+   * {@link RowMetaCache} when a pass is open for the transformation, and must not be modified.
+   *
+   * @param stepMeta the step whose input fields are requested
+   * @return the input fields of the step
+   * @throws KettleStepException if the fields cannot be determined
+   */
+  protected RowMetaInterface getPrevStepFields( StepMeta stepMeta ) throws KettleStepException {
+    return RowMetaCache.getPrevStepFields( parentTransMeta, stepMeta );
+  }
+
+  /**
+   * Returns the fields coming out of the given step of the transformation under analysis.
+   *
+   * @param stepMeta the step whose output fields are requested
+   * @return the output fields of the step
+   * @throws KettleStepException if the fields cannot be determined
+   * @see #getPrevStepFields(StepMeta)
+   */
+  protected RowMetaInterface getStepFields( StepMeta stepMeta ) throws KettleStepException {
+    return RowMetaCache.getStepFields( parentTransMeta, stepMeta );
+  }
+
+  /**
+   * Returns the fields coming out of the named step of the transformation under analysis.
+   *
+   * @param stepName the name of the step whose output fields are requested
+   * @return the output fields of the step
+   * @throws KettleStepException if the fields cannot be determined
+   * @see #getPrevStepFields(StepMeta)
+   */
+  protected RowMetaInterface getStepFields( String stepName ) throws KettleStepException {
+    return RowMetaCache.getStepFields( parentTransMeta, stepName );
+  }
+
+  /**
+   * Returns a copy of this analyzer to analyze a step with. Step analyzers are shared by every transformation analysis,
+   * so each step is analyzed with its own copy, built by {@link #copyAnalyzer()}.
+   *
+   * @return the copy
+   */
+  @Override
+  public IClonableStepAnalyzer<T> cloneAnalyzer() {
+    return copyAnalyzer();
+  }
+
+  /**
+   * Returns a shallow copy of this analyzer, cleared of the step under analysis. The copy shares the analyzer's
+   * configuration (connection analyzer, external resource consumer, ...), so that has to be safe to use from several
+   * threads; subclasses that keep mutable per-analysis state of their own must clear it in
+   * {@link #resetAnalysisState()}.
+   *
+   * @return the copy
+   */
+  protected StepAnalyzer<T> copyAnalyzer() {
+    try {
+      @SuppressWarnings( "unchecked" )
+      StepAnalyzer<T> copy = (StepAnalyzer<T>) super.clone();
+      copy.resetAnalysisState();
+      return copy;
+    } catch ( CloneNotSupportedException e ) {
+      // can't happen, we implement Cloneable
+      throw new IllegalStateException( e );
+    }
+  }
+
+  /**
+   * Clears the references to the step under analysis, so that a copied analyzer starts out clean. Subclasses that
+   * keep mutable per-analysis state of their own must override this and reset it as well.
+   */
+  protected void resetAnalysisState() {
+    descriptor = null;
+    inputs = null;
+    outputs = null;
+    prevStepNames = null;
+    baseStepMeta = null;
+    parentStepMeta = null;
+    parentTransMeta = null;
+    rootNode = null;
+    prevFields = null;
+    stepFields = null;
+  }
+
   @Override
   public Set<IFieldMapping> getFieldMappings( T meta ) throws MetaverseAnalyzerException {
     return null;
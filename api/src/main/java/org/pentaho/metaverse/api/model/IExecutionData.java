@@ -40,6 +40,7 @@ public interface IExecutionData {
   public static final String JSON_PROPERTY_LOGGING_CHANNEL_ID = "loggingChannelId";
   public static final String JSON_PROPERTY_PARAMETERS = "parameters";
   public static final String JSON_PROPERTY_EXTERNAL_RESOURCES = "externalResources";
+  public static final String JSON_PROPERTY_EXTERNAL_RESOURCES_DROPPED = "externalResourcesDropped";
   public static final String JSON_PROPERTY_VARIABLES = "variables";
   public static final String JSON_PROPERTY_ARGUMENTS = "arguments";
   public static final String JSON_PROPERTY_ARTIFACT_META = "artifactMeta";
@@ -94,6 +95,18 @@ public interface IExecutionData {
 
   public void addExternalResource( String consumerName, IExternalResourceInfo externalResource );
 
+  /**
+   * Returns, per consumer (step) name, the number of dropped occurrences: how many times an external resource was
+   * reported at runtime but not recorded because the consumer had reached its limit of distinct resources. A resource
+   * reported on many rows is counted once per row, so this is not the number of distinct resources dropped.
+   *
+   * @return a map of consumer names to dropped occurrence counts
+   */
+  @JsonProperty( JSON_PROPERTY_EXTERNAL_RESOURCES_DROPPED )
+  public Map<String, Long> getExternalResourcesDropped();
+
+  public void setExternalResourcesDropped( Map<String, Long> externalResourcesDropped );
+
   @JsonProperty( JSON_PROPERTY_VARIABLES )
   public Map<Object, Object> getVariables();
 
@@ -24,6 +24,10 @@ package org.pentaho.dictionary;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.pentaho.metaverse.api.MetaverseLogicalIdGenerator;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class DictionaryConstTest {
 
@@ -36,4 +40,30 @@ public class DictionaryConstTest {
   public void testEnsureNonPublicConstructor() {
     DictionaryConst dc = new DictionaryConst();
   }
+
+  @Test
+  public void testIsHashedLogicalIdGenerator() {
+    assertFalse( DictionaryConst.isHashedLogicalIdGenerator( "default", null ) );
+    assertFalse( DictionaryConst.isHashedLogicalIdGenerator( "default", "file,document" ) );
+    assertTrue( DictionaryConst.isHashedLogicalIdGenerator( "document", "file, Document" ) );
+    assertTrue( DictionaryConst.isHashedLogicalIdGenerator( "default", "ALL" ) );
+  }
+
+  @Test
+  public void testCreateLogicalIdGenerator() {
+    String previous = System.getProperty( DictionaryConst.LOGICAL_ID_HASHED_GENERATORS );
+    try {
+      System.setProperty( DictionaryConst.LOGICAL_ID_HASHED_GENERATORS, "file" );
+      assertTrue( ( (MetaverseLogicalIdGenerator) DictionaryConst.createLogicalIdGenerator( "file", "path" ) )
+        .isHashed() );
+      assertFalse( ( (MetaverseLogicalIdGenerator) DictionaryConst.createLogicalIdGenerator( "default", "name" ) )
+        .isHashed() );
+    } finally {
+      if ( previous == null ) {
+        System.clearProperty( DictionaryConst.LOGICAL_ID_HASHED_GENERATORS );
+      } else {
+        System.setProperty( DictionaryConst.LOGICAL_ID_HASHED_GENERATORS, previous );
+      }
+    }
+  }
 }
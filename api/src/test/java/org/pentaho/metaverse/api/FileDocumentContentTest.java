@@ -0,0 +1,70 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.api;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class FileDocumentContentTest {
+
+  @Test
+  public void testOpenStream() throws Exception {
+    File file = File.createTempFile( "content", ".ktr" );
+    file.deleteOnExit();
+    Files.write( file.toPath(), "<transformation/>".getBytes( StandardCharsets.UTF_8 ) );
+
+    FileDocumentContent content = new FileDocumentContent( file );
+    assertSame( file, content.getFile() );
+    assertEquals( file.length(), content.getLength() );
+    assertEquals( file.getPath(), content.toString() );
+    for ( int i = 0; i < 2; i++ ) {
+      InputStream in = content.openStream();
+      try {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for ( int b = in.read(); b != -1; b = in.read() ) {
+          out.write( b );
+        }
+        assertEquals( "<transformation/>", new String( out.toByteArray(), StandardCharsets.UTF_8 ) );
+      } finally {
+        in.close();
+      }
+    }
+  }
+
+  @Test( expected = FileNotFoundException.class )
+  public void testMissingFile() throws Exception {
+    FileDocumentContent content = new FileDocumentContent( new File( "not-a-file.ktr" ) );
+    assertEquals( -1, content.getLength() );
+    content.openStream();
+  }
+
+}
@@ -0,0 +1,133 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.api;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LogicalIdLookupTest {
+
+  LogicalIdLookup lookup;
+
+  @Before
+  public void setUp() throws Exception {
+    lookup = new LogicalIdLookup();
+  }
+
+  @Test
+  public void testDigest() throws Exception {
+    String digest = lookup.digest( "{\"name\":\"a\"}" );
+    assertEquals( LogicalIdLookup.DIGEST_LENGTH, digest.length() );
+    assertTrue( LogicalIdLookup.isDigest( digest ) );
+    // stable across instances
+    assertEquals( digest, new LogicalIdLookup().digest( "{\"name\":\"a\"}" ) );
+    assertFalse( digest.equals( lookup.digest( "{\"name\":\"b\"}" ) ) );
+    assertNull( lookup.digest( null ) );
+    assertEquals( 2, lookup.size() );
+  }
+
+  @Test
+  public void testIsDigest() throws Exception {
+    assertFalse( LogicalIdLookup.isDigest( null ) );
+    assertFalse( LogicalIdLookup.isDigest( "{\"name\":\"a\"}" ) );
+    assertFalse( LogicalIdLookup.isDigest( "0123456789ABCDEF0123456789ABCDEF" ) );
+    assertTrue( LogicalIdLookup.isDigest( "0123456789abcdef0123456789abcdef" ) );
+  }
+
+  @Test
+  public void testLookupAndResolve() throws Exception {
+    String digest = lookup.digest( "{\"name\":\"a\"}" );
+    assertEquals( "{\"name\":\"a\"}", lookup.lookup( digest ) );
+    assertEquals( "{\"name\":\"a\"}", lookup.resolve( digest ) );
+    assertNull( lookup.lookup( null ) );
+    assertNull( lookup.lookup( "0123456789abcdef0123456789abcdef" ) );
+    assertEquals( "PDI Engine", lookup.resolve( "PDI Engine" ) );
+
+    lookup.clear();
+    assertEquals( 0, lookup.size() );
+    assertNull( lookup.lookup( digest ) );
+  }
+
+  @Test
+  public void testExpand() throws Exception {
+    String locator = lookup.digest( "{\"name\":\"repo\",\"type\":\"Locator\"}" );
+    String trans =
+      lookup.digest( "{\"namespace\":\"" + locator + "\",\"path\":\"a.ktr\",\"type\":\"Transformation\"}" );
+    String step =
+      lookup.digest( "{\"name\":\"Select\",\"namespace\":\"" + trans + "\",\"type\":\"Transformation Step\"}" );
+
+    assertEquals( "{\"name\":\"Select\",\"namespace\":{\"namespace\":{\"name\":\"repo\",\"type\":\"Locator\"},"
+      + "\"path\":\"a.ktr\",\"type\":\"Transformation\"},\"type\":\"Transformation Step\"}", lookup.expand( step ) );
+    assertEquals( "not a digest", lookup.expand( "not a digest" ) );
+  }
+
+  @Test
+  public void testMaxSize() throws Exception {
+    assertEquals( LogicalIdLookup.DEFAULT_MAX_SIZE, lookup.getMaxSize() );
+    assertEquals( LogicalIdLookup.DEFAULT_MAX_SIZE, new LogicalIdLookup( 0 ).getMaxSize() );
+    assertEquals( 10, LogicalIdLookup.parseMaxSize( " 10 " ) );
+    assertEquals( LogicalIdLookup.DEFAULT_MAX_SIZE, LogicalIdLookup.parseMaxSize( null ) );
+    assertEquals( LogicalIdLookup.DEFAULT_MAX_SIZE, LogicalIdLookup.parseMaxSize( "lots" ) );
+
+    lookup = new LogicalIdLookup( 2 );
+    String a = lookup.digest( "{\"name\":\"a\"}" );
+    String b = lookup.digest( "{\"name\":\"b\"}" );
+    // using a makes b the least recently used
+    assertNotNull( lookup.lookup( a ) );
+    String c = lookup.digest( "{\"name\":\"c\"}" );
+
+    assertEquals( 2, lookup.size() );
+    assertEquals( "{\"name\":\"a\"}", lookup.lookup( a ) );
+    assertNull( lookup.lookup( b ) );
+    assertEquals( "{\"name\":\"c\"}", lookup.lookup( c ) );
+  }
+
+  @Test
+  public void testSource() throws Exception {
+    final String digest = lookup.digest( "{\"name\":\"a\"}" );
+    lookup.clear();
+    final int[] calls = new int[1];
+    LogicalIdLookup.Source source = new LogicalIdLookup.Source() {
+      @Override
+      public String getLogicalIdSource( String id ) {
+        calls[0]++;
+        return digest.equals( id ) ? "{\"name\":\"a\"}" : null;
+      }
+    };
+    lookup.setSource( source );
+    assertSame( source, lookup.getSource() );
+
+    assertEquals( "{\"name\":\"a\"}", lookup.lookup( digest ) );
+    assertEquals( "{\"name\":\"a\"}", lookup.resolve( digest ) );
+    // found once, then remembered
+    assertEquals( 1, calls[0] );
+    assertEquals( 1, lookup.size() );
+
+    assertNull( lookup.lookup( "0123456789abcdef0123456789abcdef" ) );
+    // only digests are looked up in the source
+    assertEquals( "PDI Engine", lookup.resolve( "PDI Engine" ) );
+    assertEquals( 2, calls[0] );
+  }
+}
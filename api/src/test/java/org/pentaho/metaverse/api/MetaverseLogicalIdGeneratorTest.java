@@ -37,6 +37,7 @@ import java.util.HashSet;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
@@ -250,4 +251,36 @@ public class MetaverseLogicalIdGeneratorTest {
     // make sure a call was made to add the logical id as a property
     verify( node ).setProperty( DictionaryConst.PROPERTY_LOGICAL_ID, logicalId );
   }
+
+  @Test
+  public void testGenerateLogicalId_hashed() throws Exception {
+    idGenerator = new MetaverseLogicalIdGenerator( "name", "namespace", "type" );
+    idGenerator.setHashed( true );
+    assertTrue( idGenerator.isHashed() );
+
+    String parent =
+      LogicalIdLookup.getInstance().digest( "{\"name\":\"Sampledata\",\"type\":\"Database Connection\"}" );
+    when( node.getProperty( "name" ) ).thenReturn( "SALES_DATA" );
+    when( node.getProperty( "namespace" ) ).thenReturn( parent );
+    when( node.getProperty( "type" ) ).thenReturn( "Database Table" );
+    when( node.getPropertyKeys() ).thenReturn( new HashSet<String>() {{
+      add( "name" );
+      add( "namespace" );
+      add( "type" );
+    }} );
+
+    String logicalId = idGenerator.generateId( node );
+
+    // a fixed-width digest that embeds only the parent's digest, and can be turned back into JSON
+    assertTrue( LogicalIdLookup.isDigest( logicalId ) );
+    assertEquals( "{\"name\":\"SALES_DATA\",\"namespace\":\"" + parent + "\",\"type\":\"Database Table\"}",
+      LogicalIdLookup.getInstance().lookup( logicalId ) );
+    assertEquals( "{\"name\":\"SALES_DATA\",\"namespace\":{\"name\":\"Sampledata\",\"type\":\"Database Connection\"},"
+      + "\"type\":\"Database Table\"}", LogicalIdLookup.getInstance().expand( logicalId ) );
+    assertEquals( logicalId, idGenerator.generateId( node ) );
+    verify( node, times( 2 ) ).setProperty( DictionaryConst.PROPERTY_LOGICAL_ID, logicalId );
+    // the JSON form is kept on the node, so the digest can be resolved from the graph
+    verify( node, times( 2 ) ).setProperty( DictionaryConst.PROPERTY_LOGICAL_ID_SOURCE,
+      "{\"name\":\"SALES_DATA\",\"namespace\":\"" + parent + "\",\"type\":\"Database Table\"}" );
+  }
 }
@@ -26,6 +26,7 @@ import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * User: RFellows Date: 10/13/14
@@ -97,4 +98,49 @@ public class NamespaceTest {
     assertNull( ns.getSiblingNamespace( "any", "any" ) );
 
   }
+
+  @Test
+  public void testGetParentNamespace_digest() throws Exception {
+    LogicalIdLookup lookup = LogicalIdLookup.getInstance();
+    String parent = lookup.digest( "{\"name\":\"FILE_SYSTEM_REPO\",\"type\":\"Locator\"}" );
+    String child = lookup.digest(
+      "{\"namespace\":\"" + parent + "\",\"path\":\"repo/a.ktr\",\"type\":\"Transformation\"}" );
+
+    assertEquals( parent, new Namespace( child ).getParentNamespace().getNamespaceId() );
+    // unknown digests can't be navigated
+    assertNull( new Namespace( "0123456789abcdef0123456789abcdef" ).getParentNamespace() );
+  }
+
+  @Test
+  public void testGetSiblingNamespace_digest() throws Exception {
+    LogicalIdLookup lookup = LogicalIdLookup.getInstance();
+    String parent = lookup.digest( "{\"name\":\"FILE_SYSTEM_REPO\",\"type\":\"Locator\"}" );
+    String node = lookup.digest( "{\"name\":\"TEST\",\"namespace\":\"" + parent + "\",\"type\":\"DUMMY\"}" );
+
+    String sibling = new Namespace( node ).getSiblingNamespace( "brother", "newType" ).getNamespaceId();
+    assertTrue( LogicalIdLookup.isDigest( sibling ) );
+    assertEquals( lookup.digest( "{\"name\":\"brother\",\"namespace\":\"" + parent + "\",\"type\":\"newType\"}" ),
+      sibling );
+  }
+
+  @Test
+  public void testGetParentNamespace_digestFromSource() throws Exception {
+    LogicalIdLookup lookup = LogicalIdLookup.getInstance();
+    final String parent = lookup.digest( "{\"name\":\"FILE_SYSTEM_REPO\",\"type\":\"Locator\"}" );
+    final String json = "{\"namespace\":\"" + parent + "\",\"path\":\"repo/b.ktr\",\"type\":\"Transformation\"}";
+    final String child = new LogicalIdLookup().digest( json );
+    LogicalIdLookup.Source previous = lookup.getSource();
+    // the child's digest is not in the table, as after a restart, but the graph knows it
+    lookup.setSource( new LogicalIdLookup.Source() {
+      @Override
+      public String getLogicalIdSource( String digest ) {
+        return child.equals( digest ) ? json : null;
+      }
+    } );
+    try {
+      assertEquals( parent, new Namespace( child ).getParentNamespace().getNamespaceId() );
+    } finally {
+      lookup.setSource( previous );
+    }
+  }
 }
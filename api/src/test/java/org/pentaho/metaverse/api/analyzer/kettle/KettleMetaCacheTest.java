@@ -0,0 +1,176 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.api.analyzer.kettle;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.pentaho.di.core.ProgressMonitorListener;
+import org.pentaho.di.job.JobMeta;
+import org.pentaho.di.repository.ObjectId;
+import org.pentaho.di.repository.Repository;
+import org.pentaho.di.repository.RepositoryDirectoryInterface;
+import org.pentaho.di.repository.RepositoryObject;
+import org.pentaho.di.repository.RepositoryObjectType;
+import org.pentaho.di.repository.StringObjectId;
+import org.pentaho.di.trans.TransMeta;
+
+import java.io.File;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+public class KettleMetaCacheTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private KettleMetaCache cache;
+  private Repository repo;
+  private RepositoryObject info;
+  private ObjectId id;
+
+  @Before
+  public void setUp() throws Exception {
+    cache = new KettleMetaCache();
+    repo = mock( Repository.class );
+    when( repo.getName() ).thenReturn( "repo" );
+    id = new StringObjectId( "id" );
+    info = mock( RepositoryObject.class );
+    when( info.getModifiedDate() ).thenReturn( new Date( 1000L ) );
+    when( repo.getObjectInformation( eq( id ), any( RepositoryObjectType.class ) ) ).thenReturn( info );
+  }
+
+  @Test
+  public void testGetInstance() throws Exception {
+    assertSame( KettleMetaCache.getInstance(), KettleMetaCache.getInstance() );
+  }
+
+  @Test
+  public void testFile() throws Exception {
+    File file = folder.newFile( "child.ktr" );
+    String path = file.getAbsolutePath();
+    TransMeta transMeta = mock( TransMeta.class );
+
+    assertNull( cache.getTransMeta( path ) );
+    cache.putTransMeta( path, transMeta );
+    assertSame( transMeta, cache.getTransMeta( path ) );
+    // a job with the same path is a different entry
+    assertNull( cache.getJobMeta( path ) );
+    assertEquals( 1, cache.getHitCount() );
+    assertEquals( 2, cache.getMissCount() );
+
+    assertTrue( file.setLastModified( file.lastModified() - 60000L ) );
+    assertNull( cache.getTransMeta( path ) );
+    assertEquals( 1, cache.getInvalidationCount() );
+    assertEquals( 0, cache.size() );
+  }
+
+  @Test
+  public void testMissingFileIsNotCached() throws Exception {
+    String path = new File( folder.getRoot(), "missing.kjb" ).getAbsolutePath();
+    assertNull( KettleMetaCache.getFileStamp( path ) );
+    cache.putJobMeta( path, mock( JobMeta.class ) );
+    assertNull( cache.getJobMeta( path ) );
+    assertEquals( 0, cache.size() );
+    assertEquals( 1, cache.getUncachedCount() );
+  }
+
+  @Test
+  public void testRepositoryById() throws Exception {
+    TransMeta transMeta = mock( TransMeta.class );
+    when( repo.loadTransformation( id, null ) ).thenReturn( transMeta );
+    assertSame( transMeta, cache.loadTransformation( repo, id ) );
+    assertSame( transMeta, cache.loadTransformation( repo, id ) );
+    verify( repo, times( 1 ) ).loadTransformation( id, null );
+
+    // the object changed in the repository
+    when( info.getModifiedDate() ).thenReturn( new Date( 2000L ) );
+    cache.loadTransformation( repo, id );
+    verify( repo, times( 2 ) ).loadTransformation( id, null );
+    assertEquals( 1, cache.getInvalidationCount() );
+  }
+
+  @Test
+  public void testRepositoryByName() throws Exception {
+    RepositoryDirectoryInterface dir = mock( RepositoryDirectoryInterface.class );
+    JobMeta jobMeta = mock( JobMeta.class );
+    when( repo.getJobId( "job", dir ) ).thenReturn( id );
+    when( repo.loadJob( "job", dir, null, null ) ).thenReturn( jobMeta );
+    assertSame( jobMeta, cache.loadJob( repo, "job", dir ) );
+    // by name and by reference share the entry
+    assertSame( jobMeta, cache.loadJob( repo, id ) );
+    verify( repo, times( 1 ) ).loadJob( "job", dir, null, null );
+    verify( repo, never() ).loadJob( id, null );
+  }
+
+  @Test
+  public void testRepositoryWithoutStamp() throws Exception {
+    RepositoryDirectoryInterface dir = mock( RepositoryDirectoryInterface.class );
+    TransMeta transMeta = mock( TransMeta.class );
+    when( repo.loadTransformation( anyString(), eq( dir ), any( ProgressMonitorListener.class ), anyBoolean(),
+      anyString() ) ).thenReturn( transMeta );
+    assertSame( transMeta, cache.loadTransformation( repo, "trans", dir ) );
+    assertSame( transMeta, cache.loadTransformation( repo, "trans", dir ) );
+    verify( repo, times( 2 ) ).loadTransformation( anyString(), eq( dir ), any( ProgressMonitorListener.class ),
+      anyBoolean(), anyString() );
+    assertEquals( 0, cache.size() );
+    assertEquals( 2, cache.getUncachedCount() );
+  }
+
+  @Test
+  public void testEviction() throws Exception {
+    cache.setMaxEntries( 2 );
+    cache.put( "a", 1L, "a" );
+    cache.put( "b", 1L, "b" );
+    assertEquals( "a", cache.get( String.class, "a", 1L ) );
+    cache.put( "c", 1L, "c" );
+    assertEquals( 2, cache.size() );
+    assertEquals( 1, cache.getEvictionCount() );
+    // b was the least recently used
+    assertNull( cache.get( String.class, "b", 1L ) );
+    assertEquals( "a", cache.get( String.class, "a", 1L ) );
+
+    cache.setMaxEntries( 0 );
+    assertEquals( 0, cache.size() );
+    cache.put( "a", 1L, "a" );
+    assertEquals( 0, cache.size() );
+  }
+
+  @Test
+  public void testClearAndStatistics() throws Exception {
+    cache.put( "a", 1L, "a" );
+    cache.get( String.class, "a", 1L );
+    cache.clear();
+    assertEquals( 0, cache.size() );
+    assertTrue( cache.toString().contains( "hits=1" ) );
+    cache.resetStatistics();
+    assertEquals( 0, cache.getHitCount() );
+  }
+}
@@ -0,0 +1,129 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.api.analyzer.kettle.step;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.di.core.ProgressMonitorListener;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.StepMeta;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+public class RowMetaCacheTest {
+
+  private TransMeta transMeta;
+  private StepMeta stepMeta;
+  private RowMetaInterface prevFields;
+  private RowMetaInterface stepFields;
+
+  @Before
+  public void setUp() throws Exception {
+    RowMetaCache.resetTotals();
+    transMeta = mock( TransMeta.class );
+    stepMeta = mock( StepMeta.class );
+    when( stepMeta.getName() ).thenReturn( "step" );
+    prevFields = mock( RowMetaInterface.class );
+    stepFields = mock( RowMetaInterface.class );
+    when( transMeta.getPrevStepFields( eq( stepMeta ), any( ProgressMonitorListener.class ) ) )
+      .thenReturn( prevFields );
+    when( transMeta.getStepFields( eq( stepMeta ), any( ProgressMonitorListener.class ) ) ).thenReturn( stepFields );
+    when( transMeta.getStepFields( "step" ) ).thenReturn( stepFields );
+  }
+
+  @After
+  public void tearDown() {
+    assertNull( RowMetaCache.getActive( transMeta ) );
+  }
+
+  @Test
+  public void testNoPassDelegates() throws Exception {
+    assertNull( RowMetaCache.getActive( transMeta ) );
+    assertSame( prevFields, RowMetaCache.getPrevStepFields( transMeta, stepMeta ) );
+    assertSame( prevFields, RowMetaCache.getPrevStepFields( transMeta, stepMeta ) );
+    assertSame( stepFields, RowMetaCache.getStepFields( transMeta, stepMeta ) );
+    assertSame( stepFields, RowMetaCache.getStepFields( transMeta, "step" ) );
+
+    verify( transMeta, times( 2 ) ).getPrevStepFields( eq( stepMeta ), any( ProgressMonitorListener.class ) );
+    assertEquals( 0, RowMetaCache.getTotalHits() );
+    assertEquals( 0, RowMetaCache.getTotalMisses() );
+  }
+
+  @Test
+  public void testPassMemoizes() throws Exception {
+    RowMetaCache cache = RowMetaCache.open( transMeta );
+    try {
+      assertSame( cache, RowMetaCache.getActive( transMeta ) );
+      for ( int i = 0; i < 3; i++ ) {
+        assertSame( prevFields, RowMetaCache.getPrevStepFields( transMeta, stepMeta ) );
+        assertSame( stepFields, RowMetaCache.getStepFields( transMeta, stepMeta ) );
+        assertSame( stepFields, RowMetaCache.getStepFields( transMeta, "step" ) );
+      }
+    } finally {
+      cache.close();
+    }
+
+    verify( transMeta ).getPrevStepFields( eq( stepMeta ), any( ProgressMonitorListener.class ) );
+    verify( transMeta ).getStepFields( eq( stepMeta ), any( ProgressMonitorListener.class ) );
+    verify( transMeta ).getStepFields( "step" );
+    assertEquals( 6, cache.getHits() );
+    assertEquals( 3, cache.getMisses() );
+    assertEquals( 6, RowMetaCache.getTotalHits() );
+    assertEquals( 3, RowMetaCache.getTotalMisses() );
+  }
+
+  @Test
+  public void testNestedOpenSharesCache() throws Exception {
+    RowMetaCache outer = RowMetaCache.open( transMeta );
+    RowMetaCache inner = RowMetaCache.open( transMeta );
+    assertSame( outer, inner );
+    inner.close();
+    assertSame( outer, RowMetaCache.getActive( transMeta ) );
+    outer.close();
+
+    // a closed pass doesn't remember anything
+    RowMetaCache.getStepFields( transMeta, stepMeta );
+    RowMetaCache.getStepFields( transMeta, stepMeta );
+    verify( transMeta, times( 2 ) ).getStepFields( eq( stepMeta ), any( ProgressMonitorListener.class ) );
+  }
+
+  @Test
+  public void testNullResultsAreNotCached() throws Exception {
+    StepMeta other = mock( StepMeta.class );
+    when( other.getName() ).thenReturn( "other" );
+    RowMetaCache cache = RowMetaCache.open( transMeta );
+    try {
+      assertNull( RowMetaCache.getStepFields( transMeta, other ) );
+      assertNull( RowMetaCache.getStepFields( transMeta, other ) );
+    } finally {
+      cache.close();
+    }
+    verify( transMeta, times( 2 ) ).getStepFields( eq( other ), any( ProgressMonitorListener.class ) );
+    assertEquals( 2, cache.getMisses() );
+  }
+}
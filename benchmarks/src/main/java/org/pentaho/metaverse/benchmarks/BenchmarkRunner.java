@@ -0,0 +1,66 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the metaverse benchmarks. Takes the usual JMH command line options (-h lists them), and unless told otherwise
+ * writes the results as JSON to {@link #DEFAULT_RESULT_FILE} so that runs can be compared by tools.
+ * <p/>
+ * For example, to run the export benchmarks for the smallest graph only:
+ * <pre>
+ *   java -jar benchmarks/target/benchmarks.jar GraphWriterBenchmark -p vertices=1000
+ * </pre>
+ */
+public class BenchmarkRunner {
+
+  public static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+  public static void main( String[] args ) throws Exception {
+    CommandLineOptions commandLine = new CommandLineOptions( args );
+    if ( commandLine.shouldHelp() ) {
+      commandLine.showHelp();
+      return;
+    }
+
+    ChainedOptionsBuilder options = new OptionsBuilder().parent( commandLine );
+    if ( !commandLine.getResultFormat().hasValue() ) {
+      options.resultFormat( ResultFormatType.JSON );
+    }
+    if ( !commandLine.getResult().hasValue() ) {
+      options.result( DEFAULT_RESULT_FILE );
+    }
+
+    Runner runner = new Runner( options.build() );
+    if ( commandLine.shouldList() ) {
+      runner.list();
+    } else {
+      runner.run();
+    }
+  }
+}
@@ -0,0 +1,117 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.benchmarks;
+
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.KeyIndexableGraph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import com.tinkerpop.blueprints.util.wrappers.id.IdGraph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pentaho.metaverse.graph.ConcurrentGraph;
+import org.pentaho.metaverse.graph.SynchronizedGraph;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Contention on {@link SynchronizedGraph} and {@link ConcurrentGraph} under a lineage-like write workload: each
+ * operation re-adds a shared node, adds a node of its own and links the two, and every hundredth one also looks the
+ * shared nodes up by key. Run with different thread counts (-t) to see how throughput scales, e.g.
+ * <pre>
+ *   java -jar benchmarks/target/benchmarks.jar ConcurrentGraphBenchmark -t 8
+ * </pre>
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+@Threads( 4 )
+public class ConcurrentGraphBenchmark {
+
+  private static final int SHARED_NODES = 1000;
+
+  @Param( { "synchronized", "concurrent" } )
+  public String graphType;
+
+  private Graph graph;
+
+  private final AtomicInteger threadIds = new AtomicInteger();
+
+  /**
+   * The ids a thread makes up for its own nodes
+   */
+  @State( Scope.Thread )
+  public static class ThreadIds {
+    private String prefix;
+    private int next;
+
+    @Setup
+    public void setUp( ConcurrentGraphBenchmark benchmark ) {
+      prefix = "t" + benchmark.threadIds.getAndIncrement() + "_";
+    }
+  }
+
+  @Setup
+  public void setUp() {
+    IdGraph<KeyIndexableGraph> idGraph = new IdGraph<KeyIndexableGraph>( new TinkerGraph() );
+    idGraph.createKeyIndex( "type", Vertex.class );
+    graph = "synchronized".equals( graphType ) ? new SynchronizedGraph( idGraph ) : new ConcurrentGraph( idGraph );
+    // element properties are written outside of the graph's locks, so seed them up front
+    for ( int i = 0; i < SHARED_NODES; i++ ) {
+      graph.addVertex( "shared" + i ).setProperty( "type", "shared" );
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    graph.shutdown();
+  }
+
+  @Benchmark
+  public Object addLineage( ThreadIds ids ) {
+    int i = ids.next++;
+    Vertex shared = graph.addVertex( "shared" + ( i % SHARED_NODES ) );
+    String own = ids.prefix + i;
+    Vertex vertex = graph.addVertex( own );
+    Object edge = graph.addEdge( own + "~uses~shared" + ( i % SHARED_NODES ), vertex, shared, "uses" );
+    if ( i % 100 == 0 ) {
+      return graph.getVertices( "type", "shared" ).iterator().hasNext();
+    }
+    return edge;
+  }
+}
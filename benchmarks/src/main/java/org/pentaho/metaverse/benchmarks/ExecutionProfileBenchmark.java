@@ -0,0 +1,113 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pentaho.metaverse.api.model.ExternalResourceInfoFactory;
+import org.pentaho.metaverse.api.model.IExecutionData;
+import org.pentaho.metaverse.api.model.IExecutionProfile;
+import org.pentaho.metaverse.impl.model.ExecutionProfile;
+import org.pentaho.metaverse.impl.model.ExecutionProfileUtil;
+import org.pentaho.metaverse.impl.model.ParamInfo;
+
+import java.io.PrintStream;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing execution profiles with {@link ExecutionProfileUtil}, to a stream that only counts the bytes it is given.
+ * {@link #legacy()} writes them the way it used to be done, with a new mapper per profile and an intermediate string,
+ * for comparison. Run with {@code -prof gc} to see the allocation per profile as well as the latency.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class ExecutionProfileBenchmark {
+
+  /**
+   * The number of parameters, variables and external resources in the profile
+   */
+  @Param( { "10", "100", "1000" } )
+  public int entries;
+
+  private IExecutionProfile profile;
+
+  @Setup
+  public void setUp() {
+    profile = new ExecutionProfile( "benchmark", "/benchmarks/benchmark.ktr", "Transformation", "A benchmark" );
+    IExecutionData data = profile.getExecutionData();
+    data.setStartTime( new Date() );
+    data.setEndTime( new Date() );
+    data.setExecutorServer( "localhost" );
+    data.setExecutorUser( "admin" );
+    for ( int i = 0; i < entries; i++ ) {
+      data.addParameter( new ParamInfo( "param" + i, "value" + i, "default" + i ) );
+      data.addVariable( "variable" + i, "value" + i );
+      data.addExternalResource( "step" + ( i % 10 ),
+        ExternalResourceInfoFactory.createURLResource( "http://localhost/resource" + i, i % 2 == 0 ) );
+    }
+  }
+
+  @Benchmark
+  public long indented() throws Exception {
+    CountingOutputStream out = new CountingOutputStream( new NullOutputStream() );
+    ExecutionProfileUtil.outputExecutionProfile( out, profile );
+    return out.getByteCount();
+  }
+
+  @Benchmark
+  public long compact() throws Exception {
+    CountingOutputStream out = new CountingOutputStream( new NullOutputStream() );
+    ExecutionProfileUtil.outputExecutionProfile( out, profile, true );
+    return out.getByteCount();
+  }
+
+  @Benchmark
+  public long legacy() throws Exception {
+    CountingOutputStream out = new CountingOutputStream( new NullOutputStream() );
+    PrintStream print = new PrintStream( out );
+    ObjectMapper mapper = new ObjectMapper();
+    mapper.enable( SerializationFeature.INDENT_OUTPUT );
+    mapper.disable( SerializationFeature.FAIL_ON_EMPTY_BEANS );
+    mapper.enable( SerializationFeature.WRAP_EXCEPTIONS );
+    print.println( mapper.writeValueAsString( profile ) );
+    return out.getByteCount();
+  }
+}
@@ -0,0 +1,135 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.benchmarks;
+
+import com.tinkerpop.blueprints.Graph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.metaverse.api.StepFieldOperations;
+import org.pentaho.metaverse.client.FieldOriginIndex;
+import org.pentaho.metaverse.client.LineageClient;
+import org.pentaho.metaverse.graph.LineageGraphMap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Operation path queries for a single field of the last step, answered by traversing the lineage graph and by a
+ * {@link FieldOriginIndex}, on transformations that are wide (many fields per step) or deep (many steps). Successive
+ * invocations ask for successive fields. {@link LineageClientBenchmark} asks for all fields at once.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class FieldOriginIndexBenchmark {
+
+  /**
+   * The shape of the transformation, as steps x fields
+   */
+  @Param( { "10x200", "45x20" } )
+  public String shape;
+
+  private Graph graph;
+
+  private TransMeta transMeta;
+
+  private String targetStepName;
+
+  private List<Collection<String>> fieldNames;
+
+  private int next;
+
+  private LineageClient traversingClient;
+
+  private FieldOriginIndex index;
+
+  @Setup
+  public void setUp() throws Exception {
+    KettleEnvironment.init();
+    String[] dimensions = shape.split( "x" );
+    int steps = Integer.parseInt( dimensions[0] );
+    int fields = Integer.parseInt( dimensions[1] );
+    graph = Transformations.newLineageGraph( steps, fields );
+    transMeta = new TransMeta();
+    FutureTask<Graph> lineageGraphTask = new FutureTask<>( new Callable<Graph>() {
+      @Override
+      public Graph call() {
+        return graph;
+      }
+    } );
+    lineageGraphTask.run();
+    LineageGraphMap.getInstance().put( transMeta, lineageGraphTask );
+
+    targetStepName = Transformations.stepName( steps - 1 );
+    fieldNames = new ArrayList<>( fields );
+    for ( int f = 0; f < fields; f++ ) {
+      fieldNames.add( Collections.singletonList( Transformations.fieldName( steps - 1, f ) ) );
+    }
+    traversingClient = new LineageClient();
+    traversingClient.setUseOriginIndex( false );
+    index = new FieldOriginIndex( graph );
+  }
+
+  @TearDown
+  public void tearDown() {
+    LineageGraphMap.getInstance().remove( transMeta );
+  }
+
+  private Collection<String> nextField() {
+    Collection<String> field = fieldNames.get( next );
+    next = ( next + 1 ) % fieldNames.size();
+    return field;
+  }
+
+  @Benchmark
+  public Map<String, Set<List<StepFieldOperations>>> operationPathsByTraversal() throws Exception {
+    return traversingClient.getOperationPaths( transMeta, targetStepName, nextField() );
+  }
+
+  @Benchmark
+  public Map<String, Set<List<StepFieldOperations>>> operationPathsByIndex() throws Exception {
+    return index.getOperationPaths( targetStepName, nextField() );
+  }
+}
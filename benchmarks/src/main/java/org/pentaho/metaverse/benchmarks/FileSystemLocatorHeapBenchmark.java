@@ -0,0 +1,124 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.benchmarks;
+
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pentaho.metaverse.api.IDocumentEvent;
+import org.pentaho.metaverse.api.IDocumentListener;
+import org.pentaho.metaverse.api.IMetaverseBuilder;
+import org.pentaho.metaverse.impl.DocumentController;
+import org.pentaho.metaverse.impl.MetaverseBuilder;
+import org.pentaho.metaverse.locator.FileSystemLocator;
+import org.pentaho.metaverse.util.MetaverseUtil;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scanning a folder of large transformations with {@link FileSystemLocator} while holding on to every located
+ * document, as the queue of the completion service does. Run it with the GC profiler to see what a scan allocates:
+ * <pre>
+ *   java -jar benchmarks/target/benchmarks.jar FileSystemLocatorHeapBenchmark -prof gc
+ * </pre>
+ * gc.alloc.rate.norm (bytes per scan) should stay far below files x size, since the documents only hold the files
+ * and leave reading them to the analyzers.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class FileSystemLocatorHeapBenchmark {
+
+  @Param( { "32" } )
+  public int files;
+
+  @Param( { "1048576" } )
+  public int size;
+
+  private File root;
+
+  private IMetaverseBuilder builder;
+
+  @Setup
+  public void setUp() throws Exception {
+    root = Files.createTempDirectory( "metaverse-locator-heap-benchmark" ).toFile();
+    StringBuilder xml = new StringBuilder( size );
+    xml.append( "<transformation><info><name>large</name><description>" );
+    while ( xml.length() < size - 64 ) {
+      xml.append( "padding padding padding padding padding padding padding padding" );
+    }
+    xml.append( "</description></info></transformation>" );
+    for ( int i = 0; i < files; i++ ) {
+      FileUtils.writeStringToFile( new File( root, "large" + i + ".ktr" ), xml.toString(), "UTF-8" );
+    }
+    builder = new MetaverseBuilder( new TinkerGraph() );
+    MetaverseUtil.setDocumentController( new DocumentController( builder ) );
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    MetaverseUtil.setDocumentController( null );
+    FileUtils.deleteDirectory( root );
+  }
+
+  @Benchmark
+  public List<IDocumentEvent> scan() throws Exception {
+    final List<IDocumentEvent> events = Collections.synchronizedList( new ArrayList<IDocumentEvent>() );
+    final CountDownLatch located = new CountDownLatch( files );
+    List<IDocumentListener> listeners = new ArrayList<>();
+    listeners.add( new IDocumentListener() {
+      @Override
+      public void onEvent( IDocumentEvent event ) {
+        events.add( event );
+        located.countDown();
+      }
+    } );
+    FileSystemLocator locator = new FileSystemLocator( listeners );
+    locator.setRepositoryId( "benchmark" );
+    locator.setRootFolder( root.getAbsolutePath() );
+    locator.setMetaverseBuilder( builder );
+    locator.startScan();
+    located.await();
+    return events;
+  }
+}
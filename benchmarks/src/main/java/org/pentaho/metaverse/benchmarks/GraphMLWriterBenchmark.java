@@ -0,0 +1,87 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.benchmarks;
+
+import com.tinkerpop.blueprints.Graph;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pentaho.metaverse.graph.GraphMLWriter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exporting lineage graphs as GraphML with {@link GraphMLWriter}, streamed and normalized, to a stream that only
+ * counts the bytes it is given. Run with {@code -prof gc} to compare the memory each mode allocates per export as well
+ * as its latency; a small heap (say {@code -jvmArgs -Xmx512m}) shows which mode needs the graph sorted in memory.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class GraphMLWriterBenchmark {
+
+  /**
+   * The number of field vertices, spread over 20 steps
+   */
+  @Param( { "10000", "100000", "500000" } )
+  public int vertices;
+
+  private Graph graph;
+  private GraphMLWriter streamed;
+  private GraphMLWriter normalized;
+
+  @Setup
+  public void setUp() {
+    graph = Transformations.newLineageGraph( 20, Math.max( 1, vertices / 20 ) );
+    streamed = new GraphMLWriter();
+    normalized = new GraphMLWriter();
+    normalized.setNormalize( true );
+  }
+
+  @Benchmark
+  public long streamed() throws Exception {
+    CountingOutputStream out = new CountingOutputStream( new NullOutputStream() );
+    streamed.outputGraph( graph, out );
+    return out.getByteCount();
+  }
+
+  @Benchmark
+  public long normalized() throws Exception {
+    CountingOutputStream out = new CountingOutputStream( new NullOutputStream() );
+    normalized.outputGraph( graph, out );
+    return out.getByteCount();
+  }
+}
@@ -0,0 +1,101 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.benchmarks;
+
+import com.tinkerpop.blueprints.Graph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pentaho.dictionary.DictionaryConst;
+import org.pentaho.metaverse.graph.BlueprintsGraphMetaverseReader;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Searching and tracing long derivation chains with {@link BlueprintsGraphMetaverseReader}, from the first field of
+ * the first step of a lineage graph
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class GraphTraversalBenchmark {
+
+  /**
+   * The length of the derivation chains
+   */
+  @Param( { "100", "1000", "10000" } )
+  public int steps;
+
+  /**
+   * The number of chains, which every fifth step crosses
+   */
+  @Param( { "1", "10" } )
+  public int fields;
+
+  private BlueprintsGraphMetaverseReader reader;
+
+  private List<String> start;
+
+  private List<String> fieldType;
+
+  @Setup
+  public void setUp() {
+    Graph graph = Transformations.newLineageGraph( steps, fields );
+    reader = new BlueprintsGraphMetaverseReader( graph );
+    Object id = graph.getVertices( DictionaryConst.PROPERTY_NAME, Transformations.fieldName( 0, 0 ) )
+      .iterator().next().getId();
+    start = Collections.singletonList( id.toString() );
+    fieldType = Collections.singletonList( DictionaryConst.NODE_TYPE_TRANS_FIELD );
+  }
+
+  @Benchmark
+  public Graph searchShortest() {
+    reader.setMaxDepth( 0 );
+    return reader.search( fieldType, start, true );
+  }
+
+  @Benchmark
+  public Graph searchShortestDepth20() {
+    reader.setMaxDepth( 20 );
+    return reader.search( fieldType, start, true );
+  }
+
+  @Benchmark
+  public Graph getGraph() {
+    reader.setMaxDepth( 0 );
+    return reader.getGraph( start.get( 0 ) );
+  }
+}
@@ -0,0 +1,139 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.benchmarks;
+
+import com.tinkerpop.blueprints.Graph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.metaverse.api.StepField;
+import org.pentaho.metaverse.api.StepFieldOperations;
+import org.pentaho.metaverse.client.FieldOriginIndex;
+import org.pentaho.metaverse.client.LineageClient;
+import org.pentaho.metaverse.graph.LineageGraphMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Origin step and operation path queries through {@link LineageClient}, answered by traversing the lineage graph and
+ * by its {@link FieldOriginIndex}. Each query asks for all fields of the last step.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class LineageClientBenchmark {
+
+  @Param( { "10", "45" } )
+  public int steps;
+
+  @Param( { "20", "200" } )
+  public int fields;
+
+  private Graph graph;
+
+  private TransMeta transMeta;
+
+  private String targetStepName;
+
+  private List<String> fieldNames;
+
+  private LineageClient traversingClient;
+
+  private LineageClient indexedClient;
+
+  @Setup
+  public void setUp() throws Exception {
+    KettleEnvironment.init();
+    graph = Transformations.newLineageGraph( steps, fields );
+    transMeta = new TransMeta();
+    FutureTask<Graph> lineageGraphTask = new FutureTask<>( new Callable<Graph>() {
+      @Override
+      public Graph call() {
+        return graph;
+      }
+    } );
+    lineageGraphTask.run();
+    LineageGraphMap.getInstance().put( transMeta, lineageGraphTask );
+
+    targetStepName = Transformations.stepName( steps - 1 );
+    fieldNames = new ArrayList<>( fields );
+    for ( int f = 0; f < fields; f++ ) {
+      fieldNames.add( Transformations.fieldName( steps - 1, f ) );
+    }
+    traversingClient = new LineageClient();
+    traversingClient.setUseOriginIndex( false );
+    indexedClient = new LineageClient();
+    FieldOriginIndex.index( graph );
+  }
+
+  @TearDown
+  public void tearDown() {
+    LineageGraphMap.getInstance().remove( transMeta );
+    FieldOriginIndex.remove( graph );
+  }
+
+  @Benchmark
+  public Map<String, Set<StepField>> originStepsByTraversal() throws Exception {
+    return traversingClient.getOriginSteps( transMeta, targetStepName, fieldNames );
+  }
+
+  @Benchmark
+  public Map<String, Set<StepField>> originStepsByIndex() throws Exception {
+    return indexedClient.getOriginSteps( transMeta, targetStepName, fieldNames );
+  }
+
+  @Benchmark
+  public Map<String, Set<List<StepFieldOperations>>> operationPathsByTraversal() throws Exception {
+    return traversingClient.getOperationPaths( transMeta, targetStepName, fieldNames );
+  }
+
+  @Benchmark
+  public Map<String, Set<List<StepFieldOperations>>> operationPathsByIndex() throws Exception {
+    return indexedClient.getOperationPaths( transMeta, targetStepName, fieldNames );
+  }
+
+  @Benchmark
+  public FieldOriginIndex buildIndex() {
+    return new FieldOriginIndex( graph );
+  }
+}
@@ -0,0 +1,151 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.benchmarks;
+
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pentaho.dictionary.DictionaryConst;
+import org.pentaho.metaverse.api.LogicalIdLookup;
+import org.pentaho.metaverse.api.MetaverseLogicalIdGenerator;
+import org.pentaho.metaverse.api.PropertiesHolder;
+import org.pentaho.metaverse.impl.MetaverseBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON versus hashed logical ids for a metaverse of field nodes nested {@code depth} levels deep (locator, document,
+ * step, ...). Measures generating the ids, and resolving every node by logical id through {@link MetaverseBuilder}'s
+ * index, over a graph set up as in the plugin ({@link Transformations#newMetaverseGraph()}).
+ * <p/>
+ * The id sizes are printed at setup; run with {@code -prof gc} to compare the allocation of each scheme as well.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class LogicalIdBenchmark {
+
+  @Param( { "json", "hashed" } )
+  public String format;
+
+  @Param( { "3", "6" } )
+  public int depth;
+
+  @Param( { "10000" } )
+  public int nodes;
+
+  private MetaverseLogicalIdGenerator generator;
+
+  private List<PropertiesHolder> nodeList;
+
+  private List<String> logicalIds;
+
+  private Builder builder;
+
+  /**
+   * Exposes the builder's lookup by logical id
+   */
+  private static class Builder extends MetaverseBuilder {
+    Builder( Graph graph ) {
+      super( graph );
+    }
+
+    Vertex find( String logicalId ) {
+      return getVertexByLogicalId( logicalId );
+    }
+  }
+
+  @Setup
+  public void setUp() {
+    generator = new MetaverseLogicalIdGenerator(
+      DictionaryConst.PROPERTY_NAMESPACE, DictionaryConst.PROPERTY_TYPE, DictionaryConst.PROPERTY_NAME );
+    generator.setHashed( "hashed".equals( format ) );
+    LogicalIdLookup.getInstance().clear();
+
+    String namespace = "benchmark";
+    for ( int level = 0; level < depth; level++ ) {
+      namespace = generator.generateId( createNode( namespace, "level" + level, "Container" ) );
+    }
+
+    nodeList = new ArrayList<>( nodes );
+    logicalIds = new ArrayList<>( nodes );
+    Graph graph = Transformations.newMetaverseGraph();
+    long idChars = 0;
+    for ( int i = 0; i < nodes; i++ ) {
+      PropertiesHolder node = createNode( namespace, "field" + i, DictionaryConst.NODE_TYPE_TRANS_FIELD );
+      nodeList.add( node );
+      String logicalId = generator.generateId( node );
+      logicalIds.add( logicalId );
+      idChars += logicalId.length();
+      graph.addVertex( null ).setProperty( DictionaryConst.PROPERTY_LOGICAL_ID, logicalId );
+    }
+    // the vertices were added behind the builder's back, so it has to index them
+    builder = new Builder( graph );
+    System.out.println( "\n" + format + " logical ids, depth " + depth + ": " + idChars / nodes
+      + " chars per id on average, " + idChars + " chars in total, " + LogicalIdLookup.getInstance().size()
+      + " lookup table entries" );
+  }
+
+  private static PropertiesHolder createNode( String namespace, String name, String type ) {
+    PropertiesHolder node = new PropertiesHolder();
+    node.setProperty( DictionaryConst.PROPERTY_NAMESPACE, namespace );
+    node.setProperty( DictionaryConst.PROPERTY_NAME, name );
+    node.setProperty( DictionaryConst.PROPERTY_TYPE, type );
+    return node;
+  }
+
+  @Benchmark
+  public List<String> generateIds() {
+    List<String> ids = new ArrayList<>( nodes );
+    for ( PropertiesHolder node : nodeList ) {
+      ids.add( generator.generateId( node ) );
+    }
+    return ids;
+  }
+
+  @Benchmark
+  public int lookupByLogicalId() {
+    int found = 0;
+    for ( String logicalId : logicalIds ) {
+      if ( builder.find( logicalId ) != null ) {
+        found++;
+      }
+    }
+    return found;
+  }
+}
@@ -0,0 +1,138 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.benchmarks;
+
+import com.tinkerpop.blueprints.Graph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pentaho.dictionary.DictionaryConst;
+import org.pentaho.metaverse.api.IMetaverseNode;
+import org.pentaho.metaverse.api.MetaverseObjectFactory;
+import org.pentaho.metaverse.api.Namespace;
+import org.pentaho.metaverse.impl.MetaverseBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adding nodes and links to the metaverse through {@link MetaverseBuilder}, into an empty graph and again into a
+ * graph that already holds them (as when a document is analyzed a second time). {@link #addBatchToPopulated()} adds a
+ * fixed-size batch of new nodes to a graph of {@code nodes} nodes; its cost should not depend on the size of the graph.
+ * The graph is set up as in the plugin ({@link Transformations#newMetaverseGraph()}), without a key index on logical
+ * ids, so a lookup that fell back to the graph would show here as a cost growing with the graph.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class MetaverseBuilderBenchmark {
+
+  @Param( { "1000", "10000", "100000" } )
+  public int nodes;
+
+  private static final int BATCH_SIZE = 100;
+
+  private List<IMetaverseNode> nodeList;
+
+  private List<IMetaverseNode> batch;
+
+  private MetaverseBuilder populatedBuilder;
+
+  @Setup
+  public void setUp() {
+    MetaverseObjectFactory factory = new MetaverseObjectFactory();
+    Namespace namespace = new Namespace( "benchmark" );
+    nodeList = new ArrayList<>( nodes );
+    for ( int i = 0; i < nodes; i++ ) {
+      IMetaverseNode node = factory.createNodeObject( namespace, "field" + i, DictionaryConst.NODE_TYPE_TRANS_FIELD );
+      node.setProperty( DictionaryConst.PROPERTY_DESCRIPTION, "Field number " + i );
+      nodeList.add( node );
+    }
+    batch = new ArrayList<>( BATCH_SIZE );
+    for ( int i = 0; i < BATCH_SIZE; i++ ) {
+      batch.add( factory.createNodeObject( namespace, "new field" + i, DictionaryConst.NODE_TYPE_TRANS_FIELD ) );
+    }
+    populatedBuilder = new MetaverseBuilder( Transformations.newMetaverseGraph() );
+    addNodesAndLinks( populatedBuilder );
+  }
+
+  @Benchmark
+  public Graph addNodes() {
+    MetaverseBuilder builder = new MetaverseBuilder( Transformations.newMetaverseGraph() );
+    for ( IMetaverseNode node : nodeList ) {
+      builder.addNode( node );
+    }
+    return builder.getGraph();
+  }
+
+  @Benchmark
+  public Graph addNodesAndLinks() {
+    MetaverseBuilder builder = new MetaverseBuilder( Transformations.newMetaverseGraph() );
+    addNodesAndLinks( builder );
+    return builder.getGraph();
+  }
+
+  @Benchmark
+  public Graph readdNodesAndLinks() {
+    addNodesAndLinks( populatedBuilder );
+    return populatedBuilder.getGraph();
+  }
+
+  @Benchmark
+  public Graph addBatchToPopulated() {
+    IMetaverseNode previous = nodeList.get( nodeList.size() - 1 );
+    for ( IMetaverseNode node : batch ) {
+      populatedBuilder.addNode( node );
+      populatedBuilder.addLink( previous, DictionaryConst.LINK_DERIVES, node );
+      previous = node;
+    }
+    // take the batch out again so every invocation sees a graph of the same size
+    for ( IMetaverseNode node : batch ) {
+      populatedBuilder.deleteNode( node );
+    }
+    return populatedBuilder.getGraph();
+  }
+
+  private void addNodesAndLinks( MetaverseBuilder builder ) {
+    IMetaverseNode previous = null;
+    for ( IMetaverseNode node : nodeList ) {
+      builder.addNode( node );
+      if ( previous != null ) {
+        builder.addLink( previous, DictionaryConst.LINK_DERIVES, node );
+      }
+      previous = node;
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.benchmarks;
+
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pentaho.metaverse.api.IMetaverseReader;
+import org.pentaho.metaverse.graph.BlueprintsGraphMetaverseReader;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exporting the whole metaverse with {@link BlueprintsGraphMetaverseReader}, once into a string (as
+ * {@link BlueprintsGraphMetaverseReader#exportFormat(String)} does) and once streamed to an output stream that only
+ * counts the bytes it is given (as the REST export does). Run it with the GC profiler to compare what each allocates:
+ * <pre>
+ *   java -jar benchmarks/target/benchmarks.jar MetaverseExportBenchmark -prof gc
+ * </pre>
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class MetaverseExportBenchmark {
+
+  @Param( { IMetaverseReader.FORMAT_XML, IMetaverseReader.FORMAT_JSON, IMetaverseReader.FORMAT_CSV } )
+  public String format;
+
+  /**
+   * The number of field vertices, spread over 20 steps
+   */
+  @Param( { "100000" } )
+  public int vertices;
+
+  private BlueprintsGraphMetaverseReader reader;
+
+  @Setup
+  public void setUp() {
+    reader = new BlueprintsGraphMetaverseReader( Transformations.newLineageGraph( 20, Math.max( 1, vertices / 20 ) ) );
+  }
+
+  @Benchmark
+  public int exportToString() {
+    return reader.exportFormat( format ).length();
+  }
+
+  @Benchmark
+  public long exportToStream() throws Exception {
+    CountingOutputStream out = new CountingOutputStream( new NullOutputStream() );
+    reader.exportToStream( format, out );
+    return out.getByteCount();
+  }
+}
@@ -0,0 +1,125 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.benchmarks;
+
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.dictionary.DictionaryConst;
+import org.pentaho.metaverse.analyzer.kettle.TransformationAnalyzer;
+import org.pentaho.metaverse.analyzer.kettle.step.StepAnalyzerProvider;
+import org.pentaho.metaverse.analyzer.kettle.step.selectvalues.SelectValuesStepAnalyzer;
+import org.pentaho.metaverse.api.AnalysisContext;
+import org.pentaho.metaverse.api.IComponentDescriptor;
+import org.pentaho.metaverse.api.IDocument;
+import org.pentaho.metaverse.api.MetaverseComponentDescriptor;
+import org.pentaho.metaverse.api.MetaverseObjectFactory;
+import org.pentaho.metaverse.api.Namespace;
+import org.pentaho.metaverse.api.analyzer.kettle.step.IStepAnalyzer;
+import org.pentaho.metaverse.impl.MetaverseBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full analysis of generated transformations by {@link TransformationAnalyzer}, serially and on a pool of step
+ * analysis threads
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class TransformationAnalyzerBenchmark {
+
+  @Param( { "10", "50" } )
+  public int steps;
+
+  @Param( { "20", "100" } )
+  public int fields;
+
+  @Param( { "1", "4" } )
+  public int threads;
+
+  private TransformationAnalyzer analyzer;
+
+  private IDocument document;
+
+  private IComponentDescriptor descriptor;
+
+  @Setup
+  public void setUp() throws Exception {
+    KettleEnvironment.init();
+    String xml = Transformations.newTransformationXml( steps, fields );
+    TransMeta transMeta = new TransMeta( new ByteArrayInputStream( xml.getBytes( "UTF-8" ) ), null, false, null, null );
+
+    List<IStepAnalyzer> stepAnalyzers = new ArrayList<>();
+    stepAnalyzers.add( new SelectValuesStepAnalyzer() );
+    StepAnalyzerProvider stepAnalyzerProvider = new StepAnalyzerProvider();
+    stepAnalyzerProvider.setStepAnalyzers( stepAnalyzers );
+
+    analyzer = new TransformationAnalyzer();
+    analyzer.setStepAnalyzerProvider( stepAnalyzerProvider );
+    analyzer.setStepAnalysisThreads( threads );
+
+    Namespace namespace = new Namespace( "benchmark" );
+    document = new MetaverseObjectFactory().createDocumentObject();
+    document.setNamespace( namespace );
+    document.setContent( transMeta );
+    document.setStringID( "benchmark.ktr" );
+    document.setName( "benchmark.ktr" );
+    document.setExtension( "ktr" );
+    document.setProperty( DictionaryConst.PROPERTY_PATH, "benchmark.ktr" );
+    descriptor = new MetaverseComponentDescriptor( "benchmark.ktr", DictionaryConst.NODE_TYPE_TRANS, namespace,
+      new AnalysisContext( DictionaryConst.CONTEXT_DEFAULT ) );
+  }
+
+  @TearDown
+  public void tearDown() {
+    analyzer.shutdownStepAnalysisExecutor();
+  }
+
+  @Benchmark
+  public Graph analyze() throws Exception {
+    MetaverseBuilder builder = new MetaverseBuilder( new TinkerGraph() );
+    analyzer.setMetaverseBuilder( builder );
+    analyzer.analyze( descriptor, document );
+    return builder.getGraph();
+  }
+}
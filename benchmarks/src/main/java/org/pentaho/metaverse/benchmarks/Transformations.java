@@ -0,0 +1,141 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.benchmarks;
+
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import org.pentaho.dictionary.DictionaryConst;
+import org.pentaho.metaverse.graph.SynchronizedGraphFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Generates the inputs of the benchmarks. Everything generated is a function of the sizes asked for, so every run
+ * works on the same data.
+ */
+public final class Transformations {
+
+  private Transformations() {
+  }
+
+  /**
+   * Generates a transformation that generates rows of the given number of fields, then passes them through a chain
+   * of Select values steps that rename every field
+   *
+   * @param steps  the number of steps, including the Generate Rows step
+   * @param fields the number of fields
+   * @return the transformation as .ktr XML
+   */
+  public static String newTransformationXml( int steps, int fields ) {
+    StringBuilder xml = new StringBuilder( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<transformation>\n" );
+    xml.append( "  <info>\n    <name>benchmark_" ).append( steps ).append( "_" ).append( fields )
+      .append( "</name>\n  </info>\n" );
+
+    xml.append( "  <order>\n" );
+    for ( int s = 1; s < steps; s++ ) {
+      xml.append( "    <hop><from>" ).append( stepName( s - 1 ) ).append( "</from><to>" ).append( stepName( s ) )
+        .append( "</to><enabled>Y</enabled></hop>\n" );
+    }
+    xml.append( "  </order>\n" );
+
+    xml.append( "  <step>\n    <name>" ).append( stepName( 0 ) ).append( "</name>\n    <type>RowGenerator</type>\n" );
+    xml.append( "    <fields>\n" );
+    for ( int f = 0; f < fields; f++ ) {
+      xml.append( "      <field><name>" ).append( fieldName( 0, f ) ).append( "</name><type>String</type>" )
+        .append( "<nullif>value</nullif><length>-1</length><precision>-1</precision>" )
+        .append( "<set_empty_string>N</set_empty_string></field>\n" );
+    }
+    xml.append( "    </fields>\n    <limit>10</limit>\n    <never_ending>N</never_ending>\n  </step>\n" );
+
+    for ( int s = 1; s < steps; s++ ) {
+      xml.append( "  <step>\n    <name>" ).append( stepName( s ) ).append( "</name>\n    <type>SelectValues</type>\n" );
+      xml.append( "    <fields>\n" );
+      for ( int f = 0; f < fields; f++ ) {
+        xml.append( "      <field><name>" ).append( fieldName( s - 1, f ) ).append( "</name><rename>" )
+          .append( fieldName( s, f ) ).append( "</rename><length>-2</length><precision>-2</precision></field>\n" );
+      }
+      xml.append( "      <select_unspecified>N</select_unspecified>\n    </fields>\n  </step>\n" );
+    }
+    xml.append( "</transformation>\n" );
+    return xml.toString();
+  }
+
+  /**
+   * Generates the lineage graph of a transformation in which every step derives all fields of the previous one, and
+   * every fifth step calculates each field from two fields of the previous step
+   *
+   * @param steps  the number of steps
+   * @param fields the number of fields output by each step
+   * @return the lineage graph
+   */
+  public static Graph newLineageGraph( int steps, int fields ) {
+    Graph graph = new TinkerGraph();
+    List<Vertex> previous = null;
+    for ( int s = 0; s < steps; s++ ) {
+      Vertex step = vertex( graph, DictionaryConst.NODE_TYPE_TRANS_STEP, stepName( s ) );
+      List<Vertex> current = new ArrayList<>( fields );
+      for ( int f = 0; f < fields; f++ ) {
+        Vertex field = vertex( graph, DictionaryConst.NODE_TYPE_TRANS_FIELD, fieldName( s, f ) );
+        graph.addEdge( null, step, field, DictionaryConst.LINK_OUTPUTS );
+        if ( previous != null ) {
+          graph.addEdge( null, previous.get( f ), field, DictionaryConst.LINK_DERIVES );
+          if ( s % 5 == 0 ) {
+            graph.addEdge( null, previous.get( ( f + 1 ) % fields ), field, DictionaryConst.LINK_DERIVES );
+          }
+        }
+        current.add( field );
+      }
+      previous = current;
+    }
+    return graph;
+  }
+
+  /**
+   * Opens an empty metaverse graph set up as the plugin's blueprint sets it up: a TinkerGraph opened through
+   * {@link SynchronizedGraphFactory}, with no key index on logical ids
+   *
+   * @return the graph
+   */
+  public static Graph newMetaverseGraph() {
+    return SynchronizedGraphFactory.open(
+      Collections.singletonMap( "blueprints.graph", "com.tinkerpop.blueprints.impls.tg.TinkerGraph" ) );
+  }
+
+  public static String stepName( int step ) {
+    return "step" + step;
+  }
+
+  public static String fieldName( int step, int field ) {
+    return "s" + step + "_field" + field;
+  }
+
+  private static Vertex vertex( Graph graph, String type, String name ) {
+    Vertex vertex = graph.addVertex( null );
+    vertex.setProperty( DictionaryConst.PROPERTY_TYPE, type );
+    vertex.setProperty( DictionaryConst.PROPERTY_NAME, name );
+    return vertex;
+  }
+}
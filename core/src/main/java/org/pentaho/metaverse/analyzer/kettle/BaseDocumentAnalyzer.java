@@ -26,8 +26,13 @@ import org.pentaho.dictionary.DictionaryConst;
 import org.pentaho.metaverse.api.IComponentDescriptor;
 import org.pentaho.metaverse.api.IDocument;
 import org.pentaho.metaverse.api.IDocumentAnalyzer;
+import org.pentaho.metaverse.api.IMetaverseBuilder;
+import org.pentaho.metaverse.api.IMetaverseBulkLoad;
+import org.pentaho.metaverse.api.IMetaverseBulkLoader;
 import org.pentaho.metaverse.api.IMetaverseNode;
+import org.pentaho.metaverse.api.IMetaverseObjectFactory;
 import org.pentaho.metaverse.api.MetaverseAnalyzerException;
+import org.pentaho.metaverse.api.MetaverseException;
 import org.pentaho.metaverse.api.analyzer.kettle.BaseKettleMetaverseComponent;
 import org.pentaho.metaverse.messages.Messages;
 
@@ -74,6 +79,19 @@ public abstract class BaseDocumentAnalyzer extends BaseKettleMetaverseComponent
    */
   public void addParentLink( IComponentDescriptor descriptor, IMetaverseNode child )
     throws MetaverseAnalyzerException {
+    addParentLink( descriptor, child, metaverseBuilder );
+  }
+
+  /**
+   * Creates the document node relationships in the graph of the given builder rather than the analyzer's own
+   *
+   * @param descriptor the descriptor of the document
+   * @param child      the document node
+   * @param builder    the builder the links are written to
+   * @throws MetaverseAnalyzerException
+   */
+  protected void addParentLink( IComponentDescriptor descriptor, IMetaverseNode child, IMetaverseBuilder builder )
+    throws MetaverseAnalyzerException {
 
     // The document is always a child of the locator. If this nis not the case, then do not
     // subclass this document analyzer.
@@ -81,10 +99,63 @@ public abstract class BaseDocumentAnalyzer extends BaseKettleMetaverseComponent
     // This will create a virtual node that will line up with the correct
     // locator node for this document in the graph.
     IMetaverseNode locatorNode =
-        metaverseObjectFactory.createNodeObject( descriptor.getStringID() );
+        getMetaverseObjectFactory( builder ).createNodeObject( descriptor.getStringID() );
+
+    builder.addLink( locatorNode, DictionaryConst.LINK_CONTAINS, child );
+
+  }
+
+  /**
+   * Returns the object factory to create the nodes and links written to the given builder with
+   *
+   * @param builder the builder
+   * @return the builder's object factory, or the analyzer's own if the builder has none
+   */
+  protected IMetaverseObjectFactory getMetaverseObjectFactory( IMetaverseBuilder builder ) {
+    IMetaverseObjectFactory objectFactory = builder.getMetaverseObjectFactory();
+    return objectFactory == null ? metaverseObjectFactory : objectFactory;
+  }
 
-    metaverseBuilder.addLink( locatorNode, DictionaryConst.LINK_CONTAINS, child );
+  /**
+   * Starts a bulk load into a builder. The analyzer writes the document to the load instead of the builder (and hands
+   * the load to its step or entry analyzers), so that the document's nodes and links reach the metaverse together once
+   * it has been analyzed, and not at all if its analysis fails. Must be paired with {@link #endBulkLoad}.
+   *
+   * @param builder the builder to load into
+   * @return the load, or null if the builder can't bulk load, in which case the analyzer writes to it directly
+   */
+  protected IMetaverseBulkLoad beginBulkLoad( IMetaverseBuilder builder ) {
+    if ( !( builder instanceof IMetaverseBulkLoader ) ) {
+      return null;
+    }
+    return ( (IMetaverseBulkLoader) builder ).beginBulkLoad();
+  }
 
+  /**
+   * Applies a bulk load started by {@link #beginBulkLoad}
+   *
+   * @param load the load, or null if there is none
+   * @throws MetaverseAnalyzerException if the load could not be applied
+   */
+  protected void commitBulkLoad( IMetaverseBulkLoad load ) throws MetaverseAnalyzerException {
+    if ( load != null ) {
+      try {
+        load.commit();
+      } catch ( MetaverseException e ) {
+        throw new MetaverseAnalyzerException( e );
+      }
+    }
+  }
+
+  /**
+   * Drops a bulk load started by {@link #beginBulkLoad} unless it was committed
+   *
+   * @param load the load, or null if there is none
+   */
+  protected void endBulkLoad( IMetaverseBulkLoad load ) {
+    if ( load != null ) {
+      load.rollback();
+    }
   }
 
 }
@@ -34,6 +34,9 @@ import org.pentaho.dictionary.DictionaryConst;
 import org.pentaho.metaverse.analyzer.kettle.jobentry.GenericJobEntryMetaAnalyzer;
 import org.pentaho.metaverse.api.IComponentDescriptor;
 import org.pentaho.metaverse.api.IDocument;
+import org.pentaho.metaverse.api.IDocumentContent;
+import org.pentaho.metaverse.api.IMetaverseBuilder;
+import org.pentaho.metaverse.api.IMetaverseBulkLoad;
 import org.pentaho.metaverse.api.IMetaverseNode;
 import org.pentaho.metaverse.api.INamespace;
 import org.pentaho.metaverse.api.MetaverseAnalyzerException;
@@ -48,6 +51,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Set;
@@ -75,9 +80,35 @@ public class JobAnalyzer extends BaseDocumentAnalyzer {
 
   private static final Logger log = LoggerFactory.getLogger( JobAnalyzer.class );
 
+  /**
+   * Analyzes the job through a bulk load into the builder (when the builder supports it), so that readers never
+   * see its lineage half-written
+   */
   @Override
   public synchronized IMetaverseNode analyze( IComponentDescriptor descriptor, IDocument document )
     throws MetaverseAnalyzerException {
+    IMetaverseBulkLoad load = beginBulkLoad( metaverseBuilder );
+    try {
+      IMetaverseNode node = analyzeDocument( descriptor, document, load == null ? metaverseBuilder : load );
+      commitBulkLoad( load );
+      return node;
+    } finally {
+      endBulkLoad( load );
+    }
+  }
+
+  /**
+   * Analyzes the job into the given builder
+   *
+   * @param descriptor the descriptor of the document
+   * @param document   the job document
+   * @param builder    the builder the job's lineage is written to
+   * @return the job node
+   * @throws MetaverseAnalyzerException if the job can't be analyzed
+   */
+  protected IMetaverseNode analyzeDocument( IComponentDescriptor descriptor, IDocument document,
+                                            IMetaverseBuilder builder )
+    throws MetaverseAnalyzerException {
 
     validateState( document );
 
@@ -95,6 +126,15 @@ public class JobAnalyzer extends BaseDocumentAnalyzer {
         throw new MetaverseAnalyzerException( e );
       }
 
+    } else if ( repoObject instanceof IDocumentContent ) {
+
+      // hydrate the job straight from where it's kept, the document holds no copy of it
+      try ( InputStream xmlStream = ( (IDocumentContent) repoObject ).openStream() ) {
+        jobMeta = new JobMeta( xmlStream, null, null );
+      } catch ( KettleXMLException | IOException e ) {
+        throw new MetaverseAnalyzerException( e );
+      }
+
     } else if ( repoObject instanceof JobMeta ) {
       jobMeta = (JobMeta) repoObject;
     }
@@ -192,16 +232,16 @@ public class JobAnalyzer extends BaseDocumentAnalyzer {
           Set<IJobEntryAnalyzer> jobEntryAnalyzers = getJobEntryAnalyzers( jobEntryInterface );
           if ( jobEntryAnalyzers != null && !jobEntryAnalyzers.isEmpty() ) {
             for ( IJobEntryAnalyzer jobEntryAnalyzer : jobEntryAnalyzers ) {
-              jobEntryAnalyzer.setMetaverseBuilder( metaverseBuilder );
+              jobEntryAnalyzer.setMetaverseBuilder( builder );
               jobEntryNode = (IMetaverseNode) jobEntryAnalyzer.analyze( entryDescriptor, entry.getEntry() );
             }
           } else {
             GenericJobEntryMetaAnalyzer defaultJobEntryAnalyzer = new GenericJobEntryMetaAnalyzer();
-            defaultJobEntryAnalyzer.setMetaverseBuilder( metaverseBuilder );
+            defaultJobEntryAnalyzer.setMetaverseBuilder( builder );
             jobEntryNode = defaultJobEntryAnalyzer.analyze( entryDescriptor, jobEntryInterface );
           }
           if ( jobEntryNode != null ) {
-            metaverseBuilder.addLink( node, DictionaryConst.LINK_CONTAINS, jobEntryNode );
+            builder.addLink( node, DictionaryConst.LINK_CONTAINS, jobEntryNode );
           }
         }
       } catch ( Throwable mae ) {
@@ -232,12 +272,12 @@ public class JobAnalyzer extends BaseDocumentAnalyzer {
           toEntry.getName(),
           DictionaryConst.NODE_TYPE_JOB_ENTRY );
 
-        metaverseBuilder.addLink( fromEntryNode, DictionaryConst.LINK_HOPSTO, toEntryNode );
+        builder.addLink( fromEntryNode, DictionaryConst.LINK_HOPSTO, toEntryNode );
       }
     }
 
-    metaverseBuilder.addNode( node );
-    addParentLink( documentDescriptor, node );
+    builder.addNode( node );
+    addParentLink( documentDescriptor, node, builder );
     return node;
   }
 
@@ -22,6 +22,10 @@
 
 package org.pentaho.metaverse.analyzer.kettle;
 
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.parameters.UnknownParamException;
@@ -35,24 +39,42 @@ import org.pentaho.dictionary.DictionaryConst;
 import org.pentaho.metaverse.analyzer.kettle.step.GenericStepMetaAnalyzer;
 import org.pentaho.metaverse.api.IComponentDescriptor;
 import org.pentaho.metaverse.api.IDocument;
+import org.pentaho.metaverse.api.IDocumentContent;
+import org.pentaho.metaverse.api.IMetaverseBuilder;
+import org.pentaho.metaverse.api.IMetaverseBulkLoad;
 import org.pentaho.metaverse.api.IMetaverseLink;
 import org.pentaho.metaverse.api.IMetaverseNode;
+import org.pentaho.metaverse.api.IMetaverseObjectFactory;
 import org.pentaho.metaverse.api.INamespace;
 import org.pentaho.metaverse.api.MetaverseAnalyzerException;
 import org.pentaho.metaverse.api.MetaverseComponentDescriptor;
 import org.pentaho.metaverse.api.Namespace;
 import org.pentaho.metaverse.api.PropertiesHolder;
+import org.pentaho.metaverse.api.analyzer.kettle.step.IClonableStepAnalyzer;
 import org.pentaho.metaverse.api.analyzer.kettle.step.IStepAnalyzer;
 import org.pentaho.metaverse.api.analyzer.kettle.step.IStepAnalyzerProvider;
+import org.pentaho.metaverse.api.analyzer.kettle.step.RowMetaCache;
+import org.pentaho.metaverse.impl.RecordingMetaverseBuilder;
 import org.pentaho.metaverse.messages.Messages;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The TransformationAnalyzer class is responsible for gathering transformation metadata, creating links
@@ -77,42 +99,202 @@ public class TransformationAnalyzer extends BaseDocumentAnalyzer {
 
   private IStepAnalyzerProvider stepAnalyzerProvider;
 
+  private volatile int stepAnalysisThreads;
+
+  private transient ExecutorService stepAnalysisExecutor;
+
   private static final Logger log = LoggerFactory.getLogger( TransformationAnalyzer.class );
 
+  /**
+   * Analyzes the transformation through a bulk load into the builder (when the builder supports it), so that readers
+   * never see its lineage half-written. The analyzer is shared, so everything specific to the transformation under
+   * analysis (the load included) is kept local to the call, and several transformations can be analyzed at once.
+   */
   @Override
-  public synchronized IMetaverseNode analyze( IComponentDescriptor descriptor, IDocument document )
+  public IMetaverseNode analyze( IComponentDescriptor descriptor, IDocument document )
+    throws MetaverseAnalyzerException {
+    IMetaverseBuilder builder = metaverseBuilder;
+    IMetaverseBulkLoad load = beginBulkLoad( builder );
+    try {
+      IMetaverseNode node = analyzeDocument( descriptor, document, load == null ? builder : load );
+      commitBulkLoad( load );
+      return node;
+    } finally {
+      endBulkLoad( load );
+    }
+  }
+
+  /**
+   * Analyzes the transformation into the given builder
+   *
+   * @param descriptor the descriptor of the document
+   * @param document   the transformation document
+   * @param builder    the builder the transformation's lineage is written to
+   * @return the transformation node
+   * @throws MetaverseAnalyzerException if the transformation can't be analyzed
+   */
+  protected IMetaverseNode analyzeDocument( IComponentDescriptor descriptor, IDocument document,
+                                            IMetaverseBuilder builder )
     throws MetaverseAnalyzerException {
 
     validateState( document );
 
+    TransMeta transMeta = getTransMeta( document );
+
+    Trans t = new Trans( transMeta );
+    t.setInternalKettleVariables( transMeta );
+
+    IComponentDescriptor documentDescriptor = new MetaverseComponentDescriptor( document.getStringID(),
+      DictionaryConst.NODE_TYPE_TRANS, new Namespace( descriptor.getLogicalId() ), descriptor.getContext() );
+
+    IMetaverseNode node = createTransNode( transMeta, document, builder );
+
+    // handle the steps, sharing the row metadata of each step between all the analyzers that need it
+    RowMetaCache rowMetaCache = RowMetaCache.open( transMeta );
+    try {
+      if ( getStepAnalysisThreads() > 1 && transMeta.nrSteps() > 1 ) {
+        analyzeStepsInParallel( transMeta, node, documentDescriptor, builder );
+      } else {
+        for ( int stepNr = 0; stepNr < transMeta.nrSteps(); stepNr++ ) {
+          analyzeStep( transMeta, transMeta.getStep( stepNr ), node, documentDescriptor, builder );
+        }
+      }
+    } finally {
+      rowMetaCache.close();
+      log.debug( "{}", rowMetaCache );
+    }
+
+    addHopLinks( transMeta, node, builder );
+
+    builder.addNode( node );
+    addParentLink( documentDescriptor, node, builder );
+    return node;
+  }
+
+  /**
+   * Re-analyzes some of the steps of a transformation that has already been analyzed into the builder's graph, leaving
+   * the lineage of the other steps in place. The named steps (and the fields they output) are removed from the graph
+   * first, then the steps still present in the transformation are analyzed again, and the transformation node and hops
+   * are brought up to date. The caller is responsible for including every step whose lineage depends on a changed
+   * step, i.e. everything downstream of it.
+   *
+   * @param descriptor the descriptor of the transformation document
+   * @param document   the transformation document
+   * @param stepNames  the names of the steps to re-analyze or remove
+   * @return the transformation node
+   * @throws MetaverseAnalyzerException if the transformation can't be read
+   */
+  public IMetaverseNode reanalyzeSteps( IComponentDescriptor descriptor, IDocument document,
+                                        Collection<String> stepNames )
+    throws MetaverseAnalyzerException {
+    return reanalyzeSteps( descriptor, document, stepNames, metaverseBuilder );
+  }
+
+  /**
+   * Re-analyzes some of the steps of a transformation into the graph of the given builder rather than the analyzer's
+   * own, as {@link #reanalyzeSteps(IComponentDescriptor, IDocument, Collection)} does. The builder is handed down to
+   * the steps' analysis, the analyzer's own builder is left untouched.
+   *
+   * @param descriptor the descriptor of the transformation document
+   * @param document   the transformation document
+   * @param stepNames  the names of the steps to re-analyze or remove
+   * @param builder    the builder of the graph to patch
+   * @return the transformation node
+   * @throws MetaverseAnalyzerException if the transformation can't be read
+   */
+  public IMetaverseNode reanalyzeSteps( IComponentDescriptor descriptor, IDocument document,
+                                        Collection<String> stepNames, IMetaverseBuilder builder )
+    throws MetaverseAnalyzerException {
+
+    validateState( document );
+
+    TransMeta transMeta = getTransMeta( document );
+
+    Trans t = new Trans( transMeta );
+    t.setInternalKettleVariables( transMeta );
+
+    IComponentDescriptor documentDescriptor = new MetaverseComponentDescriptor( document.getStringID(),
+      DictionaryConst.NODE_TYPE_TRANS, new Namespace( descriptor.getLogicalId() ), descriptor.getContext() );
+
+    IMetaverseNode node = createTransNode( transMeta, document, builder );
+
+    removeSteps( node, new HashSet<String>( stepNames ), builder );
+
+    RowMetaCache rowMetaCache = RowMetaCache.open( transMeta );
+    try {
+      for ( int stepNr = 0; stepNr < transMeta.nrSteps(); stepNr++ ) {
+        StepMeta stepMeta = transMeta.getStep( stepNr );
+        if ( stepMeta != null && stepNames.contains( stepMeta.getName() ) ) {
+          analyzeStep( transMeta, stepMeta, node, documentDescriptor, builder );
+        }
+      }
+    } finally {
+      rowMetaCache.close();
+      log.debug( "{}", rowMetaCache );
+    }
+
+    addHopLinks( transMeta, node, builder );
+
+    builder.addNode( node );
+    addParentLink( documentDescriptor, node, builder );
+    return node;
+  }
+
+  /**
+   * Returns the transformation held by the document, hydrating it if the document holds the transformation's XML
+   *
+   * @param document the transformation document
+   * @return the transformation
+   * @throws MetaverseAnalyzerException if the transformation can't be read or uses missing plugins
+   */
+  protected TransMeta getTransMeta( IDocument document ) throws MetaverseAnalyzerException {
     Object repoObject = document.getContent();
 
     TransMeta transMeta = null;
     if ( repoObject instanceof String ) {
       // hydrate the transformation
-      try {
-        String content = (String) repoObject;
-        ByteArrayInputStream xmlStream = new ByteArrayInputStream( content.getBytes() );
-        transMeta = new TransMeta( xmlStream, null, false, null, null );
-        transMeta.setFilename( document.getStringID() );
-        if ( transMeta.hasMissingPlugins() ) {
-          throw new MetaverseAnalyzerException( Messages.getErrorString( "ERROR.MissingPlugin" ) );
-        }
-      } catch ( KettleException e ) {
+      String content = (String) repoObject;
+      transMeta = readTransMeta( new ByteArrayInputStream( content.getBytes() ), document );
+    } else if ( repoObject instanceof IDocumentContent ) {
+      // hydrate the transformation straight from where it's kept, the document holds no copy of it
+      try ( InputStream xmlStream = ( (IDocumentContent) repoObject ).openStream() ) {
+        transMeta = readTransMeta( xmlStream, document );
+      } catch ( IOException e ) {
         throw new MetaverseAnalyzerException( e );
       }
     } else if ( repoObject instanceof TransMeta ) {
       transMeta = (TransMeta) repoObject;
     }
 
-    Trans t = new Trans( transMeta );
-    t.setInternalKettleVariables( transMeta );
+    return transMeta;
+  }
 
-    IComponentDescriptor documentDescriptor = new MetaverseComponentDescriptor( document.getStringID(),
-      DictionaryConst.NODE_TYPE_TRANS, new Namespace( descriptor.getLogicalId() ), descriptor.getContext() );
+  private TransMeta readTransMeta( InputStream xmlStream, IDocument document ) throws MetaverseAnalyzerException {
+    try {
+      TransMeta transMeta = new TransMeta( xmlStream, null, false, null, null );
+      transMeta.setFilename( document.getStringID() );
+      if ( transMeta.hasMissingPlugins() ) {
+        throw new MetaverseAnalyzerException( Messages.getErrorString( "ERROR.MissingPlugin" ) );
+      }
+      return transMeta;
+    } catch ( KettleException e ) {
+      throw new MetaverseAnalyzerException( e );
+    }
+  }
 
+  /**
+   * Creates the node for a transformation, filled in with the transformation's standard properties
+   *
+   * @param transMeta the transformation
+   * @param document  the transformation document
+   * @param builder   the builder the node is meant for
+   * @return the transformation node
+   * @throws MetaverseAnalyzerException if the transformation's parameters can't be read
+   */
+  protected IMetaverseNode createTransNode( TransMeta transMeta, IDocument document, IMetaverseBuilder builder )
+    throws MetaverseAnalyzerException {
     // Create a metaverse node and start filling in details
-    IMetaverseNode node = metaverseObjectFactory.createNodeObject(
+    IMetaverseNode node = getMetaverseObjectFactory( builder ).createNodeObject(
       document.getNamespace(),
       transMeta.getName(),
       DictionaryConst.NODE_TYPE_TRANS );
@@ -180,42 +362,18 @@ public class TransformationAnalyzer extends BaseDocumentAnalyzer {
         }
       }
     }
-    // handle the step
-    for ( int stepNr = 0; stepNr < transMeta.nrSteps(); stepNr++ ) {
-      StepMeta stepMeta = transMeta.getStep( stepNr );
-      try {
-        if ( stepMeta != null ) {
-          if ( stepMeta.getParentTransMeta() == null ) {
-            stepMeta.setParentTransMeta( transMeta );
-          }
-
-          IMetaverseNode stepNode = null;
-          IComponentDescriptor stepDescriptor = new MetaverseComponentDescriptor( stepMeta.getName(),
-            DictionaryConst.NODE_TYPE_TRANS_STEP, node, documentDescriptor.getContext() );
-          Set<IStepAnalyzer> stepAnalyzers = getStepAnalyzers( stepMeta );
-          if ( stepAnalyzers != null && !stepAnalyzers.isEmpty() ) {
-            for ( IStepAnalyzer stepAnalyzer : stepAnalyzers ) {
-              stepAnalyzer.setMetaverseBuilder( metaverseBuilder );
-              stepNode = (IMetaverseNode) stepAnalyzer.analyze( stepDescriptor, getBaseStepMetaFromStepMeta( stepMeta ) );
-            }
-          } else {
-            GenericStepMetaAnalyzer defaultStepAnalyzer = new GenericStepMetaAnalyzer();
-            defaultStepAnalyzer.setMetaverseBuilder( metaverseBuilder );
-            stepNode = defaultStepAnalyzer.analyze( stepDescriptor, getBaseStepMetaFromStepMeta( stepMeta ) );
-          }
-          if ( stepNode != null ) {
-            metaverseBuilder.addLink( node, DictionaryConst.LINK_CONTAINS, stepNode );
-          }
-        }
-      } catch ( Throwable mae ) {
-        //Don't throw an exception, just log and carry on
-        log.warn( Messages.getString( "ERROR.ErrorDuringAnalysis", stepMeta.getName(),
-          Const.NVL( mae.getLocalizedMessage(), "Unspecified" ) ) );
-        log.debug( Messages.getString( "ERROR.ErrorDuringAnalysisStackTrace" ), mae );
-      }
-    }
+    return node;
+  }
 
-    // Model the hops between steps
+  /**
+   * Models the hops between the steps of a transformation as links between the step nodes
+   *
+   * @param transMeta the transformation
+   * @param node      the transformation node
+   * @param builder   the builder the links are written to
+   */
+  protected void addHopLinks( TransMeta transMeta, IMetaverseNode node, IMetaverseBuilder builder ) {
+    IMetaverseObjectFactory objectFactory = getMetaverseObjectFactory( builder );
     int numHops = transMeta.nrTransHops();
     for ( int i = 0; i < numHops; i++ ) {
       TransHopMeta hop = transMeta.getTransHop( i );
@@ -225,18 +383,18 @@ public class TransformationAnalyzer extends BaseDocumentAnalyzer {
 
       // process legitimate hops
       if ( fromStep != null && toStep != null ) {
-        IMetaverseNode fromStepNode = metaverseObjectFactory.createNodeObject(
+        IMetaverseNode fromStepNode = objectFactory.createNodeObject(
           childNs,
           fromStep.getName(),
           DictionaryConst.NODE_TYPE_TRANS_STEP );
 
-        IMetaverseNode toStepNode = metaverseObjectFactory.createNodeObject(
+        IMetaverseNode toStepNode = objectFactory.createNodeObject(
           childNs,
           toStep.getName(),
           DictionaryConst.NODE_TYPE_TRANS_STEP );
 
         // Create and decorate the link between the steps
-        IMetaverseLink link = metaverseObjectFactory.createLinkObject();
+        IMetaverseLink link = objectFactory.createLinkObject();
         link.setFromNode( fromStepNode );
         link.setLabel( DictionaryConst.LINK_HOPSTO );
         link.setToNode( toStepNode );
@@ -256,13 +414,267 @@ public class TransformationAnalyzer extends BaseDocumentAnalyzer {
           }
         }
         link.setProperty( DictionaryConst.PROPERTY_TYPE, linkType );
-        metaverseBuilder.addLink( link );
+        builder.addLink( link );
       }
     }
 
-    metaverseBuilder.addNode( node );
-    addParentLink( documentDescriptor, node );
-    return node;
+  }
+
+  /**
+   * Removes the named steps of a transformation from a builder's graph, along with the fields they output. Vertices
+   * that were only connected to the removed ones (a file that is no longer read, e.g.) are removed too.
+   *
+   * @param node      the transformation node
+   * @param stepNames the names of the steps to remove
+   * @param builder   the builder of the graph to remove the steps from
+   */
+  protected void removeSteps( IMetaverseNode node, Set<String> stepNames, IMetaverseBuilder builder ) {
+    Graph graph = builder.getGraph();
+    if ( graph == null || stepNames.isEmpty() ) {
+      return;
+    }
+    Vertex transVertex = graph.getVertex( node.getStringID() );
+    if ( transVertex == null ) {
+      for ( Vertex match : graph.getVertices( DictionaryConst.PROPERTY_LOGICAL_ID, node.getLogicalId() ) ) {
+        transVertex = match;
+        break;
+      }
+    }
+    if ( transVertex == null ) {
+      return;
+    }
+
+    Set<Vertex> removals = new HashSet<Vertex>();
+    for ( Vertex stepVertex : transVertex.getVertices( Direction.OUT, DictionaryConst.LINK_CONTAINS ) ) {
+      if ( DictionaryConst.NODE_TYPE_TRANS_STEP.equals( stepVertex.getProperty( DictionaryConst.PROPERTY_TYPE ) )
+        && stepNames.contains( stepVertex.<String>getProperty( DictionaryConst.PROPERTY_NAME ) ) ) {
+        removals.add( stepVertex );
+        for ( Vertex field : stepVertex.getVertices( Direction.OUT, DictionaryConst.LINK_OUTPUTS ) ) {
+          if ( DictionaryConst.NODE_TYPE_TRANS_FIELD.equals( field.getProperty( DictionaryConst.PROPERTY_TYPE ) ) ) {
+            removals.add( field );
+          }
+        }
+      }
+    }
+
+    Set<Vertex> neighbours = new HashSet<Vertex>();
+    for ( Vertex removal : removals ) {
+      for ( Edge edge : removal.getEdges( Direction.BOTH ) ) {
+        if ( !DictionaryConst.LINK_PARENT_CONCEPT.equals( edge.getLabel() ) ) {
+          Vertex neighbour = edge.getVertex( Direction.OUT ).equals( removal )
+            ? edge.getVertex( Direction.IN )
+            : edge.getVertex( Direction.OUT );
+          neighbours.add( neighbour );
+        }
+      }
+    }
+    for ( Vertex removal : removals ) {
+      graph.removeVertex( removal );
+    }
+    neighbours.removeAll( removals );
+    neighbours.remove( transVertex );
+    for ( Vertex neighbour : neighbours ) {
+      if ( isOrphan( neighbour ) ) {
+        graph.removeVertex( neighbour );
+      }
+    }
+  }
+
+  private boolean isOrphan( Vertex vertex ) {
+    for ( Edge edge : vertex.getEdges( Direction.BOTH ) ) {
+      if ( !DictionaryConst.LINK_PARENT_CONCEPT.equals( edge.getLabel() ) ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Analyzes a single step and links it to the transformation node. Errors are logged rather than thrown, so that one
+   * bad step does not prevent the rest of the transformation from being analyzed.
+   * <p/>
+   * The step analyzers are shared by every analysis, so the step is analyzed with private copies of them. An analyzer
+   * that can't be copied is used under its own lock instead, one step at a time.
+   *
+   * @param transMeta          the transformation containing the step
+   * @param stepMeta           the step to analyze
+   * @param node               the transformation node
+   * @param documentDescriptor the descriptor of the transformation document
+   * @param builder            the builder the step's lineage is written to
+   */
+  protected void analyzeStep( TransMeta transMeta, StepMeta stepMeta, IMetaverseNode node,
+                              IComponentDescriptor documentDescriptor, IMetaverseBuilder builder ) {
+    try {
+      if ( stepMeta != null ) {
+        if ( stepMeta.getParentTransMeta() == null ) {
+          stepMeta.setParentTransMeta( transMeta );
+        }
+
+        IMetaverseNode stepNode = null;
+        IComponentDescriptor stepDescriptor = new MetaverseComponentDescriptor( stepMeta.getName(),
+          DictionaryConst.NODE_TYPE_TRANS_STEP, node, documentDescriptor.getContext() );
+        Set<IStepAnalyzer> stepAnalyzers = getStepAnalyzers( stepMeta );
+        if ( stepAnalyzers != null && !stepAnalyzers.isEmpty() ) {
+          BaseStepMeta baseStepMeta = getBaseStepMetaFromStepMeta( stepMeta );
+          for ( IStepAnalyzer stepAnalyzer : stepAnalyzers ) {
+            if ( stepAnalyzer instanceof IClonableStepAnalyzer ) {
+              stepAnalyzer = ( (IClonableStepAnalyzer) stepAnalyzer ).cloneAnalyzer();
+              stepAnalyzer.setMetaverseBuilder( builder );
+              stepNode = (IMetaverseNode) stepAnalyzer.analyze( stepDescriptor, baseStepMeta );
+            } else {
+              synchronized ( stepAnalyzer ) {
+                stepAnalyzer.setMetaverseBuilder( builder );
+                stepNode = (IMetaverseNode) stepAnalyzer.analyze( stepDescriptor, baseStepMeta );
+              }
+            }
+          }
+        } else {
+          GenericStepMetaAnalyzer defaultStepAnalyzer = new GenericStepMetaAnalyzer();
+          defaultStepAnalyzer.setMetaverseBuilder( builder );
+          stepNode = defaultStepAnalyzer.analyze( stepDescriptor, getBaseStepMetaFromStepMeta( stepMeta ) );
+        }
+        if ( stepNode != null ) {
+          builder.addLink( node, DictionaryConst.LINK_CONTAINS, stepNode );
+        }
+      }
+    } catch ( Throwable mae ) {
+      //Don't throw an exception, just log and carry on
+      log.warn( Messages.getString( "ERROR.ErrorDuringAnalysis", stepMeta.getName(),
+        Const.NVL( mae.getLocalizedMessage(), "Unspecified" ) ) );
+      log.debug( Messages.getString( "ERROR.ErrorDuringAnalysisStackTrace" ), mae );
+    }
+  }
+
+  /**
+   * Analyzes the steps of a transformation concurrently. Every step is analyzed with its own copies of the step
+   * analyzers and writes into its own {@link RecordingMetaverseBuilder}. Once all steps are done, the recordings are
+   * replayed into the given builder in step order, so the resulting graph is the same as a serial analysis. Steps
+   * that have an analyzer that can't be cloned are analyzed on the calling thread.
+   *
+   * @param transMeta          the transformation to analyze
+   * @param node               the transformation node
+   * @param documentDescriptor the descriptor of the transformation document
+   * @param builder            the builder the transformation's lineage is written to
+   */
+  protected void analyzeStepsInParallel( final TransMeta transMeta, final IMetaverseNode node,
+                                         final IComponentDescriptor documentDescriptor, IMetaverseBuilder builder ) {
+    int nrSteps = transMeta.nrSteps();
+    List<RecordingMetaverseBuilder> recordings = new ArrayList<>( nrSteps );
+    List<Future<?>> futures = new ArrayList<>( nrSteps );
+    List<StepMeta> serialSteps = new ArrayList<>();
+    List<RecordingMetaverseBuilder> serialRecordings = new ArrayList<>();
+
+    ExecutorService executor = getStepAnalysisExecutor();
+    for ( int stepNr = 0; stepNr < nrSteps; stepNr++ ) {
+      final StepMeta stepMeta = transMeta.getStep( stepNr );
+      final RecordingMetaverseBuilder recording = new RecordingMetaverseBuilder( builder );
+      recordings.add( recording );
+      if ( stepMeta != null && stepMeta.getParentTransMeta() == null ) {
+        stepMeta.setParentTransMeta( transMeta );
+      }
+      if ( canAnalyzeInParallel( stepMeta ) ) {
+        futures.add( executor.submit( new Runnable() {
+          @Override
+          public void run() {
+            analyzeStep( transMeta, stepMeta, node, documentDescriptor, recording );
+          }
+        } ) );
+      } else {
+        serialSteps.add( stepMeta );
+        serialRecordings.add( recording );
+      }
+    }
+
+    for ( int i = 0; i < serialSteps.size(); i++ ) {
+      analyzeStep( transMeta, serialSteps.get( i ), node, documentDescriptor, serialRecordings.get( i ) );
+    }
+
+    for ( Future<?> future : futures ) {
+      try {
+        future.get();
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+        break;
+      } catch ( ExecutionException e ) {
+        // analyzeStep logs its own errors, this is only reached on something like an OutOfMemoryError
+        log.warn( Messages.getString( "ERROR.ErrorDuringAnalysis", transMeta.getName(),
+          Const.NVL( e.getLocalizedMessage(), "Unspecified" ) ) );
+      }
+    }
+
+    for ( RecordingMetaverseBuilder recording : recordings ) {
+      recording.replay();
+    }
+  }
+
+  /**
+   * Determines whether every analyzer for the step can be cloned, and so the step can be analyzed on another thread
+   *
+   * @param stepMeta the step to check
+   * @return true if the step can be analyzed concurrently with other steps
+   */
+  protected boolean canAnalyzeInParallel( StepMeta stepMeta ) {
+    if ( stepMeta == null ) {
+      return false;
+    }
+    Set<IStepAnalyzer> stepAnalyzers = getStepAnalyzers( stepMeta );
+    if ( stepAnalyzers != null ) {
+      for ( IStepAnalyzer stepAnalyzer : stepAnalyzers ) {
+        if ( !( stepAnalyzer instanceof IClonableStepAnalyzer ) ) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the number of threads used to analyze the steps of a transformation. A value of 1 means steps are analyzed
+   * one after the other on the calling thread.
+   *
+   * @return the number of step analysis threads
+   */
+  public int getStepAnalysisThreads() {
+    return stepAnalysisThreads > 0 ? stepAnalysisThreads : Runtime.getRuntime().availableProcessors();
+  }
+
+  /**
+   * Sets the number of threads used to analyze the steps of a transformation
+   *
+   * @param stepAnalysisThreads the number of threads, 1 to analyze steps serially, 0 or less for one per available
+   *                            processor
+   */
+  public synchronized void setStepAnalysisThreads( int stepAnalysisThreads ) {
+    if ( stepAnalysisThreads != this.stepAnalysisThreads ) {
+      this.stepAnalysisThreads = stepAnalysisThreads;
+      shutdownStepAnalysisExecutor();
+    }
+  }
+
+  /**
+   * Stops the threads used for parallel step analysis, if any were started
+   */
+  public synchronized void shutdownStepAnalysisExecutor() {
+    if ( stepAnalysisExecutor != null ) {
+      stepAnalysisExecutor.shutdown();
+      stepAnalysisExecutor = null;
+    }
+  }
+
+  protected synchronized ExecutorService getStepAnalysisExecutor() {
+    if ( stepAnalysisExecutor == null ) {
+      stepAnalysisExecutor = Executors.newFixedThreadPool( getStepAnalysisThreads(), new ThreadFactory() {
+        private final AtomicInteger threadNumber = new AtomicInteger( 1 );
+
+        @Override
+        public Thread newThread( Runnable r ) {
+          Thread thread = new Thread( r, "metaverse-step-analysis-" + threadNumber.getAndIncrement() );
+          thread.setDaemon( true );
+          return thread;
+        }
+      } );
+    }
+    return stepAnalysisExecutor;
   }
 
   /**
@@ -281,14 +693,14 @@ public class TransformationAnalyzer extends BaseDocumentAnalyzer {
 
     // Attempt to discover a BaseStepMeta from the given StepMeta
     BaseStepMeta baseStepMeta = getBaseStepMetaFromStepMeta( stepMeta );
-    stepAnalyzerProvider = getStepAnalyzerProvider();
-    if ( stepAnalyzerProvider != null ) {
+    IStepAnalyzerProvider provider = getStepAnalyzerProvider();
+    if ( provider != null ) {
       if ( baseStepMeta == null ) {
-        stepAnalyzers.addAll( stepAnalyzerProvider.getAnalyzers() );
+        stepAnalyzers.addAll( provider.getAnalyzers() );
       } else {
         Set<Class<?>> analyzerClassSet = new HashSet<Class<?>>( 1 );
         analyzerClassSet.add( baseStepMeta.getClass() );
-        stepAnalyzers.addAll( stepAnalyzerProvider.getAnalyzers( analyzerClassSet ) );
+        stepAnalyzers.addAll( provider.getAnalyzers( analyzerClassSet ) );
       }
     } else {
       stepAnalyzers.add( new GenericStepMetaAnalyzer() );
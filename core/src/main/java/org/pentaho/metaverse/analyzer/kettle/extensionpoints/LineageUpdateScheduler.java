@@ -0,0 +1,206 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.analyzer.kettle.extensionpoints;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Debounces lineage updates. An update scheduled for a subject (a TransMeta, e.g.) runs once the subject has been quiet
+ * for the scheduler's delay; scheduling another update for the same subject before then replaces the pending one, so a
+ * burst of change events results in a single update. Subjects are compared by identity, since the objects being edited
+ * can change their equals/hashCode as they are edited.
+ * <p/>
+ * Updates run one at a time on a single daemon thread, so two updates for the same subject never overlap.
+ */
+public class LineageUpdateScheduler {
+
+  /**
+   * Default quiet period, in milliseconds, before a scheduled update runs
+   */
+  public static final long DEFAULT_DELAY = 500;
+
+  private static final Logger log = LoggerFactory.getLogger( LineageUpdateScheduler.class );
+
+  private static final LineageUpdateScheduler INSTANCE = new LineageUpdateScheduler( DEFAULT_DELAY );
+
+  private final long delay;
+
+  private ScheduledThreadPoolExecutor executor;
+
+  private final Map<Object, ScheduledFuture<?>> pending = new IdentityHashMap<Object, ScheduledFuture<?>>();
+
+  private final AtomicLong scheduledCount = new AtomicLong();
+  private final AtomicLong coalescedCount = new AtomicLong();
+  private final AtomicLong completedCount = new AtomicLong();
+  private final AtomicLong failedCount = new AtomicLong();
+
+  /**
+   * Creates a scheduler with its own update thread
+   *
+   * @param delay the quiet period, in milliseconds, before a scheduled update runs
+   */
+  public LineageUpdateScheduler( long delay ) {
+    this.delay = delay;
+    this.executor = createExecutor();
+  }
+
+  private static ScheduledThreadPoolExecutor createExecutor() {
+    ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor( 1, new ThreadFactory() {
+      @Override
+      public Thread newThread( Runnable r ) {
+        Thread thread = new Thread( r, "metaverse-lineage-update" );
+        thread.setDaemon( true );
+        return thread;
+      }
+    } );
+    executor.setRemoveOnCancelPolicy( true );
+    return executor;
+  }
+
+  public static LineageUpdateScheduler getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Schedules an update for a subject after the default quiet period, replacing any update still pending for it
+   *
+   * @param subject the object the update is for
+   * @param update  the update to run
+   */
+  public void schedule( Object subject, Runnable update ) {
+    schedule( subject, update, delay );
+  }
+
+  /**
+   * Schedules an update for a subject, replacing any update still pending for it
+   *
+   * @param subject the object the update is for
+   * @param update  the update to run
+   * @param delay   the time, in milliseconds, to wait before running the update
+   */
+  public synchronized void schedule( final Object subject, final Runnable update, long delay ) {
+    if ( executor.isShutdown() ) {
+      executor = createExecutor();
+    }
+    ScheduledFuture<?> previous = pending.remove( subject );
+    if ( previous != null && previous.cancel( false ) ) {
+      coalescedCount.incrementAndGet();
+    }
+    scheduledCount.incrementAndGet();
+    final ScheduledFuture<?>[] self = new ScheduledFuture<?>[ 1 ];
+    self[ 0 ] = executor.schedule( new Runnable() {
+      @Override
+      public void run() {
+        synchronized ( LineageUpdateScheduler.this ) {
+          if ( pending.get( subject ) == self[ 0 ] ) {
+            pending.remove( subject );
+          }
+        }
+        try {
+          update.run();
+          completedCount.incrementAndGet();
+        } catch ( RuntimeException e ) {
+          failedCount.incrementAndGet();
+          log.warn( e.getMessage(), e );
+        }
+      }
+    }, Math.max( 0, delay ), TimeUnit.MILLISECONDS );
+    pending.put( subject, self[ 0 ] );
+  }
+
+  /**
+   * Waits for the update pending for the subject, if any, to run
+   *
+   * @param subject the object the update is for
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public void flush( Object subject ) throws InterruptedException {
+    final ScheduledFuture<?> scheduled;
+    synchronized ( this ) {
+      scheduled = pending.get( subject );
+    }
+    if ( scheduled != null ) {
+      try {
+        scheduled.get();
+      } catch ( Exception e ) {
+        // the update logs its own failures
+      }
+    }
+  }
+
+  public long getDelay() {
+    return delay;
+  }
+
+  /**
+   * @return the number of updates waiting for their quiet period to end
+   */
+  public synchronized int getPendingCount() {
+    return pending.size();
+  }
+
+  /**
+   * @return the number of updates scheduled so far
+   */
+  public long getScheduledCount() {
+    return scheduledCount.get();
+  }
+
+  /**
+   * @return the number of updates replaced by a later update for the same subject before they ran
+   */
+  public long getCoalescedCount() {
+    return coalescedCount.get();
+  }
+
+  /**
+   * @return the number of updates that ran to completion
+   */
+  public long getCompletedCount() {
+    return completedCount.get();
+  }
+
+  /**
+   * @return the number of updates that ended with an exception
+   */
+  public long getFailedCount() {
+    return failedCount.get();
+  }
+
+  /**
+   * Stops the update thread and drops pending updates. A later {@link #schedule} starts a new thread.
+   */
+  public synchronized void shutdown() {
+    executor.shutdownNow();
+    pending.clear();
+  }
+}
@@ -48,6 +48,7 @@ import org.pentaho.metaverse.api.model.IExecutionData;
 import org.pentaho.metaverse.api.model.IExecutionProfile;
 import org.pentaho.metaverse.api.model.IParamInfo;
 import org.pentaho.metaverse.api.model.LineageHolder;
+import org.pentaho.metaverse.impl.LineageExecutor;
 import org.pentaho.metaverse.impl.MetaverseCompletionService;
 import org.pentaho.metaverse.impl.model.ExecutionData;
 import org.pentaho.metaverse.impl.model.ExecutionProfile;
@@ -67,6 +68,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * An extension point to gather runtime data for an execution of a job into an ExecutionProfile object
@@ -159,7 +161,12 @@ public class JobRuntimeExtensionPoint extends BaseRuntimeExtensionPoint implemen
 
         Runnable analyzerRunner = MetaverseUtil.getAnalyzerRunner( documentAnalyzer, metaverseDocument );
 
-        MetaverseCompletionService.getInstance().submit( analyzerRunner, id );
+        try {
+          MetaverseCompletionService.getInstance().submit( analyzerRunner, id );
+        } catch ( RejectedExecutionException e ) {
+          // the lineage executor has counted the rejection
+          log.warn( Messages.getString( "WARNING.LineageAnalysisRejected", job.getName(), e.getMessage() ) );
+        }
       }
 
       // Save the lineage objects for later
@@ -191,16 +198,18 @@ public class JobRuntimeExtensionPoint extends BaseRuntimeExtensionPoint implemen
   }
 
   protected void createLineGraphAsync( final Job job ) {
-    // Need to spin this processing off into its own thread, so we don't hold up normal PDI processing
-    Thread lineageWorker = new Thread( new Runnable() {
-
-      @Override
-      public void run() {
-        createLineGraph( job );
-      }
-    } );
+    // Hand this processing off to the lineage executor, so we don't hold up normal PDI processing
+    try {
+      LineageExecutor.getInstance().execute( new Runnable() {
 
-    lineageWorker.start();
+        @Override
+        public void run() {
+          createLineGraph( job );
+        }
+      } );
+    } catch ( RejectedExecutionException e ) {
+      log.warn( Messages.getString( "WARNING.LineageGraphRejected", job.getName(), e.getMessage() ) );
+    }
   }
 
   protected void createLineGraph( final Job job ) {
@@ -116,12 +116,14 @@ public class JobEntryExternalResourceConsumerListener implements ExtensionPointI
         String jobEntryName = jobEntry.getName();
         Map<String, List<IExternalResourceInfo>> resourceMap =
           executionProfile.getExecutionData().getExternalResources();
-        List<IExternalResourceInfo> externalResources = resourceMap.get( jobEntryName );
-        if ( externalResources == null ) {
-          externalResources = new LinkedList<IExternalResourceInfo>();
+        synchronized ( resourceMap ) {
+          List<IExternalResourceInfo> externalResources = resourceMap.get( jobEntryName );
+          if ( externalResources == null ) {
+            externalResources = new LinkedList<IExternalResourceInfo>();
+          }
+          externalResources.addAll( resources );
+          resourceMap.put( jobEntryName, externalResources );
         }
-        externalResources.addAll( resources );
-        resourceMap.put( jobEntryName, externalResources );
       }
     }
   }
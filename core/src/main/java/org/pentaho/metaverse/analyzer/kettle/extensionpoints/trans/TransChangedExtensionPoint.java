@@ -28,10 +28,12 @@ import org.pentaho.di.core.extension.ExtensionPointInterface;
 import org.pentaho.di.core.listeners.ContentChangedListener;
 import org.pentaho.di.core.logging.LogChannelInterface;
 import org.pentaho.di.trans.TransMeta;
-import org.pentaho.metaverse.api.MetaverseException;
+import org.pentaho.metaverse.analyzer.kettle.extensionpoints.LineageUpdateScheduler;
 
 /**
- * An extension point to maintain a lineage graph for an active transformation
+ * An extension point to maintain a lineage graph for an active transformation. Changes are debounced: the graph is
+ * updated once a transformation has been left alone for a moment, and only the steps affected by the changes are
+ * analyzed again.
  */
 @ExtensionPoint(
   description = "Transformation Lineage Graph creator",
@@ -79,12 +81,7 @@ public class TransChangedExtensionPoint implements ExtensionPointInterface, Cont
 
   protected void updateLineage( Object object ) {
     if ( object != null && object instanceof TransMeta ) {
-      try {
-        TransMeta transMeta = (TransMeta) object;
-        TransExtensionPointUtil.addLineageGraph( transMeta );
-      } catch ( MetaverseException me ) {
-        // Nothing we can do here
-      }
+      TransExtensionPointUtil.scheduleLineageUpdate( (TransMeta) object, LineageUpdateScheduler.DEFAULT_DELAY );
     }
   }
 }
@@ -22,35 +22,64 @@
 
 package org.pentaho.metaverse.analyzer.kettle.extensionpoints.trans;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.tinkerpop.blueprints.Graph;
 import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
 import org.pentaho.di.core.KettleClientEnvironment;
 import org.pentaho.di.trans.TransMeta;
 import org.pentaho.dictionary.DictionaryConst;
+import org.pentaho.metaverse.analyzer.kettle.TransformationAnalyzer;
+import org.pentaho.metaverse.analyzer.kettle.extensionpoints.LineageUpdateScheduler;
 import org.pentaho.metaverse.api.IDocument;
+import org.pentaho.metaverse.api.IDocumentAnalyzer;
+import org.pentaho.metaverse.api.IDocumentController;
 import org.pentaho.metaverse.api.IMetaverseBuilder;
 import org.pentaho.metaverse.api.IMetaverseNode;
 import org.pentaho.metaverse.api.IMetaverseObjectFactory;
 import org.pentaho.metaverse.api.INamespace;
+import org.pentaho.metaverse.api.MetaverseAnalyzerException;
+import org.pentaho.metaverse.api.MetaverseComponentDescriptor;
 import org.pentaho.metaverse.api.MetaverseException;
 import org.pentaho.metaverse.api.Namespace;
+import org.pentaho.metaverse.graph.LineageGraphCompletionService;
+import org.pentaho.metaverse.graph.LineageGraphMap;
 import org.pentaho.metaverse.impl.MetaverseBuilder;
 import org.pentaho.metaverse.messages.Messages;
+import org.pentaho.metaverse.util.MetaverseBeanUtil;
 import org.pentaho.metaverse.util.MetaverseUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.net.URLConnection;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * This class offers helper methods for Transformation Extension Points used by the lineage capability.
  */
 public class TransExtensionPointUtil {
 
+  private static final Logger log = LoggerFactory.getLogger( TransExtensionPointUtil.class );
+
+  /**
+   * The state of each open transformation as of its last lineage analysis. Keys are held weakly and compared by
+   * identity.
+   */
+  private static final Cache<TransMeta, TransLineageSnapshot> snapshots =
+    CacheBuilder.newBuilder().weakKeys().build();
+
   public static void addLineageGraph( final TransMeta transMeta ) throws MetaverseException {
 
     if ( transMeta == null ) {
       throw new MetaverseException( Messages.getString( "ERROR.Document.IsNull" ) );
     }
 
+    snapshots.put( transMeta, TransLineageSnapshot.of( transMeta ) );
+
     // Get the "natural" filename (repo-based if in repository, filesystem-based otherwise)
     String filename = getFilename( transMeta );
 
@@ -67,16 +96,149 @@ public class TransExtensionPointUtil {
     metaverseBuilder.addNode( designNode );
 
     // Create a document object containing the transMeta
-    final IDocument document = MetaverseUtil.createDocument(
+    final IDocument document = createDocument( transMeta, namespace );
+
+    MetaverseUtil.addLineageGraph( document, graph );
+  }
+
+  /**
+   * Brings the lineage graph of a transformation up to date. If the transformation's graph has been built and the
+   * transformation has only been edited since, just the edited steps and the steps downstream of them are analyzed
+   * again, and the existing graph is patched in place. Otherwise the graph is rebuilt from scratch, as
+   * {@link #addLineageGraph(TransMeta)} does.
+   *
+   * @param transMeta the transformation
+   * @throws MetaverseException if the transformation is null or its lineage can't be analyzed
+   */
+  public static void updateLineageGraph( final TransMeta transMeta ) throws MetaverseException {
+
+    if ( transMeta == null ) {
+      throw new MetaverseException( Messages.getString( "ERROR.Document.IsNull" ) );
+    }
+
+    TransLineageSnapshot previous = snapshots.getIfPresent( transMeta );
+    Graph graph = getCompletedGraph( transMeta );
+    TransformationAnalyzer analyzer = getTransformationAnalyzer();
+    TransLineageSnapshot current = TransLineageSnapshot.of( transMeta );
+
+    if ( graph == null || analyzer == null || !current.isComparableTo( previous ) ) {
+      addLineageGraph( transMeta );
+      return;
+    }
+
+    Set<String> stepNames = current.getStepsToReanalyze( previous );
+    if ( stepNames.isEmpty() && !current.isPropertiesChanged( previous ) ) {
+      return;
+    }
+    snapshots.put( transMeta, current );
+
+    final String clientName = KettleClientEnvironment.getInstance().getClient().toString();
+    final IDocument document = createDocument( transMeta, new Namespace( clientName ) );
+    Runnable reanalyzerRunner = MetaverseUtil.getIndexingRunner(
+      getReanalyzerRunner( analyzer, document, new MetaverseBuilder( graph ), stepNames ), graph );
+
+    // Readers that ask for the graph from now on wait for the patch to be applied
+    Future<Graph> transAnalysis = LineageGraphCompletionService.getInstance().submit( reanalyzerRunner, graph );
+    LineageGraphMap.getInstance().put( transMeta, transAnalysis );
+  }
+
+  /**
+   * Returns the lineage graph of a transformation if its analysis has finished successfully
+   *
+   * @param transMeta the transformation
+   * @return the graph, or null if there is no finished graph for the transformation
+   */
+  protected static Graph getCompletedGraph( TransMeta transMeta ) {
+    Future<Graph> analysis = LineageGraphMap.getInstance().get( transMeta );
+    if ( analysis == null || !analysis.isDone() || analysis.isCancelled() ) {
+      return null;
+    }
+    try {
+      return analysis.get();
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      return null;
+    } catch ( ExecutionException e ) {
+      return null;
+    }
+  }
+
+  /**
+   * Finds the transformation analyzer, which is the only one that knows how to re-analyze part of a transformation.
+   * Analyzers handed out by the document controller may be service proxies, in which case the analyzer bean itself is
+   * looked up.
+   *
+   * @return the transformation analyzer, or null if it can't be found
+   */
+  protected static TransformationAnalyzer getTransformationAnalyzer() {
+    IDocumentController docController = MetaverseUtil.getDocumentController();
+    if ( docController != null ) {
+      List<IDocumentAnalyzer> analyzers = docController.getDocumentAnalyzers( "ktr" );
+      if ( analyzers != null ) {
+        for ( IDocumentAnalyzer analyzer : analyzers ) {
+          if ( analyzer instanceof TransformationAnalyzer ) {
+            return (TransformationAnalyzer) analyzer;
+          }
+        }
+      }
+    }
+    Object bean = MetaverseBeanUtil.getInstance().get( "TransformationAnalyzer" );
+    return bean instanceof TransformationAnalyzer ? (TransformationAnalyzer) bean : null;
+  }
+
+  protected static Runnable getReanalyzerRunner( final TransformationAnalyzer analyzer, final IDocument document,
+                                                 final IMetaverseBuilder builder,
+                                                 final Collection<String> stepNames ) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        MetaverseComponentDescriptor docDescriptor = new MetaverseComponentDescriptor(
+          document.getName(),
+          DictionaryConst.NODE_TYPE_TRANS,
+          document.getNamespace() );
+        try {
+          // the analyzer is shared: it only writes to this graph for the duration of the call
+          analyzer.reanalyzeSteps( docDescriptor, document, stepNames, builder );
+        } catch ( MetaverseAnalyzerException mae ) {
+          // drop the snapshot so the next change rebuilds the graph rather than patching a half-patched one
+          snapshots.invalidate( document.getContent() );
+          throw new RuntimeException( Messages.getString( "ERROR.AnalyzingDocument", document.getNamespaceId() ), mae );
+        }
+      }
+    };
+  }
+
+  /**
+   * Schedules a (debounced) update of the lineage graph of a transformation
+   *
+   * @param transMeta the transformation
+   * @param delay     the quiet period, in milliseconds, before the update runs
+   */
+  public static void scheduleLineageUpdate( final TransMeta transMeta, long delay ) {
+    if ( transMeta == null ) {
+      return;
+    }
+    LineageUpdateScheduler.getInstance().schedule( transMeta, new Runnable() {
+      @Override
+      public void run() {
+        try {
+          updateLineageGraph( transMeta );
+        } catch ( MetaverseException me ) {
+          log.debug( Messages.getString( "ERROR.Graph.CouldNotCreate", me.getMessage() ) );
+        }
+      }
+    }, delay );
+  }
+
+  private static IDocument createDocument( TransMeta transMeta, INamespace namespace ) {
+    return MetaverseUtil.createDocument(
       namespace,
       transMeta,
-      filename,
+      getFilename( transMeta ),
       transMeta.getName(),
       "ktr",
       URLConnection.getFileNameMap().getContentTypeFor( "trans.ktr" )
     );
-
-    MetaverseUtil.addLineageGraph( document, graph );
   }
 
   public static String getFilename( TransMeta transMeta ) {
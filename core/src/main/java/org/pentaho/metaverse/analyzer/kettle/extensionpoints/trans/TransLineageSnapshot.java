@@ -0,0 +1,225 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.analyzer.kettle.extensionpoints.trans;
+
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.trans.TransHopMeta;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.StepMeta;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A fingerprint of a transformation as it was when its lineage was last analyzed. Comparing a snapshot of the
+ * transformation as it is now with the previous one tells which steps need to be analyzed again: the steps whose own
+ * settings or hops changed, and everything downstream of them. Outgoing hops count as well as incoming ones, since a
+ * step's output fields are linked per step they are sent to.
+ */
+public class TransLineageSnapshot {
+
+  private final String name;
+  private final String filename;
+
+  /**
+   * Fingerprint of the transformation-level properties that end up on the transformation node
+   */
+  private final String properties;
+
+  /**
+   * Fingerprints by step name, in step order. A null fingerprint means the step could not be fingerprinted, and is
+   * always treated as changed.
+   */
+  private final Map<String, String> steps;
+
+  /**
+   * The names of the steps each step sends rows to
+   */
+  private final Map<String, List<String>> nextSteps;
+
+  protected TransLineageSnapshot( String name, String filename, String properties, Map<String, String> steps,
+                                  Map<String, List<String>> nextSteps ) {
+    this.name = name;
+    this.filename = filename;
+    this.properties = properties;
+    this.steps = steps;
+    this.nextSteps = nextSteps;
+  }
+
+  /**
+   * Takes a snapshot of the given transformation
+   *
+   * @param transMeta the transformation
+   * @return the snapshot
+   */
+  public static TransLineageSnapshot of( TransMeta transMeta ) {
+    Map<String, StringBuilder> fingerprints = new LinkedHashMap<String, StringBuilder>();
+    Set<String> unreadable = new HashSet<String>();
+    for ( int stepNr = 0; stepNr < transMeta.nrSteps(); stepNr++ ) {
+      StepMeta stepMeta = transMeta.getStep( stepNr );
+      if ( stepMeta == null ) {
+        continue;
+      }
+      StringBuilder fingerprint = new StringBuilder();
+      try {
+        fingerprint.append( stepMeta.getXML() );
+      } catch ( KettleException e ) {
+        unreadable.add( stepMeta.getName() );
+      }
+      fingerprints.put( stepMeta.getName(), fingerprint );
+    }
+
+    // a step's lineage depends on what feeds it and on where it sends its fields, so its hops are part of its
+    // fingerprint
+    Map<String, List<String>> nextSteps = new HashMap<String, List<String>>();
+    Map<String, List<String>> stepHops = new HashMap<String, List<String>>();
+    for ( int hopNr = 0; hopNr < transMeta.nrTransHops(); hopNr++ ) {
+      TransHopMeta hop = transMeta.getTransHop( hopNr );
+      StepMeta fromStep = hop == null ? null : hop.getFromStep();
+      StepMeta toStep = hop == null ? null : hop.getToStep();
+      if ( fromStep == null || toStep == null ) {
+        continue;
+      }
+      listFor( nextSteps, fromStep.getName() ).add( toStep.getName() );
+      String state = ( hop.isEnabled() ? ":enabled" : ":disabled" )
+        + ( fromStep.isSendingErrorRowsToStep( toStep ) ? ":error" : "" );
+      listFor( stepHops, toStep.getName() ).add( "from " + fromStep.getName() + state );
+      listFor( stepHops, fromStep.getName() ).add( "to " + toStep.getName() + state );
+    }
+
+    Map<String, String> steps = new LinkedHashMap<String, String>();
+    for ( Map.Entry<String, StringBuilder> step : fingerprints.entrySet() ) {
+      String stepName = step.getKey();
+      if ( unreadable.contains( stepName ) ) {
+        steps.put( stepName, null );
+        continue;
+      }
+      List<String> hops = stepHops.get( stepName );
+      if ( hops != null ) {
+        Collections.sort( hops );
+        for ( String hop : hops ) {
+          step.getValue().append( '\n' ).append( hop );
+        }
+      }
+      steps.put( stepName, step.getValue().toString() );
+    }
+    StringBuilder properties = new StringBuilder()
+      .append( transMeta.getDescription() ).append( '\n' )
+      .append( transMeta.getExtendedDescription() ).append( '\n' )
+      .append( transMeta.getTransversion() ).append( '\n' )
+      .append( transMeta.getTransstatus() ).append( '\n' )
+      .append( transMeta.getModifiedUser() ).append( '\n' )
+      .append( transMeta.getModifiedDate() == null ? null : transMeta.getModifiedDate().getTime() ).append( '\n' )
+      .append( Arrays.toString( transMeta.listParameters() ) );
+
+    return new TransLineageSnapshot( transMeta.getName(), TransExtensionPointUtil.getFilename( transMeta ),
+      properties.toString(), steps, nextSteps );
+  }
+
+  /**
+   * Determines whether this snapshot can be compared step by step with an earlier one. A transformation that has been
+   * renamed or moved gets new identities for all of its nodes, so its lineage has to be built from scratch.
+   *
+   * @param previous the earlier snapshot
+   * @return true if the steps of the two snapshots can be compared
+   */
+  public boolean isComparableTo( TransLineageSnapshot previous ) {
+    return previous != null && equal( name, previous.name ) && equal( filename, previous.filename );
+  }
+
+  /**
+   * Determines whether the transformation's own properties (description, version, parameters, ...) differ from the
+   * earlier snapshot
+   *
+   * @param previous the earlier snapshot
+   * @return true if the transformation node needs updating
+   */
+  public boolean isPropertiesChanged( TransLineageSnapshot previous ) {
+    return !equal( properties, previous.properties );
+  }
+
+  /**
+   * Returns the names of the steps whose lineage has to be rebuilt since the earlier snapshot: steps that were added,
+   * changed or removed, and every step downstream of them. Removed steps are included so their nodes can be dropped.
+   *
+   * @param previous the earlier snapshot
+   * @return the names of the steps to re-analyze (or remove), empty if nothing has changed
+   */
+  public Set<String> getStepsToReanalyze( TransLineageSnapshot previous ) {
+    Set<String> changed = new HashSet<String>();
+    for ( Map.Entry<String, String> step : steps.entrySet() ) {
+      String fingerprint = step.getValue();
+      if ( fingerprint == null
+        || !previous.steps.containsKey( step.getKey() )
+        || !fingerprint.equals( previous.steps.get( step.getKey() ) ) ) {
+        changed.add( step.getKey() );
+      }
+    }
+    Set<String> removed = new HashSet<String>( previous.steps.keySet() );
+    removed.removeAll( steps.keySet() );
+
+    Set<String> result = new HashSet<String>( removed );
+    // steps fed by a removed step have lost an incoming hop, so they have been picked up as changed already
+    LinkedList<String> queue = new LinkedList<String>( changed );
+    while ( !queue.isEmpty() ) {
+      String stepName = queue.removeFirst();
+      if ( result.add( stepName ) ) {
+        List<String> next = nextSteps.get( stepName );
+        if ( next != null ) {
+          queue.addAll( next );
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the names of the steps in this snapshot, in step order
+   *
+   * @return the step names
+   */
+  public List<String> getStepNames() {
+    return new ArrayList<String>( steps.keySet() );
+  }
+
+  private static List<String> listFor( Map<String, List<String>> map, String key ) {
+    List<String> list = map.get( key );
+    if ( list == null ) {
+      list = new ArrayList<String>();
+      map.put( key, list );
+    }
+    return list;
+  }
+
+  private static boolean equal( Object a, Object b ) {
+    return a == null ? b == null : a.equals( b );
+  }
+}
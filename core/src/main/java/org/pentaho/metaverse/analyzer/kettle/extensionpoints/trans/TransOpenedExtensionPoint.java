@@ -27,8 +27,6 @@ import org.pentaho.di.core.extension.ExtensionPoint;
 import org.pentaho.di.core.extension.ExtensionPointInterface;
 import org.pentaho.di.core.logging.LogChannelInterface;
 import org.pentaho.di.trans.TransMeta;
-import org.pentaho.metaverse.api.MetaverseException;
-import org.pentaho.metaverse.messages.Messages;
 
 /**
  * An extension point to create a lineage graph for an opened transformation
@@ -50,14 +48,8 @@ public class TransOpenedExtensionPoint implements ExtensionPointInterface {
   public void callExtensionPoint( final LogChannelInterface log, Object object ) throws KettleException {
 
     if ( object instanceof TransMeta ) {
-      try {
-        TransMeta transMeta = (TransMeta) object;
-        TransExtensionPointUtil.addLineageGraph( transMeta );
-      } catch ( MetaverseException me ) {
-        if ( log != null && log.isDebug() ) {
-          log.logDebug( Messages.getString( "ERROR.Graph.CouldNotCreate", me.getMessage() ) );
-        }
-      }
+      // run right away, but through the scheduler so any changes already queued for the transformation are folded in
+      TransExtensionPointUtil.scheduleLineageUpdate( (TransMeta) object, 0 );
     }
   }
 }
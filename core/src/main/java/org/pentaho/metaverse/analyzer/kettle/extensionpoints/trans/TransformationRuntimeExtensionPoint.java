@@ -48,6 +48,7 @@ import org.pentaho.metaverse.api.model.IExecutionData;
 import org.pentaho.metaverse.api.model.IExecutionProfile;
 import org.pentaho.metaverse.api.model.IParamInfo;
 import org.pentaho.metaverse.api.model.LineageHolder;
+import org.pentaho.metaverse.impl.LineageExecutor;
 import org.pentaho.metaverse.impl.MetaverseCompletionService;
 import org.pentaho.metaverse.impl.model.ExecutionData;
 import org.pentaho.metaverse.impl.model.ExecutionProfile;
@@ -66,6 +67,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * An extension point to gather runtime data for an execution of a transformation into an ExecutionProfile object
@@ -160,7 +162,12 @@ public class TransformationRuntimeExtensionPoint extends BaseRuntimeExtensionPoi
 
       Runnable analyzerRunner = MetaverseUtil.getAnalyzerRunner( documentAnalyzer, metaverseDocument );
 
-      MetaverseCompletionService.getInstance().submit( analyzerRunner, id );
+      try {
+        MetaverseCompletionService.getInstance().submit( analyzerRunner, id );
+      } catch ( RejectedExecutionException e ) {
+        // the lineage executor has counted the rejection
+        log.warn( Messages.getString( "WARNING.LineageAnalysisRejected", transMeta.getName(), e.getMessage() ) );
+      }
     }
 
     // Save the lineage objects for later
@@ -280,16 +287,18 @@ public class TransformationRuntimeExtensionPoint extends BaseRuntimeExtensionPoi
   }
 
   protected void createLineGraphAsync( Trans trans ) {
-    // Need to spin this processing off into its own thread, so we don't hold up normal PDI processing
-    Thread lineageWorker = new Thread( new Runnable() {
-
-      @Override
-      public void run() {
-        createLineGraph( trans );
-      }
-    } );
+    // Hand this processing off to the lineage executor, so we don't hold up normal PDI processing
+    try {
+      LineageExecutor.getInstance().execute( new Runnable() {
 
-    lineageWorker.start();
+        @Override
+        public void run() {
+          createLineGraph( trans );
+        }
+      } );
+    } catch ( RejectedExecutionException e ) {
+      log.warn( Messages.getString( "WARNING.LineageGraphRejected", trans.getName(), e.getMessage() ) );
+    }
   }
 
   protected void createLineGraph( final Trans trans ) {
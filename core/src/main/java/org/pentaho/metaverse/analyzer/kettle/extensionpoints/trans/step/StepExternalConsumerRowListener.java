@@ -22,6 +22,9 @@
 
 package org.pentaho.metaverse.analyzer.kettle.extensionpoints.trans.step;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.pentaho.di.core.Const;
 import org.pentaho.di.core.exception.KettleStepException;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.trans.step.BaseStep;
@@ -29,8 +32,10 @@ import org.pentaho.di.trans.step.RowAdapter;
 import org.pentaho.di.trans.step.StepInterface;
 import org.pentaho.metaverse.analyzer.kettle.extensionpoints.trans.TransLineageHolderMap;
 import org.pentaho.metaverse.api.analyzer.kettle.step.IStepExternalResourceConsumer;
+import org.pentaho.metaverse.api.model.IExecutionData;
 import org.pentaho.metaverse.api.model.IExecutionProfile;
 import org.pentaho.metaverse.api.model.IExternalResourceInfo;
+import org.pentaho.metaverse.impl.model.ExternalResourceCapture;
 
 import java.util.Collection;
 import java.util.LinkedList;
@@ -39,9 +44,29 @@ import java.util.Map;
 
 public class StepExternalConsumerRowListener extends RowAdapter {
 
+  /**
+   * Variable selecting how resources reported per row are recorded: "distinct" (the default) or "all"
+   */
+  public static final String RESOURCE_CAPTURE_MODE = "PENTAHO_METAVERSE_RESOURCE_CAPTURE";
+
+  /**
+   * Variable holding the maximum number of distinct resources recorded per step in "distinct" mode
+   */
+  public static final String RESOURCE_CAPTURE_MAX_DISTINCT = "PENTAHO_METAVERSE_RESOURCE_CAPTURE_MAX_DISTINCT";
+
+  /**
+   * The capture of each step's resource list, shared by the copies of the step. Keys are held weakly and compared by
+   * identity.
+   */
+  private static final Cache<List<IExternalResourceInfo>, ExternalResourceCapture> captures =
+    CacheBuilder.newBuilder().weakKeys().build();
+
   private final IStepExternalResourceConsumer stepExternalResourceConsumer;
   private final StepInterface step;
 
+  private ExternalResourceCapture capture;
+  private IExecutionData executionData;
+
   public StepExternalConsumerRowListener(
     IStepExternalResourceConsumer stepExternalResourceConsumer, StepInterface step ) {
     this.stepExternalResourceConsumer = stepExternalResourceConsumer;
@@ -57,26 +82,53 @@ public class StepExternalConsumerRowListener extends RowAdapter {
    * Object[])
    */
   @Override
-  @SuppressWarnings( "unchecked" )
   public void rowReadEvent( RowMetaInterface rowMeta, Object[] row ) throws KettleStepException {
 
     Collection<IExternalResourceInfo> resources =
       stepExternalResourceConsumer.getResourcesFromRow( (BaseStep) step, rowMeta, row );
-    if ( resources != null ) {
-      // Add the resources to the execution profile
+    if ( resources != null && getCapture() != null ) {
+      // the copies of the step share the capture, so they must not publish their counts out of order
+      synchronized ( capture ) {
+        long dropped = capture.getDroppedCount();
+        capture.capture( resources );
+        if ( capture.getDroppedCount() != dropped ) {
+          executionData.getExternalResourcesDropped().put( step.getStepname(), capture.getDroppedCount() );
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the capture recording this step's resources into the execution profile, setting it up on first use. All
+   * copies of the step get the same capture.
+   *
+   * @return the capture, or null if there is no execution profile to record into
+   */
+  protected ExternalResourceCapture getCapture() {
+    if ( capture == null ) {
       IExecutionProfile executionProfile =
         TransLineageHolderMap.getInstance().getLineageHolder( step.getTrans() ).getExecutionProfile();
       if ( executionProfile != null ) {
+        executionData = executionProfile.getExecutionData();
         String stepName = step.getStepname();
-        Map<String, List<IExternalResourceInfo>> resourceMap =
-          executionProfile.getExecutionData().getExternalResources();
-        List<IExternalResourceInfo> externalResources = resourceMap.get( stepName );
-        if ( externalResources == null ) {
-          externalResources = new LinkedList<IExternalResourceInfo>();
+        Map<String, List<IExternalResourceInfo>> resourceMap = executionData.getExternalResources();
+        synchronized ( resourceMap ) {
+          List<IExternalResourceInfo> externalResources = resourceMap.get( stepName );
+          if ( externalResources == null ) {
+            externalResources = new LinkedList<IExternalResourceInfo>();
+            resourceMap.put( stepName, externalResources );
+          }
+          capture = captures.getIfPresent( externalResources );
+          if ( capture == null ) {
+            capture = new ExternalResourceCapture( externalResources,
+              ExternalResourceCapture.Mode.fromString( step.getVariable( RESOURCE_CAPTURE_MODE ) ),
+              Const.toInt( step.getVariable( RESOURCE_CAPTURE_MAX_DISTINCT ),
+                ExternalResourceCapture.DEFAULT_MAX_DISTINCT ) );
+            captures.put( externalResources, capture );
+          }
         }
-        externalResources.addAll( resources );
-        resourceMap.put( stepName, externalResources );
       }
     }
+    return capture;
   }
 }
@@ -109,12 +109,14 @@ public class StepExternalResourceConsumerListener implements ExtensionPointInter
         String stepName = step.getStepname();
         Map<String, List<IExternalResourceInfo>> resourceMap =
           executionProfile.getExecutionData().getExternalResources();
-        List<IExternalResourceInfo> externalResources = resourceMap.get( stepName );
-        if ( externalResources == null ) {
-          externalResources = new LinkedList<IExternalResourceInfo>();
+        synchronized ( resourceMap ) {
+          List<IExternalResourceInfo> externalResources = resourceMap.get( stepName );
+          if ( externalResources == null ) {
+            externalResources = new LinkedList<IExternalResourceInfo>();
+          }
+          externalResources.addAll( resources );
+          resourceMap.put( stepName, externalResources );
         }
-        externalResources.addAll( resources );
-        resourceMap.put( stepName, externalResources );
       }
     }
   }
@@ -36,6 +36,7 @@ import org.pentaho.metaverse.api.IMetaverseNode;
 import org.pentaho.metaverse.api.MetaverseAnalyzerException;
 import org.pentaho.metaverse.api.MetaverseComponentDescriptor;
 import org.pentaho.metaverse.api.analyzer.kettle.KettleAnalyzerUtil;
+import org.pentaho.metaverse.api.analyzer.kettle.KettleMetaCache;
 import org.pentaho.metaverse.api.analyzer.kettle.jobentry.JobEntryAnalyzer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -87,7 +88,7 @@ public class JobJobEntryAnalyzer extends JobEntryAnalyzer<JobEntryJob> {
           String file = parentJobMeta.environmentSubstitute( entry.getJobName() );
           try {
             RepositoryDirectoryInterface rdi = repo.findDirectory( dir );
-            subJobMeta = repo.loadJob( file, rdi, null, null );
+            subJobMeta = KettleMetaCache.getInstance().loadJob( repo, file, rdi );
             String filename = subJobMeta.getFilename() == null ? subJobMeta.toString() : subJobMeta.getFilename();
             jobPath = filename + "." + subJobMeta.getDefaultExtension();
           } catch ( KettleException e ) {
@@ -100,7 +101,7 @@ public class JobJobEntryAnalyzer extends JobEntryAnalyzer<JobEntryJob> {
       case REPOSITORY_BY_REFERENCE:
         if ( repo != null ) {
           try {
-            subJobMeta = repo.loadJob( entry.getJobObjectId(), null );
+            subJobMeta = KettleMetaCache.getInstance().loadJob( repo, entry.getJobObjectId() );
             String filename = subJobMeta.getFilename() == null ? subJobMeta.toString() : subJobMeta.getFilename();
             jobPath = filename + "." + subJobMeta.getDefaultExtension();
           } catch ( KettleException e ) {
@@ -128,7 +129,12 @@ public class JobJobEntryAnalyzer extends JobEntryAnalyzer<JobEntryJob> {
 
   protected JobMeta getSubJobMeta( String filePath ) throws FileNotFoundException, KettleXMLException,
     KettleMissingPluginsException {
-    FileInputStream fis = new FileInputStream( filePath );
-    return new JobMeta( fis, null, null );
+    JobMeta jobMeta = KettleMetaCache.getInstance().getJobMeta( filePath );
+    if ( jobMeta == null ) {
+      FileInputStream fis = new FileInputStream( filePath );
+      jobMeta = new JobMeta( fis, null, null );
+      KettleMetaCache.getInstance().putJobMeta( filePath, jobMeta );
+    }
+    return jobMeta;
   }
 }
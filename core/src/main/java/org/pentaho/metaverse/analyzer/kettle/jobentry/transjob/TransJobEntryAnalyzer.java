@@ -37,6 +37,7 @@ import org.pentaho.metaverse.api.IMetaverseNode;
 import org.pentaho.metaverse.api.MetaverseAnalyzerException;
 import org.pentaho.metaverse.api.MetaverseComponentDescriptor;
 import org.pentaho.metaverse.api.analyzer.kettle.KettleAnalyzerUtil;
+import org.pentaho.metaverse.api.analyzer.kettle.KettleMetaCache;
 import org.pentaho.metaverse.api.analyzer.kettle.jobentry.JobEntryAnalyzer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -88,7 +89,7 @@ public class TransJobEntryAnalyzer extends JobEntryAnalyzer<JobEntryTrans> {
           String file = parentJobMeta.environmentSubstitute( entry.getTransname() );
           try {
             RepositoryDirectoryInterface rdi = repo.findDirectory( dir );
-            subTransMeta = repo.loadTransformation( file, rdi, null, true, null );
+            subTransMeta = KettleMetaCache.getInstance().loadTransformation( repo, file, rdi );
             transPath = subTransMeta.getPathAndName() + "." + subTransMeta.getDefaultExtension();
           } catch ( KettleException e ) {
             throw new MetaverseAnalyzerException( "Sub transformation can not be found in repository - " + file, e );
@@ -100,7 +101,7 @@ public class TransJobEntryAnalyzer extends JobEntryAnalyzer<JobEntryTrans> {
       case REPOSITORY_BY_REFERENCE:
         if ( repo != null ) {
           try {
-            subTransMeta = repo.loadTransformation( entry.getTransObjectId(), null );
+            subTransMeta = KettleMetaCache.getInstance().loadTransformation( repo, entry.getTransObjectId() );
             transPath = subTransMeta.getPathAndName() + "." + subTransMeta.getDefaultExtension();
           } catch ( KettleException e ) {
             throw new MetaverseAnalyzerException( "Sub transformation can not be found by reference - "
@@ -127,7 +128,12 @@ public class TransJobEntryAnalyzer extends JobEntryAnalyzer<JobEntryTrans> {
 
   protected TransMeta getSubTransMeta( String filePath ) throws FileNotFoundException, KettleXMLException,
     KettleMissingPluginsException {
-    FileInputStream fis = new FileInputStream( filePath );
-    return new TransMeta( fis, null, true, null, null );
+    TransMeta transMeta = KettleMetaCache.getInstance().getTransMeta( filePath );
+    if ( transMeta == null ) {
+      FileInputStream fis = new FileInputStream( filePath );
+      transMeta = new TransMeta( fis, null, true, null, null );
+      KettleMetaCache.getInstance().putTransMeta( filePath, transMeta );
+    }
+    return transMeta;
   }
 }
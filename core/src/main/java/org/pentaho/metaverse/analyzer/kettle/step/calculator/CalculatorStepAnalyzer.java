@@ -123,5 +123,4 @@ public class CalculatorStepAnalyzer extends StepAnalyzer<CalculatorMeta> {
 
     return changes;
   }
-
 }
@@ -80,5 +80,4 @@ public class FilterRowsStepAnalyzer extends StepAnalyzer<FilterRowsMeta> {
     supportedSteps.add( FilterRowsMeta.class );
     return supportedSteps;
   }
-
 }
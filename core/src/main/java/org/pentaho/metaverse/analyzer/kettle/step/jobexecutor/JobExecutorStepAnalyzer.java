@@ -23,7 +23,6 @@
 package org.pentaho.metaverse.analyzer.kettle.step.jobexecutor;
 
 import org.apache.commons.lang.StringUtils;
-import org.pentaho.di.core.ProgressNullMonitorListener;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleMissingPluginsException;
 import org.pentaho.di.core.exception.KettleStepException;
@@ -45,6 +44,7 @@ import org.pentaho.metaverse.api.MetaverseAnalyzerException;
 import org.pentaho.metaverse.api.MetaverseComponentDescriptor;
 import org.pentaho.metaverse.api.StepField;
 import org.pentaho.metaverse.api.analyzer.kettle.KettleAnalyzerUtil;
+import org.pentaho.metaverse.api.analyzer.kettle.KettleMetaCache;
 import org.pentaho.metaverse.api.analyzer.kettle.step.StepAnalyzer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -103,7 +103,7 @@ public class JobExecutorStepAnalyzer extends StepAnalyzer<JobExecutorMeta> {
           String file = parentTransMeta.environmentSubstitute( meta.getJobName() );
           try {
             RepositoryDirectoryInterface rdi = repo.findDirectory( dir );
-            subJobMeta = repo.loadJob( file, rdi, null, null );
+            subJobMeta = KettleMetaCache.getInstance().loadJob( repo, file, rdi );
             String filename = subJobMeta.getFilename() == null ? subJobMeta.toString() : subJobMeta.getFilename();
             jobPath = filename + "." + subJobMeta.getDefaultExtension();
           } catch ( KettleException e ) {
@@ -116,7 +116,7 @@ public class JobExecutorStepAnalyzer extends StepAnalyzer<JobExecutorMeta> {
       case REPOSITORY_BY_REFERENCE:
         if ( repo != null ) {
           try {
-            subJobMeta = repo.loadJob( meta.getJobObjectId(), null );
+            subJobMeta = KettleMetaCache.getInstance().loadJob( repo, meta.getJobObjectId() );
             String filename = subJobMeta.getFilename() == null ? subJobMeta.toString() : subJobMeta.getFilename();
             jobPath = filename + "." + subJobMeta.getDefaultExtension();
           } catch ( KettleException e ) {
@@ -163,7 +163,12 @@ public class JobExecutorStepAnalyzer extends StepAnalyzer<JobExecutorMeta> {
 
   protected JobMeta getSubJobMeta( VariableSpace variableSpace, String filePath )
     throws FileNotFoundException, KettleXMLException, KettleMissingPluginsException {
-    return new JobMeta( variableSpace, filePath, null, null, null );
+    JobMeta jobMeta = KettleMetaCache.getInstance().getJobMeta( filePath );
+    if ( jobMeta == null ) {
+      jobMeta = new JobMeta( variableSpace, filePath, null, null, null );
+      KettleMetaCache.getInstance().putJobMeta( filePath, jobMeta );
+    }
+    return jobMeta;
   }
 
   protected void connectToSubJobOutputFields( JobExecutorMeta meta, JobMeta subJobMeta,
@@ -193,11 +198,9 @@ public class JobExecutorStepAnalyzer extends StepAnalyzer<JobExecutorMeta> {
     for ( int i = 0; i < nextStepNames.length; i++ ) {
       String nextStepName = nextStepNames[i];
       StepMeta step = parentTransMeta.findStep( nextStepName );
-      ProgressNullMonitorListener progressMonitor = new ProgressNullMonitorListener();
       try {
-        RowMetaInterface prevStepFields = parentTransMeta.getPrevStepFields( step, progressMonitor );
+        RowMetaInterface prevStepFields = getPrevStepFields( step );
         outputFields.put( nextStepName, prevStepFields );
-        progressMonitor.done();
       } catch ( KettleStepException e ) {
         log.warn( "Could not get step fields for " + nextStepName, e );
       }
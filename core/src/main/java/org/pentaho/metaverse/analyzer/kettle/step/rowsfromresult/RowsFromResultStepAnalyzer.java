@@ -53,7 +53,7 @@ public class RowsFromResultStepAnalyzer extends StepAnalyzer<RowsFromResultMeta>
       String fieldName = fieldNames[ j ];
       RowMetaInterface rmi = null;
       try {
-        rmi = parentTransMeta.getStepFields( parentStepMeta );
+        rmi = getStepFields( parentStepMeta );
         int type = rmi.getValueMeta( j ).getType();
         ValueMetaInterface vmi = rmi.getValueMeta( j );
         //        IMetaverseNode prevFieldNode = createInputFieldNode( StepAnalyzer.NONE, fieldName, type );
@@ -83,5 +83,4 @@ public class SplitFieldsStepAnalyzer extends StepAnalyzer<FieldSplitterMeta> {
     supportedSteps.add( FieldSplitterMeta.class );
     return supportedSteps;
   }
-
 }
@@ -71,7 +71,7 @@ public class StreamLookupStepAnalyzer extends StepAnalyzer<StreamLookupMeta> {
       for ( String prevStepName : parentTransMeta.getPrevStepNames( parentStepMeta ) ) {
         if ( !rowMeta.containsKey( prevStepName ) ) {
           try {
-            rowMeta.put( prevStepName, parentTransMeta.getStepFields( prevStepName ) );
+            rowMeta.put( prevStepName, getStepFields( prevStepName ) );
           } catch ( KettleStepException e ) {
             LOGGER.warn( Messages.getString( "WARNING.CannotDetermineRowMeta", prevStepName, e.toString() ) );
           }
@@ -172,7 +172,7 @@ public class StreamLookupStepAnalyzer extends StepAnalyzer<StreamLookupMeta> {
         String prevStepName = prevStepNames[ i ];
         if ( !prevStepName.equals( lookupStepName ) ) {
           try {
-            RowMetaInterface stepFields = parentTransMeta.getStepFields( prevStepName );
+            RowMetaInterface stepFields = getStepFields( prevStepName );
             if ( stepFields != null ) {
               ValueMetaInterface valueMetaInterface = stepFields.searchValueMeta( newFieldName );
               return valueMetaInterface != null;
@@ -198,4 +198,13 @@ public class StreamLookupStepAnalyzer extends StepAnalyzer<StreamLookupMeta> {
   }
   // ******** End - Used to aid in unit testing **********
 
+  @Override
+  protected void resetAnalysisState() {
+    super.resetAnalysisState();
+    keyLookups = null;
+    keyStreams = null;
+    values = null;
+    valueNames = null;
+    lookupStep = null;
+  }
 }
@@ -127,5 +127,4 @@ public class StringOperationsStepAnalyzer extends StepAnalyzer<StringOperationsM
     this.baseStepMeta = meta;
   }
   // ******** End - Used to aid in unit testing **********
-
 }
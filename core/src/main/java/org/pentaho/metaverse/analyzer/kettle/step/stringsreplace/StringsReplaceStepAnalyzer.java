@@ -50,6 +50,11 @@ public class StringsReplaceStepAnalyzer extends StepAnalyzer<ReplaceStringMeta>
     return set;
   }
 
+  @Override
+  protected void resetAnalysisState() {
+    super.resetAnalysisState();
+    renameIndex = new HashMap<String, Integer>();
+  }
 
   private ComponentDerivationRecord buildChangeRecord( final ReplaceStringMeta stringsReplaceMeta, final int index )
     throws MetaverseAnalyzerException {
@@ -142,5 +147,4 @@ public class StringsReplaceStepAnalyzer extends StepAnalyzer<ReplaceStringMeta>
     this.baseStepMeta = meta;
   }
   // ******** End - Used to aid in unit testing **********
-
 }
@@ -24,7 +24,6 @@ package org.pentaho.metaverse.analyzer.kettle.step.transexecutor;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
-import org.pentaho.di.core.ProgressNullMonitorListener;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleMissingPluginsException;
 import org.pentaho.di.core.exception.KettleStepException;
@@ -46,6 +45,8 @@ import org.pentaho.metaverse.api.MetaverseAnalyzerException;
 import org.pentaho.metaverse.api.MetaverseComponentDescriptor;
 import org.pentaho.metaverse.api.StepField;
 import org.pentaho.metaverse.api.analyzer.kettle.KettleAnalyzerUtil;
+import org.pentaho.metaverse.api.analyzer.kettle.KettleMetaCache;
+import org.pentaho.metaverse.api.analyzer.kettle.step.RowMetaCache;
 import org.pentaho.metaverse.api.analyzer.kettle.step.StepAnalyzer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -106,7 +107,7 @@ public class TransExecutorStepAnalyzer extends StepAnalyzer<TransExecutorMeta> {
           String file = parentTransMeta.environmentSubstitute( meta.getTransName() );
           try {
             RepositoryDirectoryInterface rdi = repo.findDirectory( dir );
-            subTransMeta = repo.loadTransformation( file, rdi, null, true, null );
+            subTransMeta = KettleMetaCache.getInstance().loadTransformation( repo, file, rdi );
             transPath = subTransMeta.getPathAndName() + "." + subTransMeta.getDefaultExtension();
           } catch ( KettleException e ) {
             throw new MetaverseAnalyzerException( "Sub transformation can not be found in repository - " + file, e );
@@ -118,7 +119,7 @@ public class TransExecutorStepAnalyzer extends StepAnalyzer<TransExecutorMeta> {
       case REPOSITORY_BY_REFERENCE:
         if ( repo != null ) {
           try {
-            subTransMeta = repo.loadTransformation( meta.getTransObjectId(), null );
+            subTransMeta = KettleMetaCache.getInstance().loadTransformation( repo, meta.getTransObjectId() );
             transPath = subTransMeta.getPathAndName() + "." + subTransMeta.getDefaultExtension();
           } catch ( KettleException e ) {
             throw new MetaverseAnalyzerException( "Sub transformation can not be found by reference - "
@@ -144,8 +145,14 @@ public class TransExecutorStepAnalyzer extends StepAnalyzer<TransExecutorMeta> {
 
     metaverseBuilder.addLink( node, DictionaryConst.LINK_EXECUTES, transformationNode );
 
-    connectToSubTransInputFields( meta, subTransMeta, transformationNode, descriptor );
-    connectToSubTransOutputFields( meta, subTransMeta, transformationNode, descriptor );
+    // every incoming and outgoing field looks at the same steps of the sub transformation
+    RowMetaCache subTransRowMetaCache = RowMetaCache.open( subTransMeta );
+    try {
+      connectToSubTransInputFields( meta, subTransMeta, transformationNode, descriptor );
+      connectToSubTransOutputFields( meta, subTransMeta, transformationNode, descriptor );
+    } finally {
+      subTransRowMetaCache.close();
+    }
 
     node.setProperty( TRANSFORMATION_TO_EXECUTE, transPath );
 
@@ -165,8 +172,13 @@ public class TransExecutorStepAnalyzer extends StepAnalyzer<TransExecutorMeta> {
 
   protected TransMeta getSubTransMeta( String filePath )
     throws FileNotFoundException, KettleXMLException, KettleMissingPluginsException {
-    FileInputStream fis = new FileInputStream( filePath );
-    return new TransMeta( fis, null, true, null, null );
+    TransMeta transMeta = KettleMetaCache.getInstance().getTransMeta( filePath );
+    if ( transMeta == null ) {
+      FileInputStream fis = new FileInputStream( filePath );
+      transMeta = new TransMeta( fis, null, true, null, null );
+      KettleMetaCache.getInstance().putTransMeta( filePath, transMeta );
+    }
+    return transMeta;
   }
 
   protected void connectToSubTransOutputFields( TransExecutorMeta meta, TransMeta subTransMeta,
@@ -226,7 +238,8 @@ public class TransExecutorStepAnalyzer extends StepAnalyzer<TransExecutorMeta> {
           IMetaverseNode subTransStepNode = createNodeFromDescriptor( stepDescriptor );
 
           try {
-            RowMetaInterface rowMetaInterface = rtrm.getParentStepMeta().getParentTransMeta().getStepFields( step );
+            RowMetaInterface rowMetaInterface =
+              RowMetaCache.getStepFields( rtrm.getParentStepMeta().getParentTransMeta(), step );
             for ( int i = 0; i < rowMetaInterface.getFieldNames().length; i++ ) {
               String field = rowMetaInterface.getFieldNames()[ i ];
               if ( streamFieldNode.getName().equals( field ) ) {
@@ -301,7 +314,8 @@ public class TransExecutorStepAnalyzer extends StepAnalyzer<TransExecutorMeta> {
           IMetaverseNode subTransStepNode = createNodeFromDescriptor( stepDescriptor );
 
           try {
-            RowMetaInterface rowMetaInterface = rfrm.getParentStepMeta().getParentTransMeta().getStepFields( step );
+            RowMetaInterface rowMetaInterface =
+              RowMetaCache.getStepFields( rfrm.getParentStepMeta().getParentTransMeta(), step );
             for ( int i = 0; i < rowMetaInterface.getFieldNames().length; i++ ) {
               String field = rowMetaInterface.getFieldNames()[ i ];
               if ( originalFieldNode.getName().equals( field ) ) {
@@ -336,11 +350,9 @@ public class TransExecutorStepAnalyzer extends StepAnalyzer<TransExecutorMeta> {
     for ( int i = 0; i < nextStepNames.length; i++ ) {
       String nextStepName = nextStepNames[ i ];
       StepMeta step = parentTransMeta.findStep( nextStepName );
-      ProgressNullMonitorListener progressMonitor = new ProgressNullMonitorListener();
       try {
-        RowMetaInterface prevStepFields = parentTransMeta.getPrevStepFields( step, progressMonitor );
+        RowMetaInterface prevStepFields = getPrevStepFields( step );
         outputFields.put( nextStepName, prevStepFields );
-        progressMonitor.done();
       } catch ( KettleStepException e ) {
         log.warn( "Could not get step fields for " + nextStepName, e );
       }
@@ -88,5 +88,4 @@ public class ValueMapperStepAnalyzer extends StepAnalyzer<ValueMapperMeta> {
       }
     };
   }
-
 }
@@ -0,0 +1,343 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.client;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import org.pentaho.dictionary.DictionaryConst;
+import org.pentaho.metaverse.api.MetaverseException;
+import org.pentaho.metaverse.api.StepField;
+import org.pentaho.metaverse.api.StepFieldOperations;
+import org.pentaho.metaverse.util.MetaverseUtil;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * A precomputed answer to the questions LineageClient asks of a lineage graph. For every field output by a step, the
+ * index holds the paths back to the field's origins, so getOriginSteps and getOperationPaths become map lookups
+ * instead of a graph traversal (and a JSON parse of the operations of every vertex on the way) per call.
+ * <p/>
+ * The paths are the ones {@link LineageClient#getOriginStepsPipe(List)} finds: walking "derives" and "joins" links
+ * backwards breadth-first, at most {@link LineageClient#MAX_LOOPS} links deep, stopping at (and keeping) fields that
+ * nothing derives, and keeping only the first path found to each of them.
+ * <p/>
+ * The StepFieldOperations in the paths are shared between callers and must not be changed. An index reflects its
+ * graph at the time it was built. It is built when the analysis of a graph completes (see
+ * {@link #index(Graph)}), so a graph must not be changed after that.
+ */
+public class FieldOriginIndex {
+
+  private static final Map<Graph, FieldOriginIndex> INDEXES =
+    Collections.synchronizedMap( new WeakHashMap<Graph, FieldOriginIndex>() );
+
+  /**
+   * Origin information by step name, then field name
+   */
+  private final Map<String, Map<String, Entry>> entries = new HashMap<>();
+
+  /**
+   * The origin paths of a target field
+   */
+  private static class Entry {
+    private final Set<StepField> originSteps = new HashSet<>();
+    private final Set<List<StepFieldOperations>> operationPaths = new HashSet<>();
+    private RuntimeException originFailure;
+    private RuntimeException pathFailure;
+  }
+
+  /**
+   * Builds the index of the given graph and makes it available through {@link #get(Graph)}, replacing any earlier
+   * index of the graph
+   *
+   * @param graph the lineage graph, which must be complete
+   * @return the new index
+   */
+  public static FieldOriginIndex index( Graph graph ) {
+    FieldOriginIndex index = new FieldOriginIndex( graph );
+    INDEXES.put( graph, index );
+    return index;
+  }
+
+  /**
+   * Returns the index of the given graph, building it if that has not been done yet
+   *
+   * @param graph the lineage graph, which must be complete
+   * @return the index, or null if there is no graph
+   */
+  public static FieldOriginIndex get( Graph graph ) {
+    if ( graph == null ) {
+      return null;
+    }
+    FieldOriginIndex index = INDEXES.get( graph );
+    return index == null ? index( graph ) : index;
+  }
+
+  /**
+   * Forgets the index of the given graph
+   *
+   * @param graph the lineage graph
+   */
+  public static void remove( Graph graph ) {
+    INDEXES.remove( graph );
+  }
+
+  /**
+   * Builds an index of the given graph. Use {@link #index(Graph)} to build one that is shared.
+   *
+   * @param graph the lineage graph
+   */
+  public FieldOriginIndex( Graph graph ) {
+    Map<Vertex, StepFieldOperations> stepFields = new HashMap<>();
+    for ( Vertex step : graph.getVertices( DictionaryConst.PROPERTY_TYPE, DictionaryConst.NODE_TYPE_TRANS_STEP ) ) {
+      Object stepName = step.getProperty( DictionaryConst.PROPERTY_NAME );
+      if ( stepName == null ) {
+        continue;
+      }
+      for ( Vertex field : step.getVertices( Direction.OUT, DictionaryConst.LINK_OUTPUTS ) ) {
+        Object fieldName = field.getProperty( DictionaryConst.PROPERTY_NAME );
+        if ( fieldName == null
+          || !DictionaryConst.NODE_TYPE_TRANS_FIELD.equals( field.getProperty( DictionaryConst.PROPERTY_TYPE ) ) ) {
+          continue;
+        }
+        Entry entry = getOrCreateEntry( stepName.toString(), fieldName.toString() );
+        addPaths( entry, field, stepFields );
+      }
+    }
+  }
+
+  private static void addPaths( Entry entry, Vertex field, Map<Vertex, StepFieldOperations> stepFields ) {
+    // the graph traversal fails on a field whose step cannot be found, so fail the same way when the field is
+    // asked for. Only the origin is needed for the origin steps, every field on the way for the operation paths
+    List<List<Vertex>> paths = findOriginPaths( field );
+    if ( entry.originFailure == null ) {
+      try {
+        for ( List<Vertex> path : paths ) {
+          StepFieldOperations origin = getStepFieldOperations( path.get( path.size() - 1 ), stepFields );
+          entry.originSteps.add( new StepField( origin.getStepName(), origin.getFieldName() ) );
+        }
+      } catch ( RuntimeException e ) {
+        entry.originFailure = e;
+      }
+    }
+    if ( entry.pathFailure == null ) {
+      try {
+        for ( List<Vertex> path : paths ) {
+          List<StepFieldOperations> operationPath = new ArrayList<>( path.size() );
+          for ( Vertex v : path ) {
+            operationPath.add( 0, getStepFieldOperations( v, stepFields ) );
+          }
+          entry.operationPaths.add( operationPath );
+        }
+      } catch ( RuntimeException e ) {
+        entry.pathFailure = e;
+      }
+    }
+  }
+
+  /**
+   * Finds the step(s) and field(s) the given fields of the given step originate from
+   *
+   * @param targetStepName the name of the step
+   * @param fieldNames     the names of fields output by the step
+   * @return a map from field name to origin step-fields; fields without any are left out
+   * @throws MetaverseException if the origins of a field could not be determined
+   * @see LineageClient#getOriginSteps(org.pentaho.di.trans.TransMeta, String, Collection)
+   */
+  public Map<String, Set<StepField>> getOriginSteps( String targetStepName, Collection<String> fieldNames )
+    throws MetaverseException {
+    Map<String, Set<StepField>> originStepsMap = new HashMap<>();
+    for ( Map.Entry<String, Entry> fieldEntry : getEntries( targetStepName, fieldNames, false ).entrySet() ) {
+      if ( !fieldEntry.getValue().originSteps.isEmpty() ) {
+        originStepsMap.put( fieldEntry.getKey(), new HashSet<>( fieldEntry.getValue().originSteps ) );
+      }
+    }
+    return originStepsMap;
+  }
+
+  /**
+   * Finds the paths from the origins of the given fields of the given step to the fields
+   *
+   * @param targetStepName the name of the step
+   * @param fieldNames     the names of fields output by the step
+   * @return a map from field name to paths, each ordered from the origin to the field; fields without any are left out
+   * @throws MetaverseException if the origins of a field could not be determined
+   * @see LineageClient#getOperationPaths(org.pentaho.di.trans.TransMeta, String, Collection)
+   */
+  public Map<String, Set<List<StepFieldOperations>>> getOperationPaths( String targetStepName,
+                                                                        Collection<String> fieldNames )
+    throws MetaverseException {
+    Map<String, Set<List<StepFieldOperations>>> operationPathMap = new HashMap<>();
+    for ( Map.Entry<String, Entry> fieldEntry : getEntries( targetStepName, fieldNames, true ).entrySet() ) {
+      if ( !fieldEntry.getValue().operationPaths.isEmpty() ) {
+        Set<List<StepFieldOperations>> pathSet = new HashSet<>();
+        for ( List<StepFieldOperations> path : fieldEntry.getValue().operationPaths ) {
+          pathSet.add( new ArrayList<>( path ) );
+        }
+        operationPathMap.put( fieldEntry.getKey(), pathSet );
+      }
+    }
+    return operationPathMap;
+  }
+
+  /**
+   * @return the number of step fields in the index
+   */
+  public int size() {
+    int size = 0;
+    for ( Map<String, Entry> fields : entries.values() ) {
+      size += fields.size();
+    }
+    return size;
+  }
+
+  private Map<String, Entry> getEntries( String targetStepName, Collection<String> fieldNames, boolean paths )
+    throws MetaverseException {
+    Map<String, Entry> fields = entries.get( targetStepName );
+    if ( fields == null ) {
+      return Collections.emptyMap();
+    }
+    Map<String, Entry> result = new LinkedHashMap<>();
+    for ( Map.Entry<String, Entry> fieldEntry : fields.entrySet() ) {
+      if ( fieldNames.contains( fieldEntry.getKey() ) ) {
+        RuntimeException failure = paths ? fieldEntry.getValue().pathFailure : fieldEntry.getValue().originFailure;
+        if ( failure != null ) {
+          throw new MetaverseException( failure );
+        }
+        result.put( fieldEntry.getKey(), fieldEntry.getValue() );
+      }
+    }
+    return result;
+  }
+
+  private Entry getOrCreateEntry( String stepName, String fieldName ) {
+    Map<String, Entry> fields = entries.get( stepName );
+    if ( fields == null ) {
+      fields = new HashMap<>();
+      entries.put( stepName, fields );
+    }
+    Entry entry = fields.get( fieldName );
+    if ( entry == null ) {
+      entry = new Entry();
+      fields.put( fieldName, entry );
+    }
+    return entry;
+  }
+
+  /**
+   * Finds the paths from the target field to its origins, each starting with the target field
+   */
+  static List<List<Vertex>> findOriginPaths( Vertex target ) {
+    List<List<Vertex>> paths = new ArrayList<>();
+    if ( !hasDerivesOrJoinsLink( target ) ) {
+      paths.add( Collections.singletonList( target ) );
+      return paths;
+    }
+
+    // breadth-first, remembering how each field was first reached. Fields are only expanded when first reached,
+    // later arrivals come by longer (or equally long but later) paths and would be dropped anyway
+    Map<Vertex, Vertex> reachedFrom = new HashMap<>();
+    Map<Vertex, Integer> depth = new HashMap<>();
+    Queue<Vertex> queue = new ArrayDeque<>();
+    queue.add( target );
+    depth.put( target, 0 );
+    boolean targetReached = false;
+    while ( !queue.isEmpty() ) {
+      Vertex current = queue.remove();
+      int nextDepth = depth.get( current ) + 1;
+      for ( Vertex previous : current.getVertices( Direction.IN, DictionaryConst.LINK_DERIVES,
+        DictionaryConst.LINK_JOINS ) ) {
+        if ( previous.equals( target ) ) {
+          // the target itself is only a result if it is reached through a cycle, it has been expanded already
+          if ( !targetReached ) {
+            targetReached = true;
+            reachedFrom.put( target, current );
+            if ( !hasDerivesLink( target ) ) {
+              paths.add( buildPath( target, current, reachedFrom, target ) );
+            }
+          }
+          continue;
+        }
+        if ( reachedFrom.containsKey( previous ) ) {
+          continue;
+        }
+        reachedFrom.put( previous, current );
+        depth.put( previous, nextDepth );
+        if ( !hasDerivesLink( previous ) ) {
+          paths.add( buildPath( previous, current, reachedFrom, target ) );
+        }
+        if ( nextDepth < LineageClient.MAX_LOOPS ) {
+          queue.add( previous );
+        }
+      }
+    }
+    return paths;
+  }
+
+  private static List<Vertex> buildPath( Vertex end, Vertex parent, Map<Vertex, Vertex> reachedFrom, Vertex target ) {
+    List<Vertex> path = new ArrayList<>();
+    path.add( end );
+    Vertex v = parent;
+    while ( !v.equals( target ) ) {
+      path.add( v );
+      v = reachedFrom.get( v );
+    }
+    path.add( target );
+    Collections.reverse( path );
+    return path;
+  }
+
+  private static boolean hasDerivesOrJoinsLink( Vertex v ) {
+    return v.getVertices( Direction.IN, DictionaryConst.LINK_DERIVES, DictionaryConst.LINK_JOINS ).iterator()
+      .hasNext();
+  }
+
+  private static boolean hasDerivesLink( Vertex v ) {
+    return v.getVertices( Direction.IN, DictionaryConst.LINK_DERIVES ).iterator().hasNext();
+  }
+
+  private static StepFieldOperations getStepFieldOperations( Vertex v, Map<Vertex, StepFieldOperations> cache ) {
+    StepFieldOperations stepFieldOperations = cache.get( v );
+    if ( stepFieldOperations == null ) {
+      // the same values LineageClient.StepFieldOperationsPipeFunction reads, operations are parsed once per field
+      String stepName = (String) v.getVertices( Direction.IN, DictionaryConst.LINK_OUTPUTS )
+        .iterator().next().getProperty( DictionaryConst.PROPERTY_NAME );
+      String fieldName = v.getProperty( DictionaryConst.PROPERTY_NAME );
+      stepFieldOperations = new StepFieldOperations( stepName, fieldName,
+        MetaverseUtil.convertOperationsStringToMap( (String) v.getProperty( DictionaryConst.PROPERTY_OPERATIONS ) ) );
+      cache.put( v, stepFieldOperations );
+    }
+    return stepFieldOperations;
+  }
+}
@@ -31,6 +31,7 @@ import com.tinkerpop.pipes.branch.LoopPipe;
 import org.pentaho.di.core.Const;
 import org.pentaho.di.trans.TransMeta;
 import org.pentaho.dictionary.DictionaryConst;
+import org.pentaho.metaverse.analyzer.kettle.extensionpoints.trans.TransExtensionPointUtil;
 import org.pentaho.metaverse.api.ILineageClient;
 import org.pentaho.metaverse.api.MetaverseException;
 import org.pentaho.metaverse.api.StepField;
@@ -38,6 +39,8 @@ import org.pentaho.metaverse.api.StepFieldOperations;
 import org.pentaho.metaverse.api.model.Operations;
 import org.pentaho.metaverse.graph.LineageGraphMap;
 import org.pentaho.metaverse.util.MetaverseUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -47,6 +50,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
 
 /**
@@ -58,8 +62,12 @@ public class LineageClient implements ILineageClient {
 
   protected static final int MAX_LOOPS = 50;
 
+  private static final Logger log = LoggerFactory.getLogger( LineageClient.class );
+
   private static final StepFieldOperationsPipeFunction STEPFIELDOPS_PIPE_FUNC = new StepFieldOperationsPipeFunction();
 
+  private boolean useOriginIndex = true;
+
   /**
    * Finds the step(s) in the given transformation that created the given field, with respect to the given target step.
    * This means if a field has been renamed or derived from another field from another step, then the lineage graph
@@ -79,36 +87,82 @@ public class LineageClient implements ILineageClient {
   @Override
   public Map<String, Set<StepField>> getOriginSteps( TransMeta transMeta, String targetStepName,
                                                      Collection<String> fieldNames ) throws MetaverseException {
-    Map<String, Set<StepField>> originStepsMap = new HashMap<>();
-
     try {
-      Future<Graph> lineageGraphTask = LineageGraphMap.getInstance().get( transMeta );
+      Future<Graph> lineageGraphTask = getLineageGraphTask( transMeta );
       if ( lineageGraphTask != null ) {
         Graph lineageGraph = lineageGraphTask.get();
-        List<Vertex> targetFields = getTargetFields( lineageGraph, targetStepName, fieldNames );
+        FieldOriginIndex index = getOriginIndex( lineageGraph );
+        if ( index != null ) {
+          return index.getOriginSteps( targetStepName, fieldNames );
+        }
+        return getOriginStepsFromGraph( lineageGraph, targetStepName, fieldNames );
+      }
+    } catch ( MetaverseException e ) {
+      throw e;
+    } catch ( Exception e ) {
+      throw new MetaverseException( e );
+    }
 
-        GremlinPipeline pipe = getOriginStepsPipe( targetFields );
-        List<List<Vertex>> pathList = pipe.toList();
-        if ( pathList != null ) {
+    return new HashMap<>();
+  }
 
-          for ( List<Vertex> path : pathList ) {
-            // Transform each path of vertices into a "path" of StepFieldOperations objects (basically save off
-            // properties of each vertex into a new list)
-            String targetField = path.get( 0 ).getProperty( DictionaryConst.PROPERTY_NAME );
-            Set<StepField> pathSet = originStepsMap.get( targetField );
+  /**
+   * Returns the Future of a transformation's lineage graph. If the graph was evicted from the lineage graph map while
+   * the transformation is still in use, its analysis is submitted again.
+   *
+   * @param transMeta the transformation
+   * @return the Future of the graph, or null if the transformation has no lineage graph
+   */
+  protected Future<Graph> getLineageGraphTask( final TransMeta transMeta ) {
+    try {
+      return LineageGraphMap.getCache().getOrRebuild( transMeta, new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          TransExtensionPointUtil.addLineageGraph( transMeta );
+          return null;
+        }
+      } );
+    } catch ( Exception e ) {
+      log.warn( "Could not analyze the lineage of " + transMeta.getName() + " again", e );
+      return null;
+    }
+  }
 
-            if ( pathSet == null ) {
-              pathSet = new HashSet<>();
-              originStepsMap.put( targetField, pathSet );
-            }
+  /**
+   * Finds the origin steps of the given fields by traversing the given lineage graph, rather than by looking them up
+   * in its origin index
+   *
+   * @see #getOriginSteps(TransMeta, String, Collection)
+   */
+  protected Map<String, Set<StepField>> getOriginStepsFromGraph( Graph lineageGraph, String targetStepName,
+                                                                 Collection<String> fieldNames )
+    throws MetaverseException {
+    Map<String, Set<StepField>> originStepsMap = new HashMap<>();
 
-            Vertex v = path.get( path.size() - 1 );
-            Map<String, String> stepField = STEPFIELDOPS_PIPE_FUNC.compute( v );
-            String stepName = stepField.get( "stepName" );
-            String fieldName = stepField.get( "fieldName" );
+    try {
+      List<Vertex> targetFields = getTargetFields( lineageGraph, targetStepName, fieldNames );
+
+      GremlinPipeline pipe = getOriginStepsPipe( targetFields );
+      List<List<Vertex>> pathList = pipe.toList();
+      if ( pathList != null ) {
+
+        for ( List<Vertex> path : pathList ) {
+          // Transform each path of vertices into a "path" of StepFieldOperations objects (basically save off
+          // properties of each vertex into a new list)
+          String targetField = path.get( 0 ).getProperty( DictionaryConst.PROPERTY_NAME );
+          Set<StepField> pathSet = originStepsMap.get( targetField );
 
-            pathSet.add( new StepField( stepName, fieldName ) );
+          if ( pathSet == null ) {
+            pathSet = new HashSet<>();
+            originStepsMap.put( targetField, pathSet );
           }
+
+          Vertex v = path.get( path.size() - 1 );
+          Map<String, String> stepField = STEPFIELDOPS_PIPE_FUNC.compute( v );
+          String stepName = stepField.get( "stepName" );
+          String fieldName = stepField.get( "fieldName" );
+
+          pathSet.add( new StepField( stepName, fieldName ) );
         }
       }
     } catch ( Exception e ) {
@@ -138,48 +192,70 @@ public class LineageClient implements ILineageClient {
   public Map<String, Set<List<StepFieldOperations>>> getOperationPaths(
     TransMeta transMeta, String targetStepName, final Collection<String> fieldNames ) throws MetaverseException {
 
-    Map<String, Set<List<StepFieldOperations>>> operationPathMap = new HashMap<>();
-
     try {
-      Future<Graph> lineageGraphTask = LineageGraphMap.getInstance().get( transMeta );
+      Future<Graph> lineageGraphTask = getLineageGraphTask( transMeta );
       if ( lineageGraphTask != null ) {
         Graph lineageGraph = lineageGraphTask.get();
 
         if ( lineageGraph != null ) {
+          FieldOriginIndex index = getOriginIndex( lineageGraph );
+          if ( index != null ) {
+            return index.getOperationPaths( targetStepName, fieldNames );
+          }
+          return getOperationPathsFromGraph( lineageGraph, targetStepName, fieldNames );
+        }
+      }
+    } catch ( MetaverseException e ) {
+      throw e;
+    } catch ( Exception e ) {
+      throw new MetaverseException( e );
+    }
 
-          // Get the creator field nodes for all the field names passed in
-          List<Vertex> getTargetFields = getTargetFields( lineageGraph, targetStepName, fieldNames );
-
-
-          // The "origin steps pipe" with a second param of true returns a pipeline that will return paths between
-          // the origin field nodes and the target field node.
-          GremlinPipeline pipe = getOriginStepsPipe( getTargetFields );
-          List<List<Vertex>> pathList = pipe.toList();
-          if ( pathList != null ) {
-
-            for ( List<Vertex> path : pathList ) {
-              // Transform each path of vertices into a "path" of StepFieldOperations objects (basically save off
-              // properties of each vertex into a new list)
-              List<StepFieldOperations> stepFieldOps = new ArrayList<>();
-              String targetField = path.get( 0 ).getProperty( DictionaryConst.PROPERTY_NAME );
-              Set<List<StepFieldOperations>> pathSet = operationPathMap.get( targetField );
-
-              if ( pathSet == null ) {
-                pathSet = new HashSet<>();
-                operationPathMap.put( targetField, pathSet );
-              }
-              for ( Vertex v : path ) {
-                Map<String, String> stepField = STEPFIELDOPS_PIPE_FUNC.compute( v );
-                String stepName = stepField.get( "stepName" );
-                String fieldName = stepField.get( "fieldName" );
-                Operations operations = MetaverseUtil.convertOperationsStringToMap(
-                  (String) v.getProperty( DictionaryConst.PROPERTY_OPERATIONS ) );
-
-                stepFieldOps.add( 0, new StepFieldOperations( stepName, fieldName, operations ) );
-              }
-              pathSet.add( stepFieldOps );
-            }
+    return new HashMap<>();
+  }
+
+  /**
+   * Finds the operation paths of the given fields by traversing the given lineage graph, rather than by looking them
+   * up in its origin index
+   *
+   * @see #getOperationPaths(TransMeta, String, Collection)
+   */
+  protected Map<String, Set<List<StepFieldOperations>>> getOperationPathsFromGraph(
+    Graph lineageGraph, String targetStepName, final Collection<String> fieldNames ) throws MetaverseException {
+
+    Map<String, Set<List<StepFieldOperations>>> operationPathMap = new HashMap<>();
+
+    try {
+      // Get the creator field nodes for all the field names passed in
+      List<Vertex> getTargetFields = getTargetFields( lineageGraph, targetStepName, fieldNames );
+
+      // The "origin steps pipe" with a second param of true returns a pipeline that will return paths between
+      // the origin field nodes and the target field node.
+      GremlinPipeline pipe = getOriginStepsPipe( getTargetFields );
+      List<List<Vertex>> pathList = pipe.toList();
+      if ( pathList != null ) {
+
+        for ( List<Vertex> path : pathList ) {
+          // Transform each path of vertices into a "path" of StepFieldOperations objects (basically save off
+          // properties of each vertex into a new list)
+          List<StepFieldOperations> stepFieldOps = new ArrayList<>();
+          String targetField = path.get( 0 ).getProperty( DictionaryConst.PROPERTY_NAME );
+          Set<List<StepFieldOperations>> pathSet = operationPathMap.get( targetField );
+
+          if ( pathSet == null ) {
+            pathSet = new HashSet<>();
+            operationPathMap.put( targetField, pathSet );
           }
+          for ( Vertex v : path ) {
+            Map<String, String> stepField = STEPFIELDOPS_PIPE_FUNC.compute( v );
+            String stepName = stepField.get( "stepName" );
+            String fieldName = stepField.get( "fieldName" );
+            Operations operations = MetaverseUtil.convertOperationsStringToMap(
+              (String) v.getProperty( DictionaryConst.PROPERTY_OPERATIONS ) );
+
+            stepFieldOps.add( 0, new StepFieldOperations( stepName, fieldName, operations ) );
+          }
+          pathSet.add( stepFieldOps );
         }
       }
     } catch ( Exception e ) {
@@ -189,6 +265,28 @@ public class LineageClient implements ILineageClient {
     return operationPathMap;
   }
 
+  /**
+   * Returns the origin index of the given lineage graph, building it if the graph was not analyzed through
+   * {@link MetaverseUtil#addLineageGraph}
+   *
+   * @param lineageGraph the lineage graph
+   * @return the index, or null if the graph is to be traversed instead
+   */
+  protected FieldOriginIndex getOriginIndex( Graph lineageGraph ) {
+    return useOriginIndex ? FieldOriginIndex.get( lineageGraph ) : null;
+  }
+
+  public boolean isUseOriginIndex() {
+    return useOriginIndex;
+  }
+
+  /**
+   * @param useOriginIndex false to answer queries by traversing the lineage graph every time
+   */
+  public void setUseOriginIndex( boolean useOriginIndex ) {
+    this.useOriginIndex = useOriginIndex;
+  }
+
   /**
    * This is an intermediate method that returns a pipeline which would determine the vertices with the given fieldname,
    * which were created by steps that have "hops to" links to anything on the front of the pipe. This method is not
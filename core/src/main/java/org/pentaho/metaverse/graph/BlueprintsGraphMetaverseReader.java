@@ -27,6 +27,8 @@ import com.tinkerpop.blueprints.Edge;
 import com.tinkerpop.blueprints.Graph;
 import com.tinkerpop.blueprints.Vertex;
 import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CloseShieldOutputStream;
 import org.pentaho.dictionary.DictionaryConst;
 import org.pentaho.dictionary.DictionaryHelper;
 import org.pentaho.dictionary.MetaverseLink;
@@ -39,16 +41,24 @@ import org.pentaho.metaverse.util.MetaverseUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
 
 /**
  * An implementation of an IMetaverseReader that uses a Blueprints graph as the underlying storage
@@ -60,8 +70,19 @@ public class BlueprintsGraphMetaverseReader implements IMetaverseReader {
   private static final long serialVersionUID = -3813738340722424284L;
   private static final Logger LOGGER = LoggerFactory.getLogger( BlueprintsGraphMetaverseReader.class );
 
+  /**
+   * The size of the buffer between the graph writers and the stream an export is written to
+   */
+  public static final int EXPORT_BUFFER_SIZE = 64 * 1024;
+
   private Graph graph;
 
+  private int maxDepth;
+
+  private int maxResults;
+
+  private ReadWriteLock lock;
+
   /**
    * Constructor that accepts a Graph
    *
@@ -80,35 +101,115 @@ public class BlueprintsGraphMetaverseReader implements IMetaverseReader {
     return graph;
   }
 
+  public int getMaxDepth() {
+    return maxDepth;
+  }
+
+  /**
+   * Sets the maximum number of edges between the start vertex and the vertices that searches and sub-graphs include,
+   * 0 (the default) for no maximum
+   *
+   * @param maxDepth the maximum depth
+   */
+  public void setMaxDepth( int maxDepth ) {
+    this.maxDepth = Math.max( 0, maxDepth );
+  }
+
+  public int getMaxResults() {
+    return maxResults;
+  }
+
+  /**
+   * Sets the maximum number of paths a search finds from each start vertex, and of vertices a sub-graph holds,
+   * 0 (the default) for no maximum
+   *
+   * @param maxResults the maximum number of results
+   */
+  public void setMaxResults( int maxResults ) {
+    this.maxResults = Math.max( 0, maxResults );
+  }
+
+  public ReadWriteLock getLock() {
+    return lock;
+  }
+
+  /**
+   * Sets the lock of the builder that writes the graph. Lookups, searches and exports hold its shared (read) side, so
+   * they run alongside single changes and each other but never see a bulk load half applied. Without a lock (the
+   * default) reads are not coordinated with writes.
+   *
+   * @param lock the builder's lock, or null
+   */
+  public void setLock( ReadWriteLock lock ) {
+    this.lock = lock;
+  }
+
+  /**
+   * Takes the shared side of the builder's lock, if there is one
+   *
+   * @return the lock taken, to be passed to {@link #unlock(Lock)}, or null
+   */
+  protected Lock lockShared() {
+    if ( lock == null ) {
+      return null;
+    }
+    Lock shared = lock.readLock();
+    shared.lock();
+    return shared;
+  }
+
+  protected void unlock( Lock shared ) {
+    if ( shared != null ) {
+      shared.unlock();
+    }
+  }
+
   @Override
   public IMetaverseNode findNode( String id ) {
-    Vertex vertex = getGraph().getVertex( id );
-    if ( vertex == null ) {
-      return null;
+    Lock shared = lockShared();
+    try {
+      Vertex vertex = enhanceGraph( getGraph() ).getVertex( id );
+      if ( vertex == null ) {
+        return null;
+      }
+      MetaverseNode node = new MetaverseNode( vertex );
+      return node;
+    } finally {
+      unlock( shared );
     }
-    MetaverseUtil.enhanceVertex( vertex );
-    MetaverseNode node = new MetaverseNode( vertex );
-    return node;
   }
 
   @Override
   public List<IMetaverseNode> findNodes( String property, String value ) {
-    Iterable<Vertex> vertices = getGraph().getVertices( property, value );
-    if ( vertices == null ) {
-      return null;
-    }
-    List<IMetaverseNode> result = new ArrayList<IMetaverseNode>();
-    Iterator<Vertex> verticesIt = vertices.iterator();
-    while ( verticesIt.hasNext() ) {
-      MetaverseNode node = new MetaverseNode( verticesIt.next() );
-      result.add( node );
+    Lock shared = lockShared();
+    try {
+      Iterable<Vertex> vertices = getGraph().getVertices( property, value );
+      if ( vertices == null ) {
+        return null;
+      }
+      List<IMetaverseNode> result = new ArrayList<IMetaverseNode>();
+      Iterator<Vertex> verticesIt = vertices.iterator();
+      while ( verticesIt.hasNext() ) {
+        MetaverseNode node = new MetaverseNode( verticesIt.next() );
+        result.add( node );
+      }
+      return result;
+    } finally {
+      unlock( shared );
     }
-    return result;
   }
 
   @Override
   public IMetaverseLink findLink( String leftNodeID, String linkType, String rightNodeID, Direction direction ) {
-    Vertex vertex = getGraph().getVertex( leftNodeID );
+    Lock shared = lockShared();
+    try {
+      return findLink( getGraph().getVertex( leftNodeID ), linkType, rightNodeID, direction );
+    } finally {
+      unlock( shared );
+    }
+  }
+
+  private IMetaverseLink findLink( Vertex vertex, String linkType, String rightNodeID, Direction direction ) {
     if ( vertex == null ) {
       return null;
     }
@@ -126,8 +227,8 @@ public class BlueprintsGraphMetaverseReader implements IMetaverseReader {
           IMetaverseNode node2 = new MetaverseNode( vertex2 );
           String label = edge.getLabel();
           link.setLabel( label );
-          String localized = Messages.getString( MetaverseUtil.MESSAGE_PREFIX_LINKTYPE + label );
-          if ( !localized.startsWith( "!" ) ) {
+          String localized = MetaverseUtil.getLocalizedLinkType( label );
+          if ( localized != null ) {
             link.setProperty( DictionaryConst.PROPERTY_TYPE_LOCALIZED, localized );
           }
           if ( direction == Direction.OUT ) {
@@ -144,6 +245,11 @@ public class BlueprintsGraphMetaverseReader implements IMetaverseReader {
     return null;
   }
 
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * The graph returned is an {@link EnhancedGraph} of the backing graph.
+   */
   @Override
   public Graph getMetaverse() {
     Graph graph = getGraph();
@@ -156,11 +262,16 @@ public class BlueprintsGraphMetaverseReader implements IMetaverseReader {
     return exportFormat( FORMAT_XML );
   }
 
+  /**
+   * Exports the metaverse graph into a string. This holds the whole export in memory (more than once), use
+   * {@link #exportToStream(String, OutputStream)} for large graphs.
+   */
   @Override
   public String exportFormat( String format ) {
     OutputStream out = new ByteArrayOutputStream();
     try {
-      exportToStream( format, out );
+      // writing to memory can't stall, so this is written straight from the graph under the lock
+      exportLocked( format, out );
     } catch ( IOException e ) {
       LOGGER.error( Messages.getString( "ERROR.Graph.Export" ), e );
     } finally {
@@ -174,13 +285,58 @@ public class BlueprintsGraphMetaverseReader implements IMetaverseReader {
   }
 
   /**
-   * Exports the metaverse graph by writing it to an output stream
+   * Exports the metaverse graph by writing it to an output stream. Vertices and edges are written as they are read
+   * from the graph, through a buffer of {@link #EXPORT_BUFFER_SIZE} bytes, so no copy of the export is held in memory.
+   * The stream is flushed but not closed.
+   * <p/>
+   * With a lock, the export is first written to a temporary file while holding the lock's shared side, and copied to
+   * the stream once the lock is released. The stream is typically an HTTP response, and a slow client must not hold
+   * off bulk loads (nor, since waiting writers queue ahead of new readers, everything else behind them).
    *
    * @param format The format for the export: XML, JSON, or CSV
    * @param out    The output stream to write to
    * @throws IOException Thrown if there is an I/O issue
    */
   public void exportToStream( String format, OutputStream out ) throws IOException {
+    if ( lock == null ) {
+      writeExport( format, out );
+      return;
+    }
+    File spool = File.createTempFile( "metaverse-export", ".tmp" );
+    try {
+      OutputStream spoolOut = new FileOutputStream( spool );
+      try {
+        exportLocked( format, spoolOut );
+      } finally {
+        spoolOut.close();
+      }
+      InputStream in = new FileInputStream( spool );
+      try {
+        IOUtils.copyLarge( in, out, new byte[ EXPORT_BUFFER_SIZE ] );
+      } finally {
+        in.close();
+      }
+      out.flush();
+    } finally {
+      if ( !spool.delete() ) {
+        spool.deleteOnExit();
+      }
+    }
+  }
+
+  /**
+   * Writes the export while holding the shared side of the lock, if there is one
+   */
+  private void exportLocked( String format, OutputStream out ) throws IOException {
+    Lock shared = lockShared();
+    try {
+      writeExport( format, out );
+    } finally {
+      unlock( shared );
+    }
+  }
+
+  private void writeExport( String format, OutputStream out ) throws IOException {
     String fmt = format;
     if ( fmt == null ) {
       // default to graphml
@@ -188,192 +344,172 @@ public class BlueprintsGraphMetaverseReader implements IMetaverseReader {
     }
     Graph graph = getGraph();
     graph = enhanceGraph( graph );
+    // the writers make many small writes, and some of them close the stream they are given when they are done
+    OutputStream buffered = new BufferedOutputStream( new CloseShieldOutputStream( out ), EXPORT_BUFFER_SIZE );
     // convert the graph to an export format, GraphML for now
     if ( fmt.equalsIgnoreCase( FORMAT_XML ) ) {
       GraphMLWriter writer = new GraphMLWriter();
-      writer.outputGraph( graph, out );
+      writer.outputGraph( graph, buffered );
     } else if ( fmt.equalsIgnoreCase( FORMAT_JSON ) ) {
       GraphSONWriter writer = new GraphSONWriter();
-      writer.outputGraph( graph, out );
+      writer.outputGraph( graph, buffered );
     } else if ( fmt.equalsIgnoreCase( FORMAT_CSV ) ) {
       GraphCsvWriter writer = new GraphCsvWriter();
-      writer.outputGraph( graph, out );
+      writer.outputGraph( graph, buffered );
     }
+    // a writer that closed the buffer has flushed it, flushing a closed buffer is harmless
+    buffered.flush();
   }
 
   @Override
   public Graph search( List<String> resultTypes, List<String> startNodeIDs, boolean shortestOnly ) {
+    GraphTraversal traversal = new GraphTraversal( resultTypes, shortestOnly );
+    traversal.setMaxDepth( maxDepth );
+    traversal.setMaxResults( maxResults );
+    return search( traversal, startNodeIDs );
+  }
+
+  /**
+   * Finds the paths from the given vertices that a traversal finds, and returns them as a graph
+   *
+   * @param traversal    the traversal, which decides which vertices are results and how far it goes
+   * @param startNodeIDs the ids of the vertices to start from
+   * @return a graph of the paths found
+   */
+  public Graph search( GraphTraversal traversal, List<String> startNodeIDs ) {
 
     Graph g = new TinkerGraph();
 
-    for ( String startNodeID : startNodeIDs ) {
-      if ( graph != null ) {
-        // traverse look for paths to the results
-        Vertex startVertex = graph.getVertex( startNodeID );
-        GraphPath path = new GraphPath();
-        Set<Object> done = new HashSet<Object>();
-        Map<Object, GraphPath> shortestPaths = new HashMap<Object, GraphPath>();
-        traverseGraph( startVertex, graph, resultTypes, path, done, shortestPaths, Direction.IN, shortestOnly );
-        done = new HashSet<Object>();
-        traverseGraph( startVertex, graph, resultTypes, path, done, shortestPaths, Direction.OUT, shortestOnly );
-        Iterator<Map.Entry<Object, GraphPath>> paths = shortestPaths.entrySet().iterator();
-        while ( paths.hasNext() ) {
-          Map.Entry<Object, GraphPath> entry = paths.next();
-          GraphPath shortPath = entry.getValue();
-          shortPath.addToGraph( g );
+    Lock shared = lockShared();
+    try {
+      for ( String startNodeID : startNodeIDs ) {
+        if ( graph != null ) {
+          // traverse look for paths to the results
+          Vertex startVertex = graph.getVertex( startNodeID );
+          traversal.traverse( startVertex, g );
+          if ( traversal.isTruncated() ) {
+            LOGGER.warn( Messages.getString( "WARNING.Graph.SearchTruncated", startNodeID,
+              String.valueOf( traversal.getMaxResults() ) ) );
+          }
         }
-
       }
+    } finally {
+      unlock( shared );
     }
     g = enhanceGraph( g );
     return g;
   }
 
-  private void traverseGraph( Vertex startVertex, Graph subGraph, List<String> resultTypes, GraphPath path,
-                              Set<Object> done, Map<Object, GraphPath> shortestPaths, Direction direction, boolean shortestOnly ) {
-    boolean isTargetType = resultTypes == null
-      || resultTypes.size() == 0
-      || resultTypes.contains( startVertex.getProperty( DictionaryConst.PROPERTY_TYPE ) );
-    if ( !isTargetType && done.contains( startVertex.getId() ) ) {
-      return;
-    }
-    path.addVertex( startVertex );
-    if ( isTargetType ) {
-      // this is one of our target types
-      if ( shortestOnly ) {
-        GraphPath shortestPath = shortestPaths.get( startVertex.getId() );
-        if ( shortestPath == null || path.getLength() < shortestPath.getLength() ) {
-          shortestPaths.put( startVertex.getId(), path.clone() );
-          if ( done.contains( startVertex.getId() ) ) {
-            path.pop();
-            return;
-          }
-        }
-      } else {
-        shortestPaths.put( path.toString(), path.clone() );
+  @Override
+  public Graph getGraph( String id ) {
+    Graph g = new TinkerGraph();
+    Lock shared = lockShared();
+    try {
+      Vertex root = getGraph().getVertex( id );
+      if ( root == null ) {
+        return null;
       }
+      // find the upstream nodes
+      GraphUtil.cloneVertexIntoGraph( root, g );
+      traceVertices( root, g );
+    } finally {
+      unlock( shared );
     }
-    done.add( startVertex.getId() );
-    if ( direction == Direction.IN ) {
-      Iterator<Edge> edges = startVertex.getEdges( Direction.IN ).iterator();
-      while ( edges.hasNext() ) {
-        Edge edge = edges.next();
-        if ( done.contains( edge.getId() ) ) {
-          continue;
-        }
-        path.addEdge( edge );
-        Vertex nextVertex = edge.getVertex( Direction.OUT );
-        traverseGraph( nextVertex, subGraph, resultTypes, path, done, shortestPaths, direction, shortestOnly );
-        path.pop();
+    g = enhanceGraph( g );
+    return g;
+  }
+
+  /**
+   * Traces all of the vertices upstream and downstream of a vertex, and the upstream structure of the downstream
+   * ones, into a sub-graph. The trace is breadth-first over (vertex, trace) pairs, each visited once, so it does not
+   * recurse and stops on cycles.
+   *
+   * @param root   The source vertex to traverse from
+   * @param graph2 The sub-graph being built, already holding the clone of the root
+   */
+  private void traceVertices( Vertex root, Graph graph2 ) {
+    Map<Object, Integer> indexes = new HashMap<Object, Integer>();
+    BitSet[] visited = new BitSet[] { new BitSet(), new BitSet(), new BitSet() };
+    Deque<Trace> traces = new ArrayDeque<Trace>();
+    indexes.put( root.getId(), 0 );
+    visited[ Trace.UPSTREAM ].set( 0 );
+    visited[ Trace.DOWNSTREAM ].set( 0 );
+    traces.add( new Trace( root, Trace.UPSTREAM, 0 ) );
+    traces.add( new Trace( root, Trace.DOWNSTREAM, 0 ) );
+    int vertexCount = 1;
+    while ( !traces.isEmpty() ) {
+      Trace trace = traces.poll();
+      if ( maxDepth > 0 && trace.depth >= maxDepth ) {
+        continue;
       }
-    }
-    if ( direction == Direction.OUT ) {
-      Iterator<Edge> edges = startVertex.getEdges( Direction.OUT ).iterator();
-      while ( edges.hasNext() ) {
-        Edge edge = edges.next();
-        if ( done.contains( edge.getId() ) ) {
+      Direction direction = trace.kind == Trace.DOWNSTREAM ? Direction.OUT : Direction.IN;
+      for ( Edge edge : trace.vertex.getEdges( direction ) ) {
+        if ( trace.kind == Trace.STRUCTURE && !DictionaryHelper.STRUCTURAL_LINK_TYPES.contains( edge.getLabel() ) ) {
           continue;
         }
-        path.addEdge( edge );
-        Vertex nextVertex = edge.getVertex( Direction.IN );
-        traverseGraph( nextVertex, subGraph, resultTypes, path, done, shortestPaths, direction, shortestOnly );
-        path.pop();
-      }
-      // go upstream to find structure
-      if ( path.getLength() > 1 ) {
-        edges = startVertex.getEdges( Direction.IN ).iterator();
-        while ( edges.hasNext() ) {
-          Edge edge = edges.next();
-          if ( done.contains( edge.getId() ) ) {
+        Vertex nextVertex = edge.getVertex( direction == Direction.IN ? Direction.OUT : Direction.IN );
+        Integer index = indexes.get( nextVertex.getId() );
+        if ( index == null ) {
+          if ( maxResults > 0 && vertexCount >= maxResults ) {
             continue;
           }
-          path.addEdge( edge );
-          Vertex nextVertex = edge.getVertex( Direction.OUT );
-          // go upstream to find structure
-          traverseGraph( nextVertex, subGraph, resultTypes, path, done, shortestPaths, Direction.IN, shortestOnly );
-          path.pop();
+          index = indexes.size();
+          indexes.put( nextVertex.getId(), index );
+          vertexCount++;
+        }
+        Vertex clone = GraphUtil.cloneVertexIntoGraph( trace.vertex, graph2 );
+        Vertex target = GraphUtil.cloneVertexIntoGraph( nextVertex, graph2 );
+        if ( graph2.getEdge( edge.getId() ) == null ) {
+          if ( direction == Direction.IN ) {
+            graph2.addEdge( edge.getId(), target, clone, edge.getLabel() );
+          } else {
+            graph2.addEdge( edge.getId(), clone, target, edge.getLabel() );
+          }
+        }
+        visit( nextVertex, index, trace.kind, trace.depth + 1, visited, traces );
+        if ( direction == Direction.OUT ) {
+          visit( nextVertex, index, Trace.STRUCTURE, trace.depth + 1, visited, traces );
         }
       }
     }
-    path.pop();
   }
 
-  @Override
-  public Graph getGraph( String id ) {
-    Vertex root = getGraph().getVertex( id );
-    if ( root == null ) {
-      return null;
+  private void visit( Vertex vertex, int index, int kind, int depth, BitSet[] visited, Deque<Trace> traces ) {
+    if ( !visited[ kind ].get( index ) ) {
+      visited[ kind ].set( index );
+      traces.add( new Trace( vertex, kind, depth ) );
     }
-    Graph g = new TinkerGraph();
-    // find the upstream nodes
-    Vertex clone = GraphUtil.cloneVertexIntoGraph( root, g );
-    traceVertices( root, clone, Direction.IN, getGraph(), g, null );
-    traceVertices( root, clone, Direction.OUT, getGraph(), g, null );
-    g = enhanceGraph( g );
-    return g;
   }
 
   /**
-   * Traces all of the
-   *
-   * @param vertex    The source vertex to traverse from
-   * @param clone     The clone of the source vertex in the sub-graph
-   * @param direction The direction to traverse the graph in
-   * @param graph1    The source graph
-   * @param graph2    The sub-graph being built
-   * @param edgeTypes The types of edges to include in the traversal. Can be null (all edges).
+   * A vertex to trace from, and how
    */
-  private void traceVertices( Vertex vertex, Vertex clone, Direction direction,
-                              Graph graph1, Graph graph2, Set<String> edgeTypes ) {
-    Direction opDirection = direction == Direction.IN ? Direction.OUT : Direction.IN;
-    Iterator<Edge> edges = vertex.getEdges( direction ).iterator();
-    while ( edges.hasNext() ) {
-      Edge edge = edges.next();
-      if ( edgeTypes != null && !edgeTypes.contains( edge.getLabel() ) ) {
-        continue;
-      }
-      Vertex nextVertex = edge.getVertex( opDirection );
-      Vertex target = GraphUtil.cloneVertexIntoGraph( nextVertex, graph2 );
-      Vertex node1 = direction == Direction.IN ? target : clone;
-      Vertex node2 = direction == Direction.IN ? clone : target;
-      String edgeId = (String) node1.getId() + ">" + (String) node2.getId();
-      if ( graph2.getEdge( edgeId ) == null ) {
-        if ( direction == Direction.IN ) {
-          graph2.addEdge( edgeId, target, clone, edge.getLabel() );
-        } else {
-          graph2.addEdge( edgeId, clone, target, edge.getLabel() );
-        }
-      }
-      traceVertices( nextVertex, target, direction, graph1, graph2, edgeTypes );
-      if ( direction == Direction.OUT ) {
-        traceVertices( nextVertex, target, Direction.IN, graph1, graph2, DictionaryHelper.STRUCTURAL_LINK_TYPES );
-      }
+  private static final class Trace {
+
+    static final int UPSTREAM = 0;
+    static final int DOWNSTREAM = 1;
+    static final int STRUCTURE = 2;
+
+    final Vertex vertex;
+    final int kind;
+    final int depth;
+
+    Trace( Vertex vertex, int kind, int depth ) {
+      this.vertex = vertex;
+      this.kind = kind;
+      this.depth = depth;
     }
   }
 
   /**
-   * Adds localized types and categories, add node color information
+   * Adds localized types and categories, add node color information. The graph is not modified, the information is
+   * added by a read-only view of it as vertices and edges are read.
    *
    * @param g The graph to enhance
    * @return The enhanced graph
    */
   protected Graph enhanceGraph( Graph g ) {
-
-    // TODO should we clone the graph?
-    Iterator<Vertex> vertices = g.getVertices().iterator();
-    // enhance the vertixes
-    while ( vertices.hasNext() ) {
-      Vertex vertex = vertices.next();
-      MetaverseUtil.enhanceVertex( vertex );
-    }
-    Iterator<Edge> edges = g.getEdges().iterator();
-    // enhance the vertixes
-    while ( edges.hasNext() ) {
-      Edge edge = edges.next();
-      MetaverseUtil.enhanceEdge( edge );
-    }
-    return g;
+    return g instanceof EnhancedGraph ? g : new EnhancedGraph( g );
   }
 
-
 }
@@ -0,0 +1,251 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.graph;
+
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.GraphQuery;
+import com.tinkerpop.blueprints.KeyIndexableGraph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.util.DefaultGraphQuery;
+import com.tinkerpop.blueprints.util.wrappers.id.IdGraph;
+
+import java.util.Iterator;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * <p>
+ * A {@link Graph} that provides thread-safe modification through a read/write lock rather than a single monitor.
+ * </p>
+ * <p>
+ * Lookups share the read lock and never block each other. Changes to the backing store (adding and removing
+ * vertices and edges) take the write lock, so they are serialized as with {@link SynchronizedGraph}; what this
+ * wrapper gains is that lookups, including the lookup that finds an element already there when it is added again
+ * (the common case when a document is re-analyzed), run in parallel.
+ * </p>
+ * <p>
+ * The backing store is never iterated without the lock: the iterators handed out by {@link #getVertices()},
+ * {@link #getEdges()} and their key/value variants take the read lock for every step rather than copying the
+ * elements, and {@link #query()} runs over them. The backing store's iterators must therefore tolerate changes made
+ * between two steps, as TinkerGraph's do.
+ * </p>
+ */
+public class ConcurrentGraph extends SynchronizedGraph {
+
+  /**
+   * Guards the backing store, which is not assumed to be thread-safe
+   */
+  private final ReadWriteLock storeLock = new ReentrantReadWriteLock();
+
+  /**
+   * Creates a new concurrent graph
+   * @param graph The underlying graph
+   */
+  public ConcurrentGraph( IdGraph<KeyIndexableGraph> graph ) {
+    super( graph );
+  }
+
+  @Override
+  public Vertex addVertex( Object id ) {
+    if ( id != null ) {
+      Vertex vertex = getVertex( id );
+      if ( vertex != null ) {
+        return vertex;
+      }
+    }
+    storeLock.writeLock().lock();
+    try {
+      Vertex vertex = id == null ? null : graph.getVertex( id );
+      return vertex == null ? graph.addVertex( id ) : vertex;
+    } finally {
+      storeLock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public Vertex getVertex( Object id ) {
+    storeLock.readLock().lock();
+    try {
+      return graph.getVertex( id );
+    } finally {
+      storeLock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public void removeVertex( Vertex vertex ) {
+    storeLock.writeLock().lock();
+    try {
+      graph.removeVertex( vertex );
+    } finally {
+      storeLock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public Iterable<Vertex> getVertices() {
+    storeLock.readLock().lock();
+    try {
+      return new LockedIterable<Vertex>( graph.getVertices() );
+    } finally {
+      storeLock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public Iterable<Vertex> getVertices( String key, Object value ) {
+    storeLock.readLock().lock();
+    try {
+      return new LockedIterable<Vertex>( graph.getVertices( key, value ) );
+    } finally {
+      storeLock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public Edge addEdge( Object id, Vertex outVertex, Vertex inVertex, String label ) {
+    if ( id != null ) {
+      Edge edge = getEdge( id );
+      if ( edge != null ) {
+        return edge;
+      }
+    }
+    storeLock.writeLock().lock();
+    try {
+      Edge edge = id == null ? null : graph.getEdge( id );
+      return edge == null ? graph.addEdge( id, outVertex, inVertex, label ) : edge;
+    } finally {
+      storeLock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public Edge getEdge( Object id ) {
+    storeLock.readLock().lock();
+    try {
+      return graph.getEdge( id );
+    } finally {
+      storeLock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public void removeEdge( Edge edge ) {
+    storeLock.writeLock().lock();
+    try {
+      graph.removeEdge( edge );
+    } finally {
+      storeLock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public Iterable<Edge> getEdges() {
+    storeLock.readLock().lock();
+    try {
+      return new LockedIterable<Edge>( graph.getEdges() );
+    } finally {
+      storeLock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public Iterable<Edge> getEdges( String key, Object value ) {
+    storeLock.readLock().lock();
+    try {
+      return new LockedIterable<Edge>( graph.getEdges( key, value ) );
+    } finally {
+      storeLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns a query over this graph, so that it iterates the backing store under the read lock
+   */
+  @Override
+  public GraphQuery query() {
+    return new DefaultGraphQuery( this );
+  }
+
+  @Override
+  public void shutdown() {
+    storeLock.writeLock().lock();
+    try {
+      graph.shutdown();
+    } finally {
+      storeLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Iterates elements of the backing store, holding the read lock for each step
+   */
+  private class LockedIterable<T> implements Iterable<T> {
+
+    private final Iterable<T> elements;
+
+    LockedIterable( Iterable<T> elements ) {
+      this.elements = elements;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+      final Lock readLock = storeLock.readLock();
+      readLock.lock();
+      final Iterator<T> iterator;
+      try {
+        iterator = elements.iterator();
+      } finally {
+        readLock.unlock();
+      }
+      return new Iterator<T>() {
+        @Override
+        public boolean hasNext() {
+          readLock.lock();
+          try {
+            return iterator.hasNext();
+          } finally {
+            readLock.unlock();
+          }
+        }
+
+        @Override
+        public T next() {
+          readLock.lock();
+          try {
+            return iterator.next();
+          } finally {
+            readLock.unlock();
+          }
+        }
+
+        @Override
+        public void remove() {
+          throw new UnsupportedOperationException();
+        }
+      };
+    }
+  }
+}
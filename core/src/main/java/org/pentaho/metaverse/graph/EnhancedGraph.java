@@ -0,0 +1,370 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.graph;
+
+import com.google.common.base.Function;
+import com.google.common.base.Predicate;
+import com.google.common.collect.Iterables;
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Element;
+import com.tinkerpop.blueprints.Features;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.GraphQuery;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.VertexQuery;
+import com.tinkerpop.blueprints.util.DefaultGraphQuery;
+import com.tinkerpop.blueprints.util.DefaultVertexQuery;
+import org.pentaho.dictionary.DictionaryConst;
+import org.pentaho.dictionary.DictionaryHelper;
+import org.pentaho.metaverse.util.MetaverseUtil;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A read-only view of a graph that adds the properties {@link MetaverseUtil#enhanceVertex(Vertex)} and
+ * {@link MetaverseUtil#enhanceEdge(Edge)} would write: the localized type of vertices and edges, and the category,
+ * localized category and color of vertices.
+ * <p/>
+ * The properties are worked out from the type of an element when they are read, and the localized names are cached
+ * per locale, so wrapping a graph costs nothing up front and the underlying graph is never written to. Anything that
+ * would modify the graph throws an {@link UnsupportedOperationException}.
+ * <p/>
+ * {@link #getVertices(String, Object)} and {@link #getEdges(String, Object)} accept derived keys too. As the
+ * underlying graph knows nothing of those properties, looking one up goes through every vertex (or edge) rather than
+ * through an index.
+ */
+public class EnhancedGraph implements Graph {
+
+  private static final String READ_ONLY = "The enhanced metaverse graph is read-only";
+
+  private static final String[] VERTEX_KEYS = {
+    DictionaryConst.PROPERTY_TYPE_LOCALIZED,
+    DictionaryConst.PROPERTY_CATEGORY,
+    DictionaryConst.PROPERTY_COLOR,
+    DictionaryConst.PROPERTY_CATEGORY_LOCALIZED };
+
+  private static final String[] EDGE_KEYS = { DictionaryConst.PROPERTY_TYPE_LOCALIZED };
+
+  private final Graph graph;
+
+  private final Function<Vertex, Vertex> wrapVertex = new Function<Vertex, Vertex>() {
+    @Override
+    public Vertex apply( Vertex vertex ) {
+      return wrap( vertex );
+    }
+  };
+
+  private final Function<Edge, Edge> wrapEdge = new Function<Edge, Edge>() {
+    @Override
+    public Edge apply( Edge edge ) {
+      return wrap( edge );
+    }
+  };
+
+  /**
+   * Creates an enhanced view of a graph
+   *
+   * @param graph The underlying graph
+   */
+  public EnhancedGraph( Graph graph ) {
+    this.graph = graph;
+  }
+
+  /**
+   * Returns the graph this is a view of
+   *
+   * @return the underlying graph
+   */
+  public Graph getBaseGraph() {
+    return graph;
+  }
+
+  protected Vertex wrap( Vertex vertex ) {
+    return vertex == null ? null : new EnhancedVertex( vertex );
+  }
+
+  protected Edge wrap( Edge edge ) {
+    return edge == null ? null : new EnhancedEdge( edge );
+  }
+
+  @Override
+  public Features getFeatures() {
+    return graph.getFeatures();
+  }
+
+  @Override
+  public Vertex addVertex( Object id ) {
+    throw new UnsupportedOperationException( READ_ONLY );
+  }
+
+  @Override
+  public Vertex getVertex( Object id ) {
+    return wrap( graph.getVertex( id ) );
+  }
+
+  @Override
+  public void removeVertex( Vertex vertex ) {
+    throw new UnsupportedOperationException( READ_ONLY );
+  }
+
+  @Override
+  public Iterable<Vertex> getVertices() {
+    return Iterables.transform( graph.getVertices(), wrapVertex );
+  }
+
+  @Override
+  public Iterable<Vertex> getVertices( String key, Object value ) {
+    if ( isDerived( VERTEX_KEYS, key ) ) {
+      return Iterables.filter( getVertices(), new PropertyEquals<Vertex>( key, value ) );
+    }
+    return Iterables.transform( graph.getVertices( key, value ), wrapVertex );
+  }
+
+  @Override
+  public Edge addEdge( Object id, Vertex outVertex, Vertex inVertex, String label ) {
+    throw new UnsupportedOperationException( READ_ONLY );
+  }
+
+  @Override
+  public Edge getEdge( Object id ) {
+    return wrap( graph.getEdge( id ) );
+  }
+
+  @Override
+  public void removeEdge( Edge edge ) {
+    throw new UnsupportedOperationException( READ_ONLY );
+  }
+
+  @Override
+  public Iterable<Edge> getEdges() {
+    return Iterables.transform( graph.getEdges(), wrapEdge );
+  }
+
+  @Override
+  public Iterable<Edge> getEdges( String key, Object value ) {
+    if ( isDerived( EDGE_KEYS, key ) ) {
+      return Iterables.filter( getEdges(), new PropertyEquals<Edge>( key, value ) );
+    }
+    return Iterables.transform( graph.getEdges( key, value ), wrapEdge );
+  }
+
+  private static boolean isDerived( String[] derivedKeys, String key ) {
+    return Arrays.asList( derivedKeys ).contains( key );
+  }
+
+  @Override
+  public GraphQuery query() {
+    return new DefaultGraphQuery( this );
+  }
+
+  @Override
+  public void shutdown() {
+    // the view does not own the underlying graph
+  }
+
+  @Override
+  public String toString() {
+    return "enhanced[" + graph + "]";
+  }
+
+  /**
+   * Matches the elements of the view whose property has the given value
+   */
+  private static final class PropertyEquals<E extends Element> implements Predicate<E> {
+    private final String key;
+    private final Object value;
+
+    PropertyEquals( String key, Object value ) {
+      this.key = key;
+      this.value = value;
+    }
+
+    @Override
+    public boolean apply( E element ) {
+      Object property = element.getProperty( key );
+      return value == null ? property == null : value.equals( property );
+    }
+  }
+
+  /**
+   * An element of the view, which adds derived properties to those of the underlying element
+   */
+  private abstract class EnhancedElement<E extends Element> implements Element {
+
+    protected final E element;
+
+    EnhancedElement( E element ) {
+      this.element = element;
+    }
+
+    /**
+     * Returns the value of a derived property
+     *
+     * @param key the property key
+     * @return the value, null if the property is not derived or has no value
+     */
+    protected abstract Object getDerivedProperty( String key );
+
+    /**
+     * Returns the keys of the properties this kind of element derives
+     */
+    protected abstract String[] getDerivedKeys();
+
+    @Override
+    @SuppressWarnings( "unchecked" )
+    public <T> T getProperty( String key ) {
+      Object value = getDerivedProperty( key );
+      return value != null ? (T) value : (T) element.getProperty( key );
+    }
+
+    @Override
+    public Set<String> getPropertyKeys() {
+      Set<String> keys = new HashSet<String>( element.getPropertyKeys() );
+      for ( String key : getDerivedKeys() ) {
+        if ( getDerivedProperty( key ) != null ) {
+          keys.add( key );
+        }
+      }
+      return keys;
+    }
+
+    @Override
+    public void setProperty( String key, Object value ) {
+      throw new UnsupportedOperationException( READ_ONLY );
+    }
+
+    @Override
+    public <T> T removeProperty( String key ) {
+      throw new UnsupportedOperationException( READ_ONLY );
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException( READ_ONLY );
+    }
+
+    @Override
+    public Object getId() {
+      return element.getId();
+    }
+
+    @Override
+    public boolean equals( Object o ) {
+      return o != null && getClass() == o.getClass()
+        && element.equals( ( (EnhancedElement<?>) o ).element );
+    }
+
+    @Override
+    public int hashCode() {
+      return element.hashCode();
+    }
+
+    @Override
+    public String toString() {
+      return element.toString();
+    }
+  }
+
+  private final class EnhancedVertex extends EnhancedElement<Vertex> implements Vertex {
+
+    EnhancedVertex( Vertex vertex ) {
+      super( vertex );
+    }
+
+    @Override
+    protected Object getDerivedProperty( String key ) {
+      if ( DictionaryConst.PROPERTY_TYPE_LOCALIZED.equals( key ) ) {
+        return MetaverseUtil.getLocalizedNodeType( getType() );
+      } else if ( DictionaryConst.PROPERTY_CATEGORY.equals( key ) ) {
+        return DictionaryHelper.getCategoryForType( getType() );
+      } else if ( DictionaryConst.PROPERTY_COLOR.equals( key ) ) {
+        return DictionaryHelper.getColorForCategory( DictionaryHelper.getCategoryForType( getType() ) );
+      } else if ( DictionaryConst.PROPERTY_CATEGORY_LOCALIZED.equals( key ) ) {
+        return MetaverseUtil.getLocalizedCategory( DictionaryHelper.getCategoryForType( getType() ) );
+      }
+      return null;
+    }
+
+    @Override
+    protected String[] getDerivedKeys() {
+      return VERTEX_KEYS;
+    }
+
+    private String getType() {
+      return element.getProperty( DictionaryConst.PROPERTY_TYPE );
+    }
+
+    @Override
+    public Iterable<Edge> getEdges( Direction direction, String... labels ) {
+      return Iterables.transform( element.getEdges( direction, labels ), wrapEdge );
+    }
+
+    @Override
+    public Iterable<Vertex> getVertices( Direction direction, String... labels ) {
+      return Iterables.transform( element.getVertices( direction, labels ), wrapVertex );
+    }
+
+    @Override
+    public VertexQuery query() {
+      return new DefaultVertexQuery( this );
+    }
+
+    @Override
+    public Edge addEdge( String label, Vertex inVertex ) {
+      throw new UnsupportedOperationException( READ_ONLY );
+    }
+  }
+
+  private final class EnhancedEdge extends EnhancedElement<Edge> implements Edge {
+
+    EnhancedEdge( Edge edge ) {
+      super( edge );
+    }
+
+    @Override
+    protected Object getDerivedProperty( String key ) {
+      if ( DictionaryConst.PROPERTY_TYPE_LOCALIZED.equals( key ) ) {
+        return MetaverseUtil.getLocalizedLinkType( element.getLabel() );
+      }
+      return null;
+    }
+
+    @Override
+    protected String[] getDerivedKeys() {
+      return EDGE_KEYS;
+    }
+
+    @Override
+    public Vertex getVertex( Direction direction ) {
+      return wrap( element.getVertex( direction ) );
+    }
+
+    @Override
+    public String getLabel() {
+      return element.getLabel();
+    }
+  }
+}
@@ -29,81 +29,244 @@ import com.tinkerpop.blueprints.Vertex;
 import org.pentaho.dictionary.DictionaryConst;
 import org.pentaho.metaverse.api.IGraphWriter;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.Iterator;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 /**
- * The GraphMLWriter class contains methods for writing a metaverse graph model in GraphML format
- * 
+ * The GraphCsvWriter class writes a metaverse graph as CSV, one line per edge, describing the edge and the vertices at
+ * both of its ends.
+ * <p/>
+ * The CSV is written as UTF-8 through one buffer, and the stream is flushed, not closed. String values are always
+ * enclosed in double quotes, with the quotes they contain doubled; other values are only enclosed when they contain a
+ * delimiter, a quote or a line break.
  */
 public class GraphCsvWriter implements IGraphWriter {
 
-  private static final String CSV_ENCLOSURE = "\"";
+  /**
+   * The columns that can be written, in their default order
+   */
+  public enum Column {
+    SOURCE_ID( "SourceId", Direction.OUT, null ),
+    SOURCE_VIRTUAL( "SourceVirtual", Direction.OUT, DictionaryConst.NODE_VIRTUAL ),
+    SOURCE_FILE_TYPE( "SourceFileType", Direction.OUT, DictionaryConst.PROPERTY_TYPE ),
+    SOURCE_NAME( "SourceName", Direction.OUT, DictionaryConst.PROPERTY_NAME ),
+    SOURCE_AUTHOR( "SourceAuthor", Direction.OUT, DictionaryConst.PROPERTY_AUTHOR ),
+    SOURCE_MODIFIED( "SourceModified", Direction.OUT, DictionaryConst.PROPERTY_LAST_MODIFIED ),
+    LINK_TYPE( "LinkType", null, null ),
+    DESTINATION_ID( "DestinationId", Direction.IN, null ),
+    DESTINATION_VIRTUAL( "DestinationVirtual", Direction.IN, DictionaryConst.NODE_VIRTUAL ),
+    DESTINATION_FILE_TYPE( "DestinationFileType", Direction.IN, DictionaryConst.PROPERTY_TYPE ),
+    DESTINATION_NAME( "DestinationName", Direction.IN, DictionaryConst.PROPERTY_NAME ),
+    DESTINATION_AUTHOR( "DestinationAuthor", Direction.IN, DictionaryConst.PROPERTY_AUTHOR ),
+    DESTINATION_MODIFIED( "DestinationModified", Direction.IN, DictionaryConst.PROPERTY_LAST_MODIFIED );
+
+    private final String header;
+    private final Direction end;
+    private final String property;
+
+    Column( String header, Direction end, String property ) {
+      this.header = header;
+      this.end = end;
+      this.property = property;
+    }
+
+    /**
+     * Gets the name of the column in the header line
+     *
+     * @return the header
+     */
+    public String getHeader() {
+      return header;
+    }
+
+    /**
+     * Gets the column with the given header
+     *
+     * @param header the header, in any case
+     * @return the column
+     * @throws IllegalArgumentException if there is no such column
+     */
+    public static Column forHeader( String header ) {
+      for ( Column column : values() ) {
+        if ( column.header.equalsIgnoreCase( header ) ) {
+          return column;
+        }
+      }
+      throw new IllegalArgumentException( "Unknown CSV column: " + header );
+    }
+
+    Object getValue( Edge edge, Vertex source, Vertex destination ) {
+      if ( end == null ) {
+        return edge.getLabel();
+      }
+      Vertex vertex = end == Direction.OUT ? source : destination;
+      return property == null ? vertex.getId() : vertex.getProperty( property );
+    }
+  }
+
+  public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+  private static final char DELIMITER = ',';
+  private static final char ENCLOSURE = '"';
+  private static final char LINE_SEPARATOR = '\n';
+
+  private List<Column> columns = Collections.unmodifiableList( Arrays.asList( Column.values() ) );
+  private int bufferSize = DEFAULT_BUFFER_SIZE;
 
   @Override
   public void outputGraph( Graph graph, OutputStream out ) throws IOException {
+    Column[] selected = columns.toArray( new Column[ columns.size() ] );
+    boolean needsSource = false;
+    boolean needsDestination = false;
+    for ( Column column : selected ) {
+      needsSource |= column.end == Direction.OUT;
+      needsDestination |= column.end == Direction.IN;
+    }
 
-    Iterable<Edge> iterable = graph.getEdges();
-    Iterator<Edge> it = iterable.iterator();
-    writeCSVField( "SourceId", out, true, false );
-    writeCSVField( "SourceVirtual", out, false, false );
-    writeCSVField( "SourceFileType", out, false, false );
-    writeCSVField( "SourceName", out, false, false );
-    writeCSVField( "SourceAuthor", out, false, false );
-    writeCSVField( "SourceModified", out, false, false );
-    writeCSVField( "LinkType", out, false, false );
-    writeCSVField( "DestinationId", out, false, false );
-    writeCSVField( "DestinationVirtual", out, false, false );
-    writeCSVField( "DestinationFileType", out, false, false );
-    writeCSVField( "DestinationName", out, false, false );
-    writeCSVField( "DestinationAuthor", out, false, false );
-    writeCSVField( "DestinationModified", out, false, true );
-    while ( it.hasNext() ) {
-      Edge edge = it.next();
-      Vertex fromV = edge.getVertex( Direction.OUT );
-      Vertex toV = edge.getVertex( Direction.IN );
-      writeCSVField( fromV.getId(), out, true, false );
-      writeCSVField( fromV.getProperty( DictionaryConst.NODE_VIRTUAL ), out, false, false );
-      writeCSVField( fromV.getProperty( DictionaryConst.PROPERTY_TYPE ), out, false, false );
-      writeCSVField( fromV.getProperty( DictionaryConst.PROPERTY_NAME ), out, false, false );
-      writeCSVField( fromV.getProperty( DictionaryConst.PROPERTY_AUTHOR ), out, false, false );
-      writeCSVField( fromV.getProperty( DictionaryConst.PROPERTY_LAST_MODIFIED ), out, false, false );
-      writeCSVField( edge.getLabel(), out, false, false );
-      writeCSVField( toV.getId(), out, false, false );
-      writeCSVField( toV.getProperty( DictionaryConst.NODE_VIRTUAL ), out, false, false );
-      writeCSVField( toV.getProperty( DictionaryConst.PROPERTY_TYPE ), out, false, false );
-      writeCSVField( toV.getProperty( DictionaryConst.PROPERTY_NAME ), out, false, false );
-      writeCSVField( toV.getProperty( DictionaryConst.PROPERTY_AUTHOR ), out, false, false );
-      writeCSVField( toV.getProperty( DictionaryConst.PROPERTY_LAST_MODIFIED ), out, false, true );
+    // the writer holds one encoder for the whole graph, and is flushed rather than closed to leave the stream open
+    Writer writer = new BufferedWriter( new OutputStreamWriter( out, StandardCharsets.UTF_8 ), bufferSize );
+    for ( int i = 0; i < selected.length; i++ ) {
+      if ( i > 0 ) {
+        writer.write( DELIMITER );
+      }
+      writeField( writer, selected[ i ].getHeader() );
     }
+    writer.write( LINE_SEPARATOR );
 
+    for ( Edge edge : graph.getEdges() ) {
+      Vertex source = needsSource ? edge.getVertex( Direction.OUT ) : null;
+      Vertex destination = needsDestination ? edge.getVertex( Direction.IN ) : null;
+      for ( int i = 0; i < selected.length; i++ ) {
+        if ( i > 0 ) {
+          writer.write( DELIMITER );
+        }
+        writeField( writer, selected[ i ].getValue( edge, source, destination ) );
+      }
+      writer.write( LINE_SEPARATOR );
+    }
+    writer.flush();
   }
 
   /**
-   * Writes out a line of CSV
+   * Gets the columns written, in order
+   *
+   * @return the columns
+   */
+  public List<Column> getColumns() {
+    return columns;
+  }
+
+  /**
+   * Sets the columns to write, in order
+   *
+   * @param columns the columns; null or empty for all of them
+   */
+  public void setColumns( List<Column> columns ) {
+    this.columns = columns == null || columns.isEmpty()
+      ? Collections.unmodifiableList( Arrays.asList( Column.values() ) )
+      : Collections.unmodifiableList( new ArrayList<>( columns ) );
+  }
+
+  /**
+   * Sets the columns to write, in order, by their headers
+   *
+   * @param headers a comma-separated list of headers (such as "SourceName,LinkType,DestinationName"); null or empty
+   *                for all columns
+   * @throws IllegalArgumentException if a header is not the header of a column
+   */
+  public void setColumnNames( String headers ) {
+    List<Column> selected = new ArrayList<>();
+    if ( headers != null ) {
+      for ( String header : headers.split( "," ) ) {
+        if ( !header.trim().isEmpty() ) {
+          selected.add( Column.forHeader( header.trim() ) );
+        }
+      }
+    }
+    setColumns( selected );
+  }
+
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
+  /**
+   * Sets the size, in characters, of the buffer the CSV is written through
+   *
+   * @param bufferSize the size; 0 or less for the default
+   */
+  public void setBufferSize( int bufferSize ) {
+    this.bufferSize = bufferSize > 0 ? bufferSize : DEFAULT_BUFFER_SIZE;
+  }
+
+  /**
+   * Writes out a field of CSV
    * @param obj The object (String, Date etc) to write out
    * @param out The output stream to write to
    * @param isFirst Is this the first field on the line
    * @param isLast Is this the last field on the line
    * @throws IOException If the output stream cannot be written to
+   * @deprecated {@link #outputGraph(Graph, OutputStream)} no longer writes its fields one by one to the stream
    */
+  @Deprecated
   protected void writeCSVField( Object obj, OutputStream out, boolean isFirst, boolean isLast ) throws IOException {
+    Writer writer = new OutputStreamWriter( out, StandardCharsets.UTF_8 );
     if ( !isFirst ) {
-      out.write( ",".getBytes() );
+      writer.write( DELIMITER );
+    }
+    writeField( writer, obj );
+    if ( isLast ) {
+      writer.write( LINE_SEPARATOR );
     }
-    if ( obj != null ) {
-      if ( obj instanceof String ) {
-        out.write( CSV_ENCLOSURE.getBytes() );
-        out.write( obj.toString().replace( CSV_ENCLOSURE, "\\\"" ).getBytes() );
-        out.write( CSV_ENCLOSURE.getBytes() );
+    writer.flush();
+  }
+
+  private static void writeField( Writer writer, Object value ) throws IOException {
+    if ( value == null ) {
+      return;
+    }
+    if ( value instanceof String ) {
+      writeEnclosed( writer, (String) value );
+    } else {
+      String text = value.toString();
+      if ( needsEnclosure( text ) ) {
+        writeEnclosed( writer, text );
       } else {
-        out.write( obj.toString().getBytes() );
+        writer.write( text );
       }
     }
-    if ( isLast ) {
-      out.write( "\n".getBytes() );
+  }
+
+  private static boolean needsEnclosure( String text ) {
+    for ( int i = 0; i < text.length(); i++ ) {
+      char c = text.charAt( i );
+      if ( c == DELIMITER || c == ENCLOSURE || c == '\n' || c == '\r' ) {
+        return true;
+      }
     }
+    return false;
   }
 
+  private static void writeEnclosed( Writer writer, String text ) throws IOException {
+    writer.write( ENCLOSURE );
+    int start = 0;
+    for ( int i = 0; i < text.length(); i++ ) {
+      if ( text.charAt( i ) == ENCLOSURE ) {
+        // write up to and including the quote, then double it
+        writer.write( text, start, i + 1 - start );
+        writer.write( ENCLOSURE );
+        start = i + 1;
+      }
+    }
+    writer.write( text, start, text.length() - start );
+    writer.write( ENCLOSURE );
+  }
 }
@@ -30,18 +30,42 @@ import java.io.OutputStream;
 
 /**
  * The GraphMLWriter class contains methods for writing a metaverse graph model in GraphML format
- * 
+ * <p/>
+ * By default the graph is streamed: the key schema is computed in one pass over the graph, then the vertices and
+ * edges are written straight to the stream in the order the graph iterates them. Normalized output sorts the elements
+ * and their properties (and indents them), so that the same graph always gives the same document, but it holds every
+ * element of the graph in sorted lists before writing the first one.
  */
 public class GraphMLWriter implements IGraphWriter {
 
+  private boolean normalize = false;
+
   @Override
   public void outputGraph( Graph graph, OutputStream graphMLOutputStream ) throws IOException {
     com.tinkerpop.blueprints.util.io.graphml.GraphMLWriter writer =
         new com.tinkerpop.blueprints.util.io.graphml.GraphMLWriter( graph );
 
-    writer.setNormalize( true );
+    writer.setNormalize( normalize );
     writer.outputGraph( graphMLOutputStream );
     //    com.tinkerpop.blueprints.util.io.graphml.GraphMLWriter.outputGraph( graph, graphMLOutputStream );
   }
 
+  /**
+   * Tells whether the output is normalized (sorted and indented) rather than streamed
+   *
+   * @return true if the output is normalized
+   */
+  public boolean isNormalize() {
+    return normalize;
+  }
+
+  /**
+   * Sets whether the output is normalized, so that exports of the same graph can be compared with each other
+   *
+   * @param normalize true to sort (and indent) the output, false to stream it in iteration order
+   */
+  public void setNormalize( boolean normalize ) {
+    this.normalize = normalize;
+  }
+
 }
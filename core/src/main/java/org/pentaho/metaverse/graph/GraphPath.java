@@ -29,15 +29,44 @@ import com.tinkerpop.blueprints.Vertex;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 /**
  * A path of vertex of edges. This is used by the MetaverseReader to answer searches by external callers.
+ * <p/>
+ * A path is a chain of steps, each pointing back at the step before it, so paths that start the same way share their
+ * common prefix: cloning or extending a path takes constant time and memory, whatever its length.
  * @author jdixon
  *
  */
 public class GraphPath {
 
-  private List<Object> path = new ArrayList<Object>();
+  /**
+   * A vertex or edge in a path, and the rest of the path before it
+   */
+  static final class Step {
+
+    final Step previous;
+
+    final Object element;
+
+    final int length;
+
+    Step( Step previous, Object element ) {
+      this.previous = previous;
+      this.element = element;
+      this.length = previous == null ? 1 : previous.length + 1;
+    }
+  }
+
+  private Step last;
+
+  public GraphPath() {
+  }
+
+  private GraphPath( Step last ) {
+    this.last = last;
+  }
 
   /**
    * Adds a vertex to the path.
@@ -45,7 +74,7 @@ public class GraphPath {
    * @param vertex The vertex to add
    */
   public void addVertex( Vertex vertex ) {
-    path.add( vertex );
+    add( vertex );
   }
 
   /**
@@ -54,7 +83,17 @@ public class GraphPath {
    * @param edge The edge to add.
    */
   public void addEdge( Edge edge ) {
-    path.add( edge );
+    add( edge );
+  }
+
+  /**
+   * Returns a new path made of this path followed by a vertex or an edge, leaving this path as it is
+   *
+   * @param element the vertex or edge
+   * @return the longer path
+   */
+  public GraphPath extend( Object element ) {
+    return new GraphPath( new Step( last, element ) );
   }
 
   /**
@@ -63,12 +102,25 @@ public class GraphPath {
    * @return The vertex or edge removed
    */
   public Object pop() {
-    Object obj = path.remove( path.size() - 1 );
+    if ( last == null ) {
+      throw new IndexOutOfBoundsException();
+    }
+    Object obj = last.element;
+    last = last.previous;
     return obj;
   }
 
+  /**
+   * Returns the vertex or edge at the end of the path
+   *
+   * @return the last vertex or edge, null if the path is empty
+   */
+  public Object getLast() {
+    return last == null ? null : last.element;
+  }
+
   public int getLength() {
-    return path.size();
+    return last == null ? 0 : last.length;
   }
 
   /**
@@ -77,11 +129,7 @@ public class GraphPath {
    * @return The cloned path.
    */
   public GraphPath clone() {
-    GraphPath clone = new GraphPath();
-    for ( Object o : path ) {
-      clone.add( o );
-    }
-    return clone;
+    return new GraphPath( last );
   }
 
   /**
@@ -90,7 +138,24 @@ public class GraphPath {
    * @param o The object to add
    */
   protected void add( Object o ) {
-    path.add( o );
+    last = new Step( last, o );
+  }
+
+  /**
+   * Returns the vertices and edges of the path, from the first to the last
+   *
+   * @return the elements of the path
+   */
+  public List<Object> getElements() {
+    Object[] elements = new Object[ getLength() ];
+    for ( Step step = last; step != null; step = step.previous ) {
+      elements[ step.length - 1 ] = step.element;
+    }
+    List<Object> list = new ArrayList<Object>( elements.length );
+    for ( Object element : elements ) {
+      list.add( element );
+    }
+    return list;
   }
 
   /**
@@ -99,38 +164,38 @@ public class GraphPath {
    * @param g The graph to add this path to.
    */
   public void addToGraph( Graph g ) {
+    addToGraph( g, null );
+  }
 
-    for ( Object item : path ) {
+  /**
+   * Adds this path to a graph, stopping at the first step already added by another path that shares it
+   *
+   * @param g     The graph to add this path to
+   * @param added The steps already added, compared by identity; null to add the whole path
+   */
+  void addToGraph( Graph g, Set<Step> added ) {
+    for ( Step step = last; step != null; step = step.previous ) {
+      if ( added != null && !added.add( step ) ) {
+        return;
+      }
+      Object item = step.element;
       if ( item instanceof Vertex ) {
-        Vertex vertex = (Vertex) item;
-        Vertex v = g.getVertex( vertex.getId() );
-        if ( v == null ) {
-          v = GraphUtil.cloneVertexIntoGraph( vertex, g );
-        }
+        GraphUtil.cloneVertexIntoGraph( (Vertex) item, g );
       } else if ( item instanceof Edge ) {
         Edge edge = (Edge) item;
-        Edge e = g.getEdge( edge.getId() );
-        if ( e == null ) {
-          Vertex v1 = g.getVertex( edge.getVertex( Direction.OUT ) );
-          if ( v1 == null ) {
-            v1 = GraphUtil.cloneVertexIntoGraph( edge.getVertex( Direction.OUT ), g );
-          }
-          Vertex v2 = g.getVertex( edge.getVertex( Direction.IN ) );
-          if ( v2 == null ) {
-            v2 = GraphUtil.cloneVertexIntoGraph( edge.getVertex( Direction.IN ), g );
-          }
-          e = g.addEdge( edge.getId(), v1, v2, edge.getLabel() );
+        if ( g.getEdge( edge.getId() ) == null ) {
+          Vertex v1 = GraphUtil.cloneVertexIntoGraph( edge.getVertex( Direction.OUT ), g );
+          Vertex v2 = GraphUtil.cloneVertexIntoGraph( edge.getVertex( Direction.IN ), g );
+          g.addEdge( edge.getId(), v1, v2, edge.getLabel() );
         }
       }
-
     }
-
   }
 
   @Override
   public String toString() {
     StringBuilder str = new StringBuilder();
-    for ( Object obj : path ) {
+    for ( Object obj : getElements() ) {
       if ( obj instanceof Vertex ) {
         if ( str.length() > 0 ) {
           str.append( "->" );
@@ -0,0 +1,398 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.graph;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import org.pentaho.dictionary.DictionaryConst;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds the paths from a vertex to the vertices of given types, as {@link BlueprintsGraphMetaverseReader#search} does.
+ * <p/>
+ * The traversal goes upstream from the start vertex along incoming edges, then downstream along outgoing edges, going
+ * back upstream from every downstream vertex to pick up the structure around it. It is a depth-first walk driven by an
+ * explicit stack rather than by recursion, so long derivation chains cannot overflow the call stack. Paths share their
+ * common prefixes (see {@link GraphPath}), and visited vertices are tracked by dense indexes. A vertex is expanded at
+ * most once upstream and once downstream in each pass, so a chain of n vertices takes time linear in n.
+ * <p/>
+ * The walk can be bounded by a maximum depth (in edges from the start vertex) and a maximum number of results, and
+ * restricted to one direction or to edges with given labels. A traversal is not thread-safe; use one per search.
+ */
+public class GraphTraversal {
+
+  /**
+   * A vertex being expanded, with the path that reached it and the edges still to follow
+   */
+  private static final class Frame {
+
+    final int index;
+
+    final GraphPath path;
+
+    final int depth;
+
+    final Direction direction;
+
+    Iterator<Edge> edges;
+
+    Direction edgeDirection;
+
+    boolean upstream;
+
+    Frame( int index, GraphPath path, int depth, Direction direction, Iterator<Edge> edges ) {
+      this.index = index;
+      this.path = path;
+      this.depth = depth;
+      this.direction = direction;
+      this.edges = edges;
+      this.edgeDirection = direction;
+    }
+  }
+
+  private static final int NOT_EXPANDED = Integer.MAX_VALUE;
+
+  private Direction direction = Direction.BOTH;
+
+  private int maxDepth;
+
+  private int maxResults;
+
+  private String[] edgeLabels;
+
+  private Collection<String> resultTypes;
+
+  private boolean shortestOnly = true;
+
+  private boolean truncated;
+
+  // per-search state
+  private Map<Object, Integer> indexes;
+  private int[] doneDepths;
+  private int[] upstreamDepths;
+  private int[] downstreamDepths;
+  private BitSet onPathIn;
+  private BitSet onPathOut;
+  private Map<Object, GraphPath> results;
+  private Deque<Frame> stack;
+
+  public GraphTraversal() {
+  }
+
+  /**
+   * Constructor for a traversal with the settings of {@link BlueprintsGraphMetaverseReader#search}
+   *
+   * @param resultTypes  the types of the vertices to find paths to, null or empty for every vertex
+   * @param shortestOnly true to keep only the shortest path found to each vertex, false to keep every path
+   */
+  public GraphTraversal( Collection<String> resultTypes, boolean shortestOnly ) {
+    this.resultTypes = resultTypes;
+    this.shortestOnly = shortestOnly;
+  }
+
+  public Direction getDirection() {
+    return direction;
+  }
+
+  /**
+   * Sets which way the traversal goes from the start vertex: IN for upstream only, OUT for downstream only (with the
+   * upstream structure of every downstream vertex), BOTH for both, the default.
+   *
+   * @param direction the direction
+   */
+  public void setDirection( Direction direction ) {
+    this.direction = direction == null ? Direction.BOTH : direction;
+  }
+
+  public int getMaxDepth() {
+    return maxDepth;
+  }
+
+  /**
+   * Sets the maximum number of edges between the start vertex and the end of a path, 0 (the default) for no maximum
+   *
+   * @param maxDepth the maximum depth
+   */
+  public void setMaxDepth( int maxDepth ) {
+    this.maxDepth = Math.max( 0, maxDepth );
+  }
+
+  public int getMaxResults() {
+    return maxResults;
+  }
+
+  /**
+   * Sets the maximum number of paths a traversal finds, 0 (the default) for no maximum. The traversal stops when it is
+   * reached, see {@link #isTruncated()}.
+   *
+   * @param maxResults the maximum number of results
+   */
+  public void setMaxResults( int maxResults ) {
+    this.maxResults = Math.max( 0, maxResults );
+  }
+
+  public Collection<String> getEdgeLabels() {
+    return edgeLabels == null ? null : Arrays.asList( edgeLabels );
+  }
+
+  /**
+   * Restricts the traversal to edges with the given labels
+   *
+   * @param edgeLabels the labels of the edges to follow, null or empty to follow every edge
+   */
+  public void setEdgeLabels( Collection<String> edgeLabels ) {
+    this.edgeLabels = edgeLabels == null || edgeLabels.isEmpty()
+      ? null : edgeLabels.toArray( new String[ edgeLabels.size() ] );
+  }
+
+  public Collection<String> getResultTypes() {
+    return resultTypes;
+  }
+
+  public void setResultTypes( Collection<String> resultTypes ) {
+    this.resultTypes = resultTypes;
+  }
+
+  public boolean isShortestOnly() {
+    return shortestOnly;
+  }
+
+  public void setShortestOnly( boolean shortestOnly ) {
+    this.shortestOnly = shortestOnly;
+  }
+
+  /**
+   * Returns whether the last traversal stopped because it reached the maximum number of results
+   *
+   * @return true if some paths may be missing from the last results
+   */
+  public boolean isTruncated() {
+    return truncated;
+  }
+
+  /**
+   * Finds the paths from a vertex
+   *
+   * @param start the vertex to start from
+   * @return the paths found, in the order they were first found
+   */
+  public Collection<GraphPath> traverse( Vertex start ) {
+    truncated = false;
+    indexes = new HashMap<Object, Integer>();
+    onPathIn = new BitSet();
+    onPathOut = new BitSet();
+    results = new LinkedHashMap<Object, GraphPath>();
+    stack = new ArrayDeque<Frame>();
+    try {
+      if ( start != null ) {
+        if ( direction != Direction.OUT ) {
+          walk( start, Direction.IN );
+        }
+        if ( direction != Direction.IN && !truncated ) {
+          walk( start, Direction.OUT );
+        }
+      }
+      return new ArrayList<GraphPath>( results.values() );
+    } finally {
+      indexes = null;
+      doneDepths = null;
+      upstreamDepths = null;
+      downstreamDepths = null;
+      onPathIn = null;
+      onPathOut = null;
+      results = null;
+      stack = null;
+    }
+  }
+
+  /**
+   * Finds the paths from a vertex and adds them to a graph
+   *
+   * @param start the vertex to start from
+   * @param g     the graph to add the vertices and edges of the paths to
+   */
+  public void traverse( Vertex start, Graph g ) {
+    addToGraph( traverse( start ), g );
+  }
+
+  /**
+   * Adds paths to a graph, adding the prefixes they share only once
+   *
+   * @param paths the paths to add
+   * @param g     the graph to add them to
+   */
+  public static void addToGraph( Collection<GraphPath> paths, Graph g ) {
+    Set<GraphPath.Step> added = Collections.newSetFromMap( new IdentityHashMap<GraphPath.Step, Boolean>() );
+    for ( GraphPath path : paths ) {
+      path.addToGraph( g, added );
+    }
+  }
+
+  private void walk( Vertex start, Direction passDirection ) {
+    // each pass has its own visited vertices, the results are shared
+    doneDepths = newDepths( indexes.size() );
+    upstreamDepths = newDepths( indexes.size() );
+    downstreamDepths = newDepths( indexes.size() );
+    enter( start, new GraphPath(), 0, passDirection );
+    while ( !stack.isEmpty() && !truncated ) {
+      Frame frame = stack.peek();
+      if ( frame.edges.hasNext() ) {
+        Edge edge = frame.edges.next();
+        Vertex next = edge.getVertex( frame.edgeDirection == Direction.IN ? Direction.OUT : Direction.IN );
+        enter( next, frame.path.extend( edge ), frame.depth + 1, frame.edgeDirection );
+      } else if ( frame.direction == Direction.OUT && !frame.upstream && frame.depth > 0 ) {
+        // go upstream to find structure
+        frame.upstream = true;
+        frame.edgeDirection = Direction.IN;
+        frame.edges = edges( frame.path, Direction.IN );
+      } else {
+        stack.pop();
+        onPath( frame.direction ).clear( frame.index );
+      }
+    }
+    stack.clear();
+  }
+
+  /**
+   * Visits a vertex, records the path to it if it is a result, and pushes it to be expanded if it needs to be
+   */
+  private void enter( Vertex vertex, GraphPath pathBefore, int depth, Direction vertexDirection ) {
+    int index = index( vertex.getId() );
+    if ( onPath( vertexDirection ).get( index ) ) {
+      // a cycle
+      return;
+    }
+    boolean isTargetType = resultTypes == null
+      || resultTypes.isEmpty()
+      || resultTypes.contains( vertex.getProperty( DictionaryConst.PROPERTY_TYPE ) );
+    boolean isDone = isDone( index, depth );
+    if ( !isTargetType && isDone ) {
+      return;
+    }
+    GraphPath path = pathBefore.extend( vertex );
+    if ( isTargetType ) {
+      // this is one of our target types
+      if ( shortestOnly ) {
+        GraphPath shortestPath = results.get( vertex.getId() );
+        if ( shortestPath == null || path.getLength() < shortestPath.getLength() ) {
+          addResult( vertex.getId(), path );
+          if ( isDone ) {
+            return;
+          }
+        } else if ( isExpanded( expandedDepths( vertexDirection )[ index ], depth ) ) {
+          // it has already been expanded this way, so expanding it again would only find longer paths
+          return;
+        }
+      } else {
+        addResult( path.toString(), path );
+      }
+    }
+    doneDepths[ index ] = Math.min( doneDepths[ index ], depth );
+    int[] expandedDepths = expandedDepths( vertexDirection );
+    expandedDepths[ index ] = Math.min( expandedDepths[ index ], depth );
+    if ( maxDepth > 0 && depth >= maxDepth ) {
+      return;
+    }
+    onPath( vertexDirection ).set( index );
+    stack.push( new Frame( index, path, depth, vertexDirection, edges( path, vertexDirection ) ) );
+  }
+
+  private void addResult( Object key, GraphPath path ) {
+    if ( maxResults > 0 && results.size() >= maxResults && !results.containsKey( key ) ) {
+      truncated = true;
+    } else {
+      results.put( key, path );
+    }
+  }
+
+  private Iterator<Edge> edges( GraphPath path, Direction edgeDirection ) {
+    Vertex vertex = (Vertex) path.getLast();
+    Iterable<Edge> edges = edgeLabels == null
+      ? vertex.getEdges( edgeDirection ) : vertex.getEdges( edgeDirection, edgeLabels );
+    return edges.iterator();
+  }
+
+  private BitSet onPath( Direction vertexDirection ) {
+    return vertexDirection == Direction.IN ? onPathIn : onPathOut;
+  }
+
+  private boolean isExpanded( int expandedDepth, int depth ) {
+    return expandedDepth != NOT_EXPANDED && ( maxDepth == 0 || expandedDepth <= depth );
+  }
+
+  private int[] expandedDepths( Direction vertexDirection ) {
+    return vertexDirection == Direction.IN ? upstreamDepths : downstreamDepths;
+  }
+
+  private int index( Object id ) {
+    Integer index = indexes.get( id );
+    if ( index == null ) {
+      index = indexes.size();
+      indexes.put( id, index );
+      if ( index == doneDepths.length ) {
+        int length = index * 2;
+        doneDepths = growDepths( doneDepths, length );
+        upstreamDepths = growDepths( upstreamDepths, length );
+        downstreamDepths = growDepths( downstreamDepths, length );
+      }
+    }
+    return index;
+  }
+
+  private static int[] newDepths( int length ) {
+    int[] depths = new int[ Math.max( 16, length ) ];
+    Arrays.fill( depths, NOT_EXPANDED );
+    return depths;
+  }
+
+  private static int[] growDepths( int[] depths, int length ) {
+    int[] grown = Arrays.copyOf( depths, length );
+    Arrays.fill( grown, depths.length, length, NOT_EXPANDED );
+    return grown;
+  }
+
+  /**
+   * Without a maximum depth a vertex is done once it has been expanded. With one, it is done only if it has been
+   * expanded from no deeper than it is now, since a shallower visit can reach further.
+   */
+  private boolean isDone( int index, int depth ) {
+    int doneDepth = doneDepths[ index ];
+    return doneDepth != NOT_EXPANDED && ( maxDepth == 0 || doneDepth <= depth );
+  }
+
+}
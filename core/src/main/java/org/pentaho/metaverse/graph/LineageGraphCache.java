@@ -0,0 +1,504 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.graph;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Element;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import org.pentaho.metaverse.messages.Messages;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * The map behind {@link LineageGraphMap}: document content objects (transformations) to the Future of their lineage
+ * graph. It holds at most {@link #getMaxEntries()} graphs whose estimated size adds up to at most
+ * {@link #getMaxBytes()}, evicting the least recently used ones first.
+ * <p/>
+ * A graph still being built is never evicted, so a client asking for the lineage of a transformation whose analysis
+ * is in flight always finds it. Each graph is weighed once, when it is put if its analysis has already completed, or
+ * else when the analysis completes ({@link #completed(Future)}, which {@link LineageGraphCompletionService} calls for
+ * every analysis it runs). The estimated sizes are kept as a running total, and graphs are only evicted when a graph
+ * is put or weighed, never when one is read. The limits may be exceeded while many analyses are in flight.
+ * <p/>
+ * An evicted graph is gone: asking for it again is a miss, which is logged as a warning. The keys of evicted graphs
+ * are remembered (weakly, and compared by identity) so that {@link #wasEvicted(Object)} can tell such a miss from a
+ * key that never had a graph, and {@link #getOrRebuild(Object, Callable)} can have the graph built again.
+ * <p/>
+ * The map is thread-safe. Its views (entry set, key set and values) are snapshots.
+ */
+public class LineageGraphCache extends AbstractMap<Object, Future<Graph>> {
+
+  public static final int DEFAULT_MAX_ENTRIES = 100;
+
+  public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+  /**
+   * Estimated footprint of a vertex, an edge and a property of either, not counting the characters of its strings
+   */
+  static final long VERTEX_BYTES = 256;
+  static final long EDGE_BYTES = 128;
+  static final long PROPERTY_BYTES = 64;
+
+  /**
+   * The number of evicted keys remembered, on top of them being dropped once they are no longer referenced
+   */
+  static final int MAX_EVICTED_KEYS = 1000;
+
+  private static final Logger log = LoggerFactory.getLogger( LineageGraphCache.class );
+
+  private static class Entry {
+    private final Future<Graph> future;
+
+    /**
+     * Estimated size of the graph, or -1 until the analysis has completed and the graph has been weighed
+     */
+    private long bytes = -1;
+
+    /**
+     * Whether the graph is being weighed, so that it is only weighed once
+     */
+    private boolean weighing;
+
+    /**
+     * Whether the entry is still in the map
+     */
+    private boolean present = true;
+
+    Entry( Future<Graph> future ) {
+      this.future = future;
+    }
+  }
+
+  /**
+   * Entries in access order, guarded by this
+   */
+  private final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<Object, Entry>( 16, 0.75f, true );
+
+  /**
+   * The entries whose graph has not been weighed yet, by the Future of the graph, guarded by this
+   */
+  private final Map<Future<?>, Entry> unweighed = new IdentityHashMap<Future<?>, Entry>();
+
+  /**
+   * The keys whose evicted graph is being built again, compared by identity, guarded by this
+   */
+  private final Set<Object> rebuilding = Collections.newSetFromMap( new IdentityHashMap<Object, Boolean>() );
+
+  private int maxEntries = DEFAULT_MAX_ENTRIES;
+
+  private long maxBytes = DEFAULT_MAX_BYTES;
+
+  private long totalBytes;
+
+  private long hits;
+
+  private long misses;
+
+  private long evictions;
+
+  private long evictedBytes;
+
+  private long evictedMisses;
+
+  /**
+   * The keys of evicted graphs that are still referenced elsewhere
+   */
+  private final Cache<Object, Boolean> evictedKeys =
+    CacheBuilder.newBuilder().weakKeys().maximumSize( MAX_EVICTED_KEYS ).build();
+
+  public LineageGraphCache() {
+  }
+
+  @Override
+  public synchronized Future<Graph> get( Object key ) {
+    Entry entry = entries.get( key );
+    if ( entry == null ) {
+      misses++;
+      if ( key != null && evictedKeys.getIfPresent( key ) != null ) {
+        evictedMisses++;
+        log.warn( Messages.getString( "WARNING.LineageGraphCache.Evicted", String.valueOf( key ) ) );
+      }
+    } else {
+      hits++;
+    }
+    return entry == null ? null : entry.future;
+  }
+
+  /**
+   * Returns the Future of the key's graph, as {@link #get(Object)} does. If the key's graph was evicted, the given task
+   * is run to build it again, and is expected to put the new Future in the map. Of the callers asking for the same
+   * evicted key at the same time, only one runs the task; the others wait for it and get the Future it put.
+   *
+   * @param key     the key, whose graph is built again if it has been evicted
+   * @param rebuild the task that builds the graph again and puts its Future in the map
+   * @return the Future of the key's graph, or null if there is none
+   * @throws Exception if the task fails
+   */
+  public Future<Graph> getOrRebuild( Object key, Callable<?> rebuild ) throws Exception {
+    synchronized ( this ) {
+      Future<Graph> future = get( key );
+      try {
+        while ( future == null && rebuilding.contains( key ) ) {
+          wait();
+          Entry entry = entries.get( key );
+          future = entry == null ? null : entry.future;
+        }
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+        return null;
+      }
+      if ( future != null || !wasEvicted( key ) ) {
+        return future;
+      }
+      rebuilding.add( key );
+    }
+    try {
+      rebuild.call();
+    } finally {
+      synchronized ( this ) {
+        rebuilding.remove( key );
+        notifyAll();
+      }
+    }
+    synchronized ( this ) {
+      Entry entry = entries.get( key );
+      return entry == null ? null : entry.future;
+    }
+  }
+
+  @Override
+  public synchronized boolean containsKey( Object key ) {
+    return entries.containsKey( key );
+  }
+
+  @Override
+  public Future<Graph> put( Object key, Future<Graph> value ) {
+    if ( value == null ) {
+      throw new NullPointerException();
+    }
+    Entry entry = new Entry( value );
+    Entry previous;
+    synchronized ( this ) {
+      previous = entries.put( key, entry );
+      release( previous );
+      unweighed.put( value, entry );
+      evictedKeys.invalidate( key );
+      evict();
+    }
+    if ( value.isDone() ) {
+      weigh( entry );
+    }
+    return previous == null ? null : previous.future;
+  }
+
+  /**
+   * Weighs the graph of the given Future, if the Future is in the map and its graph has not been weighed yet, and
+   * evicts graphs until the map is within its limits again. To be called once the graph's analysis has completed.
+   *
+   * @param future the Future of the graph
+   */
+  public void completed( Future<?> future ) {
+    Entry entry;
+    synchronized ( this ) {
+      entry = unweighed.get( future );
+    }
+    if ( entry != null ) {
+      weigh( entry );
+    }
+  }
+
+  @Override
+  public synchronized Future<Graph> remove( Object key ) {
+    Entry previous = entries.remove( key );
+    release( previous );
+    if ( key != null ) {
+      evictedKeys.invalidate( key );
+    }
+    return previous == null ? null : previous.future;
+  }
+
+  @Override
+  public synchronized void clear() {
+    for ( Entry entry : entries.values() ) {
+      entry.present = false;
+    }
+    entries.clear();
+    unweighed.clear();
+    evictedKeys.invalidateAll();
+    totalBytes = 0;
+  }
+
+  @Override
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  @Override
+  public synchronized Set<Map.Entry<Object, Future<Graph>>> entrySet() {
+    Map<Object, Future<Graph>> copy = new LinkedHashMap<Object, Future<Graph>>();
+    for ( Map.Entry<Object, Entry> entry : entries.entrySet() ) {
+      copy.put( entry.getKey(), entry.getValue().future );
+    }
+    return Collections.unmodifiableMap( copy ).entrySet();
+  }
+
+  /**
+   * Weighs the graph of an entry, outside the map's lock, unless it has been weighed already or is being weighed
+   */
+  private void weigh( Entry entry ) {
+    synchronized ( this ) {
+      if ( !entry.present || entry.weighing || entry.bytes >= 0 ) {
+        return;
+      }
+      entry.weighing = true;
+    }
+    long bytes = weigh( entry.future );
+    synchronized ( this ) {
+      entry.weighing = false;
+      if ( entry.present ) {
+        entry.bytes = bytes;
+        totalBytes += bytes;
+        unweighed.remove( entry.future );
+        evict();
+      }
+    }
+  }
+
+  /**
+   * Evicts graphs, least recently used first, until the map is within its limits again. Graphs still being built stay.
+   */
+  private void evict() {
+    if ( !isOverLimit() ) {
+      return;
+    }
+    Iterator<Map.Entry<Object, Entry>> it = entries.entrySet().iterator();
+    while ( isOverLimit() && it.hasNext() ) {
+      Map.Entry<Object, Entry> next = it.next();
+      Entry entry = next.getValue();
+      if ( entry.future.isDone() ) {
+        it.remove();
+        if ( next.getKey() != null ) {
+          evictedKeys.put( next.getKey(), Boolean.TRUE );
+        }
+        release( entry );
+        evictions++;
+        evictedBytes += Math.max( 0, entry.bytes );
+      }
+    }
+  }
+
+  private boolean isOverLimit() {
+    return ( maxEntries > 0 && entries.size() > maxEntries ) || ( maxBytes > 0 && totalBytes > maxBytes );
+  }
+
+  private void release( Entry entry ) {
+    if ( entry != null ) {
+      entry.present = false;
+      if ( entry.bytes > 0 ) {
+        totalBytes -= entry.bytes;
+      }
+      if ( unweighed.get( entry.future ) == entry ) {
+        unweighed.remove( entry.future );
+      }
+    }
+  }
+
+  private static long weigh( Future<Graph> future ) {
+    if ( future.isCancelled() ) {
+      return 0;
+    }
+    try {
+      Graph graph = future.get();
+      return graph == null ? 0 : estimateBytes( graph );
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      return 0;
+    } catch ( ExecutionException e ) {
+      return 0;
+    } catch ( RuntimeException e ) {
+      // most likely the graph is being patched, which puts it again and has it weighed again
+      log.debug( "Could not estimate the size of a lineage graph", e );
+      return 0;
+    }
+  }
+
+  /**
+   * Estimates the heap taken up by a graph from the number of its elements and properties and the length of its
+   * strings
+   *
+   * @param graph the graph
+   * @return the estimated size in bytes
+   */
+  public static long estimateBytes( Graph graph ) {
+    long bytes = 0;
+    for ( Vertex vertex : graph.getVertices() ) {
+      bytes += VERTEX_BYTES + estimatePropertyBytes( vertex );
+    }
+    for ( Edge edge : graph.getEdges() ) {
+      bytes += EDGE_BYTES + stringBytes( edge.getLabel() ) + estimatePropertyBytes( edge );
+    }
+    return bytes;
+  }
+
+  private static long estimatePropertyBytes( Element element ) {
+    long bytes = 0;
+    for ( String key : element.getPropertyKeys() ) {
+      Object value = element.getProperty( key );
+      bytes += PROPERTY_BYTES + stringBytes( key ) + ( value instanceof String ? stringBytes( (String) value ) : 16 );
+    }
+    return bytes;
+  }
+
+  private static long stringBytes( String s ) {
+    return s == null ? 0 : 2L * s.length();
+  }
+
+  public synchronized int getMaxEntries() {
+    return maxEntries;
+  }
+
+  /**
+   * Sets the number of graphs kept. Zero or less means no limit.
+   *
+   * @param maxEntries the maximum number of graphs
+   */
+  public synchronized void setMaxEntries( int maxEntries ) {
+    this.maxEntries = maxEntries;
+    evict();
+  }
+
+  public synchronized long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /**
+   * Sets the estimated size the graphs kept may add up to. Zero or less means no limit.
+   *
+   * @param maxBytes the maximum estimated size in bytes
+   */
+  public synchronized void setMaxBytes( long maxBytes ) {
+    this.maxBytes = maxBytes;
+    evict();
+  }
+
+  /**
+   * Returns the estimated size of the completed graphs in the map
+   *
+   * @return the size in bytes
+   */
+  public synchronized long getTotalBytes() {
+    return totalBytes;
+  }
+
+  /**
+   * Returns the number of graphs in the map whose analysis has not completed (or that have not been weighed yet)
+   *
+   * @return the number of graphs in flight
+   */
+  public synchronized int getInFlightCount() {
+    return unweighed.size();
+  }
+
+  public synchronized long getHitCount() {
+    return hits;
+  }
+
+  public synchronized long getMissCount() {
+    return misses;
+  }
+
+  public synchronized long getEvictionCount() {
+    return evictions;
+  }
+
+  public synchronized long getEvictedBytes() {
+    return evictedBytes;
+  }
+
+  /**
+   * Returns the number of misses for keys whose graph had been evicted
+   *
+   * @return the number of such misses
+   */
+  public synchronized long getEvictedMissCount() {
+    return evictedMisses;
+  }
+
+  /**
+   * Tells whether the graph for the given key was evicted and has not been put again since
+   *
+   * @param key the key, compared by identity
+   * @return true if the key's graph was evicted
+   */
+  public synchronized boolean wasEvicted( Object key ) {
+    return key != null && evictedKeys.getIfPresent( key ) != null;
+  }
+
+  /**
+   * Returns a snapshot of the limits and counters of the map
+   *
+   * @return the metrics by name
+   */
+  public synchronized Map<String, Object> getMetrics() {
+    Map<String, Object> metrics = new LinkedHashMap<String, Object>();
+    metrics.put( "maxEntries", maxEntries );
+    metrics.put( "maxBytes", maxBytes );
+    metrics.put( "size", entries.size() );
+    metrics.put( "inFlightCount", getInFlightCount() );
+    metrics.put( "totalBytes", totalBytes );
+    metrics.put( "hitCount", hits );
+    metrics.put( "missCount", misses );
+    metrics.put( "evictionCount", evictions );
+    metrics.put( "evictedMissCount", evictedMisses );
+    metrics.put( "evictedBytes", evictedBytes );
+    return metrics;
+  }
+
+  /**
+   * Returns the keys in least recently used order, for testing
+   */
+  synchronized List<Object> getKeysInAccessOrder() {
+    return new ArrayList<Object>( entries.keySet() );
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "LineageGraphCache" + getMetrics();
+  }
+}
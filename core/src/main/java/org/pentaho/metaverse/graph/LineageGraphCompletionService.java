@@ -23,6 +23,7 @@
 package org.pentaho.metaverse.graph;
 
 import com.tinkerpop.blueprints.Graph;
+import org.pentaho.metaverse.impl.LineageExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -33,8 +34,8 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorCompletionService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 public class LineageGraphCompletionService implements CompletionService<Graph> {
@@ -42,7 +43,7 @@ public class LineageGraphCompletionService implements CompletionService<Graph> {
   private static final LineageGraphCompletionService INSTANCE = new LineageGraphCompletionService();
 
   private ExecutorCompletionService<Graph> executionCompletionService;
-  private Executor executor = Executors.newCachedThreadPool();
+  private Executor executor = LineageExecutor.getInstance();
   private static final Logger log = LoggerFactory.getLogger( LineageGraphCompletionService.class );
   private Queue<Future<Graph>> queue = new ConcurrentLinkedQueue<Future<Graph>>();
 
@@ -52,7 +53,22 @@ public class LineageGraphCompletionService implements CompletionService<Graph> {
   }
 
   private LineageGraphCompletionService() {
-    executionCompletionService = new ExecutorCompletionService<Graph>( executor );
+    executionCompletionService = new ExecutorCompletionService<Graph>( executor, new CompletionQueue() );
+  }
+
+  /**
+   * The queue the analyses are put on as they complete. It lets the lineage graph map weigh each graph as soon as its
+   * analysis is done, on the thread that ran the analysis.
+   */
+  private static class CompletionQueue extends LinkedBlockingQueue<Future<Graph>> {
+
+    private static final long serialVersionUID = 3651285012648853377L;
+
+    @Override
+    public boolean add( Future<Graph> future ) {
+      LineageGraphMap.getCache().completed( future );
+      return super.add( future );
+    }
   }
 
   @Override
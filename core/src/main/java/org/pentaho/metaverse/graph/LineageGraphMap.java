@@ -25,19 +25,27 @@ package org.pentaho.metaverse.graph;
 import com.tinkerpop.blueprints.Graph;
 
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
 
 /**
  * LineageGraphMap is a singleton that maintains a map from document content objects to a Future task that will return
  * a Graph object. The graph is a representation of the lineage analysis performed on the document content object.
+ * The map is bounded, see {@link LineageGraphCache}.
  */
 public class LineageGraphMap {
-  public static final Map<Object, Future<Graph>> lineageGraphMap
-    = new ConcurrentHashMap<Object, Future<Graph>>();
+  public static final LineageGraphCache lineageGraphMap = new LineageGraphCache();
 
 
   public static Map<Object, Future<Graph>> getInstance() {
     return lineageGraphMap;
   }
+
+  /**
+   * Returns the map with its limits and metrics
+   *
+   * @return the map returned by {@link #getInstance()}
+   */
+  public static LineageGraphCache getCache() {
+    return lineageGraphMap;
+  }
 }
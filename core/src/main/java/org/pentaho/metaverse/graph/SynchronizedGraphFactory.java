@@ -33,7 +33,8 @@ import java.util.Map;
 /**
  * <p>
  * Thin wrapper around {@link com.tinkerpop.blueprints.GraphFactory}
- * that constructs {@link SynchronizedGraph} objects.
+ * that constructs thread-safe graphs. The graphs handed out are {@link ConcurrentGraph}s, which are
+ * drop-in {@link SynchronizedGraph}s that use a read/write lock rather than a single monitor.
  * </p>
  * <p>
  * <strong>NOTE:</strong> The backing graph configured <em>must</em> implement
@@ -86,15 +87,15 @@ public class SynchronizedGraphFactory {
   }
 
   /**
-   * Wraps the underlying graph with a synchronized one
+   * Wraps the underlying graph with a thread-safe one
    * @param graph The graph to wrap
-   * @return The synchronized graph
+   * @return The thread-safe graph
    */
   protected static Graph wrapGraph( Graph graph ) {
     if ( graph instanceof KeyIndexableGraph ) {
       KeyIndexableGraph keyIndexableGraph = (KeyIndexableGraph) graph;
       IdGraph<KeyIndexableGraph> idGraph = new IdGraph<KeyIndexableGraph>( keyIndexableGraph );
-      return new SynchronizedGraph( idGraph );
+      return new ConcurrentGraph( idGraph );
     } else {
       throw new IllegalArgumentException( Messages.getString( "ERROR.BackingGraph.MustImplement.KeyIndexableGraph" ) );
     }
@@ -28,6 +28,8 @@ import org.pentaho.metaverse.api.IDocumentController;
 import org.pentaho.metaverse.api.IDocumentEvent;
 import org.pentaho.metaverse.api.IDocumentListener;
 import org.pentaho.metaverse.api.IMetaverseBuilder;
+import org.pentaho.metaverse.api.IMetaverseBulkLoad;
+import org.pentaho.metaverse.api.IMetaverseBulkLoader;
 import org.pentaho.metaverse.api.IMetaverseLink;
 import org.pentaho.metaverse.api.IMetaverseNode;
 import org.pentaho.metaverse.api.IMetaverseObjectFactory;
@@ -50,7 +52,8 @@ import java.util.concurrent.Future;
 /**
  * Coordinates passing IDocumentEvent's to the appropriate IDocumentAnalyzer's
  */
-public class DocumentController implements IDocumentController, IDocumentListener, IRequiresMetaverseBuilder {
+public class DocumentController implements IDocumentController, IDocumentListener, IRequiresMetaverseBuilder,
+  IMetaverseBulkLoader {
 
   /**
    * The metaverse builder.
@@ -109,6 +112,20 @@ public class DocumentController implements IDocumentController, IDocumentListene
     this.metaverseBuilder = metaverseBuilder;
   }
 
+  /**
+   * Starts a bulk load into the metaverse builder. Builders that support bulk loads apply it themselves; for any other
+   * builder the staged calls are made on it when the load is committed.
+   *
+   * @return the bulk load
+   */
+  @Override
+  public IMetaverseBulkLoad beginBulkLoad() {
+    if ( metaverseBuilder instanceof IMetaverseBulkLoader ) {
+      return ( (IMetaverseBulkLoader) metaverseBuilder ).beginBulkLoad();
+    }
+    return new MetaverseBulkLoad( metaverseBuilder );
+  }
+
   /**
    * Gets the metaverse object factory
    *
@@ -287,16 +304,19 @@ public class DocumentController implements IDocumentController, IDocumentListene
   }
 
   /**
-   * Fires a IDocumentEvent to an IDocumentAnalyzer in a separate Thread
+   * Fires a IDocumentEvent to an IDocumentAnalyzer in a separate Thread. The analysis is reported to the event if it is
+   * a {@link DocumentEvent}, see {@link DocumentEvent#analysisStarted()}.
    *
    * @param event    IDocumentEvent to fire
    * @param analyzer IDocumentAnalyzer to use for the Document that needs processed
    * @return Future object
    */
   protected Future<?> fireDocumentEvent( final IDocumentEvent event, final IDocumentAnalyzer analyzer ) {
+    final DocumentEvent tracked = event instanceof DocumentEvent ? (DocumentEvent) event : null;
     Runnable analyzerRunner = new Runnable() {
       @Override
       public void run() {
+        boolean succeeded = false;
         try {
 
           analyzer.analyze(
@@ -306,13 +326,28 @@ public class DocumentController implements IDocumentController, IDocumentListene
               event.getDocument() ),
             event.getDocument()
           );
+          succeeded = true;
         } catch ( MetaverseAnalyzerException mae ) {
           log.error( Messages.getString( "ERROR.AnalyzingDocument", event.getDocument().getStringID() ), mae );
+        } finally {
+          if ( tracked != null ) {
+            tracked.analysisFinished( succeeded );
+          }
         }
       }
     };
 
-    return MetaverseCompletionService.getInstance().submit( analyzerRunner, event.getDocument().getStringID() );
+    if ( tracked != null ) {
+      tracked.analysisStarted();
+    }
+    try {
+      return MetaverseCompletionService.getInstance().submit( analyzerRunner, event.getDocument().getStringID() );
+    } catch ( RuntimeException e ) {
+      if ( tracked != null ) {
+        tracked.analysisFinished( false );
+      }
+      throw e;
+    }
   }
 
   /*
@@ -25,17 +25,47 @@ package org.pentaho.metaverse.impl;
 import org.pentaho.metaverse.api.IDocument;
 import org.pentaho.metaverse.api.IDocumentEvent;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Simple implementation of @see IDocumentEvent
+ * <p/>
+ * The event also tracks the analyses it sets off. Listeners that analyze the document in the background report each
+ * analysis through {@link #analysisStarted()} and {@link #analysisFinished(boolean)}, and whoever fires the event
+ * reports the end of the notification itself the same way. Once all of them have finished the
+ * {@link AnalysisListener} is told whether they all succeeded.
  * @author jdixon
  *
  */
 public class DocumentEvent implements IDocumentEvent {
 
+  /**
+   * Told when the analyses of a document are done
+   */
+  public interface AnalysisListener {
+
+    /**
+     * Called once, on the thread that finished last
+     *
+     * @param event     the event
+     * @param succeeded true if the notification and every analysis it set off succeeded
+     */
+    void analyzed( DocumentEvent event, boolean succeeded );
+  }
+
   private IDocument document;
 
   private String type;
 
+  private AnalysisListener analysisListener;
+
+  /**
+   * The analyses still running, plus one for the notification of the listeners
+   */
+  private final AtomicInteger analysesPending = new AtomicInteger( 1 );
+
+  private volatile boolean analysisFailed;
+
   @Override
   public IDocument getDocument() {
     return document;
@@ -54,4 +84,34 @@ public class DocumentEvent implements IDocumentEvent {
     this.type = type;
   }
 
+  public AnalysisListener getAnalysisListener() {
+    return analysisListener;
+  }
+
+  public void setAnalysisListener( AnalysisListener analysisListener ) {
+    this.analysisListener = analysisListener;
+  }
+
+  /**
+   * Records that an analysis of the document has been started, to be matched by a call to
+   * {@link #analysisFinished(boolean)}
+   */
+  public void analysisStarted() {
+    analysesPending.incrementAndGet();
+  }
+
+  /**
+   * Records that an analysis of the document, or the notification of the listeners, has finished
+   *
+   * @param succeeded whether it succeeded
+   */
+  public void analysisFinished( boolean succeeded ) {
+    if ( !succeeded ) {
+      analysisFailed = true;
+    }
+    if ( analysesPending.decrementAndGet() == 0 && analysisListener != null ) {
+      analysisListener.analyzed( this, !analysisFailed );
+    }
+  }
+
 }
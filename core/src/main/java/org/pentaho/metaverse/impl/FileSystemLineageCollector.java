@@ -39,8 +39,6 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
 /**
  * @see org.pentaho.metaverse.impl.VfsLineageCollector
@@ -165,33 +163,33 @@ public class FileSystemLineageCollector implements ILineageCollector {
 
   @Override
   public void compressArtifacts( List<String> paths, OutputStream os ) {
-    ZipOutputStream zos = null;
+    LineageArchive archive = new LineageArchive( os );
     try {
-      zos = new ZipOutputStream( os );
       for ( String path : paths ) {
         File file = new File( path );
+        FileInputStream fis;
         try {
-          // register the file as an entry in the zip file
-          ZipEntry zipEntry = new ZipEntry( file.getPath() );
-          zos.putNextEntry( zipEntry );
-
-          // write the file's bytes to the zip stream
-          FileInputStream fis = new FileInputStream( file );
-          zos.write( IOUtils.toByteArray( fis ) );
-
+          fis = new FileInputStream( file );
         } catch ( IOException e ) {
           log.error( Messages.getString( "ERROR.FailedAddingFileToZip", file.getPath() ) );
-        } finally {
-          // indicate we are done with this file
-          try {
-            zos.closeEntry();
-          } catch ( IOException e ) {
-            log.error( Messages.getString( "ERROR.FailedToProperlyCloseZipEntry", file.getPath() ) );
+          archive.skip( file.getPath() );
+          continue;
+        }
+        try {
+          if ( !archive.addEntry( file.getPath(), fis ) ) {
+            log.error( Messages.getString( "ERROR.FailedAddingFileToZip", file.getPath() ) );
           }
+        } finally {
+          IOUtils.closeQuietly( fis );
         }
       }
+      archive.finish();
+    } catch ( IOException e ) {
+      // the client is gone (or the download was interrupted), don't read the remaining artifacts
+      log.warn( Messages.getString( "WARNING.LineageArchiveAborted", archive.getEntryCount(), paths.size(),
+        e.getMessage() ) );
     } finally {
-      IOUtils.closeQuietly( zos );
+      IOUtils.closeQuietly( archive );
     }
   }
 
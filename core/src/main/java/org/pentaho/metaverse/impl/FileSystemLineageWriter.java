@@ -63,8 +63,9 @@ public class FileSystemLineageWriter implements ILineageWriter {
   private IGraphWriter graphWriter = new GraphMLWriter();
   private String outputFolder = DEFAULT_OUTPUT_FOLDER;
   private String outputStrategy = DEFAULT_OUTPUT_STRATEGY;
+  private boolean compactProfiles;
 
-  protected static SimpleDateFormat dateFolderFormat = new SimpleDateFormat( "YYYYMMdd" );
+  protected static SimpleDateFormat dateFolderFormat = new SimpleDateFormat( "yyyyMMdd" );
 
   public FileSystemLineageWriter() {
   }
@@ -76,7 +77,7 @@ public class FileSystemLineageWriter implements ILineageWriter {
       if ( profile != null ) {
         OutputStream fis = getProfileOutputStream( holder );
         if ( fis != null ) {
-          ExecutionProfileUtil.outputExecutionProfile( fis, profile );
+          ExecutionProfileUtil.outputExecutionProfile( fis, profile, compactProfiles );
         } else {
           log.debug( "No profile output stream associated with this LineageWriter" );
         }
@@ -260,6 +261,24 @@ public class FileSystemLineageWriter implements ILineageWriter {
     this.outputStrategy = strategy;
   }
 
+  /**
+   * Returns whether execution profiles are written as compact JSON rather than indented
+   *
+   * @return true if profiles are compact
+   */
+  public boolean isCompactProfiles() {
+    return compactProfiles;
+  }
+
+  /**
+   * Sets whether execution profiles are written as compact JSON, on one line, rather than indented
+   *
+   * @param compactProfiles true to write compact profiles
+   */
+  public void setCompactProfiles( boolean compactProfiles ) {
+    this.compactProfiles = compactProfiles;
+  }
+
   /**
    * Method called on the writer to do any cleanup of the output artifacts, folders, etc.
    */
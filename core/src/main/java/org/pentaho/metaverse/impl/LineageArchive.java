@@ -0,0 +1,208 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.impl;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * A zip archive of lineage artifacts, written to a stream as the artifacts are added.
+ * <p/>
+ * Artifacts are copied through one fixed-size buffer, so the memory used does not depend on the size or the number
+ * of the artifacts. A failure to read an artifact only skips (the rest of) that artifact, but a failure to write the
+ * archive, which is what a client that went away looks like, is thrown so that the caller stops reading artifacts.
+ * The copy also stops, with an {@link InterruptedIOException}, when the writing thread is interrupted.
+ */
+public class LineageArchive implements Closeable {
+
+  /**
+   * The name of the entry describing the archive, written by {@link #finish()} when the manifest is enabled
+   */
+  public static final String MANIFEST_ENTRY = "lineage-manifest.json";
+
+  public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  static {
+    MAPPER.enable( SerializationFeature.INDENT_OUTPUT );
+    // the zip stream stays open for the entries that follow the manifest
+    MAPPER.configure( JsonGenerator.Feature.AUTO_CLOSE_TARGET, false );
+  }
+
+  private final ZipOutputStream zos;
+  private final byte[] buffer;
+  private final boolean manifestEnabled;
+  private final List<Map<String, Object>> entries = new ArrayList<>();
+  private final List<String> skipped = new ArrayList<>();
+
+  /**
+   * Creates an archive with the default compression level and buffer size, and without a manifest
+   *
+   * @param os the stream to write the archive to, which is closed with the archive
+   */
+  public LineageArchive( OutputStream os ) {
+    this( os, Deflater.DEFAULT_COMPRESSION, DEFAULT_BUFFER_SIZE, false );
+  }
+
+  /**
+   * Creates an archive
+   *
+   * @param os               the stream to write the archive to, which is closed with the archive
+   * @param compressionLevel the compression level, from 0 (none) to 9 (best), or -1 for the default
+   * @param bufferSize       the size of the buffer artifacts are copied through; 0 or less for the default
+   * @param manifestEnabled  true to end the archive with a {@link #MANIFEST_ENTRY} entry
+   * @throws IllegalArgumentException if the compression level is not valid
+   */
+  public LineageArchive( OutputStream os, int compressionLevel, int bufferSize, boolean manifestEnabled ) {
+    checkCompressionLevel( compressionLevel );
+    this.zos = new ZipOutputStream( os );
+    this.zos.setLevel( compressionLevel );
+    this.buffer = new byte[ bufferSize > 0 ? bufferSize : DEFAULT_BUFFER_SIZE ];
+    this.manifestEnabled = manifestEnabled;
+  }
+
+  /**
+   * Checks that a compression level is one a zip stream accepts
+   *
+   * @param compressionLevel the compression level
+   * @throws IllegalArgumentException if it is not between -1 and 9
+   */
+  public static void checkCompressionLevel( int compressionLevel ) {
+    if ( ( compressionLevel < Deflater.NO_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION )
+      && compressionLevel != Deflater.DEFAULT_COMPRESSION ) {
+      throw new IllegalArgumentException( "Invalid compression level: " + compressionLevel );
+    }
+  }
+
+  /**
+   * Adds an entry with the content of a stream, which is read to its end but not closed
+   *
+   * @param name the name of the entry
+   * @param in   the content of the entry
+   * @return true if the content was read to its end, false if reading it failed (the entry then holds what was read)
+   * @throws IOException if the archive can't be written, or if the thread was interrupted
+   */
+  public boolean addEntry( String name, InputStream in ) throws IOException {
+    checkInterrupted();
+    ZipEntry entry = new ZipEntry( name );
+    zos.putNextEntry( entry );
+    boolean complete = true;
+    int read;
+    while ( true ) {
+      try {
+        read = in.read( buffer );
+      } catch ( IOException e ) {
+        complete = false;
+        break;
+      }
+      if ( read < 0 ) {
+        break;
+      }
+      zos.write( buffer, 0, read );
+      checkInterrupted();
+    }
+    zos.closeEntry();
+
+    if ( complete ) {
+      // closing the entry has filled in its size and checksum
+      Map<String, Object> description = new LinkedHashMap<>();
+      description.put( "name", name );
+      description.put( "size", entry.getSize() );
+      description.put( "crc", Long.toHexString( entry.getCrc() ) );
+      entries.add( description );
+    } else {
+      skipped.add( name );
+    }
+    return complete;
+  }
+
+  /**
+   * Records an artifact that could not be added at all, so that the manifest lists it
+   *
+   * @param name the name the artifact's entry would have had
+   */
+  public void skip( String name ) {
+    skipped.add( name );
+  }
+
+  /**
+   * Gets the number of artifacts that were added completely
+   *
+   * @return the number of entries, not counting the manifest
+   */
+  public int getEntryCount() {
+    return entries.size();
+  }
+
+  /**
+   * Gets the artifacts that were skipped, or only partly added
+   *
+   * @return the names of the skipped entries
+   */
+  public List<String> getSkipped() {
+    return skipped;
+  }
+
+  /**
+   * Writes the manifest entry, if enabled, and the end of the archive, without closing the stream
+   *
+   * @throws IOException if the archive can't be written
+   */
+  public void finish() throws IOException {
+    if ( manifestEnabled ) {
+      Map<String, Object> manifest = new LinkedHashMap<>();
+      manifest.put( "entries", entries );
+      manifest.put( "skipped", skipped );
+      zos.putNextEntry( new ZipEntry( MANIFEST_ENTRY ) );
+      MAPPER.writeValue( zos, manifest );
+      zos.closeEntry();
+    }
+    zos.finish();
+  }
+
+  @Override
+  public void close() throws IOException {
+    zos.close();
+  }
+
+  private static void checkInterrupted() throws InterruptedIOException {
+    if ( Thread.currentThread().isInterrupted() ) {
+      throw new InterruptedIOException( "Writing the lineage archive was interrupted" );
+    }
+  }
+}
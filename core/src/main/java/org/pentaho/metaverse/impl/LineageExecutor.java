@@ -0,0 +1,470 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The executor all background lineage work runs on: document analysis, lineage graph generation and the writing of
+ * runtime lineage. It runs a bounded number of worker threads and holds a bounded number of waiting tasks. Once the
+ * queue is full, new work is either run on the submitting thread (slowing the submitter down to the pace the workers
+ * can sustain) or refused, depending on the {@link RejectionPolicy}.
+ * <p/>
+ * Queue depth, active workers, and the time tasks spend queued and running are tracked and exposed through getters
+ * and {@link #getMetrics()}.
+ * <p/>
+ * {@link #shutdown()} drains the executor when the plugin is unloaded. Work submitted while it drains is refused; work
+ * submitted after it has finished starts a fresh set of workers, so the shared instance stays usable if the bundle is
+ * started again in the same class loader.
+ */
+public class LineageExecutor implements Executor {
+
+  /**
+   * What to do with a task submitted while the queue is full
+   */
+  public enum RejectionPolicy {
+    /**
+     * Run the task on the submitting thread
+     */
+    CALLER_RUNS,
+    /**
+     * Refuse the task with a {@link RejectedExecutionException}
+     */
+    ABORT;
+
+    /**
+     * Returns the policy with the given name (case-insensitive, '-' and '_' being interchangeable), or
+     * {@link #CALLER_RUNS} if the name is empty or unknown
+     *
+     * @param name the name of the policy
+     * @return the matching policy
+     */
+    public static RejectionPolicy fromString( String name ) {
+      if ( name != null ) {
+        String normalized = name.trim().replace( '-', '_' );
+        for ( RejectionPolicy policy : values() ) {
+          if ( policy.name().equalsIgnoreCase( normalized ) ) {
+            return policy;
+          }
+        }
+      }
+      return CALLER_RUNS;
+    }
+  }
+
+  public static final int DEFAULT_QUEUE_SIZE = 1000;
+
+  public static final long DEFAULT_SHUTDOWN_TIMEOUT = 30000;
+
+  private static final long KEEP_ALIVE_SECONDS = 60;
+
+  private static final Logger log = LoggerFactory.getLogger( LineageExecutor.class );
+
+  private static class Holder {
+    private static final LineageExecutor INSTANCE = new LineageExecutor();
+  }
+
+  private volatile ThreadPoolExecutor pool;
+
+  private volatile int queueSize = DEFAULT_QUEUE_SIZE;
+  private volatile RejectionPolicy rejectionPolicy = RejectionPolicy.CALLER_RUNS;
+  private volatile long shutdownTimeout = DEFAULT_SHUTDOWN_TIMEOUT;
+
+  private final AtomicInteger queued = new AtomicInteger();
+  private final AtomicLong submittedCount = new AtomicLong();
+  private final AtomicLong completedCount = new AtomicLong();
+  private final AtomicLong failedCount = new AtomicLong();
+  private final AtomicLong rejectedCount = new AtomicLong();
+  private final AtomicLong callerRunsCount = new AtomicLong();
+  private final AtomicLong totalQueueNanos = new AtomicLong();
+  private final AtomicLong maxQueueNanos = new AtomicLong();
+  private final AtomicLong totalRunNanos = new AtomicLong();
+  private final AtomicLong maxRunNanos = new AtomicLong();
+
+  public static LineageExecutor getInstance() {
+    return Holder.INSTANCE;
+  }
+
+  /**
+   * Creates an executor with one worker per available processor (but at least two) and the default queue size
+   */
+  public LineageExecutor() {
+    this( getDefaultThreads() );
+  }
+
+  /**
+   * Creates an executor with the given number of workers and the default queue size
+   *
+   * @param threads the maximum number of worker threads
+   */
+  public LineageExecutor( int threads ) {
+    pool = createPool( threads > 0 ? threads : getDefaultThreads() );
+  }
+
+  private static ThreadPoolExecutor createPool( int size ) {
+    final AtomicInteger threadNumber = new AtomicInteger( 1 );
+    ThreadPoolExecutor pool = new ThreadPoolExecutor( size, size, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+      new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+        @Override
+        public Thread newThread( Runnable r ) {
+          Thread thread = new Thread( r, "metaverse-lineage-" + threadNumber.getAndIncrement() );
+          thread.setDaemon( true );
+          return thread;
+        }
+      } );
+    // idle workers go away, so an idle plugin holds no threads
+    pool.allowCoreThreadTimeOut( true );
+    return pool;
+  }
+
+  /**
+   * Returns the pool to submit to, replacing it if a previous shutdown has completed
+   */
+  private ThreadPoolExecutor getPool() {
+    ThreadPoolExecutor current = pool;
+    if ( current.isTerminated() ) {
+      synchronized ( this ) {
+        if ( pool.isTerminated() ) {
+          pool = createPool( pool.getMaximumPoolSize() );
+        }
+        current = pool;
+      }
+    }
+    return current;
+  }
+
+  private static int getDefaultThreads() {
+    return Math.max( 2, Runtime.getRuntime().availableProcessors() );
+  }
+
+  /**
+   * Runs the task on a worker thread. If the queue is full the task is run on the calling thread or refused, according
+   * to the rejection policy.
+   *
+   * @param task the task to run
+   * @throws RejectedExecutionException if the task is refused, or the executor is shutting down
+   */
+  @Override
+  public void execute( Runnable task ) {
+    if ( task == null ) {
+      throw new NullPointerException();
+    }
+    ThreadPoolExecutor current = getPool();
+    if ( current.isShutdown() ) {
+      rejectedCount.incrementAndGet();
+      throw new RejectedExecutionException( "The lineage executor is shutting down" );
+    }
+    submittedCount.incrementAndGet();
+    if ( queued.incrementAndGet() > queueSize ) {
+      queued.decrementAndGet();
+      reject( task );
+      return;
+    }
+    try {
+      current.execute( new TimedTask( task ) );
+    } catch ( RejectedExecutionException e ) {
+      // shut down in the meantime
+      queued.decrementAndGet();
+      rejectedCount.incrementAndGet();
+      throw e;
+    }
+  }
+
+  private void reject( Runnable task ) {
+    rejectedCount.incrementAndGet();
+    if ( rejectionPolicy == RejectionPolicy.CALLER_RUNS ) {
+      callerRunsCount.incrementAndGet();
+      run( task );
+    } else {
+      throw new RejectedExecutionException(
+        "The lineage executor queue is full (" + queueSize + " tasks waiting), task refused" );
+    }
+  }
+
+  private void run( Runnable task ) {
+    long start = System.nanoTime();
+    try {
+      task.run();
+      completedCount.incrementAndGet();
+    } catch ( RuntimeException e ) {
+      failedCount.incrementAndGet();
+      throw e;
+    } catch ( Error e ) {
+      failedCount.incrementAndGet();
+      throw e;
+    } finally {
+      record( totalRunNanos, maxRunNanos, System.nanoTime() - start );
+    }
+  }
+
+  private static void record( AtomicLong total, AtomicLong max, long nanos ) {
+    total.addAndGet( nanos );
+    long current = max.get();
+    while ( nanos > current && !max.compareAndSet( current, nanos ) ) {
+      current = max.get();
+    }
+  }
+
+  /**
+   * Stops accepting work and waits (up to the shutdown timeout) for queued and running tasks to finish, then interrupts
+   * whatever is still running. Meant to be called when the plugin is unloaded.
+   */
+  public void shutdown() {
+    ThreadPoolExecutor current = pool;
+    current.shutdown();
+    try {
+      if ( !current.awaitTermination( shutdownTimeout, TimeUnit.MILLISECONDS ) ) {
+        log.warn( "Lineage tasks still running after " + shutdownTimeout + " ms, interrupting "
+          + current.getActiveCount() + " of them and dropping " + queued.get() + " queued" );
+        queued.addAndGet( -current.shutdownNow().size() );
+      }
+    } catch ( InterruptedException e ) {
+      queued.addAndGet( -current.shutdownNow().size() );
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * @return true if the executor is shutting down or has been shut down (and not used since)
+   */
+  public boolean isShutdown() {
+    return pool.isShutdown();
+  }
+
+  /**
+   * Waits for the executor to terminate after a shutdown
+   *
+   * @param timeout the maximum time to wait
+   * @param unit    the unit of the timeout
+   * @return true if terminated, false if the timeout elapsed first
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public boolean awaitTermination( long timeout, TimeUnit unit ) throws InterruptedException {
+    return pool.awaitTermination( timeout, unit );
+  }
+
+  public int getThreads() {
+    return pool.getMaximumPoolSize();
+  }
+
+  /**
+   * Sets the maximum number of worker threads
+   *
+   * @param threads the number of threads, 0 or less for one per available processor (but at least two)
+   */
+  public synchronized void setThreads( int threads ) {
+    int size = threads > 0 ? threads : getDefaultThreads();
+    if ( size > pool.getMaximumPoolSize() ) {
+      pool.setMaximumPoolSize( size );
+      pool.setCorePoolSize( size );
+    } else {
+      pool.setCorePoolSize( size );
+      pool.setMaximumPoolSize( size );
+    }
+  }
+
+  public int getQueueSize() {
+    return queueSize;
+  }
+
+  /**
+   * Sets the maximum number of tasks waiting for a worker. Tasks already queued are not affected.
+   *
+   * @param queueSize the maximum number of waiting tasks
+   */
+  public void setQueueSize( int queueSize ) {
+    this.queueSize = Math.max( 0, queueSize );
+  }
+
+  public RejectionPolicy getRejectionPolicy() {
+    return rejectionPolicy;
+  }
+
+  /**
+   * Sets what to do with tasks submitted while the queue is full
+   *
+   * @param rejectionPolicy "caller-runs" (the default) or "abort"
+   */
+  public void setRejectionPolicy( String rejectionPolicy ) {
+    this.rejectionPolicy = RejectionPolicy.fromString( rejectionPolicy );
+  }
+
+  public long getShutdownTimeout() {
+    return shutdownTimeout;
+  }
+
+  /**
+   * Sets how long {@link #shutdown()} waits for outstanding tasks
+   *
+   * @param shutdownTimeout the timeout in milliseconds
+   */
+  public void setShutdownTimeout( long shutdownTimeout ) {
+    this.shutdownTimeout = Math.max( 0, shutdownTimeout );
+  }
+
+  /**
+   * @return the number of tasks waiting for a worker
+   */
+  public int getQueueDepth() {
+    return queued.get();
+  }
+
+  /**
+   * @return the number of workers running a task
+   */
+  public int getActiveCount() {
+    return pool.getActiveCount();
+  }
+
+  /**
+   * @return the number of worker threads alive
+   */
+  public int getPoolSize() {
+    return pool.getPoolSize();
+  }
+
+  public long getSubmittedCount() {
+    return submittedCount.get();
+  }
+
+  /**
+   * @return the number of tasks that ran to completion, on a worker or on the submitting thread
+   */
+  public long getCompletedCount() {
+    return completedCount.get();
+  }
+
+  public long getFailedCount() {
+    return failedCount.get();
+  }
+
+  /**
+   * @return the number of tasks submitted while the queue was full (or after shutdown), whether refused or run on
+   * the submitting thread
+   */
+  public long getRejectedCount() {
+    return rejectedCount.get();
+  }
+
+  /**
+   * @return the number of tasks that were run on the submitting thread because the queue was full
+   */
+  public long getCallerRunsCount() {
+    return callerRunsCount.get();
+  }
+
+  /**
+   * @return the average time, in milliseconds, tasks waited for a worker
+   */
+  public double getAverageQueueTime() {
+    long started = completedCount.get() + failedCount.get() - callerRunsCount.get();
+    return started <= 0 ? 0 : totalQueueNanos.get() / 1e6 / started;
+  }
+
+  /**
+   * @return the longest time, in milliseconds, a task waited for a worker
+   */
+  public double getMaxQueueTime() {
+    return maxQueueNanos.get() / 1e6;
+  }
+
+  /**
+   * @return the average time, in milliseconds, tasks took to run
+   */
+  public double getAverageRunTime() {
+    long finished = completedCount.get() + failedCount.get();
+    return finished <= 0 ? 0 : totalRunNanos.get() / 1e6 / finished;
+  }
+
+  /**
+   * @return the longest time, in milliseconds, a task took to run
+   */
+  public double getMaxRunTime() {
+    return maxRunNanos.get() / 1e6;
+  }
+
+  /**
+   * Returns a snapshot of the executor's configuration and metrics, keyed by name
+   *
+   * @return the metrics
+   */
+  public Map<String, Object> getMetrics() {
+    Map<String, Object> metrics = new LinkedHashMap<String, Object>();
+    metrics.put( "threads", getThreads() );
+    metrics.put( "queueSize", getQueueSize() );
+    metrics.put( "rejectionPolicy", getRejectionPolicy().name() );
+    metrics.put( "poolSize", getPoolSize() );
+    metrics.put( "activeCount", getActiveCount() );
+    metrics.put( "queueDepth", getQueueDepth() );
+    metrics.put( "submittedCount", getSubmittedCount() );
+    metrics.put( "completedCount", getCompletedCount() );
+    metrics.put( "failedCount", getFailedCount() );
+    metrics.put( "rejectedCount", getRejectedCount() );
+    metrics.put( "callerRunsCount", getCallerRunsCount() );
+    metrics.put( "averageQueueTime", getAverageQueueTime() );
+    metrics.put( "maxQueueTime", getMaxQueueTime() );
+    metrics.put( "averageRunTime", getAverageRunTime() );
+    metrics.put( "maxRunTime", getMaxRunTime() );
+    return metrics;
+  }
+
+  @Override
+  public String toString() {
+    return "LineageExecutor" + getMetrics();
+  }
+
+  /**
+   * Wraps a queued task to account for the time it spends waiting and running
+   */
+  private class TimedTask implements Runnable {
+    private final Runnable task;
+    private final long queuedAt = System.nanoTime();
+
+    TimedTask( Runnable task ) {
+      this.task = task;
+    }
+
+    @Override
+    public void run() {
+      queued.decrementAndGet();
+      record( totalQueueNanos, maxQueueNanos, System.nanoTime() - queuedAt );
+      try {
+        LineageExecutor.this.run( task );
+      } catch ( RuntimeException e ) {
+        log.warn( e.getMessage(), e );
+      }
+    }
+  }
+}
@@ -24,22 +24,56 @@ package org.pentaho.metaverse.impl;
 
 import com.tinkerpop.blueprints.Direction;
 import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Element;
 import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.TransactionalGraph;
 import com.tinkerpop.blueprints.Vertex;
 import org.pentaho.dictionary.DictionaryConst;
 import org.pentaho.dictionary.DictionaryHelper;
 import org.pentaho.metaverse.api.IMetaverseBuilder;
+import org.pentaho.metaverse.api.IMetaverseBulkLoad;
+import org.pentaho.metaverse.api.IMetaverseBulkLoader;
 import org.pentaho.metaverse.api.IMetaverseLink;
 import org.pentaho.metaverse.api.IMetaverseNode;
 import org.pentaho.metaverse.api.IMetaverseObjectFactory;
+import org.pentaho.metaverse.api.LogicalIdLookup;
 import org.pentaho.metaverse.api.MetaverseObjectFactory;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
 /**
  * This is the reference implementation for IMetaverseBuilder, offering the ability to add nodes, links, etc. to an
  * underlying graph
+ * <p/>
+ * Nodes are resolved to vertices through an index of logical id to vertex id that the builder keeps itself, so a
+ * lookup costs the same whether or not the backing graph indexes logical ids. The index is built from the graph when
+ * the graph is set, and kept up to date as the builder adds and removes vertices. Entries for vertices removed behind
+ * the builder's back are dropped when next looked up, so code that only removes vertices from {@link #getGraph()}
+ * (as BaseLocator and TransformationAnalyzer do) needs nothing more. The index never falls back to scanning the graph,
+ * which would cost a full scan for every new node: code that adds vertices other than through the builder must call
+ * {@link #rebuildLogicalIdIndex()} afterwards for them to be found by logical id.
+ * <p/>
+ * The builder is also the {@link LogicalIdLookup.Source} for hashed logical ids: it resolves a digest from the
+ * {@link DictionaryConst#PROPERTY_LOGICAL_ID_SOURCE} property of the vertex it identifies.
+ * <p/>
+ * {@link #getLock()} is a shared/exclusive lock rather than a reader/writer one. Its read side is the <em>shared</em>
+ * side: it is held by every single change made through the builder (the graph makes those thread-safe on its own) and
+ * by readers such as BlueprintsGraphMetaverseReader. Its write side is the <em>exclusive</em> side, held only while a
+ * bulk load ({@link #beginBulkLoad()}) is applied, so that no reader sees a document's lineage half-written.
  */
-public class MetaverseBuilder extends MetaverseObjectFactory implements IMetaverseBuilder {
+public class MetaverseBuilder extends MetaverseObjectFactory
+  implements IMetaverseBuilder, IMetaverseBulkLoader, LogicalIdLookup.Source {
 
   private static final String ENTITY_PREFIX = "entity_";
 
@@ -49,6 +83,18 @@ public class MetaverseBuilder extends MetaverseObjectFactory implements IMetaver
 
   private Graph graph;
 
+  /**
+   * Logical id to vertex id, for the vertices of the graph that have a logical id
+   */
+  private final ConcurrentMap<String, Object> logicalIdIndex = new ConcurrentHashMap<String, Object>();
+
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+  /**
+   * What the bulk load being applied has changed, so it can be undone. Only set while holding the write lock.
+   */
+  private BulkUndo bulkUndo;
+
   /**
    * This is a possible delegate reference to a metaverse object factory. This builder is itself a
    * metaverse object factory, so the reference is initialized to "this".
@@ -62,6 +108,7 @@ public class MetaverseBuilder extends MetaverseObjectFactory implements IMetaver
    */
   public MetaverseBuilder( Graph graph ) {
     this.graph = graph;
+    rebuildLogicalIdIndex();
     registerStaticNodes();
   }
 
@@ -98,6 +145,93 @@ public class MetaverseBuilder extends MetaverseObjectFactory implements IMetaver
   @Override
   public void setGraph( Graph graph ) {
     this.graph = graph;
+    rebuildLogicalIdIndex();
+  }
+
+  /**
+   * Rebuilds the logical id index from the vertices of the graph. Needed after vertices were added to the graph other
+   * than through this builder, since lookups by logical id only consult the index.
+   */
+  public void rebuildLogicalIdIndex() {
+    logicalIdIndex.clear();
+    if ( graph != null ) {
+      for ( Vertex vertex : graph.getVertices() ) {
+        Object logicalId = vertex.getProperty( DictionaryConst.PROPERTY_LOGICAL_ID );
+        if ( logicalId != null ) {
+          // first one wins, as with the graph lookup this index replaces
+          logicalIdIndex.putIfAbsent( logicalId.toString(), vertex.getId() );
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the number of logical ids in the index
+   */
+  public int getLogicalIdIndexSize() {
+    return logicalIdIndex.size();
+  }
+
+  /**
+   * Returns the lock that bulk loads are applied under. Note that the read side is the shared side, held by single
+   * changes made through the builder as well as by readers, while the write side is held exclusively by bulk loads.
+   *
+   * @return the lock
+   */
+  public ReadWriteLock getLock() {
+    return lock;
+  }
+
+  @Override
+  public IMetaverseBulkLoad beginBulkLoad() {
+    return new MetaverseBulkLoad( this );
+  }
+
+  /**
+   * Applies a bulk load to the graph in one pass, holding the write lock. If the graph is transactional the load is
+   * committed as one transaction, otherwise what it added or changed is taken out again should it fail part way
+   * (deletions are not restored).
+   *
+   * @param load the staged load
+   */
+  void applyBulkLoad( MetaverseBulkLoad load ) {
+    lock.writeLock().lock();
+    boolean transactional = graph instanceof TransactionalGraph;
+    bulkUndo = transactional ? null : new BulkUndo();
+    try {
+      for ( MetaverseBulkLoad.Removal removal : load.getRemovals() ) {
+        if ( removal.node != null ) {
+          deleteNode( removal.node );
+        } else if ( removal.label != null ) {
+          updateLinkLabel( removal.link, removal.label );
+        } else {
+          deleteLink( removal.link );
+        }
+      }
+      for ( IMetaverseNode node : load.getNodes() ) {
+        addNode( node );
+      }
+      for ( IMetaverseNode node : load.getUpdates() ) {
+        updateNode( node );
+      }
+      for ( IMetaverseLink link : load.getLinks() ) {
+        addLink( link, !load.isStagedNode( link.getFromNode() ), !load.isStagedNode( link.getToNode() ) );
+      }
+      if ( transactional ) {
+        ( (TransactionalGraph) graph ).commit();
+      }
+    } catch ( RuntimeException e ) {
+      if ( transactional ) {
+        ( (TransactionalGraph) graph ).rollback();
+      } else {
+        bulkUndo.undo( graph );
+      }
+      rebuildLogicalIdIndex();
+      throw e;
+    } finally {
+      bulkUndo = null;
+      lock.writeLock().unlock();
+    }
   }
 
   /**
@@ -108,6 +242,24 @@ public class MetaverseBuilder extends MetaverseObjectFactory implements IMetaver
    */
   @Override
   public IMetaverseBuilder addLink( IMetaverseLink link ) {
+    // the shared side: single changes run alongside each other and readers, only bulk loads are exclusive
+    lock.readLock().lock();
+    try {
+      addLink( link, true, true );
+    } finally {
+      lock.readLock().unlock();
+    }
+    return this;
+  }
+
+  /**
+   * Adds a link, creating its nodes if they do not exist
+   *
+   * @param link         the link to add
+   * @param copyFromNode whether to copy the properties of the from node onto an existing vertex
+   * @param copyToNode   whether to copy the properties of the to node onto an existing vertex
+   */
+  private void addLink( IMetaverseLink link, boolean copyFromNode, boolean copyToNode ) {
 
     // make sure the from and to nodes exist in the graph
     Vertex fromVertex = getVertexForNode( link.getFromNode() );
@@ -118,18 +270,24 @@ public class MetaverseBuilder extends MetaverseObjectFactory implements IMetaver
       fromVertex = addVertex( link.getFromNode() );
       // set the virtual node property to true since this is an implicit adding of a node
       fromVertex.setProperty( DictionaryConst.NODE_VIRTUAL, true );
+      copyFromNode = true;
+    }
+    if ( copyFromNode ) {
+      // update the vertex properties from the fromNode
+      copyNodePropertiesToVertex( link.getFromNode(), fromVertex );
     }
-    // update the vertex properties from the fromNode
-    copyNodePropertiesToVertex( link.getFromNode(), fromVertex );
 
     // add the "to" vertex to the graph if it wasn't found
     if ( toVertex == null ) {
       toVertex = addVertex( link.getToNode() );
       // set the virtual node property to true since this is an implicit adding of a node
       toVertex.setProperty( DictionaryConst.NODE_VIRTUAL, true );
+      copyToNode = true;
+    }
+    if ( copyToNode ) {
+      // update the to vertex properties from the toNode
+      copyNodePropertiesToVertex( link.getToNode(), toVertex );
     }
-    // update the to vertex properties from the toNode
-    copyNodePropertiesToVertex( link.getToNode(), toVertex );
 
     String label = link.getLabel();
     String edgeId = getEdgeId( fromVertex, label, toVertex );
@@ -137,12 +295,13 @@ public class MetaverseBuilder extends MetaverseObjectFactory implements IMetaver
     Edge edge = graph.getEdge( edgeId );
     if ( edge == null ) {
       edge = graph.addEdge( edgeId, fromVertex, toVertex, label );
+      created( edge );
       edge.setProperty( "text", label );
+    } else {
+      touched( edge );
     }
 
     copyLinkPropertiesToEdge( link, edge );
-
-    return this;
   }
 
   /**
@@ -165,19 +324,25 @@ public class MetaverseBuilder extends MetaverseObjectFactory implements IMetaver
    */
   @Override
   public IMetaverseBuilder addNode( IMetaverseNode node ) {
-    // does the node already exist?
-    Vertex v = getVertexForNode( node );
-
-    if ( v == null ) {
-      // it's a new node, add it to the graph
-      v = addVertex( node );
-    }
-
-    // adding this node means that it is no longer a virtual node
-    v.setProperty( DictionaryConst.NODE_VIRTUAL, false );
+    lock.readLock().lock();
+    try {
+      // does the node already exist?
+      Vertex v = getVertexForNode( node );
+
+      if ( v == null ) {
+        // it's a new node, add it to the graph
+        v = addVertex( node );
+      } else {
+        touched( v );
+      }
 
-    copyNodePropertiesToVertex( node, v );
+      // adding this node means that it is no longer a virtual node
+      v.setProperty( DictionaryConst.NODE_VIRTUAL, false );
 
+      copyNodePropertiesToVertex( node, v );
+    } finally {
+      lock.readLock().unlock();
+    }
     return this;
   }
 
@@ -190,13 +355,15 @@ public class MetaverseBuilder extends MetaverseObjectFactory implements IMetaver
   private Vertex addVertex( IMetaverseNode node ) {
 
     Vertex v = graph.addVertex( node.getStringID() );
+    created( v );
 
     if ( DictionaryHelper.isEntityType( node.getType() ) ) {
 
       // Add a link from the entity type to the node. Note the method called is addEntityType but we expect at this
       // point that the entities have been added, the idea is to return the existing one. That's also why the second
       // parameter is null, we don't know or care about the parent
-      graph.addEdge( null, addEntityType( node.getType(), null ), v, DictionaryConst.LINK_PARENT_CONCEPT );
+      Vertex entityType = addEntityType( node.getType(), null );
+      created( graph.addEdge( null, entityType, v, DictionaryConst.LINK_PARENT_CONCEPT ) );
     }
 
     return v;
@@ -219,6 +386,7 @@ public class MetaverseBuilder extends MetaverseObjectFactory implements IMetaver
       // the entity type node does not exist, so create it
       DictionaryHelper.registerEntityType( entityName );
       entityType = graph.addVertex( ENTITY_PREFIX + entityName );
+      created( entityType );
       entityType.setProperty( DictionaryConst.PROPERTY_TYPE, DictionaryConst.NODE_TYPE_ENTITY );
       entityType.setProperty( DictionaryConst.PROPERTY_NAME, entityName );
 
@@ -273,6 +441,7 @@ public class MetaverseBuilder extends MetaverseObjectFactory implements IMetaver
    * @param v    Vertex to set properties on
    */
   private void copyNodePropertiesToVertex( IMetaverseNode node, Vertex v ) {
+    touched( v );
 
     // don't copy the node logicalId to a vertex if the node is virtual and the vertex is not
     Boolean nodeIsVirtual = (Boolean) node.getProperty( DictionaryConst.NODE_VIRTUAL );
@@ -281,7 +450,7 @@ public class MetaverseBuilder extends MetaverseObjectFactory implements IMetaver
     Boolean vertexIsVirtual = v.getProperty( DictionaryConst.NODE_VIRTUAL );
     vertexIsVirtual = vertexIsVirtual == null ? false : vertexIsVirtual;
 
-    String vertexLogicalId = v.getProperty( DictionaryConst.PROPERTY_LOGICAL_ID );
+    Object vertexLogicalId = v.getProperty( DictionaryConst.PROPERTY_LOGICAL_ID );
     boolean skipLogicalId = false;
     if ( vertexLogicalId != null && nodeIsVirtual && !vertexIsVirtual ) {
       skipLogicalId = true;
@@ -299,6 +468,29 @@ public class MetaverseBuilder extends MetaverseObjectFactory implements IMetaver
       }
     }
     node.setDirty( false );
+
+    Object logicalId = v.getProperty( DictionaryConst.PROPERTY_LOGICAL_ID );
+    if ( logicalId != null && !logicalId.equals( vertexLogicalId ) ) {
+      unindex( vertexLogicalId, v );
+      logicalIdIndex.put( logicalId.toString(), v.getId() );
+    }
+  }
+
+  /**
+   * Removes the index entry for a logical id if it points to the given vertex
+   */
+  private void unindex( Object logicalId, Vertex v ) {
+    if ( logicalId != null ) {
+      logicalIdIndex.remove( logicalId.toString(), v.getId() );
+    }
+  }
+
+  /**
+   * Removes a vertex from the graph and the logical id index
+   */
+  private void removeVertex( Vertex v ) {
+    unindex( v.getProperty( DictionaryConst.PROPERTY_LOGICAL_ID ), v );
+    graph.removeVertex( v );
   }
 
   /**
@@ -335,12 +527,7 @@ public class MetaverseBuilder extends MetaverseObjectFactory implements IMetaver
 
       if ( vertex == null && !logicalId.equals( node.getStringID() ) ) {
         // check for matching logicalIds
-        Iterable<Vertex> logicalMatches = graph.getVertices( DictionaryConst.PROPERTY_LOGICAL_ID, logicalId );
-        for ( Vertex match : logicalMatches ) {
-          // just return the first match for now
-          vertex = match;
-          break;
-        }
+        vertex = getVertexByLogicalId( logicalId );
       }
 
       return vertex;
@@ -349,9 +536,50 @@ public class MetaverseBuilder extends MetaverseObjectFactory implements IMetaver
     }
   }
 
+  /**
+   * Looks up the vertex with the given logical id in the logical id index
+   *
+   * @param logicalId the logical id
+   * @return the matching Vertex or null if none found
+   */
+  protected Vertex getVertexByLogicalId( String logicalId ) {
+    Object vertexId = logicalIdIndex.get( logicalId );
+    if ( vertexId == null ) {
+      return null;
+    }
+    Vertex vertex = graph.getVertex( vertexId );
+    if ( vertex == null || !logicalId.equals( vertex.getProperty( DictionaryConst.PROPERTY_LOGICAL_ID ) ) ) {
+      // removed or changed behind our back
+      logicalIdIndex.remove( logicalId, vertexId );
+      return null;
+    }
+    return vertex;
+  }
+
+  /**
+   * Returns the JSON logical id that a hashed logical id was made from, as stored on the vertex it identifies
+   *
+   * @param digest the hashed logical id
+   * @return the JSON logical id, or null if no vertex has that logical id or it was not hashed
+   */
+  @Override
+  public String getLogicalIdSource( String digest ) {
+    if ( digest == null || graph == null ) {
+      return null;
+    }
+    Vertex vertex = getVertexByLogicalId( digest );
+    Object source = vertex == null ? null : vertex.getProperty( DictionaryConst.PROPERTY_LOGICAL_ID_SOURCE );
+    return source == null ? null : source.toString();
+  }
+
   @Override
   public IMetaverseBuilder deleteLink( IMetaverseLink link ) {
-    deleteLink( link, true );
+    lock.readLock().lock();
+    try {
+      deleteLink( link, true );
+    } finally {
+      lock.readLock().unlock();
+    }
     return this;
   }
 
@@ -397,7 +625,7 @@ public class MetaverseBuilder extends MetaverseObjectFactory implements IMetaver
         Vertex[] fromAndTo = new Vertex[]{ fromVertex, toVertex };
         for ( Vertex v : fromAndTo ) {
           if ( isVirtual( v ) ) {
-            graph.removeVertex( v );
+            removeVertex( v );
           }
         }
       }
@@ -407,9 +635,14 @@ public class MetaverseBuilder extends MetaverseObjectFactory implements IMetaver
 
   @Override
   public IMetaverseBuilder deleteNode( IMetaverseNode node ) {
-    Vertex v = getVertexForNode( node );
-    if ( v != null ) {
-      graph.removeVertex( v );
+    lock.readLock().lock();
+    try {
+      Vertex v = getVertexForNode( node );
+      if ( v != null ) {
+        removeVertex( v );
+      }
+    } finally {
+      lock.readLock().unlock();
     }
     return this;
   }
@@ -422,9 +655,14 @@ public class MetaverseBuilder extends MetaverseObjectFactory implements IMetaver
    */
   @Override
   public IMetaverseBuilder updateLinkLabel( IMetaverseLink link, String label ) {
-    if ( label != null && deleteLink( link, false ) ) {
-      link.setLabel( label );
-      addLink( link );
+    lock.readLock().lock();
+    try {
+      if ( label != null && deleteLink( link, false ) ) {
+        link.setLabel( label );
+        addLink( link, true, true );
+      }
+    } finally {
+      lock.readLock().unlock();
     }
     return this;
   }
@@ -459,12 +697,15 @@ public class MetaverseBuilder extends MetaverseObjectFactory implements IMetaver
    */
   @Override
   public IMetaverseBuilder updateNode( IMetaverseNode node ) {
-
-    Vertex v = getVertexForNode( node );
-    if ( v != null ) {
-      copyNodePropertiesToVertex( node, v );
+    lock.readLock().lock();
+    try {
+      Vertex v = getVertexForNode( node );
+      if ( v != null ) {
+        copyNodePropertiesToVertex( node, v );
+      }
+    } finally {
+      lock.readLock().unlock();
     }
-
     return this;
   }
 
@@ -495,6 +736,7 @@ public class MetaverseBuilder extends MetaverseObjectFactory implements IMetaver
     // only add the link if the edge doesn't already exist
     if ( graph.getEdge( edgeId ) == null ) {
       Edge e = graph.addEdge( edgeId, fromVertex, toVertex, label );
+      created( e );
       e.setProperty( "text", label );
     }
   }
@@ -515,4 +757,65 @@ public class MetaverseBuilder extends MetaverseObjectFactory implements IMetaver
     return isVirtual == null ? false : isVirtual;
   }
 
+  private void created( Element element ) {
+    if ( bulkUndo != null && element != null ) {
+      bulkUndo.created( element );
+    }
+  }
+
+  private void touched( Element element ) {
+    if ( bulkUndo != null ) {
+      bulkUndo.touched( element );
+    }
+  }
+
+  /**
+   * The elements a bulk load created and the properties of those it changed, as they were before
+   */
+  private static class BulkUndo {
+    private final List<Element> created = new ArrayList<Element>();
+    private final Set<Element> createdSet = new HashSet<Element>();
+    private final Map<Element, Map<String, Object>> previous = new LinkedHashMap<Element, Map<String, Object>>();
+
+    void created( Element element ) {
+      created.add( element );
+      createdSet.add( element );
+    }
+
+    void touched( Element element ) {
+      if ( !createdSet.contains( element ) && !previous.containsKey( element ) ) {
+        Map<String, Object> properties = new HashMap<String, Object>();
+        for ( String key : element.getPropertyKeys() ) {
+          properties.put( key, element.getProperty( key ) );
+        }
+        previous.put( element, properties );
+      }
+    }
+
+    void undo( Graph graph ) {
+      for ( Map.Entry<Element, Map<String, Object>> entry : previous.entrySet() ) {
+        Element element = entry.getKey();
+        Map<String, Object> properties = entry.getValue();
+        for ( String key : new ArrayList<String>( element.getPropertyKeys() ) ) {
+          if ( !properties.containsKey( key ) ) {
+            element.removeProperty( key );
+          }
+        }
+        for ( Map.Entry<String, Object> property : properties.entrySet() ) {
+          element.setProperty( property.getKey(), property.getValue() );
+        }
+      }
+      // newest first, so edges go before the vertices they hang off
+      for ( int i = created.size() - 1; i >= 0; i-- ) {
+        Element element = created.get( i );
+        if ( element instanceof Edge ) {
+          if ( graph.getEdge( element.getId() ) != null ) {
+            graph.removeEdge( (Edge) element );
+          }
+        } else if ( graph.getVertex( element.getId() ) != null ) {
+          graph.removeVertex( (Vertex) element );
+        }
+      }
+    }
+  }
 }
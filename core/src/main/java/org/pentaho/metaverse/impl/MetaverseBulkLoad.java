@@ -0,0 +1,360 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.impl;
+
+import com.tinkerpop.blueprints.Graph;
+import org.pentaho.dictionary.MetaverseLink;
+import org.pentaho.metaverse.api.IMetaverseBuilder;
+import org.pentaho.metaverse.api.IMetaverseBulkLoad;
+import org.pentaho.metaverse.api.IMetaverseLink;
+import org.pentaho.metaverse.api.IMetaverseNode;
+import org.pentaho.metaverse.api.IMetaverseObjectFactory;
+import org.pentaho.metaverse.api.MetaverseException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stages nodes and links for a bulk load into a target builder. Nodes and links are copied when staged, as with
+ * {@link RecordingMetaverseBuilder}, and deduplicated: a node staged again (by logical id) is merged into the first
+ * copy, later property values winning, and so is a link between the same two nodes with the same label. The end nodes
+ * of a link are merged into the staged nodes too, so properties set on a node after it was added (as step analyzers
+ * do before linking their step) are kept, as they would be if the calls went straight to the builder.
+ * <p/>
+ * On commit the load is applied in three phases:
+ * <ol>
+ *   <li>deletions and link relabels, in the order they were staged</li>
+ *   <li>nodes, then updates to nodes that were not added in this load</li>
+ *   <li>links. The properties of a link's end nodes are only copied if those nodes were not added in this load; a
+ *   node added in the load already carries the latest of them.</li>
+ * </ol>
+ * A {@link MetaverseBuilder} target applies the load while holding its write lock, so no other builder call (and no
+ * reader holding the read lock) sees it half-applied, and undoes it if it fails part way. Any other target simply
+ * receives the calls.
+ */
+public class MetaverseBulkLoad implements IMetaverseBulkLoad {
+
+  private static final String SEPARATOR = "~";
+
+  /**
+   * A deletion or relabel, applied before anything is added
+   */
+  static class Removal {
+    final IMetaverseNode node;
+    final IMetaverseLink link;
+    final String label;
+
+    Removal( IMetaverseNode node, IMetaverseLink link, String label ) {
+      this.node = node;
+      this.link = link;
+      this.label = label;
+    }
+  }
+
+  private final IMetaverseBuilder target;
+
+  private final List<Removal> removals = new ArrayList<Removal>();
+
+  private final Map<String, IMetaverseNode> nodes = new LinkedHashMap<String, IMetaverseNode>();
+
+  private final Map<String, IMetaverseNode> updates = new LinkedHashMap<String, IMetaverseNode>();
+
+  private final Map<String, IMetaverseLink> links = new LinkedHashMap<String, IMetaverseLink>();
+
+  private boolean open = true;
+
+  /**
+   * Creates a bulk load into the given builder
+   *
+   * @param target the builder the load is applied to on commit
+   */
+  public MetaverseBulkLoad( IMetaverseBuilder target ) {
+    this.target = target;
+  }
+
+  @Override
+  public synchronized void commit() throws MetaverseException {
+    checkOpen();
+    open = false;
+    try {
+      if ( target instanceof MetaverseBuilder ) {
+        ( (MetaverseBuilder) target ).applyBulkLoad( this );
+      } else {
+        apply( target );
+      }
+    } catch ( RuntimeException e ) {
+      throw new MetaverseException( e.getMessage(), e );
+    } finally {
+      clear();
+    }
+  }
+
+  @Override
+  public synchronized void rollback() {
+    open = false;
+    clear();
+  }
+
+  @Override
+  public synchronized boolean isOpen() {
+    return open;
+  }
+
+  @Override
+  public synchronized int getNodeCount() {
+    return nodes.size() + updates.size();
+  }
+
+  @Override
+  public synchronized int getLinkCount() {
+    return links.size();
+  }
+
+  /**
+   * Applies the load to a builder through its public calls
+   */
+  void apply( IMetaverseBuilder builder ) {
+    for ( Removal removal : removals ) {
+      if ( removal.node != null ) {
+        builder.deleteNode( removal.node );
+      } else if ( removal.label != null ) {
+        builder.updateLinkLabel( removal.link, removal.label );
+      } else {
+        builder.deleteLink( removal.link );
+      }
+    }
+    for ( IMetaverseNode node : nodes.values() ) {
+      builder.addNode( node );
+    }
+    for ( IMetaverseNode node : updates.values() ) {
+      builder.updateNode( node );
+    }
+    for ( IMetaverseLink link : links.values() ) {
+      builder.addLink( link );
+    }
+  }
+
+  List<Removal> getRemovals() {
+    return removals;
+  }
+
+  Collection<IMetaverseNode> getNodes() {
+    return nodes.values();
+  }
+
+  Collection<IMetaverseNode> getUpdates() {
+    return updates.values();
+  }
+
+  Collection<IMetaverseLink> getLinks() {
+    return links.values();
+  }
+
+  boolean isStagedNode( IMetaverseNode node ) {
+    return node != null && nodes.containsKey( node.getLogicalId() );
+  }
+
+  private void clear() {
+    removals.clear();
+    nodes.clear();
+    updates.clear();
+    links.clear();
+  }
+
+  private void checkOpen() {
+    if ( !open ) {
+      throw new IllegalStateException( "The bulk load has already been committed or rolled back" );
+    }
+  }
+
+  private static String getLinkKey( IMetaverseLink link ) {
+    return link.getFromNode().getLogicalId() + SEPARATOR + link.getLabel() + SEPARATOR
+      + link.getToNode().getLogicalId();
+  }
+
+  /**
+   * Copies the non-null properties of one staged element onto another
+   */
+  private static void merge( IMetaverseNode from, IMetaverseNode into ) {
+    for ( String key : from.getPropertyKeys() ) {
+      Object value = from.getProperty( key );
+      if ( value != null ) {
+        into.setProperty( key, value );
+      }
+    }
+  }
+
+  private static void merge( IMetaverseLink from, IMetaverseLink into ) {
+    for ( String key : from.getPropertyKeys() ) {
+      Object value = from.getProperty( key );
+      if ( value != null ) {
+        into.setProperty( key, value );
+      }
+    }
+    merge( from.getFromNode(), into.getFromNode() );
+    merge( from.getToNode(), into.getToNode() );
+  }
+
+  private void stage( IMetaverseLink copy ) {
+    String key = getLinkKey( copy );
+    IMetaverseLink staged = links.get( key );
+    if ( staged == null ) {
+      links.put( key, copy );
+    } else {
+      merge( copy, staged );
+    }
+  }
+
+  /**
+   * Brings a staged node up to date with the end node of a link staged after it
+   */
+  private void mergeIntoStagedNode( IMetaverseNode node ) {
+    IMetaverseNode staged = nodes.get( node.getLogicalId() );
+    if ( staged != null ) {
+      merge( node, staged );
+    }
+  }
+
+  @Override
+  public synchronized IMetaverseBuilder addNode( IMetaverseNode node ) {
+    checkOpen();
+    IMetaverseNode copy = RecordingMetaverseBuilder.snapshot( node );
+    String logicalId = copy.getLogicalId();
+    IMetaverseNode staged = nodes.get( logicalId );
+    if ( staged == null ) {
+      // an update staged earlier applies first, then the node's own properties
+      IMetaverseNode update = updates.remove( logicalId );
+      if ( update != null ) {
+        merge( copy, update );
+        copy = update;
+      }
+      nodes.put( logicalId, copy );
+    } else {
+      merge( copy, staged );
+    }
+    return this;
+  }
+
+  @Override
+  public IMetaverseBuilder addLink( IMetaverseLink link ) {
+    synchronized ( this ) {
+      checkOpen();
+      IMetaverseLink copy = RecordingMetaverseBuilder.snapshot( link );
+      mergeIntoStagedNode( copy.getFromNode() );
+      mergeIntoStagedNode( copy.getToNode() );
+      stage( copy );
+    }
+    return this;
+  }
+
+  @Override
+  public IMetaverseBuilder addLink( IMetaverseNode fromNode, String label, IMetaverseNode toNode ) {
+    return addLink( new MetaverseLink( fromNode, label, toNode ) );
+  }
+
+  @Override
+  public synchronized IMetaverseBuilder deleteNode( IMetaverseNode node ) {
+    checkOpen();
+    String logicalId = node.getLogicalId();
+    nodes.remove( logicalId );
+    updates.remove( logicalId );
+    for ( Iterator<IMetaverseLink> it = links.values().iterator(); it.hasNext(); ) {
+      IMetaverseLink link = it.next();
+      if ( logicalId.equals( link.getFromNode().getLogicalId() )
+        || logicalId.equals( link.getToNode().getLogicalId() ) ) {
+        it.remove();
+      }
+    }
+    removals.add( new Removal( RecordingMetaverseBuilder.snapshot( node ), null, null ) );
+    return this;
+  }
+
+  @Override
+  public synchronized IMetaverseBuilder deleteLink( IMetaverseLink link ) {
+    checkOpen();
+    links.remove( getLinkKey( link ) );
+    removals.add( new Removal( null, RecordingMetaverseBuilder.snapshot( link ), null ) );
+    return this;
+  }
+
+  @Override
+  public synchronized IMetaverseBuilder updateNode( IMetaverseNode updatedNode ) {
+    checkOpen();
+    IMetaverseNode copy = RecordingMetaverseBuilder.snapshot( updatedNode );
+    String logicalId = copy.getLogicalId();
+    IMetaverseNode staged = nodes.get( logicalId );
+    if ( staged == null ) {
+      staged = updates.get( logicalId );
+    }
+    if ( staged == null ) {
+      updates.put( logicalId, copy );
+    } else {
+      merge( copy, staged );
+    }
+    return this;
+  }
+
+  @Override
+  public synchronized IMetaverseBuilder updateLinkLabel( IMetaverseLink link, String newLabel ) {
+    checkOpen();
+    if ( newLabel != null ) {
+      IMetaverseLink staged = links.remove( getLinkKey( link ) );
+      if ( staged != null ) {
+        staged.setLabel( newLabel );
+        stage( staged );
+      }
+      removals.add( new Removal( null, RecordingMetaverseBuilder.snapshot( link ), newLabel ) );
+    }
+    return this;
+  }
+
+  @Override
+  public IMetaverseObjectFactory getMetaverseObjectFactory() {
+    return target.getMetaverseObjectFactory();
+  }
+
+  @Override
+  public void setMetaverseObjectFactory( IMetaverseObjectFactory metaverseObjectFactory ) {
+    target.setMetaverseObjectFactory( metaverseObjectFactory );
+  }
+
+  /**
+   * Returns the graph of the target builder. Note that staged nodes and links are not visible in it until committed.
+   */
+  @Override
+  public Graph getGraph() {
+    return target.getGraph();
+  }
+
+  /**
+   * Sets the graph of the target builder, as {@link #getGraph()} returns it
+   */
+  @Override
+  public void setGraph( Graph graph ) {
+    target.setGraph( graph );
+  }
+}
@@ -32,14 +32,13 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorCompletionService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 public class MetaverseCompletionService implements CompletionService<String> {
 
   private ExecutorCompletionService<String> executionCompletionService;
-  private Executor executor = Executors.newCachedThreadPool();
+  private Executor executor = LineageExecutor.getInstance();
   private static final Logger log = LoggerFactory.getLogger( MetaverseCompletionService.class );
   private Queue<Future<String>> queue = new ConcurrentLinkedQueue<Future<String>>();
 
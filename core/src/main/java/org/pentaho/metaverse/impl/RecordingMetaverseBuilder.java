@@ -0,0 +1,229 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.metaverse.impl;
+
+import com.tinkerpop.blueprints.Graph;
+import org.pentaho.dictionary.MetaverseLink;
+import org.pentaho.dictionary.MetaverseTransientNode;
+import org.pentaho.metaverse.api.IMetaverseBuilder;
+import org.pentaho.metaverse.api.IMetaverseLink;
+import org.pentaho.metaverse.api.IMetaverseNode;
+import org.pentaho.metaverse.api.IMetaverseObjectFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An IMetaverseBuilder that does not touch a graph, but records every call made to it so they can be applied to
+ * another builder later on, in the same order, with {@link #replay()}.
+ * <p/>
+ * Analyzers keep modifying nodes after handing them to a builder, so each node and link is copied at the time it is
+ * recorded. Replaying therefore produces the same graph as if the calls had been made against the target directly.
+ * This lets independent pieces of a document be analyzed concurrently and merged into the target deterministically.
+ */
+public class RecordingMetaverseBuilder implements IMetaverseBuilder {
+
+  private enum Action {
+    ADD_NODE, ADD_LINK, ADD_LINK_NODES, DELETE_NODE, DELETE_LINK, UPDATE_NODE, UPDATE_LINK_LABEL
+  }
+
+  private static class Call {
+    private final Action action;
+    private final IMetaverseNode node;
+    private final IMetaverseLink link;
+    private final String label;
+
+    Call( Action action, IMetaverseNode node, IMetaverseLink link, String label ) {
+      this.action = action;
+      this.node = node;
+      this.link = link;
+      this.label = label;
+    }
+  }
+
+  /**
+   * A copy of a node as it was when it was handed to the builder. The logical id is captured as well, since the
+   * generator that produced it is not reachable through IMetaverseNode.
+   */
+  static class NodeSnapshot extends MetaverseTransientNode {
+    private final String snapshotLogicalId;
+
+    NodeSnapshot( IMetaverseNode node ) {
+      snapshotLogicalId = node.getLogicalId();
+      for ( String key : node.getPropertyKeys() ) {
+        properties.put( key, node.getProperty( key ) );
+      }
+    }
+
+    @Override
+    public String getLogicalId() {
+      return snapshotLogicalId;
+    }
+  }
+
+  private final IMetaverseBuilder target;
+
+  private final List<Call> calls = new ArrayList<>();
+
+  /**
+   * Creates a builder that records calls to be replayed against the given target
+   *
+   * @param target the builder that recorded calls are applied to by {@link #replay()}
+   */
+  public RecordingMetaverseBuilder( IMetaverseBuilder target ) {
+    this.target = target;
+  }
+
+  /**
+   * Applies all recorded calls to the target builder, in the order they were made, and clears the recording.
+   *
+   * @return the target builder
+   */
+  public IMetaverseBuilder replay() {
+    for ( Call call : calls ) {
+      switch ( call.action ) {
+        case ADD_NODE:
+          target.addNode( call.node );
+          break;
+        case ADD_LINK:
+          target.addLink( call.link );
+          break;
+        case ADD_LINK_NODES:
+          target.addLink( call.link.getFromNode(), call.link.getLabel(), call.link.getToNode() );
+          break;
+        case DELETE_NODE:
+          target.deleteNode( call.node );
+          break;
+        case DELETE_LINK:
+          target.deleteLink( call.link );
+          break;
+        case UPDATE_NODE:
+          target.updateNode( call.node );
+          break;
+        case UPDATE_LINK_LABEL:
+          target.updateLinkLabel( call.link, call.label );
+          break;
+        default:
+          break;
+      }
+    }
+    calls.clear();
+    return target;
+  }
+
+  /**
+   * Returns the number of calls that have been recorded and not yet replayed
+   *
+   * @return the number of pending calls
+   */
+  public int size() {
+    return calls.size();
+  }
+
+  @Override
+  public IMetaverseBuilder addNode( IMetaverseNode node ) {
+    calls.add( new Call( Action.ADD_NODE, snapshot( node ), null, null ) );
+    return this;
+  }
+
+  @Override
+  public IMetaverseBuilder addLink( IMetaverseLink link ) {
+    calls.add( new Call( Action.ADD_LINK, null, snapshot( link ), null ) );
+    return this;
+  }
+
+  @Override
+  public IMetaverseBuilder addLink( IMetaverseNode fromNode, String label, IMetaverseNode toNode ) {
+    calls.add( new Call( Action.ADD_LINK_NODES, null,
+      new MetaverseLink( snapshot( fromNode ), label, snapshot( toNode ) ), null ) );
+    return this;
+  }
+
+  @Override
+  public IMetaverseBuilder deleteNode( IMetaverseNode node ) {
+    calls.add( new Call( Action.DELETE_NODE, snapshot( node ), null, null ) );
+    return this;
+  }
+
+  @Override
+  public IMetaverseBuilder deleteLink( IMetaverseLink link ) {
+    calls.add( new Call( Action.DELETE_LINK, null, snapshot( link ), null ) );
+    return this;
+  }
+
+  @Override
+  public IMetaverseBuilder updateNode( IMetaverseNode updatedNode ) {
+    calls.add( new Call( Action.UPDATE_NODE, snapshot( updatedNode ), null, null ) );
+    return this;
+  }
+
+  @Override
+  public IMetaverseBuilder updateLinkLabel( IMetaverseLink link, String newLabel ) {
+    calls.add( new Call( Action.UPDATE_LINK_LABEL, null, snapshot( link ), newLabel ) );
+    return this;
+  }
+
+  @Override
+  public IMetaverseObjectFactory getMetaverseObjectFactory() {
+    return target.getMetaverseObjectFactory();
+  }
+
+  @Override
+  public void setMetaverseObjectFactory( IMetaverseObjectFactory metaverseObjectFactory ) {
+    target.setMetaverseObjectFactory( metaverseObjectFactory );
+  }
+
+  /**
+   * Returns the graph of the target builder. Note that recorded calls are not visible in it until replayed.
+   */
+  @Override
+  public Graph getGraph() {
+    return target.getGraph();
+  }
+
+  /**
+   * Sets the graph of the target builder, which the recorded calls are applied to when replayed
+   */
+  @Override
+  public void setGraph( Graph graph ) {
+    target.setGraph( graph );
+  }
+
+  static IMetaverseNode snapshot( IMetaverseNode node ) {
+    return node == null ? null : new NodeSnapshot( node );
+  }
+
+  static IMetaverseLink snapshot( IMetaverseLink link ) {
+    if ( link == null ) {
+      return null;
+    }
+    MetaverseLink copy = new MetaverseLink();
+    for ( String key : link.getPropertyKeys() ) {
+      copy.setProperty( key, link.getProperty( key ) );
+    }
+    copy.setFromNode( snapshot( link.getFromNode() ) );
+    copy.setToNode( snapshot( link.getToNode() ) );
+    return copy;
+  }
+}
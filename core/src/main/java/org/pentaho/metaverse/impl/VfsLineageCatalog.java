@@ -0,0 +1,653 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.impl;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.vfs2.FileContent;
+import org.apache.commons.vfs2.FileDepthSelector;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileType;
+import org.pentaho.di.core.exception.KettleFileException;
+import org.pentaho.di.core.vfs.KettleVFS;
+import org.pentaho.metaverse.messages.Messages;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An on-disk index of the artifacts in a lineage output folder, so that the runs of one document can be found
+ * without walking every date folder.
+ * <p/>
+ * The output folder is laid out as {@code <day>/<document path>/<timestamp>_<name>.<ext>}. The catalog is a journal
+ * file in the root of the output folder, with one line per change: {@code + <relative path>} when an artifact is
+ * written and {@code - <relative folder>/} when a folder of artifacts is deleted. Everything else (day, document
+ * path, run timestamp) is derived from the relative path. The journal is replayed when it has been changed by
+ * someone else, and compacted when it holds more removed than live entries.
+ * <p/>
+ * Files added or deleted outside of the {@link VfsLineageWriter} are not seen until {@link #rebuild()} is called;
+ * {@link #check(boolean)} reports (and optionally repairs) such differences.
+ */
+public class VfsLineageCatalog {
+
+  public static final String CATALOG_FILE_NAME = ".lineage-catalog";
+
+  private static final Logger log = LoggerFactory.getLogger( VfsLineageCatalog.class );
+
+  private static final String ADDED = "+ ";
+  private static final String REMOVED = "- ";
+
+  private static final ConcurrentMap<String, VfsLineageCatalog> CATALOGS = new ConcurrentHashMap<>();
+
+  private final String outputFolder;
+
+  private final SimpleDateFormat format = new SimpleDateFormat( "yyyyMMdd" );
+
+  /**
+   * All artifacts, by path relative to the output folder. Sorted, so a folder's artifacts are a contiguous range.
+   */
+  private final TreeMap<String, Artifact> artifacts = new TreeMap<>();
+
+  /**
+   * Document paths (relative to their day folder) by the last segment of the path, used to answer suffix queries
+   */
+  private final Map<String, Set<String>> documentsByName = new HashMap<>();
+
+  /**
+   * Relative artifact paths by document path
+   */
+  private final Map<String, Set<String>> artifactsByDocument = new HashMap<>();
+
+  private long journalLines;
+  private long loadedSize = -1;
+  private long loadedModified = -1;
+
+  /**
+   * Creates a catalog for the given output folder. Use {@link #getInstance(String)} to share one catalog between all
+   * readers and writers of a folder.
+   *
+   * @param outputFolder the VFS location of the lineage output folder
+   */
+  public VfsLineageCatalog( String outputFolder ) {
+    this.outputFolder = outputFolder;
+    format.setLenient( false );
+  }
+
+  /**
+   * Returns the catalog shared by everyone using the given output folder
+   *
+   * @param outputFolder the VFS location of the lineage output folder
+   * @return the catalog for the folder
+   */
+  public static VfsLineageCatalog getInstance( String outputFolder ) {
+    VfsLineageCatalog catalog = CATALOGS.get( outputFolder );
+    if ( catalog == null ) {
+      VfsLineageCatalog created = new VfsLineageCatalog( outputFolder );
+      catalog = CATALOGS.putIfAbsent( outputFolder, created );
+      if ( catalog == null ) {
+        catalog = created;
+      }
+    }
+    return catalog;
+  }
+
+  public String getOutputFolder() {
+    return outputFolder;
+  }
+
+  /**
+   * @return true if the catalog file exists in the output folder
+   */
+  public synchronized boolean exists() {
+    try {
+      return getCatalogFile().exists();
+    } catch ( KettleFileException | FileSystemException e ) {
+      return false;
+    }
+  }
+
+  /**
+   * Returns the number of artifacts in the catalog
+   *
+   * @return the number of artifacts
+   */
+  public synchronized int size() {
+    refresh();
+    return artifacts.size();
+  }
+
+  /**
+   * Records a newly written artifact
+   *
+   * @param artifact the artifact file, which must be inside the output folder
+   */
+  public synchronized void add( FileObject artifact ) {
+    String relativePath = relativize( artifact );
+    if ( relativePath == null || !isArtifactPath( relativePath ) ) {
+      return;
+    }
+    refresh();
+    if ( index( relativePath ) ) {
+      append( ADDED + relativePath );
+    }
+  }
+
+  /**
+   * Forgets all artifacts in the given folder, which is about to be (or has been) deleted
+   *
+   * @param folder the folder, which must be inside the output folder
+   */
+  public synchronized void removeFolder( FileObject folder ) {
+    String relativePath = relativize( folder );
+    if ( relativePath == null ) {
+      return;
+    }
+    refresh();
+    String prefix = relativePath.endsWith( "/" ) ? relativePath : relativePath + "/";
+    if ( unindexFolder( prefix ) > 0 ) {
+      append( REMOVED + prefix );
+    }
+  }
+
+  /**
+   * Finds the artifacts of the given document, in day and path order
+   *
+   * @param pathToArtifact the path of the document, or a trailing part of it
+   * @param startingDate   the first day to include, or null
+   * @param endingDate     the last day to include, or null
+   * @return the matching artifacts
+   */
+  public synchronized List<Artifact> findArtifacts( String pathToArtifact, Date startingDate, Date endingDate ) {
+    refresh();
+    String query = normalize( pathToArtifact );
+    if ( query.isEmpty() ) {
+      return Collections.emptyList();
+    }
+    String name = query.substring( query.lastIndexOf( '/' ) + 1 );
+    Set<String> candidates = documentsByName.get( name );
+    if ( candidates == null ) {
+      return Collections.emptyList();
+    }
+    Set<String> matches = new TreeSet<>();
+    for ( String document : candidates ) {
+      if ( document.equals( query ) || document.endsWith( "/" + query ) ) {
+        matches.addAll( artifactsByDocument.get( document ) );
+      }
+    }
+    List<Artifact> result = new ArrayList<>( matches.size() );
+    for ( String relativePath : matches ) {
+      Artifact artifact = artifacts.get( relativePath );
+      if ( inRange( artifact, startingDate, endingDate ) ) {
+        result.add( artifact );
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Lists all artifacts written on the given days, in day and path order
+   *
+   * @param startingDate the first day to include, or null
+   * @param endingDate   the last day to include, or null
+   * @return the matching artifacts
+   */
+  public synchronized List<Artifact> findArtifacts( Date startingDate, Date endingDate ) {
+    refresh();
+    List<Artifact> result = new ArrayList<>();
+    for ( Artifact artifact : artifacts.values() ) {
+      if ( inRange( artifact, startingDate, endingDate ) ) {
+        result.add( artifact );
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Throws the catalog away and recreates it from the contents of the output folder
+   *
+   * @return the number of artifacts found
+   * @throws IOException if the folder could not be read or the catalog could not be written
+   */
+  public synchronized int rebuild() throws IOException {
+    clear();
+    for ( String relativePath : scan() ) {
+      index( relativePath );
+    }
+    save();
+    log.info( Messages.getString( "INFO.Catalog.Rebuilt", outputFolder, String.valueOf( artifacts.size() ) ) );
+    return artifacts.size();
+  }
+
+  /**
+   * Compares the catalog with the contents of the output folder
+   *
+   * @param repair whether to bring the catalog in line with the folder
+   * @return the differences found
+   * @throws IOException if the folder could not be read or the catalog could not be written
+   */
+  public synchronized CheckResult check( boolean repair ) throws IOException {
+    refresh();
+    Set<String> onDisk = new TreeSet<>( scan() );
+    CheckResult result = new CheckResult();
+    for ( String relativePath : artifacts.keySet() ) {
+      if ( !onDisk.contains( relativePath ) ) {
+        result.missing.add( relativePath );
+      }
+    }
+    for ( String relativePath : onDisk ) {
+      if ( !artifacts.containsKey( relativePath ) ) {
+        result.unindexed.add( relativePath );
+      }
+    }
+    if ( !result.isConsistent() ) {
+      log.warn( Messages.getString( "WARNING.Catalog.Inconsistent", outputFolder,
+        String.valueOf( result.missing.size() ), String.valueOf( result.unindexed.size() ) ) );
+      if ( repair ) {
+        for ( String relativePath : result.missing ) {
+          unindex( relativePath );
+        }
+        for ( String relativePath : result.unindexed ) {
+          index( relativePath );
+        }
+        save();
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Makes sure the in-memory index reflects the catalog file, reloading it if it has been changed elsewhere
+   */
+  protected void refresh() {
+    try {
+      FileObject catalogFile = getCatalogFile();
+      // VFS caches file state, and the catalog may have been written by another process
+      catalogFile.refresh();
+      if ( !catalogFile.exists() ) {
+        if ( loadedSize != -1 ) {
+          clear();
+        }
+        return;
+      }
+      FileContent content = catalogFile.getContent();
+      if ( content.getSize() == loadedSize && content.getLastModifiedTime() == loadedModified ) {
+        return;
+      }
+      clear();
+      BufferedReader reader =
+        new BufferedReader( new InputStreamReader( content.getInputStream(), StandardCharsets.UTF_8 ) );
+      try {
+        String line;
+        while ( ( line = reader.readLine() ) != null ) {
+          journalLines++;
+          if ( line.startsWith( ADDED ) ) {
+            index( line.substring( ADDED.length() ) );
+          } else if ( line.startsWith( REMOVED ) ) {
+            unindexFolder( line.substring( REMOVED.length() ) );
+          }
+        }
+      } finally {
+        IOUtils.closeQuietly( reader );
+      }
+      remember( catalogFile );
+    } catch ( IOException | KettleFileException e ) {
+      log.error( Messages.getString( "ERROR.Catalog.CouldNotRead", outputFolder ), e );
+    }
+  }
+
+  protected FileObject getRootFolder() throws KettleFileException {
+    return KettleVFS.getFileObject( outputFolder );
+  }
+
+  protected FileObject getCatalogFile() throws KettleFileException, FileSystemException {
+    return getRootFolder().resolveFile( CATALOG_FILE_NAME );
+  }
+
+  /**
+   * Lists the relative paths of all artifacts in the date folders of the output folder
+   */
+  protected List<String> scan() throws IOException {
+    List<String> paths = new ArrayList<>();
+    FileObject root;
+    try {
+      root = getRootFolder();
+    } catch ( KettleFileException e ) {
+      throw new IOException( e );
+    }
+    root.refresh();
+    if ( root.exists() && root.getType() == FileType.FOLDER ) {
+      FileDepthSelector depthFilter = new FileDepthSelector( 1, 256 );
+      for ( FileObject dayFolder : root.getChildren() ) {
+        if ( dayFolder.getType() == FileType.FOLDER && parseDay( dayFolder.getName().getBaseName() ) != null ) {
+          for ( FileObject file : dayFolder.findFiles( depthFilter ) ) {
+            if ( file.getType() == FileType.FILE ) {
+              String relativePath = root.getName().getRelativeName( file.getName() );
+              if ( isArtifactPath( relativePath ) ) {
+                paths.add( relativePath );
+              }
+            }
+          }
+        }
+      }
+    }
+    return paths;
+  }
+
+  private boolean index( String relativePath ) {
+    if ( artifacts.containsKey( relativePath ) || !isArtifactPath( relativePath ) ) {
+      return false;
+    }
+    Artifact artifact = new Artifact( relativePath );
+    artifacts.put( relativePath, artifact );
+    Set<String> documents = documentsByName.get( artifact.getDocumentName() );
+    if ( documents == null ) {
+      documents = new TreeSet<>();
+      documentsByName.put( artifact.getDocumentName(), documents );
+    }
+    documents.add( artifact.getDocumentPath() );
+    Set<String> documentArtifacts = artifactsByDocument.get( artifact.getDocumentPath() );
+    if ( documentArtifacts == null ) {
+      documentArtifacts = new TreeSet<>();
+      artifactsByDocument.put( artifact.getDocumentPath(), documentArtifacts );
+    }
+    documentArtifacts.add( relativePath );
+    return true;
+  }
+
+  private void unindex( String relativePath ) {
+    Artifact artifact = artifacts.remove( relativePath );
+    if ( artifact == null ) {
+      return;
+    }
+    Set<String> documentArtifacts = artifactsByDocument.get( artifact.getDocumentPath() );
+    documentArtifacts.remove( relativePath );
+    if ( documentArtifacts.isEmpty() ) {
+      artifactsByDocument.remove( artifact.getDocumentPath() );
+      Set<String> documents = documentsByName.get( artifact.getDocumentName() );
+      documents.remove( artifact.getDocumentPath() );
+      if ( documents.isEmpty() ) {
+        documentsByName.remove( artifact.getDocumentName() );
+      }
+    }
+  }
+
+  private int unindexFolder( String prefix ) {
+    // every path in the folder sorts between "prefix" and "prefix" followed by the highest character
+    SortedMap<String, Artifact> inFolder = artifacts.subMap( prefix, prefix + Character.MAX_VALUE );
+    List<String> removed = new ArrayList<>( inFolder.keySet() );
+    for ( String relativePath : removed ) {
+      unindex( relativePath );
+    }
+    return removed.size();
+  }
+
+  private void clear() {
+    artifacts.clear();
+    documentsByName.clear();
+    artifactsByDocument.clear();
+    journalLines = 0;
+    loadedSize = -1;
+    loadedModified = -1;
+  }
+
+  private void append( String line ) {
+    try {
+      FileObject catalogFile = getCatalogFile();
+      if ( !catalogFile.exists() || journalLines > 2L * artifacts.size() + 64 ) {
+        // start the catalog or drop the history of removed entries
+        save();
+        return;
+      }
+      Writer writer =
+        new OutputStreamWriter( catalogFile.getContent().getOutputStream( true ), StandardCharsets.UTF_8 );
+      try {
+        writer.write( line );
+        writer.write( '\n' );
+      } finally {
+        writer.close();
+      }
+      journalLines++;
+      remember( catalogFile );
+    } catch ( IOException | KettleFileException e ) {
+      log.error( Messages.getString( "ERROR.Catalog.CouldNotWrite", outputFolder ), e );
+    }
+  }
+
+  private void save() throws IOException {
+    try {
+      FileObject catalogFile = getCatalogFile();
+      Writer writer = new BufferedWriter(
+        new OutputStreamWriter( catalogFile.getContent().getOutputStream(), StandardCharsets.UTF_8 ) );
+      try {
+        for ( String relativePath : artifacts.keySet() ) {
+          writer.write( ADDED );
+          writer.write( relativePath );
+          writer.write( '\n' );
+        }
+      } finally {
+        writer.close();
+      }
+      journalLines = artifacts.size();
+      remember( catalogFile );
+    } catch ( KettleFileException e ) {
+      throw new IOException( e );
+    }
+  }
+
+  private void remember( FileObject catalogFile ) throws FileSystemException {
+    catalogFile.refresh();
+    FileContent content = catalogFile.getContent();
+    loadedSize = content.getSize();
+    loadedModified = content.getLastModifiedTime();
+  }
+
+  /**
+   * Returns the path of an artifact in the same form as the collectors list them
+   *
+   * @param artifact the artifact
+   * @return the path of the artifact
+   * @throws KettleFileException if the output folder cannot be resolved
+   */
+  public String getPath( Artifact artifact ) throws KettleFileException {
+    String rootPath = getRootFolder().getName().getPath();
+    String separator = rootPath.endsWith( "/" ) ? "" : "/";
+    return rootPath + separator + artifact.getRelativePath();
+  }
+
+  private String relativize( FileObject file ) {
+    try {
+      FileObject root = getRootFolder();
+      if ( !root.getName().isDescendent( file.getName() ) ) {
+        return null;
+      }
+      return root.getName().getRelativeName( file.getName() );
+    } catch ( KettleFileException | FileSystemException e ) {
+      log.error( Messages.getString( "ERROR.Catalog.CouldNotWrite", outputFolder ), e );
+      return null;
+    }
+  }
+
+  private boolean inRange( Artifact artifact, Date startingDate, Date endingDate ) {
+    if ( startingDate == null && endingDate == null ) {
+      return true;
+    }
+    Date day = parseDay( artifact.getDay() );
+    return day != null
+      && ( startingDate == null || day.compareTo( startingDate ) >= 0 )
+      && ( endingDate == null || day.compareTo( endingDate ) <= 0 );
+  }
+
+  Date parseDay( String day ) {
+    try {
+      return format.parse( day );
+    } catch ( ParseException e ) {
+      return null;
+    }
+  }
+
+  /**
+   * An artifact path is {@code <day>/<document path>/<file>}, so it has at least three segments
+   */
+  private static boolean isArtifactPath( String relativePath ) {
+    int first = relativePath.indexOf( '/' );
+    return first > 0 && relativePath.lastIndexOf( '/' ) > first + 1 && !relativePath.endsWith( "/" );
+  }
+
+  /**
+   * Turns a document path into the form it has below a day folder (see VfsLineageWriter#getOutputDirectoryAsFile)
+   */
+  static String normalize( String pathToArtifact ) {
+    if ( pathToArtifact == null ) {
+      return "";
+    }
+    String path = pathToArtifact.replace( '\\', '/' );
+    if ( path.length() > 1 && path.charAt( 1 ) == ':' ) {
+      path = path.replaceFirst( ":", "" );
+    }
+    while ( path.startsWith( "/" ) ) {
+      path = path.substring( 1 );
+    }
+    while ( path.endsWith( "/" ) ) {
+      path = path.substring( 0, path.length() - 1 );
+    }
+    return path;
+  }
+
+  /**
+   * An artifact of one run of a document
+   */
+  public static class Artifact {
+    private final String relativePath;
+    private final String day;
+    private final String documentPath;
+    private final String documentName;
+    private final String runId;
+
+    Artifact( String relativePath ) {
+      this.relativePath = relativePath;
+      int first = relativePath.indexOf( '/' );
+      int last = relativePath.lastIndexOf( '/' );
+      day = relativePath.substring( 0, first );
+      documentPath = relativePath.substring( first + 1, last );
+      documentName = documentPath.substring( documentPath.lastIndexOf( '/' ) + 1 );
+      String fileName = relativePath.substring( last + 1 );
+      int separator = fileName.indexOf( '_' );
+      runId = separator > 0 ? fileName.substring( 0, separator ) : fileName;
+    }
+
+    /**
+     * @return the path of the artifact, relative to the output folder
+     */
+    public String getRelativePath() {
+      return relativePath;
+    }
+
+    /**
+     * @return the name of the day folder the artifact is in
+     */
+    public String getDay() {
+      return day;
+    }
+
+    /**
+     * @return the path of the document the artifact belongs to, as it appears below the day folder
+     */
+    public String getDocumentPath() {
+      return documentPath;
+    }
+
+    String getDocumentName() {
+      return documentName;
+    }
+
+    /**
+     * @return the id of the run, which is the start time of the execution written by the VfsLineageWriter
+     */
+    public String getRunId() {
+      return runId;
+    }
+
+    /**
+     * @return the start time of the run, or -1 if the run id is not a timestamp
+     */
+    public long getTimestamp() {
+      try {
+        return Long.parseLong( runId );
+      } catch ( NumberFormatException e ) {
+        return -1;
+      }
+    }
+
+    @Override
+    public String toString() {
+      return relativePath;
+    }
+  }
+
+  /**
+   * The differences between the catalog and the output folder
+   */
+  public static class CheckResult {
+    private final List<String> missing = new ArrayList<>();
+    private final List<String> unindexed = new ArrayList<>();
+
+    /**
+     * @return the artifacts in the catalog that no longer exist
+     */
+    public List<String> getMissing() {
+      return missing;
+    }
+
+    /**
+     * @return the artifacts that exist but are not in the catalog
+     */
+    public List<String> getUnindexed() {
+      return unindexed;
+    }
+
+    public boolean isConsistent() {
+      return missing.isEmpty() && unindexed.isEmpty();
+    }
+  }
+}
@@ -29,8 +29,7 @@ import java.io.OutputStream;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.zip.Deflater;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.vfs2.FileDepthSelector;
@@ -53,6 +52,9 @@ public class VfsLineageCollector implements ILineageCollector {
   private String outputFolder = DEFAULT_OUTPUT_FOLDER;
   private static final Logger log = LoggerFactory.getLogger( VfsLineageCollector.class );
   protected SimpleDateFormat format = new SimpleDateFormat( "yyyyMMdd" );
+  private boolean catalogEnabled = true;
+  private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+  private boolean manifestEnabled = false;
 
   public VfsLineageCollector() {
     format.setLenient( false );
@@ -112,6 +114,12 @@ public class VfsLineageCollector implements ILineageCollector {
     throws IllegalArgumentException {
     List<String> paths = new ArrayList<>();
     try {
+      VfsLineageCatalog catalog = getCatalog();
+      if ( catalog != null ) {
+        VfsDateRangeFilter dateRange = new VfsDateRangeFilter( format, startingDate, endingDate );
+        return toPaths( catalog, catalog.findArtifacts( dateRange.getStartingDate(), dateRange.getEndingDate() ) );
+      }
+
       FileSystemOptions opts = new FileSystemOptions();
       FileObject lineageRootFolder = KettleVFS.getFileObject( getOutputFolder(), opts );
 
@@ -152,6 +160,13 @@ public class VfsLineageCollector implements ILineageCollector {
     List<String> paths = new ArrayList<>();
 
     try {
+      VfsLineageCatalog catalog = getCatalog();
+      if ( catalog != null ) {
+        VfsDateRangeFilter dateRange = new VfsDateRangeFilter( format, startingDate, endingDate );
+        return toPaths( catalog,
+          catalog.findArtifacts( pathToArtifact, dateRange.getStartingDate(), dateRange.getEndingDate() ) );
+      }
+
       FileSystemOptions opts = new FileSystemOptions();
       FileObject lineageRootFolder = KettleVFS.getFileObject( getOutputFolder(), opts );
 
@@ -183,39 +198,132 @@ public class VfsLineageCollector implements ILineageCollector {
     }
   }
 
+  /**
+   * Returns the catalog of the output folder, if lookups should use it. Without a catalog file (it is created by the
+   * first VfsLineageWriter that writes to the folder, or by {@link #rebuildCatalog()}) the folders are walked instead.
+   *
+   * @return the catalog, or null if the output folder has to be walked
+   */
+  protected VfsLineageCatalog getCatalog() {
+    if ( !isCatalogEnabled() ) {
+      return null;
+    }
+    VfsLineageCatalog catalog = VfsLineageCatalog.getInstance( getOutputFolder() );
+    return catalog.exists() ? catalog : null;
+  }
+
+  /**
+   * Recreates the catalog of the output folder from the artifacts in it
+   *
+   * @return the number of artifacts in the catalog
+   * @throws IOException if the folder could not be read or the catalog could not be written
+   */
+  public int rebuildCatalog() throws IOException {
+    return VfsLineageCatalog.getInstance( getOutputFolder() ).rebuild();
+  }
+
+  /**
+   * Compares the catalog of the output folder with the artifacts in it, for when files have been added or deleted by
+   * something other than the VfsLineageWriter
+   *
+   * @param repair whether to bring the catalog in line with the folder
+   * @return the differences found
+   * @throws IOException if the folder could not be read or the catalog could not be written
+   */
+  public VfsLineageCatalog.CheckResult checkCatalog( boolean repair ) throws IOException {
+    return VfsLineageCatalog.getInstance( getOutputFolder() ).check( repair );
+  }
+
+  public boolean isCatalogEnabled() {
+    return catalogEnabled;
+  }
+
+  public void setCatalogEnabled( boolean catalogEnabled ) {
+    this.catalogEnabled = catalogEnabled;
+  }
+
+  /**
+   * Gets the compression level of the archives written by {@link #compressArtifacts(List, OutputStream)}
+   *
+   * @return the level, from 0 (none) to 9 (best), or -1 for the default
+   */
+  public int getCompressionLevel() {
+    return compressionLevel;
+  }
+
+  /**
+   * Sets the compression level of the archives written by {@link #compressArtifacts(List, OutputStream)}
+   *
+   * @param compressionLevel the level, from 0 (none) to 9 (best), or -1 for the default
+   * @throws IllegalArgumentException if the level is not valid
+   */
+  public void setCompressionLevel( int compressionLevel ) {
+    LineageArchive.checkCompressionLevel( compressionLevel );
+    this.compressionLevel = compressionLevel;
+  }
+
+  /**
+   * Tells whether archives end with a {@link LineageArchive#MANIFEST_ENTRY} entry listing their artifacts
+   *
+   * @return true if a manifest is written
+   */
+  public boolean isManifestEnabled() {
+    return manifestEnabled;
+  }
+
+  /**
+   * Sets whether archives end with a {@link LineageArchive#MANIFEST_ENTRY} entry listing their artifacts
+   *
+   * @param manifestEnabled true to write a manifest
+   */
+  public void setManifestEnabled( boolean manifestEnabled ) {
+    this.manifestEnabled = manifestEnabled;
+  }
+
+  private List<String> toPaths( VfsLineageCatalog catalog, List<VfsLineageCatalog.Artifact> artifacts )
+    throws KettleFileException {
+    List<String> paths = new ArrayList<>( artifacts.size() );
+    for ( VfsLineageCatalog.Artifact artifact : artifacts ) {
+      paths.add( catalog.getPath( artifact ) );
+    }
+    return paths;
+  }
+
   @Override
   public void compressArtifacts( List<String> paths, OutputStream os ) {
-    ZipOutputStream zos = null;
+    LineageArchive archive = new LineageArchive( os, compressionLevel, LineageArchive.DEFAULT_BUFFER_SIZE,
+      manifestEnabled );
     try {
       FileSystemOptions opts = new FileSystemOptions();
 
-      zos = new ZipOutputStream( os );
       for ( String path : paths ) {
         FileObject file = KettleVFS.getFileObject( path, opts );
+        String name = file.getName().getPath();
+        InputStream fis;
         try {
-          // register the file as an entry in the zip file
-          ZipEntry zipEntry = new ZipEntry( file.getName().getPath() );
-          zos.putNextEntry( zipEntry );
-
-          // write the file's bytes to the zip stream
-          InputStream fis = file.getContent().getInputStream();
-          zos.write( IOUtils.toByteArray( fis ) );
-
+          fis = file.getContent().getInputStream();
         } catch ( IOException e ) {
-          log.error( Messages.getString( "ERROR.FailedAddingFileToZip", file.getName().getPath() ) );
-        } finally {
-          // indicate we are done with this file
-          try {
-            zos.closeEntry();
-          } catch ( IOException e ) {
-            log.error( Messages.getString( "ERROR.FailedToProperlyCloseZipEntry", file.getName().getPath() ) );
+          log.error( Messages.getString( "ERROR.FailedAddingFileToZip", name ) );
+          archive.skip( name );
+          continue;
+        }
+        try {
+          if ( !archive.addEntry( name, fis ) ) {
+            log.error( Messages.getString( "ERROR.FailedAddingFileToZip", name ) );
           }
+        } finally {
+          IOUtils.closeQuietly( fis );
         }
       }
+      archive.finish();
     } catch ( KettleFileException e ) {
       log.error( Messages.getString( "ERROR.UnexpectedVfsError", e.getMessage() ) );
+    } catch ( IOException e ) {
+      // the client is gone (or the download was interrupted), don't read the remaining artifacts
+      log.warn( Messages.getString( "WARNING.LineageArchiveAborted", archive.getEntryCount(), paths.size(),
+        e.getMessage() ) );
     } finally {
-      IOUtils.closeQuietly( zos );
+      IOUtils.closeQuietly( archive );
     }
   }
 }
@@ -59,8 +59,10 @@ public class VfsLineageWriter implements ILineageWriter {
   private IGraphWriter graphWriter = new GraphMLWriter();
   private String outputFolder = DEFAULT_OUTPUT_FOLDER;
   private String outputStrategy = DEFAULT_OUTPUT_STRATEGY;
+  private boolean catalogEnabled = true;
+  private boolean compactProfiles;
 
-  protected static SimpleDateFormat dateFolderFormat = new SimpleDateFormat( "YYYYMMdd" );
+  protected static SimpleDateFormat dateFolderFormat = new SimpleDateFormat( "yyyyMMdd" );
 
   private static enum VFS_Prefixes {
     BZIP2, FILE, FTP, FTPS, GZIP, HDFS, HTTP, HTTPS, JAR, RAM, RES, SFTP, TAR, TEMP, WEBDAV, ZIP
@@ -76,7 +78,7 @@ public class VfsLineageWriter implements ILineageWriter {
       if ( profile != null ) {
         try ( OutputStream fis = getProfileOutputStream( holder ) ) {
           if ( fis != null ) {
-            ExecutionProfileUtil.outputExecutionProfile( fis, profile );
+            ExecutionProfileUtil.outputExecutionProfile( fis, profile, compactProfiles );
           } else {
             log.debug( Messages.getString( "DEBUG.noProfileOutputStream" ) );
           }
@@ -178,7 +180,9 @@ public class VfsLineageWriter implements ILineageWriter {
         String name = Const.NVL( profile.getName(), "unknown" );
         FileObject file = destFolder.resolveFile( timestampString + "_" + name + extension );
         FileContent content = file.getContent();
-        return content.getOutputStream();
+        OutputStream outputStream = content.getOutputStream();
+        addToCatalog( file );
+        return outputStream;
       } catch ( Exception e ) {
         log.error( Messages.getErrorString( "ERROR.CantCreateOutputStream" ), e );
         return null;
@@ -188,6 +192,72 @@ public class VfsLineageWriter implements ILineageWriter {
     }
   }
 
+  /**
+   * Records a new artifact in the catalog of the output folder. The first time an artifact is written to a folder
+   * without a catalog, the catalog is built from the artifacts already there.
+   *
+   * @param file the artifact being written
+   */
+  protected void addToCatalog( FileObject file ) {
+    if ( !isCatalogEnabled() ) {
+      return;
+    }
+    VfsLineageCatalog catalog = getCatalog();
+    if ( !catalog.exists() ) {
+      try {
+        catalog.rebuild();
+      } catch ( IOException e ) {
+        log.error( Messages.getString( "ERROR.Catalog.CouldNotWrite", getOutputFolder() ), e );
+      }
+    }
+    catalog.add( file );
+  }
+
+  /**
+   * Returns the catalog of the artifacts in the output folder
+   *
+   * @return the catalog shared by all writers and collectors of the output folder
+   */
+  public VfsLineageCatalog getCatalog() {
+    return VfsLineageCatalog.getInstance( getOutputFolder() );
+  }
+
+  /**
+   * Returns whether written artifacts are recorded in the catalog of the output folder
+   *
+   * @return true if the catalog is maintained
+   */
+  public boolean isCatalogEnabled() {
+    return catalogEnabled;
+  }
+
+  /**
+   * Sets whether written artifacts are recorded in the catalog of the output folder
+   *
+   * @param catalogEnabled true to maintain the catalog
+   */
+  public void setCatalogEnabled( boolean catalogEnabled ) {
+    this.catalogEnabled = catalogEnabled;
+  }
+
+  /**
+   * Returns whether execution profiles are written as compact JSON rather than indented
+   *
+   * @return true if profiles are compact
+   */
+  public boolean isCompactProfiles() {
+    return compactProfiles;
+  }
+
+  /**
+   * Sets whether execution profiles are written as compact JSON, on one line, rather than indented
+   *
+   * @param compactProfiles true to write compact profiles
+   */
+  public void setCompactProfiles( boolean compactProfiles ) {
+    this.compactProfiles = compactProfiles;
+  }
+
   protected FileObject getOutputDirectoryAsFile( LineageHolder holder ) {
     try {
       FileObject dateRootFolder = getDateFolder( holder );
@@ -276,6 +346,9 @@ public class VfsLineageWriter implements ILineageWriter {
     try {
       FileObject folder = getOutputDirectoryAsFile( holder );
       folderName = folder.getName().getPath();
+      if ( isCatalogEnabled() ) {
+        getCatalog().removeFolder( folder );
+      }
       folder.deleteAll();
     } catch ( IOException ioe ) {
       log.error( Messages.getErrorString( "ERROR.CouldNotDeleteFile", folderName ), ioe );
@@ -29,6 +29,7 @@ import org.pentaho.metaverse.api.model.IParamInfo;
 import org.pentaho.metaverse.api.model.IUserMetadata;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Hashtable;
@@ -45,8 +46,10 @@ public class ExecutionData implements IExecutionData {
   private String clientExecutor;
   private String loggingChannelId;
   private List<IParamInfo<String>> parameters = new ArrayList<IParamInfo<String>>();
+  // written to by the threads of the steps while the transformation runs
   private Map<String, List<IExternalResourceInfo>> externalResources =
-    new HashMap<String, List<IExternalResourceInfo>>();
+    Collections.synchronizedMap( new HashMap<String, List<IExternalResourceInfo>>() );
+  private Map<String, Long> externalResourcesDropped = Collections.synchronizedMap( new HashMap<String, Long>() );
   private Map<Object, Object> variables = new Hashtable<Object, Object>();
   private List<Object> arguments = new ArrayList<Object>();
   private IArtifactMetadata artifactMetadata;
@@ -149,12 +152,24 @@ public class ExecutionData implements IExecutionData {
 
   @Override
   public void addExternalResource( String consumerName, IExternalResourceInfo externalResource ) {
-    List<IExternalResourceInfo> resources = this.externalResources.get( consumerName );
-    if ( resources == null ) {
-      resources = new LinkedList<IExternalResourceInfo>();
+    synchronized ( externalResources ) {
+      List<IExternalResourceInfo> resources = this.externalResources.get( consumerName );
+      if ( resources == null ) {
+        resources = new LinkedList<IExternalResourceInfo>();
+      }
+      resources.add( externalResource );
+      this.externalResources.put( consumerName, resources );
     }
-    resources.add( externalResource );
-    this.externalResources.put( consumerName, resources );
+  }
+
+  @Override
+  public Map<String, Long> getExternalResourcesDropped() {
+    return externalResourcesDropped;
+  }
+
+  @Override
+  public void setExternalResourcesDropped( Map<String, Long> externalResourcesDropped ) {
+    this.externalResourcesDropped = externalResourcesDropped;
   }
 
   @Override
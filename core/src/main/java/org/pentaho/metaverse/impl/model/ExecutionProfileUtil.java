@@ -22,41 +22,83 @@
 
 package org.pentaho.metaverse.impl.model;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import org.pentaho.metaverse.api.model.IExecutionProfile;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
 
 /**
  * A collection of utilities for working with Execution Profile documents
+ * <p/>
+ * Profiles are written by writers shared by all callers: they are configured once, are thread-safe, and write the
+ * JSON straight to the target stream (as UTF-8) rather than building a string of it first.
  */
 public class ExecutionProfileUtil {
 
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  static {
+    MAPPER.disable( SerializationFeature.FAIL_ON_EMPTY_BEANS );
+    MAPPER.enable( SerializationFeature.WRAP_EXCEPTIONS );
+    // the caller owns the stream
+    MAPPER.configure( JsonGenerator.Feature.AUTO_CLOSE_TARGET, false );
+  }
+
+  private static final ObjectWriter INDENTED_WRITER = MAPPER.writer().with( SerializationFeature.INDENT_OUTPUT );
+
+  private static final ObjectWriter COMPACT_WRITER = MAPPER.writer().without( SerializationFeature.INDENT_OUTPUT );
+
+  private static final byte[] LINE_SEPARATOR = System.getProperty( "line.separator", "\n" )
+    .getBytes( StandardCharsets.UTF_8 );
+
   protected ExecutionProfileUtil() {
     // Protected per Singleton pattern (but available for testing)
   }
 
+  /**
+   * Writes an execution profile as indented JSON, followed by a line separator
+   *
+   * @param outputStream     the stream to write to, which is flushed but not closed
+   * @param executionProfile the profile
+   * @throws IOException if the profile can't be serialized or written
+   */
   public static void outputExecutionProfile( OutputStream outputStream, IExecutionProfile executionProfile )
     throws IOException {
+    outputExecutionProfile( outputStream, executionProfile, false );
+  }
 
-    PrintStream out;
-    if ( outputStream instanceof PrintStream ) {
-      out = (PrintStream) outputStream;
-    } else {
-      out = new PrintStream( outputStream );
-    }
-    ObjectMapper mapper = new ObjectMapper();
-    mapper.enable( SerializationFeature.INDENT_OUTPUT );
-    mapper.disable( SerializationFeature.FAIL_ON_EMPTY_BEANS );
-    mapper.enable( SerializationFeature.WRAP_EXCEPTIONS );
+  /**
+   * Writes an execution profile as JSON, followed by a line separator
+   *
+   * @param outputStream     the stream to write to, which is flushed but not closed
+   * @param executionProfile the profile
+   * @param compact          true to write the JSON on one line, without indentation
+   * @throws IOException if the profile can't be serialized or written
+   */
+  public static void outputExecutionProfile( OutputStream outputStream, IExecutionProfile executionProfile,
+                                             boolean compact ) throws IOException {
     try {
-      out.println( mapper.writeValueAsString( executionProfile ) );
+      getWriter( compact ).writeValue( outputStream, executionProfile );
     } catch ( JsonProcessingException jpe ) {
       throw new IOException( jpe );
     }
+    outputStream.write( LINE_SEPARATOR );
+    outputStream.flush();
+  }
+
+  /**
+   * Returns the shared writer for execution profiles
+   *
+   * @param compact true for the writer of compact JSON, false for indented JSON
+   * @return the writer
+   */
+  public static ObjectWriter getWriter( boolean compact ) {
+    return compact ? COMPACT_WRITER : INDENTED_WRITER;
   }
 }
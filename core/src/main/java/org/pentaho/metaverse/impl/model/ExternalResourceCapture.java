@@ -0,0 +1,257 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.impl.model;
+
+import org.pentaho.metaverse.api.model.IExternalResourceInfo;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records the external resources reported for a single consumer (a step, e.g.) while it processes rows. In
+ * {@link Mode#DISTINCT} mode identical resources are recorded once, with their hit count and first/last-seen times
+ * kept in the resource's attributes, and at most {@code maxDistinct} different resources are recorded; beyond that,
+ * resources not already recorded are dropped and each dropped occurrence is counted. In {@link Mode#ALL} mode every
+ * reported resource is recorded, as it always has been.
+ * <p/>
+ * Instances are thread-safe, so the copies of a step can share one. The target list is only added to while holding
+ * the capture's lock.
+ */
+public class ExternalResourceCapture {
+
+  public static final String ATTRIBUTE_HIT_COUNT = "hitCount";
+  public static final String ATTRIBUTE_FIRST_SEEN = "firstSeen";
+  public static final String ATTRIBUTE_LAST_SEEN = "lastSeen";
+
+  public static final int DEFAULT_MAX_DISTINCT = 1000;
+
+  public enum Mode {
+    /**
+     * Record every resource reported, duplicates included
+     */
+    ALL,
+    /**
+     * Record each distinct resource once, up to a limit
+     */
+    DISTINCT;
+
+    /**
+     * Returns the mode with the given name (case-insensitive), or the default mode ({@link #DISTINCT}) if the name is
+     * empty or unknown
+     *
+     * @param name the name of the mode
+     * @return the matching mode
+     */
+    public static Mode fromString( String name ) {
+      if ( name != null ) {
+        for ( Mode mode : values() ) {
+          if ( mode.name().equalsIgnoreCase( name.trim() ) ) {
+            return mode;
+          }
+        }
+      }
+      return DISTINCT;
+    }
+  }
+
+  private final Mode mode;
+  private final int maxDistinct;
+  private final List<IExternalResourceInfo> target;
+  private final Map<ResourceKey, Hits> distinct = new HashMap<ResourceKey, Hits>();
+  private long droppedCount = 0;
+
+  /**
+   * Creates a capture that records into the given list
+   *
+   * @param target      the list the recorded resources are added to
+   * @param mode        the capture mode
+   * @param maxDistinct the maximum number of distinct resources recorded in {@link Mode#DISTINCT} mode
+   */
+  public ExternalResourceCapture( List<IExternalResourceInfo> target, Mode mode, int maxDistinct ) {
+    this.target = target;
+    this.mode = mode == null ? Mode.DISTINCT : mode;
+    this.maxDistinct = maxDistinct < 0 ? DEFAULT_MAX_DISTINCT : maxDistinct;
+  }
+
+  /**
+   * Records the given resources. The cost is proportional to the number (and size) of the resources passed in, and
+   * does not grow with the number of resources recorded so far.
+   *
+   * @param resources the resources reported for one row
+   */
+  public synchronized void capture( Collection<IExternalResourceInfo> resources ) {
+    if ( resources == null ) {
+      return;
+    }
+    if ( mode == Mode.ALL ) {
+      target.addAll( resources );
+      return;
+    }
+    long now = System.currentTimeMillis();
+    for ( IExternalResourceInfo resource : resources ) {
+      if ( resource == null ) {
+        continue;
+      }
+      ResourceKey key = new ResourceKey( resource );
+      Hits hits = distinct.get( key );
+      if ( hits != null ) {
+        hits.hit( now );
+      } else if ( distinct.size() < maxDistinct ) {
+        distinct.put( key, new Hits( resource, now ) );
+        target.add( resource );
+      } else {
+        droppedCount++;
+      }
+    }
+  }
+
+  public Mode getMode() {
+    return mode;
+  }
+
+  public int getMaxDistinct() {
+    return maxDistinct;
+  }
+
+  /**
+   * Returns the number of distinct resources recorded so far (always 0 in {@link Mode#ALL} mode)
+   *
+   * @return the number of distinct resources
+   */
+  public synchronized int getDistinctCount() {
+    return distinct.size();
+  }
+
+  /**
+   * Returns the number of dropped occurrences: how many times a resource was not recorded because the limit of
+   * distinct resources had been reached. A resource reported on several rows is counted once per row.
+   *
+   * @return the number of dropped occurrences
+   */
+  public synchronized long getDroppedCount() {
+    return droppedCount;
+  }
+
+  /**
+   * Hit statistics for one recorded resource, mirrored into the resource's attributes so they are serialized with it
+   */
+  private static class Hits {
+    private final IExternalResourceInfo resource;
+    private long count;
+
+    Hits( IExternalResourceInfo resource, long now ) {
+      this.resource = resource;
+      this.count = 1;
+      setAttribute( ATTRIBUTE_FIRST_SEEN, now );
+      setAttribute( ATTRIBUTE_LAST_SEEN, now );
+      setAttribute( ATTRIBUTE_HIT_COUNT, count );
+    }
+
+    void hit( long now ) {
+      count++;
+      setAttribute( ATTRIBUTE_LAST_SEEN, now );
+      setAttribute( ATTRIBUTE_HIT_COUNT, count );
+    }
+
+    private void setAttribute( String name, long value ) {
+      Map<Object, Object> attributes = resource.getAttributes();
+      if ( attributes != null ) {
+        try {
+          attributes.put( name, value );
+        } catch ( UnsupportedOperationException e ) {
+          // the resource does not allow its attributes to be changed, so it goes without statistics
+        }
+      }
+    }
+  }
+
+  /**
+   * Identifies a resource by its class, name, description, type, direction and attributes. The attributes are copied
+   * (minus any statistics), so the statistics later added to the recorded instance do not change its identity.
+   */
+  private static final class ResourceKey {
+    private final Class<?> resourceClass;
+    private final String name;
+    private final String description;
+    private final String type;
+    private final boolean input;
+    private final Map<Object, Object> attributes;
+    private final int hash;
+
+    ResourceKey( IExternalResourceInfo resource ) {
+      resourceClass = resource.getClass();
+      name = resource.getName();
+      description = resource.getDescription();
+      type = resource.getType();
+      input = resource.isInput();
+      Map<Object, Object> resourceAttributes = resource.getAttributes();
+      if ( resourceAttributes == null || resourceAttributes.isEmpty() ) {
+        attributes = Collections.emptyMap();
+      } else {
+        attributes = new HashMap<Object, Object>( resourceAttributes );
+        // a consumer may hand back an instance it has already reported, statistics and all
+        attributes.remove( ATTRIBUTE_HIT_COUNT );
+        attributes.remove( ATTRIBUTE_FIRST_SEEN );
+        attributes.remove( ATTRIBUTE_LAST_SEEN );
+      }
+
+      int h = resourceClass.hashCode();
+      h = 31 * h + ( name == null ? 0 : name.hashCode() );
+      h = 31 * h + ( description == null ? 0 : description.hashCode() );
+      h = 31 * h + ( type == null ? 0 : type.hashCode() );
+      h = 31 * h + ( input ? 1 : 0 );
+      h = 31 * h + attributes.hashCode();
+      hash = h;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals( Object o ) {
+      if ( this == o ) {
+        return true;
+      }
+      if ( !( o instanceof ResourceKey ) ) {
+        return false;
+      }
+      ResourceKey other = (ResourceKey) o;
+      return hash == other.hash
+        && input == other.input
+        && resourceClass == other.resourceClass
+        && equal( name, other.name )
+        && equal( description, other.description )
+        && equal( type, other.type )
+        && attributes.equals( other.attributes );
+    }
+
+    private static boolean equal( Object a, Object b ) {
+      return a == null ? b == null : a.equals( b );
+    }
+  }
+}
@@ -44,6 +44,7 @@ import org.pentaho.metaverse.api.analyzer.kettle.step.IStepAnalyzer;
 import org.pentaho.metaverse.api.analyzer.kettle.step.IStepAnalyzerProvider;
 import org.pentaho.metaverse.api.analyzer.kettle.step.IStepExternalResourceConsumer;
 import org.pentaho.metaverse.api.analyzer.kettle.step.IStepExternalResourceConsumerProvider;
+import org.pentaho.metaverse.api.analyzer.kettle.step.RowMetaCache;
 import org.pentaho.metaverse.api.analyzer.kettle.step.StepAnalyzer;
 import org.pentaho.metaverse.api.model.IExternalResourceInfo;
 import org.pentaho.metaverse.api.model.IInfo;
@@ -235,7 +236,7 @@ public abstract class AbstractStepMetaJsonSerializer<T extends BaseStepMeta>
     TransMeta parentTransMeta = parentStepMeta.getParentTransMeta();
     if ( parentTransMeta != null ) {
       try {
-        RowMetaInterface stepFields = parentTransMeta.getStepFields( parentStepMeta );
+        RowMetaInterface stepFields = RowMetaCache.getStepFields( parentTransMeta, parentStepMeta );
         writeFields( json, stepFields, JSON_PROPERTY_OUTPUT_FIELDS );
       } catch ( KettleStepException e ) {
         LOGGER.warn( Messages.getString( "WARNING.Serialization.Step.OutputFields",
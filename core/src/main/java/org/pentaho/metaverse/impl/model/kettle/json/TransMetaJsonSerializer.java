@@ -32,6 +32,7 @@ import org.pentaho.di.trans.TransMeta;
 import org.pentaho.di.trans.step.BaseStepMeta;
 import org.pentaho.di.trans.step.StepMeta;
 import org.pentaho.di.trans.step.StepMetaInterface;
+import org.pentaho.metaverse.api.analyzer.kettle.step.RowMetaCache;
 import org.pentaho.metaverse.api.model.kettle.HopInfo;
 import org.pentaho.metaverse.impl.model.kettle.LineageRepository;
 import org.pentaho.metaverse.messages.Messages;
@@ -67,17 +68,23 @@ public class TransMetaJsonSerializer extends AbstractMetaJsonSerializer<TransMet
   @Override
   protected void serializeSteps( TransMeta meta, JsonGenerator json ) throws IOException {
     json.writeArrayFieldStart( JSON_PROPERTY_STEPS );
-    for ( StepMeta stepMeta : meta.getSteps() ) {
-      BaseStepMeta step = getBaseStepMetaFromStepMeta( stepMeta );
-      LineageRepository repo = getLineageRepository();
-      String id = stepMeta.getObjectId() == null ? stepMeta.getName() : stepMeta.getObjectId().toString();
-      ObjectId stepId = new StringObjectId( id );
-      try {
-        step.saveRep( repo, null, null, stepId );
-      } catch ( KettleException e ) {
-        LOGGER.warn( Messages.getString( "INFO.Serialization.Trans.Step", stepMeta.getName() ), e );
+    // the step serializers write the input and output fields of every step
+    RowMetaCache rowMetaCache = RowMetaCache.open( meta );
+    try {
+      for ( StepMeta stepMeta : meta.getSteps() ) {
+        BaseStepMeta step = getBaseStepMetaFromStepMeta( stepMeta );
+        LineageRepository repo = getLineageRepository();
+        String id = stepMeta.getObjectId() == null ? stepMeta.getName() : stepMeta.getObjectId().toString();
+        ObjectId stepId = new StringObjectId( id );
+        try {
+          step.saveRep( repo, null, null, stepId );
+        } catch ( KettleException e ) {
+          LOGGER.warn( Messages.getString( "INFO.Serialization.Trans.Step", stepMeta.getName() ), e );
+        }
+        json.writeObject( step );
       }
-      json.writeObject( step );
+    } finally {
+      rowMetaCache.close();
     }
     json.writeEndArray();
   }
@@ -22,6 +22,10 @@
 
 package org.pentaho.metaverse.locator;
 
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
 import org.pentaho.dictionary.DictionaryConst;
 import org.pentaho.dictionary.DictionaryHelper;
 import org.pentaho.metaverse.api.IDocumentEvent;
@@ -32,6 +36,7 @@ import org.pentaho.metaverse.api.IMetaverseNode;
 import org.pentaho.metaverse.api.INamespace;
 import org.pentaho.metaverse.api.MetaverseLocatorException;
 import org.pentaho.metaverse.api.Namespace;
+import org.pentaho.metaverse.impl.MetaverseBuilder;
 import org.pentaho.metaverse.impl.MetaverseCompletionService;
 import org.pentaho.metaverse.messages.Messages;
 import org.pentaho.platform.api.engine.IPentahoSession;
@@ -42,10 +47,14 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Future;
+import java.util.concurrent.locks.Lock;
 
 /**
  * Base implementation for all @see IDocumentLocator implementations
@@ -104,6 +113,16 @@ public abstract class BaseLocator<T> implements IDocumentLocator {
    */
   protected List<IDocumentListener> listeners = new ArrayList<IDocumentListener>();
 
+  /**
+   * The number of threads scans walk folders and load documents with
+   */
+  protected int workers = 1;
+
+  /**
+   * The number of folders and documents a scan may have queued or in progress at once, 0 for the runner's default
+   */
+  protected int maxInFlightDocuments;
+
   /**
    * Constructor for the abstract super class
    */
@@ -170,6 +189,44 @@ public abstract class BaseLocator<T> implements IDocumentLocator {
     this.metaverseBuilder = metaverseBuilder;
   }
 
+  public int getWorkers() {
+    return workers;
+  }
+
+  /**
+   * Sets the number of threads scans walk folders and load documents with. One (the default) or less scans on a
+   * single thread, in order.
+   *
+   * @param workers the number of worker threads
+   */
+  public void setWorkers( int workers ) {
+    this.workers = workers;
+  }
+
+  public int getMaxInFlightDocuments() {
+    return maxInFlightDocuments;
+  }
+
+  /**
+   * Sets the number of folders and documents a scan may have queued or in progress at once, which bounds the memory a
+   * parallel scan takes up. Zero or less uses the default of {@link LocatorRunner#getMaxInFlight()}.
+   *
+   * @param maxInFlightDocuments the maximum number of items in flight
+   */
+  public void setMaxInFlightDocuments( int maxInFlightDocuments ) {
+    this.maxInFlightDocuments = maxInFlightDocuments;
+  }
+
+  /**
+   * Returns the progress of the running (or last finished) scan
+   *
+   * @return the progress counters by name, empty if no scan has been started or it was stopped
+   */
+  public Map<String, Object> getScanProgress() {
+    LocatorRunner<T> current = runner;
+    return current == null ? new HashMap<String, Object>() : current.getProgress();
+  }
+
   /**
    * Returns the locator node for this locator. The locator node is the node in the metaverse
    * that represents this locator. It is used to create a link from this locator to the documents
@@ -222,6 +279,16 @@ public abstract class BaseLocator<T> implements IDocumentLocator {
     return new Namespace( locatorNode.getLogicalId() );
   }
 
+  /**
+   * Returns whether a scan started by this locator is still running
+   *
+   * @return true if a scan is running
+   */
+  public boolean isScanning() {
+    Future<String> task = futureTask;
+    return task != null && !task.isDone();
+  }
+
   @Override
   public void stopScan() {
     if ( futureTask == null || futureTask.isDone() || futureTask.isCancelled() ) {
@@ -257,10 +324,89 @@ public abstract class BaseLocator<T> implements IDocumentLocator {
 
     runner = locatorRunner;
     runner.setLocator( this );
+    runner.setWorkers( workers );
+    runner.setMaxInFlight( maxInFlightDocuments );
 
     LOG.debug( Messages.getString( "DEBUG.Locator.StartScan", getLocatorType() ) );
 
     futureTask = completionService.submit( runner, node.getStringID() );
   }
 
+  /**
+   * Removes the nodes of a document that no longer exists from the metaverse: everything the document's node contains
+   * (steps, job entries and the fields they output), and the document's node itself unless other documents still
+   * refer to it. Nodes that were only connected to the removed ones (a file that is no longer read, e.g.) go too.
+   *
+   * @param id the id of the document, which its node has as its path
+   * @return the number of vertices removed
+   */
+  protected int removeDocument( String id ) {
+    Graph graph = metaverseBuilder == null ? null : metaverseBuilder.getGraph();
+    if ( graph == null || id == null ) {
+      return 0;
+    }
+    Lock lock = metaverseBuilder instanceof MetaverseBuilder
+      ? ( (MetaverseBuilder) metaverseBuilder ).getLock().writeLock() : null;
+    if ( lock != null ) {
+      lock.lock();
+    }
+    try {
+      Set<Vertex> documents = new HashSet<Vertex>();
+      for ( Vertex vertex : graph.getVertices( DictionaryConst.PROPERTY_PATH, id ) ) {
+        Object type = vertex.getProperty( DictionaryConst.PROPERTY_TYPE );
+        if ( DictionaryConst.NODE_TYPE_TRANS.equals( type ) || DictionaryConst.NODE_TYPE_JOB.equals( type )
+          || vertex.getEdges( Direction.OUT, DictionaryConst.LINK_CONTAINS ).iterator().hasNext() ) {
+          documents.add( vertex );
+        }
+      }
+
+      Set<Vertex> removals = new HashSet<Vertex>();
+      LinkedList<Vertex> pending = new LinkedList<Vertex>( documents );
+      while ( !pending.isEmpty() ) {
+        Vertex vertex = pending.removeFirst();
+        for ( Vertex child : vertex.getVertices( Direction.OUT, DictionaryConst.LINK_CONTAINS,
+          DictionaryConst.LINK_OUTPUTS ) ) {
+          if ( !documents.contains( child ) && removals.add( child ) ) {
+            pending.add( child );
+          }
+        }
+      }
+
+      Set<Vertex> neighbours = new HashSet<Vertex>( documents );
+      for ( Vertex removal : removals ) {
+        for ( Edge edge : removal.getEdges( Direction.BOTH ) ) {
+          if ( !DictionaryConst.LINK_PARENT_CONCEPT.equals( edge.getLabel() ) ) {
+            neighbours.add( edge.getVertex( Direction.OUT ).equals( removal )
+              ? edge.getVertex( Direction.IN ) : edge.getVertex( Direction.OUT ) );
+          }
+        }
+      }
+      for ( Vertex removal : removals ) {
+        graph.removeVertex( removal );
+      }
+      int removed = removals.size();
+      neighbours.removeAll( removals );
+      for ( Vertex neighbour : neighbours ) {
+        if ( isOrphan( neighbour ) ) {
+          graph.removeVertex( neighbour );
+          removed++;
+        }
+      }
+      return removed;
+    } finally {
+      if ( lock != null ) {
+        lock.unlock();
+      }
+    }
+  }
+
+  private static boolean isOrphan( Vertex vertex ) {
+    for ( Edge edge : vertex.getEdges( Direction.BOTH ) ) {
+      if ( !DictionaryConst.LINK_PARENT_CONCEPT.equals( edge.getLabel() ) ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
 }
@@ -0,0 +1,108 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.locator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A runner that brings the metaverse up to date with a set of files and folders known to have changed, rather than
+ * walking the whole root. Files that still exist are checked against the manifest and analyzed again if they changed,
+ * folders are walked, and the nodes of files that no longer exist (or were under a folder that no longer exists) are
+ * removed.
+ */
+public class FileSystemChangeRunner extends FileSystemLocatorRunner {
+
+  private final List<File> changes;
+
+  /**
+   * Creates a runner for a set of changed files and folders
+   *
+   * @param changes the files and folders created, modified or deleted
+   */
+  public FileSystemChangeRunner( Collection<File> changes ) {
+    this.changes = new ArrayList<File>( changes );
+  }
+
+  public List<File> getChanges() {
+    return changes;
+  }
+
+  @Override
+  protected void scan() {
+    for ( final File change : changes ) {
+      if ( stopping ) {
+        return;
+      }
+      if ( change.isDirectory() ) {
+        dispatch( new Runnable() {
+          @Override
+          public void run() {
+            locate( change );
+          }
+        } );
+      } else if ( change.isFile() ) {
+        dispatch( new Runnable() {
+          @Override
+          public void run() {
+            locateFile( change );
+          }
+        } );
+      } else if ( getManifest() != null ) {
+        removeMissing( change );
+      }
+    }
+  }
+
+  /**
+   * Removes the nodes of a file, or of every file under a folder, that no longer exists
+   *
+   * @param missing the file or folder
+   */
+  protected void removeMissing( File missing ) {
+    String path;
+    try {
+      path = missing.getCanonicalPath();
+    } catch ( IOException e ) {
+      path = missing.getAbsolutePath();
+    }
+    String prefix = path + File.separator;
+    for ( String known : getManifest().getPaths() ) {
+      if ( known.equals( path ) || known.startsWith( prefix ) ) {
+        remove( known );
+      }
+    }
+  }
+
+  /**
+   * Does nothing: unlike a full walk, the files this runner didn't look at are not taken to have been deleted. The
+   * manifest is saved once the analyses are done, as for a walk.
+   */
+  @Override
+  protected void finish() {
+  }
+
+}
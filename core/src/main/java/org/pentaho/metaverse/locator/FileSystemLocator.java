@@ -22,7 +22,7 @@
 
 package org.pentaho.metaverse.locator;
 
-import org.apache.commons.io.FileUtils;
+import org.pentaho.metaverse.api.FileDocumentContent;
 import org.pentaho.metaverse.api.IDocumentListener;
 import org.pentaho.metaverse.api.MetaverseLocatorException;
 import org.pentaho.metaverse.messages.Messages;
@@ -51,6 +51,10 @@ public class FileSystemLocator extends BaseLocator<File> {
 
   private String rootFolder;
 
+  private boolean incremental;
+
+  private String manifestFile;
+
   /**
    * Creates a filessytem locator
    */
@@ -73,19 +77,19 @@ public class FileSystemLocator extends BaseLocator<File> {
   /**
    * A method that returns the payload (object or XML) for a document
    * @param file The repository file
-   * @return The object or XML payload
+   * @return The file's content, read when the document is analyzed (see {@link FileDocumentContent}), or an empty
+   * string if the file can't be read
    * @throws Exception When the document contents cannot be retrieved
    */
   @Override
   protected Object getContents( File file ) throws Exception {
-    String content = "";
-    try {
-      content = FileUtils.readFileToString( file );
-    } catch ( Throwable e ) {
-      LOG.error( Messages.getString( "ERROR.IndexingDocument", file.getPath() ), e );
+    if ( !file.isFile() || !file.canRead() ) {
+      LOG.error( Messages.getString( "ERROR.IndexingDocument", file.getPath() ) );
       // not fatal, continue
+      return "";
     }
-    return content;
+    // the file is read when the document is analyzed, not held in memory while the document waits for an analyzer
+    return new FileDocumentContent( file );
   }
 
   public String getRootFolder() {
@@ -96,8 +100,72 @@ public class FileSystemLocator extends BaseLocator<File> {
     this.rootFolder = rootFolder;
   }
 
+  public boolean isIncremental() {
+    return incremental;
+  }
+
+  /**
+   * Sets whether scans only analyze the documents that are new or changed since the previous scan, and remove the
+   * nodes of deleted documents. See {@link ScanManifest}.
+   *
+   * @param incremental true to scan incrementally
+   */
+  public void setIncremental( boolean incremental ) {
+    this.incremental = incremental;
+  }
+
+  public String getManifestFile() {
+    return manifestFile;
+  }
+
+  /**
+   * Sets where the manifest of incremental scans is kept. By default it is kept in the root folder, in a file named
+   * {@link ScanManifest#DEFAULT_FILE_NAME}.
+   *
+   * @param manifestFile the path of the manifest file
+   */
+  public void setManifestFile( String manifestFile ) {
+    this.manifestFile = manifestFile;
+  }
+
+  /**
+   * Starts a scan, incremental or full depending on {@link #isIncremental()}
+   *
+   * @throws MetaverseLocatorException if the root folder is not a folder or a scan is running
+   */
   @Override
   public void startScan() throws MetaverseLocatorException {
+    startScan( !incremental );
+  }
+
+  /**
+   * Starts a scan that analyzes every document, whether or not it changed. When scanning incrementally, the manifest
+   * is rebuilt and the nodes of deleted documents are removed.
+   *
+   * @throws MetaverseLocatorException if the root folder is not a folder or a scan is running
+   */
+  public void startFullScan() throws MetaverseLocatorException {
+    startScan( true );
+  }
+
+  protected void startScan( boolean fullScan ) throws MetaverseLocatorException {
+
+    File root = getRoot();
+    FileSystemLocatorRunner lr = new FileSystemLocatorRunner();
+    lr.setRoot( root );
+    if ( incremental ) {
+      lr.setManifest( new ScanManifest( getManifest( root ) ).load(), fullScan );
+    }
+    startScan( lr );
+  }
+
+  /**
+   * Returns the root folder
+   *
+   * @return the root folder
+   * @throws MetaverseLocatorException if the root folder doesn't exist or is not a folder
+   */
+  protected File getRoot() throws MetaverseLocatorException {
 
     File root = new File( rootFolder );
     if ( !root.exists() ) {
@@ -111,10 +179,11 @@ public class FileSystemLocator extends BaseLocator<File> {
       throw new MetaverseLocatorException(
           Messages.getString("ERROR.FileSystemLocator.RootFolder.NotAFolder", root.getAbsolutePath() ) );
     }
+    return root;
+  }
 
-    LocatorRunner<File> lr = new FileSystemLocatorRunner();
-    lr.setRoot( root );
-    startScan( lr );
+  protected File getManifest( File root ) {
+    return manifestFile == null ? new File( root, ScanManifest.DEFAULT_FILE_NAME ) : new File( manifestFile );
   }
 
   @Override
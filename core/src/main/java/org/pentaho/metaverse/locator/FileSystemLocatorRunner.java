@@ -27,15 +27,141 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A runnable (and stoppable) class for crawling a Hitachi Vantara repository for documents
+ * <p/>
+ * Given a {@link ScanManifest}, the runner scans incrementally: only files that are new or whose content changed since
+ * the manifest was written are processed, the nodes of modified files are removed before they are analyzed again, and
+ * the nodes of files that are in the manifest but no longer on disk are removed. A full scan with a manifest
+ * processes every file and rewrites the manifest.
+ * <p/>
+ * Only transformations and jobs are kept in the manifest; other files are passed on every time, without being read.
+ * The entry of a new or modified document is only recorded once its analyses have succeeded (and a document whose
+ * analysis failed is forgotten), so it is analyzed again by the next scan. The manifest is saved once the scan and the
+ * analyses of the documents it found are done.
  * @author jdixon
  *
  */
 public class FileSystemLocatorRunner extends LocatorRunner<File> {
 
   private static final Logger LOG = LoggerFactory.getLogger( LocatorRunner.class );
+
+  /**
+   * The extensions of the files kept in the manifest
+   */
+  public static final Set<String> MANIFEST_EXTENSIONS =
+    Collections.unmodifiableSet( new HashSet<String>( Arrays.asList( "ktr", "kjb" ) ) );
+
+  private ScanManifest manifest;
+
+  private boolean fullScan = true;
+
+  private String manifestPath;
+
+  private final Set<String> seen = Collections.newSetFromMap( new ConcurrentHashMap<String, Boolean>() );
+
+  /**
+   * The manifest entries of the documents being analyzed, recorded once their analyses succeed
+   */
+  private final Map<String, ScanManifest.Entry> analyzing = new ConcurrentHashMap<String, ScanManifest.Entry>();
+
+  private final AtomicInteger unchangedCount = new AtomicInteger();
+
+  private final AtomicInteger removedCount = new AtomicInteger();
+
+  /**
+   * Sets the manifest to scan against
+   *
+   * @param manifest the manifest of the previous scan, or null to process every file without keeping a manifest
+   * @param fullScan whether to process every file even if it is unchanged
+   */
+  public void setManifest( ScanManifest manifest, boolean fullScan ) {
+    this.manifest = manifest;
+    this.fullScan = fullScan;
+    manifestPath = null;
+    if ( manifest != null && manifest.getFile() != null ) {
+      try {
+        manifestPath = manifest.getFile().getCanonicalPath();
+      } catch ( IOException e ) {
+        manifestPath = manifest.getFile().getAbsolutePath();
+      }
+    }
+  }
+
+  public ScanManifest getManifest() {
+    return manifest;
+  }
+
+  public boolean isFullScan() {
+    return fullScan;
+  }
+
+  /**
+   * Returns the number of files skipped because they have not changed since the last scan
+   *
+   * @return the number of unchanged files
+   */
+  public int getUnchangedCount() {
+    return unchangedCount.get();
+  }
+
+  /**
+   * Returns the number of files found to have been deleted since the last scan
+   *
+   * @return the number of deleted files
+   */
+  public int getRemovedCount() {
+    return removedCount.get();
+  }
+
+  @Override
+  public Map<String, Object> getProgress() {
+    Map<String, Object> progress = super.getProgress();
+    progress.put( "unchangedCount", getUnchangedCount() );
+    progress.put( "removedCount", getRemovedCount() );
+    return progress;
+  }
+
+  @Override
+  protected void finish() {
+    if ( manifest != null && !stopping ) {
+      removeDeleted();
+    }
+  }
+
+  /**
+   * Records the manifest entry of a document whose analyses succeeded, and forgets a document whose analysis failed
+   */
+  @Override
+  protected void documentAnalyzed( String id, boolean succeeded ) {
+    if ( manifest == null ) {
+      return;
+    }
+    ScanManifest.Entry entry = analyzing.remove( id );
+    if ( !succeeded ) {
+      manifest.remove( id );
+    } else if ( entry != null ) {
+      manifest.put( id, entry );
+    }
+  }
+
+  @Override
+  protected void analysesFinished() {
+    if ( manifest != null ) {
+      manifest.save();
+    }
+  }
+
   /**
    * Indexes a set of files/folders. Folders are recursed into and files are passed to indexFile.
    * @param folder The files/folders to examine
@@ -43,23 +169,129 @@ public class FileSystemLocatorRunner extends LocatorRunner<File> {
   public void locate( File folder ) {
 
     File[] files = folder.listFiles();
-    for ( File file : files ) {
+    if ( files == null ) {
+      return;
+    }
+    folderVisited();
+    for ( final File file : files ) {
       if ( stopping ) {
         return;
       }
       if ( !file.isDirectory() ) {
-        try {
-          if ( !file.isHidden( ) ) {
-            processFile( locator.getNamespace(), file.getName(), file.getCanonicalPath(), file );
+        dispatch( new Runnable() {
+          @Override
+          public void run() {
+            locateFile( file );
           }
-        } catch ( Exception e ) {
-          // something truly unexpected would have to have happened ... NPE or similar ugliness
-          LOG.error( Messages.getString( "ERROR.ProcessFileFailed", file.getName() ), e );
-        }
+        } );
       } else {
-        locate( file );
+        dispatch( new Runnable() {
+          @Override
+          public void run() {
+            locate( file );
+          }
+        } );
+      }
+    }
+  }
+
+  /**
+   * Processes a file found by the scan, unless it is hidden or hasn't changed since the last scan
+   *
+   * @param file the file
+   */
+  protected void locateFile( File file ) {
+    try {
+      if ( !file.isHidden( ) ) {
+        String path = file.getCanonicalPath();
+        if ( isChanged( path, file ) ) {
+          processFile( locator.getNamespace(), file.getName(), path, file );
+        }
+      }
+    } catch ( Exception e ) {
+      // something truly unexpected would have to have happened ... NPE or similar ugliness
+      LOG.error( Messages.getString( "ERROR.ProcessFileFailed", file.getName() ), e );
+    }
+  }
+
+  /**
+   * Checks a file against the manifest. The entry of a file that will be processed is held back until its analysis
+   * succeeds (see {@link #documentAnalyzed(String, boolean)}), and the nodes of a modified file are removed so that it
+   * can be analyzed again from scratch. Files that aren't transformations or jobs are always processed.
+   *
+   * @param path the canonical path of the file
+   * @param file the file
+   * @return true if the file should be processed
+   */
+  protected boolean isChanged( String path, File file ) {
+    if ( manifest == null ) {
+      return true;
+    }
+    if ( path.equals( manifestPath ) ) {
+      return false;
+    }
+    if ( !isTracked( file.getName() ) ) {
+      return true;
+    }
+    seen.add( path );
+    ScanManifest.Entry known = manifest.get( path );
+    ScanManifest.Entry current;
+    try {
+      current = manifest.check( path, file );
+    } catch ( IOException e ) {
+      // let the analysis report the problem; look at the file again next time
+      manifest.remove( path );
+      return true;
+    }
+    boolean changed = known == null || !known.getHash().equals( current.getHash() );
+    if ( !changed ) {
+      if ( current != known ) {
+        // only touched, what was analyzed before still stands
+        manifest.put( path, current );
+      }
+      if ( !fullScan ) {
+        unchangedCount.incrementAndGet();
+        return false;
+      }
+    } else if ( known != null ) {
+      locator.removeDocument( path );
+    }
+    analyzing.put( path, current );
+    return true;
+  }
+
+  /**
+   * Tells whether a file is kept in the manifest
+   *
+   * @param name the name of the file
+   * @return true if it is a transformation or job
+   */
+  protected boolean isTracked( String name ) {
+    int dot = name.lastIndexOf( '.' );
+    return dot >= 0 && MANIFEST_EXTENSIONS.contains( name.substring( dot + 1 ).toLowerCase( Locale.ROOT ) );
+  }
+
+  /**
+   * Removes the nodes of the documents in the manifest that the scan didn't find
+   */
+  protected void removeDeleted() {
+    for ( String path : manifest.getPaths() ) {
+      if ( !seen.contains( path ) ) {
+        remove( path );
       }
     }
   }
 
+  /**
+   * Removes the nodes of a document that no longer exists, and forgets it in the manifest
+   *
+   * @param path the canonical path of the document
+   */
+  protected void remove( String path ) {
+    LOG.debug( Messages.getString( "DEBUG.FileSystemLocator.DocumentRemoved", path ) );
+    locator.removeDocument( path );
+    manifest.remove( path );
+    removedCount.incrementAndGet();
+  }
+
 }
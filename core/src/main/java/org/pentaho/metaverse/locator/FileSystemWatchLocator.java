@@ -0,0 +1,458 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.locator;
+
+import org.pentaho.metaverse.api.IDocumentListener;
+import org.pentaho.metaverse.api.MetaverseLocatorException;
+import org.pentaho.metaverse.messages.Messages;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A file system locator that keeps the metaverse up to date while documents under its root folder are created,
+ * modified and deleted, instead of only when a scan is started.
+ * <p/>
+ * {@link #startWatching()} scans incrementally (see {@link FileSystemLocator#setIncremental(boolean)}) to catch up
+ * with the changes made while the locator wasn't watching, then watches the root folder and its sub-folders. Events
+ * are coalesced: a file is only looked at once it has gone {@link #getCoalesceMillis()} without changing, so a
+ * document saved several times in a row is analyzed once. The files that changed are then analyzed again, or have
+ * their nodes removed if they were deleted, by a {@link FileSystemChangeRunner}; a scan is never started while
+ * another is running, the changes wait for it to finish.
+ * <p/>
+ * Where the file system can't be watched (or if {@link #setPolling(boolean)} is set), the locator falls back to an
+ * incremental scan every {@link #getPollIntervalMillis()}. So does it when the watch service drops events.
+ */
+public class FileSystemWatchLocator extends FileSystemLocator {
+
+  private static final long serialVersionUID = -2383529174733260516L;
+
+  private static final Logger LOG = LoggerFactory.getLogger( FileSystemWatchLocator.class );
+
+  public static final long DEFAULT_COALESCE_MILLIS = 1000;
+
+  public static final long DEFAULT_POLL_INTERVAL_MILLIS = 60000;
+
+  private long coalesceMillis = DEFAULT_COALESCE_MILLIS;
+
+  private long pollIntervalMillis = DEFAULT_POLL_INTERVAL_MILLIS;
+
+  private boolean polling;
+
+  private transient volatile boolean watching;
+
+  private transient volatile boolean pollingActive;
+
+  private transient volatile Thread watcher;
+
+  private transient WatchService watchService;
+
+  private final Map<WatchKey, Path> watchedFolders = new ConcurrentHashMap<WatchKey, Path>();
+
+  /**
+   * The files changed and not looked at yet, in the order they first changed, with the time they last changed
+   */
+  private final Map<File, Long> changes = new LinkedHashMap<File, Long>();
+
+  private transient volatile boolean rescan;
+
+  private final AtomicLong eventCount = new AtomicLong();
+
+  private final AtomicLong coalescedCount = new AtomicLong();
+
+  private final AtomicLong batchCount = new AtomicLong();
+
+  private final AtomicLong pollCount = new AtomicLong();
+
+  /**
+   * Creates a file system watch locator
+   */
+  public FileSystemWatchLocator() {
+    super();
+    setIncremental( true );
+  }
+
+  /**
+   * Creates a file system watch locator with a list of document listeners that will be informed as documents are
+   * found by this locator.
+   *
+   * @param documentListeners The document listeners
+   */
+  public FileSystemWatchLocator( List<IDocumentListener> documentListeners ) {
+    super( documentListeners );
+    setIncremental( true );
+  }
+
+  public long getCoalesceMillis() {
+    return coalesceMillis;
+  }
+
+  /**
+   * Sets how long a file has to go without changing before it is analyzed again
+   *
+   * @param coalesceMillis the quiet period in milliseconds
+   */
+  public void setCoalesceMillis( long coalesceMillis ) {
+    this.coalesceMillis = Math.max( 0, coalesceMillis );
+  }
+
+  public long getPollIntervalMillis() {
+    return pollIntervalMillis;
+  }
+
+  /**
+   * Sets how often the root folder is scanned when it can't be watched
+   *
+   * @param pollIntervalMillis the time between scans in milliseconds
+   */
+  public void setPollIntervalMillis( long pollIntervalMillis ) {
+    this.pollIntervalMillis = Math.max( 1, pollIntervalMillis );
+  }
+
+  public boolean isPolling() {
+    return polling;
+  }
+
+  /**
+   * Sets whether to scan the root folder periodically rather than watch it, for file systems (network shares, e.g.)
+   * where watching is unreliable
+   *
+   * @param polling true to poll
+   */
+  public void setPolling( boolean polling ) {
+    this.polling = polling;
+  }
+
+  public boolean isWatching() {
+    return watching;
+  }
+
+  /**
+   * Returns whether the locator is polling the root folder, either because it was asked to or because the root folder
+   * couldn't be watched
+   *
+   * @return true if polling
+   */
+  public boolean isPollingActive() {
+    return pollingActive;
+  }
+
+  public long getEventCount() {
+    return eventCount.get();
+  }
+
+  /**
+   * Returns the number of events for files that had already changed and hadn't been looked at yet
+   *
+   * @return the number of coalesced events
+   */
+  public long getCoalescedCount() {
+    return coalescedCount.get();
+  }
+
+  /**
+   * Returns the number of scans of changed files started
+   *
+   * @return the number of batches
+   */
+  public long getBatchCount() {
+    return batchCount.get();
+  }
+
+  /**
+   * Returns the number of incremental scans started by polling or after events were dropped
+   *
+   * @return the number of polls
+   */
+  public long getPollCount() {
+    return pollCount.get();
+  }
+
+  /**
+   * Catches up with the changes made under the root folder and starts watching it
+   *
+   * @throws MetaverseLocatorException if the root folder is not a folder or a scan is running
+   */
+  public synchronized void startWatching() throws MetaverseLocatorException {
+    if ( watching ) {
+      return;
+    }
+    File root = getRoot();
+    pollingActive = polling || !openWatchService( root );
+    if ( pollingActive && !polling ) {
+      LOG.warn( Messages.getString( "WARNING.FileSystemWatchLocator.Polling", root.getAbsolutePath(),
+        Long.toString( pollIntervalMillis ) ) );
+    }
+    try {
+      startScan( false );
+    } catch ( MetaverseLocatorException e ) {
+      closeWatchService();
+      throw e;
+    }
+    watching = true;
+    Thread thread = new Thread( new Runnable() {
+      @Override
+      public void run() {
+        watch();
+      }
+    }, "metaverse-watch-" + getRepositoryId() );
+    thread.setDaemon( true );
+    watcher = thread;
+    thread.start();
+  }
+
+  /**
+   * Stops watching the root folder. Changes not looked at yet are dropped; the next {@link #startWatching()} catches
+   * up with them. A scan already running is left to finish.
+   */
+  public synchronized void stopWatching() {
+    if ( !watching ) {
+      return;
+    }
+    watching = false;
+    closeWatchService();
+    Thread thread = watcher;
+    watcher = null;
+    if ( thread != null ) {
+      thread.interrupt();
+      try {
+        thread.join( 5000 );
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    synchronized ( changes ) {
+      changes.clear();
+    }
+  }
+
+  private boolean openWatchService( File root ) {
+    try {
+      watchService = FileSystems.getDefault().newWatchService();
+      registerAll( root.toPath() );
+      return true;
+    } catch ( IOException | UnsupportedOperationException e ) {
+      LOG.debug( e.getMessage(), e );
+      closeWatchService();
+      return false;
+    }
+  }
+
+  private void closeWatchService() {
+    WatchService service = watchService;
+    watchService = null;
+    watchedFolders.clear();
+    if ( service != null ) {
+      try {
+        service.close();
+      } catch ( IOException e ) {
+        // nothing more to do
+      }
+    }
+  }
+
+  /**
+   * Watches a folder and the folders under it
+   *
+   * @param folder the folder
+   * @throws IOException if a folder can't be watched
+   */
+  private void registerAll( Path folder ) throws IOException {
+    Files.walkFileTree( folder, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult preVisitDirectory( Path dir, BasicFileAttributes attrs ) throws IOException {
+        WatchKey key = dir.register( watchService, StandardWatchEventKinds.ENTRY_CREATE,
+          StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE );
+        watchedFolders.put( key, dir );
+        return FileVisitResult.CONTINUE;
+      }
+    } );
+  }
+
+  /**
+   * The loop of the watching thread
+   */
+  protected void watch() {
+    long tick = Math.max( 50, Math.min( coalesceMillis / 2, 1000 ) );
+    long nextPoll = System.currentTimeMillis() + pollIntervalMillis;
+    while ( watching ) {
+      try {
+        WatchService service = watchService;
+        if ( pollingActive || service == null ) {
+          Thread.sleep( Math.max( 0, nextPoll - System.currentTimeMillis() ) );
+          nextPoll = System.currentTimeMillis() + pollIntervalMillis;
+          rescan = true;
+        } else {
+          WatchKey key = service.poll( tick, TimeUnit.MILLISECONDS );
+          while ( key != null ) {
+            handleEvents( key );
+            key = service.poll();
+          }
+        }
+        flush( System.currentTimeMillis() );
+      } catch ( InterruptedException | ClosedWatchServiceException e ) {
+        if ( watching ) {
+          LOG.debug( e.getMessage(), e );
+        }
+        return;
+      } catch ( RuntimeException e ) {
+        LOG.error( Messages.getString( "ERROR.FileSystemWatchLocator.Watch", getRootFolder() ), e );
+      }
+    }
+  }
+
+  private void handleEvents( WatchKey key ) {
+    Path folder = watchedFolders.get( key );
+    for ( WatchEvent<?> event : key.pollEvents() ) {
+      eventCount.incrementAndGet();
+      if ( event.kind() == StandardWatchEventKinds.OVERFLOW || folder == null ) {
+        rescan = true;
+        continue;
+      }
+      Path path = folder.resolve( (Path) event.context() );
+      if ( event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory( path ) ) {
+        try {
+          registerAll( path );
+        } catch ( IOException e ) {
+          LOG.warn( Messages.getString( "WARNING.FileSystemWatchLocator.Polling", path.toString(),
+            Long.toString( pollIntervalMillis ) ), e );
+          pollingActive = true;
+        }
+      }
+      changed( path.toFile(), System.currentTimeMillis() );
+    }
+    if ( !key.reset() ) {
+      watchedFolders.remove( key );
+    }
+  }
+
+  /**
+   * Records a change to a file or folder. Hidden files, such as the scan manifest, are ignored.
+   *
+   * @param file the file or folder
+   * @param time when it changed
+   * @return false if the file was ignored
+   */
+  protected boolean changed( File file, long time ) {
+    if ( file.getName().startsWith( "." ) || file.equals( getManifest( new File( getRootFolder() ) ) ) ) {
+      return false;
+    }
+    synchronized ( changes ) {
+      if ( changes.put( file, time ) != null ) {
+        coalescedCount.incrementAndGet();
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Takes the recorded changes that are at least {@link #getCoalesceMillis()} old, in the order they first changed
+   *
+   * @param now the current time
+   * @return the files and folders to look at
+   */
+  protected List<File> takeSettledChanges( long now ) {
+    List<File> settled = new ArrayList<File>();
+    synchronized ( changes ) {
+      Iterator<Map.Entry<File, Long>> entries = changes.entrySet().iterator();
+      while ( entries.hasNext() ) {
+        Map.Entry<File, Long> entry = entries.next();
+        if ( now - entry.getValue() >= coalesceMillis ) {
+          settled.add( entry.getKey() );
+          entries.remove();
+        }
+      }
+    }
+    return settled;
+  }
+
+  /**
+   * Starts a scan of the changes that have settled, or an incremental scan of the whole root folder if events were
+   * dropped or it is polled, unless a scan is already running
+   *
+   * @param now the current time
+   */
+  protected void flush( long now ) {
+    if ( isScanning() ) {
+      return;
+    }
+    try {
+      if ( rescan ) {
+        rescan = false;
+        synchronized ( changes ) {
+          changes.clear();
+        }
+        pollCount.incrementAndGet();
+        startScan( false );
+        return;
+      }
+      List<File> settled = takeSettledChanges( now );
+      if ( !settled.isEmpty() ) {
+        LOG.debug( Messages.getString( "DEBUG.FileSystemWatchLocator.Changes", Integer.toString( settled.size() ),
+          getRootFolder() ) );
+        batchCount.incrementAndGet();
+        startChangeScan( settled );
+      }
+    } catch ( MetaverseLocatorException e ) {
+      // the root folder is gone or a scan was started meanwhile; look at everything again next time
+      LOG.debug( e.getMessage(), e );
+      rescan = true;
+    }
+  }
+
+  /**
+   * Starts a scan of a set of changed files and folders
+   *
+   * @param settled the files and folders
+   * @throws MetaverseLocatorException if the root folder is not a folder or a scan is running
+   */
+  protected void startChangeScan( List<File> settled ) throws MetaverseLocatorException {
+    File root = getRoot();
+    FileSystemChangeRunner runner = new FileSystemChangeRunner( settled );
+    runner.setRoot( root );
+    runner.setManifest( new ScanManifest( getManifest( root ) ).load(), false );
+    startScan( runner );
+  }
+
+}
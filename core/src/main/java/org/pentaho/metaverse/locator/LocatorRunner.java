@@ -33,9 +33,32 @@ import org.slf4j.LoggerFactory;
 
 import java.net.FileNameMap;
 import java.net.URLConnection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The LocatorRunner is a execution construct for concurrently running document locator logic.
+ * <p/>
+ * With more than one worker (see {@link #setWorkers(int)}), the folders and documents that {@link #locate(Object)}
+ * hands to {@link #dispatch(Runnable)} are walked and loaded by a pool of worker threads created for the scan. At most
+ * {@link #getMaxInFlight()} of them are queued or being worked on at a time; past that, the thread dispatching runs
+ * the work itself, which keeps the number of documents held in memory bounded without the risk of workers waiting on
+ * each other. The scan ends once all dispatched work is done. The pool is private to the scan rather than the shared
+ * lineage executor, since the scan itself runs on the shared executor and waits for its workers.
+ * <p/>
+ * Progress is counted as the scan goes, see {@link #getProgress()}.
+ * <p/>
+ * The documents found are analyzed in the background, so the analyses may still be running when the scan itself is
+ * done. {@link #documentAnalyzed(String, boolean)} is called as each document's analyses finish, and
+ * {@link #analysesFinished()} once the scan and all of them are done.
  *
  * @param <T> The type of the locator for this runner
  * @author jdixon
@@ -58,12 +81,38 @@ public abstract class LocatorRunner<T> implements Runnable {
   /**
    * A flag to identify if we should stop crawling the repository (due to an external cancel event)
    */
-  protected boolean stopping;
+  protected volatile boolean stopping;
 
   /**
    * A flag to identify we if are currently crawling the repository
    */
-  protected boolean running;
+  protected volatile boolean running;
+
+  private int workers = 1;
+
+  private int maxInFlight;
+
+  private volatile ExecutorService workerPool;
+
+  private Semaphore inFlight;
+
+  /**
+   * Dispatched work that hasn't finished; the scan waits on it for the count to drop to zero
+   */
+  private final AtomicInteger pending = new AtomicInteger();
+
+  private final AtomicInteger folderCount = new AtomicInteger();
+
+  private final AtomicInteger documentCount = new AtomicInteger();
+
+  private final AtomicInteger failedCount = new AtomicInteger();
+
+  private final AtomicInteger callerRunsCount = new AtomicInteger();
+
+  /**
+   * The documents whose analyses haven't finished, plus one for the scan itself
+   */
+  private final AtomicInteger analysesPending = new AtomicInteger( 1 );
 
   public void setRoot( T root ) {
     this.root = root;
@@ -73,11 +122,224 @@ public abstract class LocatorRunner<T> implements Runnable {
     this.locator = repoLocator;
   }
 
+  public int getWorkers() {
+    return workers;
+  }
+
+  /**
+   * Sets the number of threads walking and loading documents. One (the default) or less scans on the calling thread.
+   *
+   * @param workers the number of worker threads
+   */
+  public void setWorkers( int workers ) {
+    this.workers = workers;
+  }
+
+  /**
+   * Returns the number of folders and documents that may be queued or worked on at once, by default four per worker
+   *
+   * @return the maximum number of dispatched items in flight
+   */
+  public int getMaxInFlight() {
+    return maxInFlight > 0 ? maxInFlight : 4 * Math.max( 1, workers );
+  }
+
+  public void setMaxInFlight( int maxInFlight ) {
+    this.maxInFlight = maxInFlight;
+  }
+
   @Override
   public void run() {
     running = true;
+    try {
+      if ( workers > 1 ) {
+        inFlight = new Semaphore( getMaxInFlight() );
+        workerPool = createWorkerPool( workers );
+      }
+      scan();
+      awaitDispatched();
+      finish();
+    } finally {
+      analysisDone();
+      ExecutorService pool = workerPool;
+      workerPool = null;
+      if ( pool != null ) {
+        pool.shutdownNow();
+      }
+      running = false;
+    }
+  }
+
+  /**
+   * Does the scan, by default locating everything under the root
+   */
+  protected void scan() {
     locate( root );
-    running = false;
+  }
+
+  /**
+   * Called once everything the scan dispatched is done, before the scan ends; does nothing by default
+   */
+  protected void finish() {
+  }
+
+  /**
+   * Called once the analyses of a document found by the scan are done, on the thread that finished them; does nothing
+   * by default
+   *
+   * @param id        the id of the document
+   * @param succeeded true if the document was loaded and every analysis of it succeeded
+   */
+  protected void documentAnalyzed( String id, boolean succeeded ) {
+  }
+
+  /**
+   * Called once the scan is done and so are the analyses of all the documents it found, on the thread that finished
+   * last; does nothing by default
+   */
+  protected void analysesFinished() {
+  }
+
+  private void analysisDone() {
+    if ( analysesPending.decrementAndGet() == 0 ) {
+      analysesFinished();
+    }
+  }
+
+  /**
+   * Runs a piece of the scan (walking a folder, loading a document) on a worker thread, or right away on the calling
+   * thread if the scan has a single worker or as many items in flight as it allows
+   *
+   * @param task the work
+   */
+  protected void dispatch( final Runnable task ) {
+    ExecutorService pool = workerPool;
+    if ( pool == null || !inFlight.tryAcquire() ) {
+      if ( pool != null ) {
+        callerRunsCount.incrementAndGet();
+      }
+      task.run();
+      return;
+    }
+    pending.incrementAndGet();
+    try {
+      pool.execute( new Runnable() {
+        @Override
+        public void run() {
+          try {
+            if ( !stopping ) {
+              task.run();
+            }
+          } finally {
+            inFlight.release();
+            done();
+          }
+        }
+      } );
+    } catch ( RejectedExecutionException e ) {
+      inFlight.release();
+      done();
+      task.run();
+    }
+  }
+
+  private void done() {
+    synchronized ( pending ) {
+      if ( pending.decrementAndGet() == 0 ) {
+        pending.notifyAll();
+      }
+    }
+  }
+
+  private void awaitDispatched() {
+    synchronized ( pending ) {
+      while ( pending.get() > 0 ) {
+        try {
+          pending.wait( 200 );
+        } catch ( InterruptedException e ) {
+          Thread.currentThread().interrupt();
+          stopping = true;
+          return;
+        }
+      }
+    }
+  }
+
+  private static ExecutorService createWorkerPool( int workers ) {
+    final AtomicInteger threadNumber = new AtomicInteger();
+    return new ThreadPoolExecutor( workers, workers, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+      new ThreadFactory() {
+        @Override
+        public Thread newThread( Runnable r ) {
+          Thread thread = new Thread( r, "metaverse-locator-" + threadNumber.incrementAndGet() );
+          thread.setDaemon( true );
+          return thread;
+        }
+      } );
+  }
+
+  /**
+   * Counts a folder walked by the scan
+   */
+  protected void folderVisited() {
+    folderCount.incrementAndGet();
+  }
+
+  public int getFolderCount() {
+    return folderCount.get();
+  }
+
+  /**
+   * Returns the number of documents handed to the document listeners
+   *
+   * @return the number of documents
+   */
+  public int getDocumentCount() {
+    return documentCount.get();
+  }
+
+  /**
+   * Returns the number of documents whose content could not be loaded
+   *
+   * @return the number of failed documents
+   */
+  public int getFailedCount() {
+    return failedCount.get();
+  }
+
+  /**
+   * Returns the number of folders and documents currently queued for or being worked on by the worker threads
+   *
+   * @return the number of items in flight
+   */
+  public int getInFlightCount() {
+    return pending.get();
+  }
+
+  /**
+   * Returns the number of times work was done on the dispatching thread because too much was already in flight
+   *
+   * @return the number of caller-run items
+   */
+  public int getCallerRunsCount() {
+    return callerRunsCount.get();
+  }
+
+  /**
+   * Returns a snapshot of the progress of the scan
+   *
+   * @return the progress counters by name
+   */
+  public Map<String, Object> getProgress() {
+    Map<String, Object> progress = new LinkedHashMap<String, Object>();
+    progress.put( "running", running );
+    progress.put( "workers", Math.max( 1, workers ) );
+    progress.put( "folderCount", getFolderCount() );
+    progress.put( "documentCount", getDocumentCount() );
+    progress.put( "failedCount", getFailedCount() );
+    progress.put( "inFlightCount", getInFlightCount() );
+    progress.put( "callerRunsCount", getCallerRunsCount() );
+    return progress;
   }
 
   public boolean isRunning() {
@@ -107,7 +369,7 @@ public abstract class LocatorRunner<T> implements Runnable {
    * @param id        The id of the file
    * @param file      The contents of the file
    */
-  public void processFile( INamespace namespace, String name, String id, Object file ) {
+  public void processFile( INamespace namespace, String name, final String id, Object file ) {
 
     if ( stopping ) {
       return;
@@ -127,20 +389,38 @@ public abstract class LocatorRunner<T> implements Runnable {
       // optional attribute, continue...
     }
 
+    DocumentEvent event = new DocumentEvent();
+    event.setEventType( "add" );
+    event.setAnalysisListener( new DocumentEvent.AnalysisListener() {
+      @Override
+      public void analyzed( DocumentEvent analyzedEvent, boolean succeeded ) {
+        try {
+          documentAnalyzed( id, succeeded );
+        } finally {
+          analysisDone();
+        }
+      }
+    } );
+    analysesPending.incrementAndGet();
+    boolean notified = false;
     try {
 
       IDocument metaverseDocument = MetaverseUtil.createDocument(
         namespace, locator.getContents( file ), id, name, extension, mimeType );
 
-      DocumentEvent event = new DocumentEvent();
-      event.setEventType( "add" );
       event.setDocument( metaverseDocument );
 
       locator.notifyListeners( event );
+      documentCount.incrementAndGet();
+      notified = true;
     } catch ( Exception e ) {
 
+      failedCount.incrementAndGet();
       LOG.error( Messages.getString( "ERROR.NoContentForFile", name ), e );
 
+    } finally {
+      // the notification is done, the analyses it started (if any) report to the event as they finish
+      event.analysisFinished( notified );
     }
 
   }
@@ -51,22 +51,33 @@ public class RepositoryLocatorRunner extends LocatorRunner<List<RepositoryFileTr
         return;
       }
       if ( fileTree.getFile() != null ) {
-        RepositoryFile file = fileTree.getFile();
+        final RepositoryFile file = fileTree.getFile();
         if ( !file.isFolder() ) {
 
           if ( !file.isHidden() ) {
             // don't index hidden fields
-            try {
-              processFile( locator.getNamespace(), file.getName(), file.getPath(),  file );
-            } catch ( Exception e ) {
-              // something truly unexpected would have to have happened ... NPE or similar ugliness
-              LOG.error( Messages.getString( "ERROR.ProcessFileFailed", file.getName() ), e );
-            }
+            dispatch( new Runnable() {
+              @Override
+              public void run() {
+                try {
+                  processFile( locator.getNamespace(), file.getName(), file.getPath(), file );
+                } catch ( Exception e ) {
+                  // something truly unexpected would have to have happened ... NPE or similar ugliness
+                  LOG.error( Messages.getString( "ERROR.ProcessFileFailed", file.getName() ), e );
+                }
+              }
+            } );
           }
         } else {
-          List<RepositoryFileTree> kids = fileTree.getChildren();
+          folderVisited();
+          final List<RepositoryFileTree> kids = fileTree.getChildren();
           if ( kids != null && kids.size() > 0 ) {
-            locate( kids );
+            dispatch( new Runnable() {
+              @Override
+              public void run() {
+                locate( kids );
+              }
+            } );
           }
         }
       }
@@ -0,0 +1,285 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.locator;
+
+import org.apache.commons.io.IOUtils;
+import org.pentaho.metaverse.messages.Messages;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The documents a file system scan has seen: the path, size, modification time and content hash of each file. An
+ * incremental scan compares the files it finds against the manifest of the previous scan to tell the new and modified
+ * documents, which are analyzed, from the unchanged ones, which are skipped, and the deleted ones, whose nodes are
+ * removed from the metaverse.
+ * <p/>
+ * A file whose size and modification time are unchanged is taken to be unchanged without being read. Otherwise its
+ * content is hashed, so a file that was only touched is not analyzed again either.
+ * <p/>
+ * The manifest is kept in a properties file, written to a temporary file first and then renamed over the old one.
+ */
+public class ScanManifest {
+
+  /**
+   * The name of the manifest file kept in the root folder when no other location is configured
+   */
+  public static final String DEFAULT_FILE_NAME = ".lineage-manifest.properties";
+
+  private static final Logger LOG = LoggerFactory.getLogger( ScanManifest.class );
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  /**
+   * What is known about one document
+   */
+  public static class Entry {
+    private final long size;
+    private final long lastModified;
+    private final String hash;
+
+    public Entry( long size, long lastModified, String hash ) {
+      this.size = size;
+      this.lastModified = lastModified;
+      this.hash = hash;
+    }
+
+    public long getSize() {
+      return size;
+    }
+
+    public long getLastModified() {
+      return lastModified;
+    }
+
+    public String getHash() {
+      return hash;
+    }
+
+    @Override
+    public String toString() {
+      return size + "," + lastModified + "," + hash;
+    }
+
+    static Entry parse( String value ) {
+      String[] parts = value == null ? new String[ 0 ] : value.split( ",", 3 );
+      if ( parts.length != 3 ) {
+        return null;
+      }
+      try {
+        return new Entry( Long.parseLong( parts[ 0 ] ), Long.parseLong( parts[ 1 ] ), parts[ 2 ] );
+      } catch ( NumberFormatException e ) {
+        return null;
+      }
+    }
+  }
+
+  private final File file;
+
+  private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+  /**
+   * Creates an empty manifest kept in the given file
+   *
+   * @param file the manifest file
+   */
+  public ScanManifest( File file ) {
+    this.file = file;
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * Reads the manifest file, if there is one. A missing or unreadable file leaves the manifest empty, so every
+   * document is treated as new.
+   *
+   * @return this manifest
+   */
+  public ScanManifest load() {
+    entries.clear();
+    if ( file == null || !file.isFile() ) {
+      return this;
+    }
+    InputStream in = null;
+    try {
+      in = new FileInputStream( file );
+      Properties properties = new Properties();
+      properties.load( in );
+      for ( String path : properties.stringPropertyNames() ) {
+        Entry entry = Entry.parse( properties.getProperty( path ) );
+        if ( entry != null ) {
+          entries.put( path, entry );
+        }
+      }
+    } catch ( IOException e ) {
+      LOG.warn( Messages.getString( "WARNING.ScanManifest.Load", file.getAbsolutePath() ), e );
+      entries.clear();
+    } finally {
+      IOUtils.closeQuietly( in );
+    }
+    return this;
+  }
+
+  /**
+   * Writes the manifest file
+   *
+   * @return true if the manifest was written
+   */
+  public boolean save() {
+    if ( file == null ) {
+      return false;
+    }
+    Properties properties = new Properties();
+    for ( Map.Entry<String, Entry> entry : entries.entrySet() ) {
+      properties.setProperty( entry.getKey(), entry.getValue().toString() );
+    }
+    File temp = new File( file.getAbsolutePath() + ".tmp" );
+    OutputStream out = null;
+    try {
+      out = new FileOutputStream( temp );
+      properties.store( out, "Documents seen by the last lineage scan: size,lastModified,sha-256" );
+      out.close();
+      out = null;
+      if ( !temp.renameTo( file ) && !( file.delete() && temp.renameTo( file ) ) ) {
+        throw new IOException( "Could not rename " + temp + " to " + file );
+      }
+      return true;
+    } catch ( IOException e ) {
+      LOG.warn( Messages.getString( "WARNING.ScanManifest.Save", file.getAbsolutePath() ), e );
+      temp.delete();
+      return false;
+    } finally {
+      IOUtils.closeQuietly( out );
+    }
+  }
+
+  public Entry get( String path ) {
+    return entries.get( path );
+  }
+
+  public void put( String path, Entry entry ) {
+    entries.put( path, entry );
+  }
+
+  public Entry remove( String path ) {
+    return entries.remove( path );
+  }
+
+  /**
+   * Returns a copy of the paths in the manifest
+   *
+   * @return the paths
+   */
+  public Set<String> getPaths() {
+    return new HashSet<String>( entries.keySet() );
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * Compares a file to its entry in the manifest, without changing the manifest
+   *
+   * @param path the path the file is recorded under
+   * @param file the file
+   * @return the recorded entry if the file's size and modification time match it, otherwise a new entry for the file
+   *         as it is now
+   * @throws IOException if the file can't be read
+   */
+  public Entry check( String path, File file ) throws IOException {
+    long size = file.length();
+    long lastModified = file.lastModified();
+    Entry entry = entries.get( path );
+    if ( entry != null && entry.getSize() == size && entry.getLastModified() == lastModified ) {
+      return entry;
+    }
+    return new Entry( size, lastModified, hash( file ) );
+  }
+
+  /**
+   * Compares a file to its entry in the manifest and brings the entry up to date
+   *
+   * @param path the path the file is recorded under
+   * @param file the file
+   * @return true if the file is new or its content changed since the manifest was last updated
+   * @throws IOException if the file can't be read
+   */
+  public boolean update( String path, File file ) throws IOException {
+    Entry entry = entries.get( path );
+    Entry current = check( path, file );
+    if ( current == entry ) {
+      return false;
+    }
+    entries.put( path, current );
+    return entry == null || !current.getHash().equals( entry.getHash() );
+  }
+
+  /**
+   * Returns the SHA-256 hash of the content of a file, in hex
+   *
+   * @param file the file
+   * @return the hash
+   * @throws IOException if the file can't be read
+   */
+  public static String hash( File file ) throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance( "SHA-256" );
+    } catch ( NoSuchAlgorithmException e ) {
+      throw new IllegalStateException( e );
+    }
+    InputStream in = new FileInputStream( file );
+    try {
+      byte[] buffer = new byte[ 8192 ];
+      int read;
+      while ( ( read = in.read( buffer ) ) != -1 ) {
+        digest.update( buffer, 0, read );
+      }
+    } finally {
+      in.close();
+    }
+    byte[] bytes = digest.digest();
+    char[] hex = new char[ bytes.length * 2 ];
+    for ( int i = 0; i < bytes.length; i++ ) {
+      hex[ i * 2 ] = HEX[ ( bytes[ i ] >> 4 ) & 0xf ];
+      hex[ i * 2 + 1 ] = HEX[ bytes[ i ] & 0xf ];
+    }
+    return new String( hex );
+  }
+}
@@ -25,6 +25,8 @@ package org.pentaho.metaverse.util;
 
 import org.osgi.framework.BundleActivator;
 import org.osgi.framework.BundleContext;
+import org.pentaho.metaverse.analyzer.kettle.extensionpoints.LineageUpdateScheduler;
+import org.pentaho.metaverse.impl.LineageExecutor;
 
 /**
  * Created by mburgess on 2/9/15.
@@ -47,5 +49,8 @@ public class MetaverseBundleActivator implements BundleActivator {
   }
 
   public void stop( BundleContext bundleContext ) throws Exception {
+    // let queued lineage work finish (within the executor's shutdown timeout) before the bundle goes away
+    LineageUpdateScheduler.getInstance().shutdown();
+    LineageExecutor.getInstance().shutdown();
   }
 }
@@ -42,13 +42,18 @@ import org.pentaho.metaverse.api.MetaverseException;
 import org.pentaho.metaverse.api.model.IOperation;
 import org.pentaho.metaverse.api.model.Operation;
 import org.pentaho.metaverse.api.model.Operations;
+import org.pentaho.metaverse.client.FieldOriginIndex;
 import org.pentaho.metaverse.graph.LineageGraphCompletionService;
 import org.pentaho.metaverse.graph.LineageGraphMap;
 import org.pentaho.metaverse.impl.MetaverseBuilder;
 import org.pentaho.metaverse.messages.Messages;
+import org.pentaho.platform.util.messages.LocaleHelper;
 
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Future;
 
 
@@ -64,6 +69,9 @@ public class MetaverseUtil {
 
   protected static IDocumentController documentController = null;
 
+  private static final ConcurrentMap<Locale, ConcurrentMap<String, String>> localizedStrings =
+    new ConcurrentHashMap<Locale, ConcurrentMap<String, String>>();
+
   public static IDocumentController getDocumentController() {
     if ( documentController != null ) {
       return documentController;
@@ -123,9 +131,9 @@ public class MetaverseUtil {
       if ( matchingAnalyzers != null ) {
         for ( final IDocumentAnalyzer analyzer : matchingAnalyzers ) {
 
-          Runnable analyzerRunner = getAnalyzerRunner( analyzer, document );
-
           Graph g = ( graph != null ) ? graph : new TinkerGraph();
+          Runnable analyzerRunner = getIndexingRunner( getAnalyzerRunner( analyzer, document ), g );
+
           Future<Graph> transAnalysis =
             LineageGraphCompletionService.getInstance().submit( analyzerRunner, g );
 
@@ -142,10 +150,9 @@ public class MetaverseUtil {
    * @param edge The edge to enhance
    */
   public static void enhanceEdge( Edge edge ) {
-    String type = edge.getLabel();
     //localize the node type
-    String localizedType = Messages.getString( MESSAGE_PREFIX_LINKTYPE + type );
-    if ( !localizedType.startsWith( MESSAGE_FAILED_PREFIX ) ) {
+    String localizedType = getLocalizedLinkType( edge.getLabel() );
+    if ( localizedType != null ) {
       edge.setProperty( DictionaryConst.PROPERTY_TYPE_LOCALIZED, localizedType );
     }
   }
@@ -158,8 +165,8 @@ public class MetaverseUtil {
   public static void enhanceVertex( Vertex vertex ) {
     String type = vertex.getProperty( DictionaryConst.PROPERTY_TYPE );
     //localize the node type
-    String localizedType = Messages.getString( MESSAGE_PREFIX_NODETYPE + type );
-    if ( !localizedType.startsWith( MESSAGE_FAILED_PREFIX ) ) {
+    String localizedType = getLocalizedNodeType( type );
+    if ( localizedType != null ) {
       vertex.setProperty( DictionaryConst.PROPERTY_TYPE_LOCALIZED, localizedType );
     }
     // get the vertex category and set it
@@ -169,12 +176,67 @@ public class MetaverseUtil {
     String color = DictionaryHelper.getColorForCategory( category );
     vertex.setProperty( DictionaryConst.PROPERTY_COLOR, color );
     //localize the category
-    String localizedCat = Messages.getString( MESSAGE_PREFIX_CATEGORY + category );
-    if ( !localizedCat.startsWith( MESSAGE_FAILED_PREFIX ) ) {
+    String localizedCat = getLocalizedCategory( category );
+    if ( localizedCat != null ) {
       vertex.setProperty( DictionaryConst.PROPERTY_CATEGORY_LOCALIZED, localizedCat );
     }
   }
 
+  /**
+   * Returns the name of a node type in the current locale
+   *
+   * @param type The node type
+   * @return The localized name, null if there is none
+   */
+  public static String getLocalizedNodeType( String type ) {
+    return getLocalizedString( MESSAGE_PREFIX_NODETYPE + type );
+  }
+
+  /**
+   * Returns the name of a link type in the current locale
+   *
+   * @param type The link type (the label of the edge)
+   * @return The localized name, null if there is none
+   */
+  public static String getLocalizedLinkType( String type ) {
+    return getLocalizedString( MESSAGE_PREFIX_LINKTYPE + type );
+  }
+
+  /**
+   * Returns the name of a node category in the current locale
+   *
+   * @param category The category
+   * @return The localized name, null if there is none
+   */
+  public static String getLocalizedCategory( String category ) {
+    return getLocalizedString( MESSAGE_PREFIX_CATEGORY + category );
+  }
+
+  /**
+   * Looks up a message in the current locale. Lookups are cached per locale, as they are made for every vertex and
+   * edge read from the metaverse, and there are only as many keys as there are node and link types.
+   *
+   * @param key The message key
+   * @return The message, null if there is none
+   */
+  private static String getLocalizedString( String key ) {
+    Locale locale = LocaleHelper.getLocale();
+    ConcurrentMap<String, String> messages = localizedStrings.get( locale );
+    if ( messages == null ) {
+      ConcurrentMap<String, String> newMessages = new ConcurrentHashMap<String, String>();
+      messages = localizedStrings.putIfAbsent( locale, newMessages );
+      if ( messages == null ) {
+        messages = newMessages;
+      }
+    }
+    String message = messages.get( key );
+    if ( message == null ) {
+      message = Messages.getString( key );
+      messages.put( key, message );
+    }
+    return message.startsWith( MESSAGE_FAILED_PREFIX ) ? null : message;
+  }
+
   public static Operations convertOperationsStringToMap( String operations ) {
     Operations resultOps = null;
     if ( !Const.isEmpty( operations ) ) {
@@ -194,6 +256,24 @@ public class MetaverseUtil {
     return resultOps;
   }
 
+  /**
+   * Wraps an analyzer runner so that the origins of the fields in the graph are indexed once the analysis completes,
+   * before anyone waiting on the graph gets to it
+   *
+   * @param analyzerRunner the runner that fills the graph
+   * @param graph          the graph being filled
+   * @return a runner that analyzes, then indexes
+   */
+  public static Runnable getIndexingRunner( final Runnable analyzerRunner, final Graph graph ) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        analyzerRunner.run();
+        FieldOriginIndex.index( graph );
+      }
+    };
+  }
+
   public static Runnable getAnalyzerRunner( final IDocumentAnalyzer analyzer, final IDocument document ) {
     return new Runnable() {
       @Override
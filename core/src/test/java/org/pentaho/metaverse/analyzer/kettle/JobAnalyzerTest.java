@@ -40,6 +40,7 @@ import org.pentaho.di.job.entry.JobEntryCopy;
 import org.pentaho.di.job.entry.JobEntryInterface;
 import org.pentaho.dictionary.DictionaryConst;
 import org.pentaho.metaverse.api.IDocument;
+import org.pentaho.metaverse.api.IDocumentContent;
 import org.pentaho.metaverse.api.IMetaverseBuilder;
 import org.pentaho.metaverse.api.IMetaverseNode;
 import org.pentaho.metaverse.api.IMetaverseObjectFactory;
@@ -50,6 +51,8 @@ import org.pentaho.metaverse.api.analyzer.kettle.jobentry.IJobEntryAnalyzer;
 import org.pentaho.metaverse.api.analyzer.kettle.jobentry.IJobEntryAnalyzerProvider;
 import org.pentaho.metaverse.testutils.MetaverseTestUtils;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
@@ -236,6 +239,27 @@ public class JobAnalyzerTest {
     analyzer.analyze( descriptor, newMockJobDoc );
   }
 
+  @Test( expected = MetaverseAnalyzerException.class )
+  public void testAnalyzeWithBadStreamedXML() throws Exception {
+    IDocument newMockJobDoc = mock( IDocument.class );
+    IDocumentContent content = mock( IDocumentContent.class );
+    when( content.openStream() ).thenReturn( new ByteArrayInputStream(
+      "<?xml version=\"1.0\" encoding=\"UTF-8\"?><job>This is not a valid JobMeta doc!".getBytes( "UTF-8" ) ) );
+    when( newMockJobDoc.getType() ).thenReturn( DictionaryConst.NODE_TYPE_JOB );
+    when( newMockJobDoc.getContent() ).thenReturn( content );
+    analyzer.analyze( descriptor, newMockJobDoc );
+  }
+
+  @Test( expected = MetaverseAnalyzerException.class )
+  public void testAnalyzeWithUnreadableContent() throws Exception {
+    IDocument newMockJobDoc = mock( IDocument.class );
+    IDocumentContent content = mock( IDocumentContent.class );
+    when( content.openStream() ).thenThrow( new IOException( "gone" ) );
+    when( newMockJobDoc.getType() ).thenReturn( DictionaryConst.NODE_TYPE_JOB );
+    when( newMockJobDoc.getContent() ).thenReturn( content );
+    analyzer.analyze( descriptor, newMockJobDoc );
+  }
+
   @Test( expected = MetaverseAnalyzerException.class )
   public void testAnalyzerJobWithParamException() throws Exception {
 
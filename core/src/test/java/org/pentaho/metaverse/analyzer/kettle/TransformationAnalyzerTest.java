@@ -22,6 +22,10 @@
 
 package org.pentaho.metaverse.analyzer.kettle;
 
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -29,7 +33,9 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
 import org.pentaho.di.core.KettleEnvironment;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.parameters.UnknownParamException;
@@ -42,22 +48,40 @@ import org.pentaho.di.trans.step.StepMetaInterface;
 import org.pentaho.di.trans.steps.rowgenerator.RowGeneratorMeta;
 import org.pentaho.di.trans.steps.selectvalues.SelectValuesMeta;
 import org.pentaho.dictionary.DictionaryConst;
+import org.pentaho.metaverse.analyzer.kettle.extensionpoints.trans.TransLineageSnapshot;
 import org.pentaho.metaverse.api.IComponentDescriptor;
 import org.pentaho.metaverse.api.IDocument;
+import org.pentaho.metaverse.api.IDocumentContent;
 import org.pentaho.metaverse.api.IMetaverseBuilder;
+import org.pentaho.metaverse.api.IMetaverseBulkLoad;
 import org.pentaho.metaverse.api.IMetaverseNode;
 import org.pentaho.metaverse.api.IMetaverseObjectFactory;
 import org.pentaho.metaverse.api.INamespace;
 import org.pentaho.metaverse.api.MetaverseAnalyzerException;
 import org.pentaho.metaverse.api.MetaverseComponentDescriptor;
+import org.pentaho.metaverse.api.Namespace;
+import org.pentaho.metaverse.api.analyzer.kettle.step.IClonableStepAnalyzer;
+import org.pentaho.metaverse.api.analyzer.kettle.step.IStepAnalyzer;
 import org.pentaho.metaverse.api.analyzer.kettle.step.IStepAnalyzerProvider;
+import org.pentaho.metaverse.impl.MetaverseBuilder;
 import org.pentaho.metaverse.testutils.MetaverseTestUtils;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.*;
 
@@ -127,6 +151,7 @@ public class TransformationAnalyzerTest {
 
     analyzer = new TransformationAnalyzer();
     analyzer.setMetaverseBuilder( mockBuilder );
+    analyzer.setStepAnalysisThreads( 1 );
     when( namespace.getParentNamespace() ).thenReturn( namespace );
 
     when( mockTransDoc.getType() ).thenReturn( DictionaryConst.NODE_TYPE_TRANS );
@@ -232,6 +257,31 @@ public class TransformationAnalyzerTest {
     analyzer.analyze( descriptor, newMockTransDoc );
   }
 
+  @Test
+  public void testGetTransMetaFromStreamedContent() throws Exception {
+    IDocument streamedDoc = mock( IDocument.class );
+    IDocumentContent content = mock( IDocumentContent.class );
+    when( content.openStream() ).thenReturn( new ByteArrayInputStream(
+      "<?xml version=\"1.0\" encoding=\"UTF-8\"?><transformation><info><name>streamed</name></info></transformation>"
+        .getBytes( "UTF-8" ) ) );
+    when( streamedDoc.getContent() ).thenReturn( content );
+    when( streamedDoc.getStringID() ).thenReturn( "/streamed.ktr" );
+
+    TransMeta transMeta = analyzer.getTransMeta( streamedDoc );
+    assertNotNull( transMeta );
+    assertEquals( "/streamed.ktr", transMeta.getFilename() );
+    verify( content ).openStream();
+  }
+
+  @Test( expected = MetaverseAnalyzerException.class )
+  public void testGetTransMetaFromUnreadableContent() throws Exception {
+    IDocument streamedDoc = mock( IDocument.class );
+    IDocumentContent content = mock( IDocumentContent.class );
+    when( content.openStream() ).thenThrow( new IOException( "gone" ) );
+    when( streamedDoc.getContent() ).thenReturn( content );
+    analyzer.getTransMeta( streamedDoc );
+  }
+
   @Test
   public void testGetBaseStepMetaFromStepMetaWithNull() {
     // BaseStepMeta should not be null, but its parent should be
@@ -264,6 +314,126 @@ public class TransformationAnalyzerTest {
     analyzer.analyze( descriptor, mockTransDoc );
   }
 
+  @Test
+  public void testAnalyzeStepsInParallel() throws Exception {
+    StepMeta mockStepMeta2 = mock( StepMeta.class );
+    when( mockStepMeta2.getStepMetaInterface() ).thenReturn( mockSelectValuesStepMeta );
+    when( mockStepMeta2.getParentTransMeta() ).thenReturn( mockContent );
+    when( mockContent.nrSteps() ).thenReturn( 2 );
+    when( mockContent.getStep( 1 ) ).thenReturn( mockStepMeta2 );
+
+    IMetaverseNode stepNode = MetaverseTestUtils.getMetaverseObjectFactory().createNodeObject(
+      "stepId", "step", DictionaryConst.NODE_TYPE_TRANS_STEP );
+    IClonableStepAnalyzer clone = mock( IClonableStepAnalyzer.class );
+    when( clone.analyze( any( IComponentDescriptor.class ), any( BaseStepMeta.class ) ) ).thenReturn( stepNode );
+    IClonableStepAnalyzer stepAnalyzer = mock( IClonableStepAnalyzer.class );
+    when( stepAnalyzer.cloneAnalyzer() ).thenReturn( clone );
+    when( stepAnalyzerProvider.getAnalyzers( any( Collection.class ) ) )
+      .thenReturn( Collections.<IStepAnalyzer>singletonList( stepAnalyzer ) );
+
+    analyzer.setStepAnalyzerProvider( stepAnalyzerProvider );
+    analyzer.setStepAnalysisThreads( 2 );
+    assertEquals( 2, analyzer.getStepAnalysisThreads() );
+    try {
+      IMetaverseNode node = analyzer.analyze( descriptor, mockTransDoc );
+      assertNotNull( node );
+    } finally {
+      analyzer.shutdownStepAnalysisExecutor();
+    }
+
+    // the shared analyzer is never used directly, each step gets its own copy
+    verify( stepAnalyzer, times( 2 ) ).cloneAnalyzer();
+    verify( stepAnalyzer, never() ).analyze( any( IComponentDescriptor.class ), any( BaseStepMeta.class ) );
+    verify( clone, times( 2 ) ).analyze( any( IComponentDescriptor.class ), any( BaseStepMeta.class ) );
+    // the recorded step links have been replayed into the real builder
+    verify( mockBuilder, times( 2 ) ).addLink(
+      any( IMetaverseNode.class ), eq( DictionaryConst.LINK_CONTAINS ), any( IMetaverseNode.class ) );
+  }
+
+  @Test
+  public void testDefaultStepAnalysisThreads() {
+    assertEquals( Runtime.getRuntime().availableProcessors(), new TransformationAnalyzer().getStepAnalysisThreads() );
+  }
+
+  @Test
+  public void testAnalyzeStepWithCopyOfSharedAnalyzer() throws Exception {
+    IClonableStepAnalyzer clone = mock( IClonableStepAnalyzer.class );
+    IClonableStepAnalyzer stepAnalyzer = mock( IClonableStepAnalyzer.class );
+    when( stepAnalyzer.cloneAnalyzer() ).thenReturn( clone );
+    when( stepAnalyzerProvider.getAnalyzers( any( Collection.class ) ) )
+      .thenReturn( Collections.<IStepAnalyzer>singletonList( stepAnalyzer ) );
+    analyzer.setStepAnalyzerProvider( stepAnalyzerProvider );
+
+    analyzer.analyze( descriptor, mockTransDoc );
+
+    verify( stepAnalyzer ).cloneAnalyzer();
+    verify( stepAnalyzer, never() ).setMetaverseBuilder( any( IMetaverseBuilder.class ) );
+    verify( stepAnalyzer, never() ).analyze( any( IComponentDescriptor.class ), any( BaseStepMeta.class ) );
+    verify( clone ).setMetaverseBuilder( mockBuilder );
+    verify( clone ).analyze( any( IComponentDescriptor.class ), any( BaseStepMeta.class ) );
+  }
+
+  @Test
+  public void testAnalyzeConcurrently() throws Exception {
+    final CountDownLatch bothAnalyzing = new CountDownLatch( 2 );
+    IClonableStepAnalyzer clone = mock( IClonableStepAnalyzer.class );
+    when( clone.analyze( any( IComponentDescriptor.class ), any( BaseStepMeta.class ) ) ).thenAnswer(
+      new Answer<IMetaverseNode>() {
+        @Override
+        public IMetaverseNode answer( InvocationOnMock invocation ) throws Throwable {
+          bothAnalyzing.countDown();
+          bothAnalyzing.await( 5, TimeUnit.SECONDS );
+          return null;
+        }
+      } );
+    IClonableStepAnalyzer stepAnalyzer = mock( IClonableStepAnalyzer.class );
+    when( stepAnalyzer.cloneAnalyzer() ).thenReturn( clone );
+    when( stepAnalyzerProvider.getAnalyzers( any( Collection.class ) ) )
+      .thenReturn( Collections.<IStepAnalyzer>singletonList( stepAnalyzer ) );
+    analyzer.setStepAnalyzerProvider( stepAnalyzerProvider );
+
+    Thread other = new Thread( new Runnable() {
+      @Override
+      public void run() {
+        try {
+          analyzer.analyze( descriptor, mockTransDoc );
+        } catch ( MetaverseAnalyzerException e ) {
+          throw new IllegalStateException( e );
+        }
+      }
+    } );
+    other.start();
+    analyzer.analyze( descriptor, mockTransDoc );
+    other.join();
+
+    // the second analysis did not wait for the first one to finish before analyzing its step
+    assertEquals( 0, bothAnalyzing.getCount() );
+  }
+
+  @Test
+  public void testAnalyzeStepsInParallel_notClonable() throws Exception {
+    StepMeta mockStepMeta2 = mock( StepMeta.class );
+    when( mockStepMeta2.getStepMetaInterface() ).thenReturn( mockSelectValuesStepMeta );
+    when( mockStepMeta2.getParentTransMeta() ).thenReturn( mockContent );
+    when( mockContent.nrSteps() ).thenReturn( 2 );
+    when( mockContent.getStep( 1 ) ).thenReturn( mockStepMeta2 );
+
+    IStepAnalyzer stepAnalyzer = mock( IStepAnalyzer.class );
+    when( stepAnalyzerProvider.getAnalyzers( any( Collection.class ) ) )
+      .thenReturn( Collections.singletonList( stepAnalyzer ) );
+
+    analyzer.setStepAnalyzerProvider( stepAnalyzerProvider );
+    analyzer.setStepAnalysisThreads( 2 );
+    try {
+      analyzer.analyze( descriptor, mockTransDoc );
+    } finally {
+      analyzer.shutdownStepAnalysisExecutor();
+    }
+
+    assertFalse( analyzer.canAnalyzeInParallel( mockStepMeta ) );
+    verify( stepAnalyzer, times( 2 ) ).analyze( any( IComponentDescriptor.class ), any( BaseStepMeta.class ) );
+  }
+
   @Test
   public void testSetStepAnalyzerProvider() {
     analyzer.setStepAnalyzerProvider( stepAnalyzerProvider );
@@ -294,4 +464,233 @@ public class TransformationAnalyzerTest {
     Set<String> types = analyzer.getSupportedTypes();
     assertTrue( types == TransformationAnalyzer.defaultSupportedTypes );
   }
+
+  @Test
+  public void testReanalyzeSteps() throws Exception {
+    TransMeta transMeta = newTransMeta( "d" );
+    IDocument document = newDocument( transMeta );
+    IComponentDescriptor transDescriptor =
+      new MetaverseComponentDescriptor( "incremental", DictionaryConst.NODE_TYPE_TRANS, new Namespace( "test" ) );
+
+    Graph graph = new TinkerGraph();
+    analyzer.setMetaverseBuilder( new MetaverseBuilder( graph ) );
+    analyzer.analyze( transDescriptor, document );
+    Map<String, Object> generatedFields = fieldIds( graph, "gen" );
+    assertEquals( new HashSet<String>( Arrays.asList( "a", "b" ) ), generatedFields.keySet() );
+    assertEquals( new HashSet<String>( Arrays.asList( "c", "d" ) ), fieldIds( graph, "sel" ).keySet() );
+
+    // rename b to x rather than d; "out" only reads c, so it is unaffected apart from being downstream
+    ( (SelectValuesMeta) transMeta.findStep( "sel" ).getStepMetaInterface() ).getSelectRename()[ 1 ] = "x";
+    analyzer.reanalyzeSteps( transDescriptor, document, Arrays.asList( "sel", "out" ) );
+
+    assertEquals( generatedFields, fieldIds( graph, "gen" ) );
+    assertEquals( new HashSet<String>( Arrays.asList( "c", "x" ) ), fieldIds( graph, "sel" ).keySet() );
+    assertEquals( new HashSet<String>( Arrays.asList( "e" ) ), fieldIds( graph, "out" ).keySet() );
+
+    // the patched graph has the same fields as a graph built from scratch
+    Graph fresh = new TinkerGraph();
+    analyzer.setMetaverseBuilder( new MetaverseBuilder( fresh ) );
+    analyzer.analyze( transDescriptor, document );
+    assertEquals( fieldNames( fresh ), fieldNames( graph ) );
+    assertEquals( 3, stepCount( graph ) );
+  }
+
+  @Test
+  public void testReanalyzeRemovedStep() throws Exception {
+    TransMeta transMeta = newTransMeta( "d" );
+    IDocument document = newDocument( transMeta );
+    IComponentDescriptor transDescriptor =
+      new MetaverseComponentDescriptor( "incremental", DictionaryConst.NODE_TYPE_TRANS, new Namespace( "test" ) );
+
+    Graph graph = new TinkerGraph();
+    analyzer.setMetaverseBuilder( new MetaverseBuilder( graph ) );
+    analyzer.analyze( transDescriptor, document );
+    assertEquals( 3, stepCount( graph ) );
+
+    StepMeta out = transMeta.findStep( "out" );
+    transMeta.removeTransHop( 1 );
+    transMeta.removeStep( transMeta.indexOfStep( out ) );
+    analyzer.reanalyzeSteps( transDescriptor, document, Collections.singleton( "out" ) );
+
+    assertEquals( 2, stepCount( graph ) );
+    assertTrue( fieldIds( graph, "out" ).isEmpty() );
+    assertEquals( new HashSet<String>( Arrays.asList( "c", "d" ) ), fieldIds( graph, "sel" ).keySet() );
+  }
+
+  @Test
+  public void testReanalyzeAddedHop() throws Exception {
+    TransMeta transMeta = newTransMeta( "d" );
+    IDocument document = newDocument( transMeta );
+    IComponentDescriptor transDescriptor =
+      new MetaverseComponentDescriptor( "incremental", DictionaryConst.NODE_TYPE_TRANS, new Namespace( "test" ) );
+
+    Graph graph = new TinkerGraph();
+    analyzer.setMetaverseBuilder( new MetaverseBuilder( graph ) );
+    analyzer.analyze( transDescriptor, document );
+    assertEquals( Collections.singleton( "sel" ), targetSteps( graph, "gen" ) );
+
+    TransLineageSnapshot before = TransLineageSnapshot.of( transMeta );
+    transMeta.addTransHop( new TransHopMeta( transMeta.findStep( "gen" ), transMeta.findStep( "out" ) ) );
+    Set<String> stepNames = TransLineageSnapshot.of( transMeta ).getStepsToReanalyze( before );
+    assertTrue( stepNames.contains( "gen" ) );
+    analyzer.reanalyzeSteps( transDescriptor, document, stepNames );
+
+    // gen's fields are now also output to out
+    assertEquals( new HashSet<String>( Arrays.asList( "sel", "out" ) ), targetSteps( graph, "gen" ) );
+    Graph fresh = new TinkerGraph();
+    analyzer.setMetaverseBuilder( new MetaverseBuilder( fresh ) );
+    analyzer.analyze( transDescriptor, document );
+    assertEquals( fieldNames( fresh ), fieldNames( graph ) );
+  }
+
+  @Test
+  public void testFullBuildAfterPatch() throws Exception {
+    TransMeta transMeta = newTransMeta( "d" );
+    IDocument document = newDocument( transMeta );
+    IComponentDescriptor transDescriptor =
+      new MetaverseComponentDescriptor( "incremental", DictionaryConst.NODE_TYPE_TRANS, new Namespace( "test" ) );
+
+    Graph patched = new TinkerGraph();
+    analyzer.setMetaverseBuilder( new MetaverseBuilder( patched ) );
+    analyzer.analyze( transDescriptor, document );
+
+    // the analyzer normally writes to the document controller's builder, which patches must leave in place
+    Graph other = new TinkerGraph();
+    IMetaverseBuilder sharedBuilder = new MetaverseBuilder( other );
+    analyzer.setMetaverseBuilder( sharedBuilder );
+
+    ( (SelectValuesMeta) transMeta.findStep( "sel" ).getStepMetaInterface() ).getSelectRename()[ 1 ] = "x";
+    analyzer.reanalyzeSteps( transDescriptor, document, Arrays.asList( "sel", "out" ),
+      new MetaverseBuilder( patched ) );
+    assertSame( sharedBuilder, analyzer.getMetaverseBuilder() );
+    assertEquals( 0, stepCount( other ) );
+
+    // a full build of another transformation goes to the shared builder's graph, not the patched one
+    TransMeta otherMeta = newTransMeta( "y" );
+    analyzer.analyze( transDescriptor, newDocument( otherMeta ) );
+
+    assertEquals( 3, stepCount( patched ) );
+    assertEquals( new HashSet<String>( Arrays.asList( "c", "x" ) ), fieldIds( patched, "sel" ).keySet() );
+    assertEquals( 3, stepCount( other ) );
+    assertEquals( new HashSet<String>( Arrays.asList( "c", "y" ) ), fieldIds( other, "sel" ).keySet() );
+  }
+
+  @Test
+  public void testAnalyzeThroughBulkLoad() throws Exception {
+    final Graph graph = new TinkerGraph();
+    MetaverseBuilder builder = spy( new MetaverseBuilder( graph ) );
+    final int[] verticesDuringAnalysis = { -1 };
+    IStepAnalyzer stepAnalyzer = mock( IStepAnalyzer.class );
+    when( stepAnalyzer.analyze( any( IComponentDescriptor.class ), any( BaseStepMeta.class ) ) ).thenAnswer(
+      new Answer<IMetaverseNode>() {
+        @Override
+        public IMetaverseNode answer( InvocationOnMock invocation ) throws Throwable {
+          verticesDuringAnalysis[ 0 ] = countVertices( graph );
+          return null;
+        }
+      } );
+    when( stepAnalyzerProvider.getAnalyzers() ).thenReturn( Collections.singletonList( stepAnalyzer ) );
+    when( stepAnalyzerProvider.getAnalyzers( any( Collection.class ) ) )
+      .thenReturn( Collections.singletonList( stepAnalyzer ) );
+    analyzer.setStepAnalyzerProvider( stepAnalyzerProvider );
+    analyzer.setMetaverseBuilder( builder );
+
+    IComponentDescriptor transDescriptor =
+      new MetaverseComponentDescriptor( "incremental", DictionaryConst.NODE_TYPE_TRANS, new Namespace( "test" ) );
+    IMetaverseNode node = analyzer.analyze( transDescriptor, newDocument( newTransMeta( "d" ) ) );
+
+    verify( builder ).beginBulkLoad();
+    // the step analyzers wrote to the load, nothing reached the graph until the whole document had been analyzed
+    verify( stepAnalyzer, atLeastOnce() ).setMetaverseBuilder( isA( IMetaverseBulkLoad.class ) );
+    assertEquals( 0, verticesDuringAnalysis[ 0 ] );
+    assertNotNull( graph.getVertex( node.getStringID() ) );
+    assertSame( builder, analyzer.getMetaverseBuilder() );
+  }
+
+  private static int countVertices( Graph graph ) {
+    int count = 0;
+    for ( Vertex ignored : graph.getVertices() ) {
+      count++;
+    }
+    return count;
+  }
+
+  private static TransMeta newTransMeta( String renameOfB ) throws KettleException {
+    String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<transformation>\n"
+      + "  <info><name>incremental</name></info>\n"
+      + "  <order>\n"
+      + "    <hop><from>gen</from><to>sel</to><enabled>Y</enabled></hop>\n"
+      + "    <hop><from>sel</from><to>out</to><enabled>Y</enabled></hop>\n"
+      + "  </order>\n"
+      + "  <step><name>gen</name><type>RowGenerator</type><fields>\n"
+      + generatedField( "a" ) + generatedField( "b" )
+      + "  </fields><limit>10</limit><never_ending>N</never_ending></step>\n"
+      + "  <step><name>sel</name><type>SelectValues</type><fields>\n"
+      + selectedField( "a", "c" ) + selectedField( "b", renameOfB )
+      + "    <select_unspecified>N</select_unspecified></fields></step>\n"
+      + "  <step><name>out</name><type>SelectValues</type><fields>\n"
+      + selectedField( "c", "e" )
+      + "    <select_unspecified>N</select_unspecified></fields></step>\n"
+      + "</transformation>\n";
+    return new TransMeta( new ByteArrayInputStream( xml.getBytes() ), null, false, null, null );
+  }
+
+  private static String generatedField( String name ) {
+    return "    <field><name>" + name + "</name><type>String</type><nullif>value</nullif><length>-1</length>"
+      + "<precision>-1</precision><set_empty_string>N</set_empty_string></field>\n";
+  }
+
+  private static String selectedField( String name, String rename ) {
+    return "    <field><name>" + name + "</name><rename>" + rename + "</rename><length>-2</length>"
+      + "<precision>-2</precision></field>\n";
+  }
+
+  private static IDocument newDocument( TransMeta transMeta ) {
+    IDocument document = mock( IDocument.class );
+    when( document.getContent() ).thenReturn( transMeta );
+    when( document.getNamespace() ).thenReturn( new Namespace( "test" ) );
+    when( document.getStringID() ).thenReturn( "/path/to/incremental.ktr" );
+    when( document.getName() ).thenReturn( "incremental" );
+    return document;
+  }
+
+  private static int stepCount( Graph graph ) {
+    int count = 0;
+    for ( Vertex ignored : graph.getVertices( DictionaryConst.PROPERTY_TYPE, DictionaryConst.NODE_TYPE_TRANS_STEP ) ) {
+      count++;
+    }
+    return count;
+  }
+
+  private static Map<String, Object> fieldIds( Graph graph, String stepName ) {
+    Map<String, Object> ids = new HashMap<String, Object>();
+    for ( Vertex step : graph.getVertices( DictionaryConst.PROPERTY_TYPE, DictionaryConst.NODE_TYPE_TRANS_STEP ) ) {
+      if ( stepName.equals( step.getProperty( DictionaryConst.PROPERTY_NAME ) ) ) {
+        for ( Vertex field : step.getVertices( Direction.OUT, DictionaryConst.LINK_OUTPUTS ) ) {
+          ids.put( (String) field.getProperty( DictionaryConst.PROPERTY_NAME ), field.getId() );
+        }
+      }
+    }
+    return ids;
+  }
+
+  private static Set<String> targetSteps( Graph graph, String stepName ) {
+    Set<String> targets = new HashSet<String>();
+    for ( Vertex step : graph.getVertices( DictionaryConst.PROPERTY_TYPE, DictionaryConst.NODE_TYPE_TRANS_STEP ) ) {
+      if ( stepName.equals( step.getProperty( DictionaryConst.PROPERTY_NAME ) ) ) {
+        for ( Vertex field : step.getVertices( Direction.OUT, DictionaryConst.LINK_OUTPUTS ) ) {
+          targets.add( (String) field.getProperty( DictionaryConst.PROPERTY_TARGET_STEP ) );
+        }
+      }
+    }
+    return targets;
+  }
+
+  private static Set<String> fieldNames( Graph graph ) {
+    Set<String> names = new HashSet<String>();
+    for ( Vertex field : graph.getVertices( DictionaryConst.PROPERTY_TYPE, DictionaryConst.NODE_TYPE_TRANS_FIELD ) ) {
+      names.add( field.getProperty( DictionaryConst.PROPERTY_LOGICAL_ID ) + "" );
+    }
+    return names;
+  }
 }
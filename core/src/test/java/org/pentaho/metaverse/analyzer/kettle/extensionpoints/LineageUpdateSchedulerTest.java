@@ -0,0 +1,131 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.analyzer.kettle.extensionpoints;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class LineageUpdateSchedulerTest {
+
+  LineageUpdateScheduler scheduler;
+
+  @Before
+  public void setUp() throws Exception {
+    scheduler = new LineageUpdateScheduler( 200 );
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    scheduler.shutdown();
+  }
+
+  @Test
+  public void testBurstIsCoalesced() throws Exception {
+    Object subject = new Object();
+    final AtomicInteger runs = new AtomicInteger();
+    final CountDownLatch done = new CountDownLatch( 1 );
+    Runnable update = new Runnable() {
+      @Override
+      public void run() {
+        runs.incrementAndGet();
+        done.countDown();
+      }
+    };
+    for ( int i = 0; i < 10; i++ ) {
+      scheduler.schedule( subject, update );
+    }
+    assertEquals( 1, scheduler.getPendingCount() );
+    assertTrue( done.await( 5, TimeUnit.SECONDS ) );
+    scheduler.flush( subject );
+
+    assertEquals( 1, runs.get() );
+    assertEquals( 10, scheduler.getScheduledCount() );
+    assertEquals( 9, scheduler.getCoalescedCount() );
+    assertEquals( 0, scheduler.getPendingCount() );
+  }
+
+  @Test
+  public void testSubjectsAreIndependent() throws Exception {
+    final CountDownLatch done = new CountDownLatch( 2 );
+    Runnable update = new Runnable() {
+      @Override
+      public void run() {
+        done.countDown();
+      }
+    };
+    scheduler.schedule( "a", update, 0 );
+    scheduler.schedule( new String( "a" ), update, 0 );
+    assertTrue( done.await( 5, TimeUnit.SECONDS ) );
+    assertEquals( 0, scheduler.getCoalescedCount() );
+  }
+
+  @Test
+  public void testFailedUpdateIsCounted() throws Exception {
+    final CountDownLatch done = new CountDownLatch( 1 );
+    scheduler.schedule( "subject", new Runnable() {
+      @Override
+      public void run() {
+        throw new IllegalStateException( "expected" );
+      }
+    }, 0 );
+    scheduler.schedule( "other", new Runnable() {
+      @Override
+      public void run() {
+        done.countDown();
+      }
+    }, 0 );
+    assertTrue( done.await( 5, TimeUnit.SECONDS ) );
+    // updates run one at a time, so the failed one has been accounted for by now
+    assertEquals( 1, scheduler.getFailedCount() );
+  }
+
+  @Test
+  public void testShutdown() throws Exception {
+    scheduler.schedule( "subject", new Runnable() {
+      @Override
+      public void run() {
+        fail( "should not run" );
+      }
+    } );
+    scheduler.shutdown();
+    assertEquals( 0, scheduler.getPendingCount() );
+
+    // scheduling after a shutdown starts a new update thread
+    final CountDownLatch done = new CountDownLatch( 1 );
+    scheduler.schedule( "subject", new Runnable() {
+      @Override
+      public void run() {
+        done.countDown();
+      }
+    }, 0 );
+    assertTrue( done.await( 5, TimeUnit.SECONDS ) );
+    assertEquals( LineageUpdateScheduler.DEFAULT_DELAY, LineageUpdateScheduler.getInstance().getDelay() );
+  }
+}
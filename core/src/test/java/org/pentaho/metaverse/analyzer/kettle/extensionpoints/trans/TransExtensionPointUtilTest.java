@@ -22,6 +22,9 @@
 
 package org.pentaho.metaverse.analyzer.kettle.extensionpoints.trans;
 
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -29,14 +32,32 @@ import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.pentaho.di.core.KettleClientEnvironment;
 import org.pentaho.di.trans.TransMeta;
+import org.pentaho.metaverse.analyzer.kettle.TransformationAnalyzer;
+import org.pentaho.metaverse.api.IComponentDescriptor;
+import org.pentaho.metaverse.api.IDocument;
+import org.pentaho.metaverse.api.IDocumentAnalyzer;
 import org.pentaho.metaverse.api.IDocumentController;
 import org.pentaho.metaverse.api.IMetaverseObjectFactory;
+import org.pentaho.metaverse.api.IMetaverseBuilder;
 import org.pentaho.metaverse.api.MetaverseException;
+import org.pentaho.metaverse.graph.LineageGraphMap;
 import org.pentaho.metaverse.testutils.MetaverseTestUtils;
 import org.pentaho.metaverse.util.MetaverseUtil;
 
+import java.util.Collections;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith( MockitoJUnitRunner.class )
@@ -52,6 +73,11 @@ public class TransExtensionPointUtilTest {
     when( transMeta.getName() ).thenReturn( "testTrans" );
   }
 
+  @After
+  public void tearDown() {
+    LineageGraphMap.getInstance().remove( transMeta );
+  }
+
   @Test
   public void testDefaultConstructor() {
     assertNotNull( new TransExtensionPointUtil() );
@@ -72,4 +98,58 @@ public class TransExtensionPointUtilTest {
     when( transMeta.getPathAndName() ).thenReturn( "/Transformation 1" );
     TransExtensionPointUtil.addLineageGraph( transMeta );
   }
+
+  @Test( expected = MetaverseException.class )
+  public void testUpdateLineageGraphNullTransMeta() throws Exception {
+    TransExtensionPointUtil.updateLineageGraph( null );
+  }
+
+  @Test
+  public void testUpdateLineageGraphPatchesExistingGraph() throws Exception {
+    TransformationAnalyzer analyzer = mock( TransformationAnalyzer.class );
+    IDocumentController mockDoc = mock( IDocumentController.class );
+    when( mockDoc.getMetaverseObjectFactory() ).thenReturn( MetaverseTestUtils.getMetaverseObjectFactory() );
+    when( mockDoc.getDocumentAnalyzers( "ktr" ) )
+      .thenReturn( Collections.<IDocumentAnalyzer>singletonList( analyzer ) );
+    MetaverseUtil.setDocumentController( mockDoc );
+
+    // Nothing to patch yet, so the graph is built from scratch
+    TransExtensionPointUtil.updateLineageGraph( transMeta );
+    Future<Graph> analysis = LineageGraphMap.getInstance().get( transMeta );
+    assertNotNull( analysis );
+    analysis.get();
+
+    // Unchanged, so the finished graph is left alone
+    TransExtensionPointUtil.updateLineageGraph( transMeta );
+    assertSame( analysis, LineageGraphMap.getInstance().get( transMeta ) );
+    verify( analyzer, never() ).reanalyzeSteps( any( IComponentDescriptor.class ), any( IDocument.class ),
+      anyCollectionOf( String.class ), any( IMetaverseBuilder.class ) );
+
+    // Only the transformation's own properties changed, so no step is re-analyzed but the graph is patched
+    when( transMeta.getDescription() ).thenReturn( "changed" );
+    TransExtensionPointUtil.updateLineageGraph( transMeta );
+    Future<Graph> patch = LineageGraphMap.getInstance().get( transMeta );
+    assertNotSame( analysis, patch );
+    assertSame( analysis.get(), patch.get() );
+    verify( analyzer, timeout( 5000 ) ).reanalyzeSteps( any( IComponentDescriptor.class ), any( IDocument.class ),
+      eq( Collections.<String>emptySet() ), any( IMetaverseBuilder.class ) );
+    // the shared analyzer keeps writing to the document controller's builder
+    verify( analyzer, never() ).setMetaverseBuilder( any( IMetaverseBuilder.class ) );
+  }
+
+  @Test
+  public void testUpdateLineageGraphRebuildsUnfinishedGraph() throws Exception {
+    IDocumentController mockDoc = mock( IDocumentController.class );
+    when( mockDoc.getMetaverseObjectFactory() ).thenReturn( MetaverseTestUtils.getMetaverseObjectFactory() );
+    MetaverseUtil.setDocumentController( mockDoc );
+
+    FutureTask<Graph> pending = new FutureTask<Graph>( mock( Runnable.class ), new TinkerGraph() );
+    LineageGraphMap.getInstance().put( transMeta, pending );
+    TransExtensionPointUtil.addLineageGraph( transMeta );
+    assertSame( pending, LineageGraphMap.getInstance().get( transMeta ) );
+
+    // the document controller has no analyzers, so there is neither a graph to patch nor an analyzer to patch it with
+    TransExtensionPointUtil.updateLineageGraph( transMeta );
+    assertSame( pending, LineageGraphMap.getInstance().get( transMeta ) );
+  }
 }
@@ -0,0 +1,170 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.analyzer.kettle.extensionpoints.trans;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.trans.TransHopMeta;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.StepMeta;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TransLineageSnapshotTest {
+
+  Map<String, StepMeta> steps;
+  Map<String, String> xml;
+
+  @Before
+  public void setUp() throws Exception {
+    steps = new LinkedHashMap<String, StepMeta>();
+    xml = new LinkedHashMap<String, String>();
+    for ( String name : new String[] { "input", "lookup", "calc", "output", "other" } ) {
+      xml.put( name, "<step>" + name + "</step>" );
+    }
+  }
+
+  @Test
+  public void testUnchanged() throws Exception {
+    TransLineageSnapshot before = TransLineageSnapshot.of( trans( "t", "input>lookup", "lookup>calc" ) );
+    TransLineageSnapshot after = TransLineageSnapshot.of( trans( "t", "input>lookup", "lookup>calc" ) );
+    assertTrue( after.isComparableTo( before ) );
+    assertFalse( after.isPropertiesChanged( before ) );
+    assertTrue( after.getStepsToReanalyze( before ).isEmpty() );
+  }
+
+  @Test
+  public void testChangedStepAndDownstream() throws Exception {
+    TransLineageSnapshot before =
+      TransLineageSnapshot.of( trans( "t", "input>lookup", "lookup>calc", "calc>output", "other>output" ) );
+    xml.put( "lookup", "<step>lookup, changed</step>" );
+    TransLineageSnapshot after =
+      TransLineageSnapshot.of( trans( "t", "input>lookup", "lookup>calc", "calc>output", "other>output" ) );
+    assertEquals( new HashSet<String>( Arrays.asList( "lookup", "calc", "output" ) ),
+      after.getStepsToReanalyze( before ) );
+  }
+
+  @Test
+  public void testChangedHop() throws Exception {
+    TransLineageSnapshot before = TransLineageSnapshot.of( trans( "t", "input>lookup", "lookup>calc" ) );
+    TransLineageSnapshot after = TransLineageSnapshot.of( trans( "t", "input>lookup", "input>calc", "lookup>calc" ) );
+    // input now also sends its fields to calc, and its fields are linked per step they go to
+    assertEquals( new HashSet<String>( Arrays.asList( "input", "lookup", "calc" ) ),
+      after.getStepsToReanalyze( before ) );
+  }
+
+  @Test
+  public void testDisabledHop() throws Exception {
+    TransLineageSnapshot before = TransLineageSnapshot.of( trans( "t", "input>lookup", "other>output" ) );
+    TransMeta transMeta = trans( "t", "input>lookup", "other>output" );
+    when( transMeta.getTransHop( 1 ).isEnabled() ).thenReturn( false );
+    TransLineageSnapshot after = TransLineageSnapshot.of( transMeta );
+    assertEquals( new HashSet<String>( Arrays.asList( "other", "output" ) ), after.getStepsToReanalyze( before ) );
+  }
+
+  @Test
+  public void testRemovedStep() throws Exception {
+    TransLineageSnapshot before = TransLineageSnapshot.of( trans( "t", "input>lookup", "lookup>calc" ) );
+    xml.remove( "lookup" );
+    TransLineageSnapshot after = TransLineageSnapshot.of( trans( "t" ) );
+    // input lost its hop to lookup
+    assertEquals( new HashSet<String>( Arrays.asList( "input", "lookup", "calc" ) ),
+      after.getStepsToReanalyze( before ) );
+    assertFalse( after.getStepNames().contains( "lookup" ) );
+  }
+
+  @Test
+  public void testUnreadableStepIsAlwaysChanged() throws Exception {
+    TransLineageSnapshot before = TransLineageSnapshot.of( trans( "t" ) );
+    xml.put( "other", null );
+    TransLineageSnapshot after = TransLineageSnapshot.of( trans( "t" ) );
+    assertEquals( Collections.singleton( "other" ), after.getStepsToReanalyze( before ) );
+    assertEquals( Collections.singleton( "other" ), after.getStepsToReanalyze( after ) );
+  }
+
+  @Test
+  public void testRenamedTransIsNotComparable() throws Exception {
+    TransLineageSnapshot before = TransLineageSnapshot.of( trans( "t" ) );
+    assertFalse( TransLineageSnapshot.of( trans( "renamed" ) ).isComparableTo( before ) );
+    assertFalse( before.isComparableTo( null ) );
+  }
+
+  @Test
+  public void testPropertiesChanged() throws Exception {
+    TransLineageSnapshot before = TransLineageSnapshot.of( trans( "t" ) );
+    TransMeta transMeta = trans( "t" );
+    when( transMeta.getDescription() ).thenReturn( "new description" );
+    TransLineageSnapshot after = TransLineageSnapshot.of( transMeta );
+    assertTrue( after.isPropertiesChanged( before ) );
+    assertTrue( after.getStepsToReanalyze( before ).isEmpty() );
+  }
+
+  /**
+   * Builds a mock transformation with the current steps and the given hops, written as "from>to"
+   */
+  private TransMeta trans( String name, String... hops ) throws KettleException {
+    TransMeta transMeta = mock( TransMeta.class );
+    when( transMeta.getName() ).thenReturn( name );
+    when( transMeta.getFilename() ).thenReturn( "/path/to/" + name + ".ktr" );
+    int stepNr = 0;
+    for ( Map.Entry<String, String> entry : xml.entrySet() ) {
+      StepMeta stepMeta = step( entry.getKey() );
+      if ( entry.getValue() == null ) {
+        when( stepMeta.getXML() ).thenThrow( new KettleException( "unreadable" ) );
+      } else {
+        when( stepMeta.getXML() ).thenReturn( entry.getValue() );
+      }
+      when( transMeta.getStep( stepNr++ ) ).thenReturn( stepMeta );
+    }
+    when( transMeta.nrSteps() ).thenReturn( stepNr );
+    for ( int hopNr = 0; hopNr < hops.length; hopNr++ ) {
+      String[] ends = hops[ hopNr ].split( ">" );
+      TransHopMeta hop = mock( TransHopMeta.class );
+      when( hop.getFromStep() ).thenReturn( step( ends[ 0 ] ) );
+      when( hop.getToStep() ).thenReturn( step( ends[ 1 ] ) );
+      when( hop.isEnabled() ).thenReturn( true );
+      when( transMeta.getTransHop( hopNr ) ).thenReturn( hop );
+    }
+    when( transMeta.nrTransHops() ).thenReturn( hops.length );
+    return transMeta;
+  }
+
+  private StepMeta step( String name ) {
+    StepMeta stepMeta = steps.get( name );
+    if ( stepMeta == null ) {
+      stepMeta = mock( StepMeta.class );
+      when( stepMeta.getName() ).thenReturn( name );
+      steps.put( name, stepMeta );
+    }
+    return stepMeta;
+  }
+}
@@ -34,8 +34,18 @@ import org.pentaho.metaverse.analyzer.kettle.extensionpoints.trans.TransLineageH
 import org.pentaho.metaverse.api.analyzer.kettle.step.IStepExternalResourceConsumer;
 import org.pentaho.metaverse.api.model.IExecutionData;
 import org.pentaho.metaverse.api.model.IExecutionProfile;
+import org.pentaho.metaverse.api.model.IExternalResourceInfo;
 import org.pentaho.metaverse.api.model.LineageHolder;
+import org.pentaho.metaverse.api.model.WebServiceResourceInfo;
+import org.pentaho.metaverse.impl.model.ExecutionData;
+import org.pentaho.metaverse.impl.model.ExternalResourceCapture;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.*;
 
 public class StepExternalConsumerRowListenerTest {
@@ -67,4 +77,89 @@ public class StepExternalConsumerRowListenerTest {
     listener.rowReadEvent( rmi, row );
   }
 
+
+  @Test
+  public void testRowReadEventCapturesDistinctResources() throws Exception {
+    ExecutionData executionData = new ExecutionData();
+    BaseStep mockStep = mockStep( executionData, null, "2" );
+    IStepExternalResourceConsumer consumer = mock( IStepExternalResourceConsumer.class );
+    StepExternalConsumerRowListener listener = new StepExternalConsumerRowListener( consumer, mockStep );
+    RowMetaInterface rmi = mock( RowMetaInterface.class );
+
+    for ( String url : new String[] { "http://a", "http://a", "http://b", "http://c", "http://a", "http://d" } ) {
+      when( consumer.getResourcesFromRow( any( BaseStep.class ), any( RowMetaInterface.class ), any( Object[].class ) ) )
+        .thenReturn( resources( url ) );
+      listener.rowReadEvent( rmi, new Object[0] );
+    }
+
+    List<IExternalResourceInfo> captured = executionData.getExternalResources().get( "REST" );
+    assertEquals( 2, captured.size() );
+    assertEquals( "http://a", captured.get( 0 ).getName() );
+    assertEquals( 3L, captured.get( 0 ).getAttributes().get( ExternalResourceCapture.ATTRIBUTE_HIT_COUNT ) );
+    assertEquals( "http://b", captured.get( 1 ).getName() );
+    assertEquals( Long.valueOf( 2 ), executionData.getExternalResourcesDropped().get( "REST" ) );
+  }
+
+  @Test
+  public void testRowReadEventCapturesAllResources() throws Exception {
+    ExecutionData executionData = new ExecutionData();
+    BaseStep mockStep = mockStep( executionData, "all", null );
+    IStepExternalResourceConsumer consumer = mock( IStepExternalResourceConsumer.class );
+    StepExternalConsumerRowListener listener = new StepExternalConsumerRowListener( consumer, mockStep );
+    RowMetaInterface rmi = mock( RowMetaInterface.class );
+
+    when( consumer.getResourcesFromRow( any( BaseStep.class ), any( RowMetaInterface.class ), any( Object[].class ) ) )
+      .thenReturn( resources( "http://a" ) );
+    for ( int i = 0; i < 3; i++ ) {
+      listener.rowReadEvent( rmi, new Object[0] );
+    }
+
+    assertEquals( 3, executionData.getExternalResources().get( "REST" ).size() );
+    assertTrue( executionData.getExternalResourcesDropped().isEmpty() );
+  }
+
+  @Test
+  public void testRowReadEventSharesCaptureBetweenCopies() throws Exception {
+    ExecutionData executionData = new ExecutionData();
+    IStepExternalResourceConsumer consumer = mock( IStepExternalResourceConsumer.class );
+    when( consumer.getResourcesFromRow( any( BaseStep.class ), any( RowMetaInterface.class ), any( Object[].class ) ) )
+      .thenReturn( resources( "http://a" ) );
+    StepExternalConsumerRowListener copy0 =
+      new StepExternalConsumerRowListener( consumer, mockStep( executionData, null, null ) );
+    StepExternalConsumerRowListener copy1 =
+      new StepExternalConsumerRowListener( consumer, mockStep( executionData, null, null ) );
+    RowMetaInterface rmi = mock( RowMetaInterface.class );
+
+    copy0.rowReadEvent( rmi, new Object[0] );
+    copy1.rowReadEvent( rmi, new Object[0] );
+
+    assertSame( copy0.getCapture(), copy1.getCapture() );
+    List<IExternalResourceInfo> captured = executionData.getExternalResources().get( "REST" );
+    assertEquals( 1, captured.size() );
+    assertEquals( 2L, captured.get( 0 ).getAttributes().get( ExternalResourceCapture.ATTRIBUTE_HIT_COUNT ) );
+  }
+
+  private static BaseStep mockStep( ExecutionData executionData, String mode, String maxDistinct ) {
+    BaseStep mockStep = mock( BaseStep.class, withSettings().extraInterfaces( StepInterface.class ) );
+    Trans mockTrans = mock( Trans.class );
+    when( mockStep.getTrans() ).thenReturn( mockTrans );
+    when( mockStep.getStepname() ).thenReturn( "REST" );
+    when( mockStep.getVariable( StepExternalConsumerRowListener.RESOURCE_CAPTURE_MODE ) ).thenReturn( mode );
+    when( mockStep.getVariable( StepExternalConsumerRowListener.RESOURCE_CAPTURE_MAX_DISTINCT ) )
+      .thenReturn( maxDistinct );
+
+    IExecutionProfile executionProfile = mock( IExecutionProfile.class );
+    when( executionProfile.getExecutionData() ).thenReturn( executionData );
+    LineageHolder holder = new LineageHolder();
+    holder.setExecutionProfile( executionProfile );
+    TransLineageHolderMap.getInstance().putLineageHolder( mockTrans, holder );
+    return mockStep;
+  }
+
+  private static Collection<IExternalResourceInfo> resources( String url ) {
+    WebServiceResourceInfo resource = new WebServiceResourceInfo();
+    resource.setName( url );
+    resource.setMethod( "GET" );
+    return Collections.<IExternalResourceInfo>singletonList( resource );
+  }
 }
@@ -261,4 +261,19 @@ public class MergeJoinStepAnalyzerTest {
     assertEquals( types.size(), 1 );
     assertTrue( types.contains( MergeJoinMeta.class ) );
   }
+
+  @Test
+  public void testCloneAnalyzer() throws Exception {
+    MergeJoinStepAnalyzer original = new MergeJoinStepAnalyzer();
+    original.setMetaverseBuilder( builder );
+    original.leftStepFields = mock( RowMetaInterface.class );
+    original.rightStepFields = mock( RowMetaInterface.class );
+
+    MergeJoinStepAnalyzer clone = (MergeJoinStepAnalyzer) original.cloneAnalyzer();
+    assertNotSame( original, clone );
+    assertSame( builder, clone.getMetaverseBuilder() );
+    assertNull( clone.leftStepFields );
+    assertNull( clone.rightStepFields );
+    assertNotNull( original.leftStepFields );
+  }
 }
@@ -231,4 +231,19 @@ public class StreamLookupStepAnalyzerTest {
     assertEquals( types.size(), 1 );
     assertTrue( types.contains( StreamLookupMeta.class ) );
   }
+
+  @Test
+  public void testCloneAnalyzer() throws Exception {
+    StreamLookupStepAnalyzer original = new StreamLookupStepAnalyzer();
+    original.setMetaverseBuilder( builder );
+    original.keyLookups = new String[] { "a" };
+    original.lookupStep = "lookup";
+
+    StreamLookupStepAnalyzer clone = (StreamLookupStepAnalyzer) original.cloneAnalyzer();
+    assertNotSame( original, clone );
+    assertSame( builder, clone.getMetaverseBuilder() );
+    assertNull( clone.keyLookups );
+    assertNull( clone.lookupStep );
+    assertEquals( "lookup", original.lookupStep );
+  }
 }
@@ -417,7 +417,8 @@ public class TransExecutorStepAnalyzerTest {
     childTransSteps.add( rowsFromResult );
 
     RowMetaInterface rowMetaInterface = mock( RowMetaInterface.class );
-    when( parentTransMeta.getStepFields( any( StepMeta.class ) ) ).thenReturn( rowMetaInterface );
+    when( parentTransMeta.getStepFields( any( StepMeta.class ), any( ProgressMonitorListener.class ) ) )
+      .thenReturn( rowMetaInterface );
     when( rowMetaInterface.getFieldNames() ).thenReturn( resultsFieldNames );
     when( childTransMeta.getSteps() ).thenReturn( childTransSteps );
 
@@ -478,7 +479,8 @@ public class TransExecutorStepAnalyzerTest {
     RowMetaInterface rmiRows = mock( RowMetaInterface.class );
     when( mockRowsFromResultMeta.getParentStepMeta() ).thenReturn( rowsParentStepMeta );
     when( rowsParentStepMeta.getParentTransMeta() ).thenReturn( rowsParentTransMeta );
-    when( rowsParentTransMeta.getStepFields( rowsFromResult ) ).thenReturn( rmiRows );
+    when( rowsParentTransMeta.getStepFields( eq( rowsFromResult ), any( ProgressMonitorListener.class ) ) )
+      .thenReturn( rmiRows );
 
     when( rmiRows.getFieldNames() ).thenReturn( resultsFieldNames );
     ValueMetaInterface vmi = mock( ValueMetaInterface.class );
@@ -0,0 +1,269 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.client;
+
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.dictionary.DictionaryConst;
+import org.pentaho.metaverse.api.ChangeType;
+import org.pentaho.metaverse.api.MetaverseException;
+import org.pentaho.metaverse.api.StepField;
+import org.pentaho.metaverse.api.StepFieldOperations;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FieldOriginIndexTest {
+
+  private static final String OPERATIONS =
+    "{\"metadataOperations\":[{\"category\":\"changeMetadata\",\"class\":\"Operation\","
+      + "\"description\":\"a -> c\",\"name\":\"modified\",\"type\":\"METADATA\"}]}";
+
+  private Graph graph;
+  private LineageClient lineageClient;
+  private int ids;
+
+  @Before
+  public void setUp() throws Exception {
+    graph = new TinkerGraph();
+    lineageClient = new LineageClient();
+    ids = 0;
+
+    Vertex input = step( "Input" );
+    Vertex a = field( input, "a" );
+    Vertex b = field( input, "b" );
+
+    // c is calculated from a and b, then renamed to d
+    Vertex calc = step( "Calc" );
+    Vertex c = field( calc, "c" );
+    c.setProperty( DictionaryConst.PROPERTY_OPERATIONS, OPERATIONS );
+    derives( a, c );
+    derives( b, c );
+    Vertex rename = step( "Rename" );
+    derives( c, field( rename, "d" ) );
+    Vertex e = field( rename, "e" );
+
+    // j is joined on e, and a field of the same name is passed through
+    Vertex join = step( "Join" );
+    joins( e, field( join, "j" ) );
+    derives( a, field( join, "a" ) );
+
+    // x and y derive each other, y also derives from b
+    Vertex loop = step( "Loop" );
+    Vertex x = field( loop, "x" );
+    Vertex y = field( loop, "y" );
+    derives( y, x );
+    derives( x, y );
+    derives( b, y );
+
+    // j2 is joined on itself through k
+    Vertex selfJoin = step( "Self join" );
+    Vertex j2 = field( selfJoin, "j2" );
+    Vertex k = field( selfJoin, "k" );
+    joins( j2, k );
+    joins( k, j2 );
+
+    // two steps of the same name output the same field
+    derives( a, field( step( "Twin" ), "t" ) );
+    derives( b, field( step( "Twin" ), "t" ) );
+
+    // fields that are not output by any step
+    Vertex orphan = vertex( DictionaryConst.NODE_TYPE_TRANS_FIELD, "orphan" );
+    Vertex broken = step( "Broken" );
+    derives( orphan, field( broken, "f" ) );
+    Vertex orphan2 = vertex( DictionaryConst.NODE_TYPE_TRANS_FIELD, "orphan2" );
+    derives( a, orphan2 );
+    derives( orphan2, field( broken, "g" ) );
+
+    // a chain longer than the traversal goes, and one that is just short enough
+    chain( "Long", LineageClient.MAX_LOOPS + 1 );
+    chain( "Short", LineageClient.MAX_LOOPS );
+  }
+
+  @Test
+  public void testSameAsGraphTraversal() throws Exception {
+    FieldOriginIndex index = new FieldOriginIndex( graph );
+    assertSameAsTraversal( index, "Input", "a", "b" );
+    assertSameAsTraversal( index, "Calc", "c" );
+    assertSameAsTraversal( index, "Rename", "d", "e", "missing" );
+    assertSameAsTraversal( index, "Join", "j", "a" );
+    assertSameAsTraversal( index, "Loop", "x", "y" );
+    assertSameAsTraversal( index, "Self join", "j2", "k" );
+    assertSameAsTraversal( index, "Twin", "t" );
+    assertSameAsTraversal( index, "Long", "field0" );
+    assertSameAsTraversal( index, "Short", "field0" );
+    assertSameAsTraversal( index, "Missing", "a" );
+  }
+
+  @Test
+  public void testGetOriginSteps() throws Exception {
+    FieldOriginIndex index = new FieldOriginIndex( graph );
+    Map<String, Set<StepField>> originSteps = index.getOriginSteps( "Rename", Arrays.asList( "d", "e" ) );
+    assertEquals( 2, originSteps.size() );
+    assertEquals( set( new StepField( "Input", "a" ), new StepField( "Input", "b" ) ), originSteps.get( "d" ) );
+    assertEquals( set( new StepField( "Rename", "e" ) ), originSteps.get( "e" ) );
+
+    assertEquals( set( new StepField( "Input", "b" ) ),
+      index.getOriginSteps( "Loop", Collections.singleton( "x" ) ).get( "x" ) );
+    // k is joined, not derived, so it is an origin as well
+    assertEquals( set( new StepField( "Self join", "k" ), new StepField( "Self join", "j2" ) ),
+      index.getOriginSteps( "Self join", Collections.singleton( "j2" ) ).get( "j2" ) );
+    assertTrue( index.getOriginSteps( "Long", Collections.singleton( "field0" ) ).isEmpty() );
+    assertEquals( set( new StepField( "Short", "field" + LineageClient.MAX_LOOPS ) ),
+      index.getOriginSteps( "Short", Collections.singleton( "field0" ) ).get( "field0" ) );
+
+    // the intermediate field of g is not output by a step, but its origin is
+    assertEquals( set( new StepField( "Input", "a" ) ),
+      index.getOriginSteps( "Broken", Collections.singleton( "g" ) ).get( "g" ) );
+  }
+
+  @Test
+  public void testGetOperationPaths() throws Exception {
+    FieldOriginIndex index = new FieldOriginIndex( graph );
+    Set<List<StepFieldOperations>> paths = index.getOperationPaths( "Rename", Arrays.asList( "d" ) ).get( "d" );
+    assertEquals( 2, paths.size() );
+    for ( List<StepFieldOperations> path : paths ) {
+      assertEquals( 3, path.size() );
+      assertEquals( "Input", path.get( 0 ).getStepName() );
+      assertEquals( new StepField( "Calc", "c" ), path.get( 1 ) );
+      assertEquals( "a -> c", path.get( 1 ).getOperations().get( ChangeType.METADATA ).get( 0 ).getDescription() );
+      assertNull( path.get( 2 ).getOperations() );
+    }
+
+    // results are copies
+    paths.clear();
+    assertEquals( 2, index.getOperationPaths( "Rename", Arrays.asList( "d" ) ).get( "d" ).size() );
+  }
+
+  @Test
+  public void testFieldWithoutStep() throws Exception {
+    FieldOriginIndex index = new FieldOriginIndex( graph );
+    try {
+      index.getOriginSteps( "Broken", Arrays.asList( "f" ) );
+      fail( "origin is not output by a step" );
+    } catch ( MetaverseException e ) {
+      // expected
+    }
+    try {
+      index.getOperationPaths( "Broken", Arrays.asList( "g" ) );
+      fail( "path goes through a field that is not output by a step" );
+    } catch ( MetaverseException e ) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testIndex() throws Exception {
+    assertNull( FieldOriginIndex.get( null ) );
+    FieldOriginIndex index = FieldOriginIndex.get( graph );
+    assertSame( index, FieldOriginIndex.get( graph ) );
+    assertTrue( index.size() > 0 );
+
+    FieldOriginIndex rebuilt = FieldOriginIndex.index( graph );
+    assertNotSame( index, rebuilt );
+    assertSame( rebuilt, FieldOriginIndex.get( graph ) );
+
+    FieldOriginIndex.remove( graph );
+    assertNotSame( rebuilt, FieldOriginIndex.get( graph ) );
+    assertFalse( new FieldOriginIndex( new TinkerGraph() ).size() > 0 );
+  }
+
+  private void assertSameAsTraversal( FieldOriginIndex index, String stepName, String... fieldNames )
+    throws MetaverseException {
+    Collection<String> names = Arrays.asList( fieldNames );
+    assertEquals( lineageClient.getOriginStepsFromGraph( graph, stepName, names ),
+      index.getOriginSteps( stepName, names ) );
+    Map<String, Set<List<StepFieldOperations>>> expected =
+      lineageClient.getOperationPathsFromGraph( graph, stepName, names );
+    Map<String, Set<List<StepFieldOperations>>> actual = index.getOperationPaths( stepName, names );
+    assertEquals( expected, actual );
+    // StepFieldOperations are equal by step and field, compare the operations as well
+    for ( Map.Entry<String, Set<List<StepFieldOperations>>> paths : expected.entrySet() ) {
+      assertEquals( describe( paths.getValue() ), describe( actual.get( paths.getKey() ) ) );
+    }
+  }
+
+  private static Set<String> describe( Set<List<StepFieldOperations>> paths ) {
+    Set<String> descriptions = new HashSet<>();
+    for ( List<StepFieldOperations> path : paths ) {
+      descriptions.add( path.toString() );
+    }
+    return descriptions;
+  }
+
+  private void chain( String stepName, int length ) {
+    Vertex step = step( stepName );
+    Vertex previous = field( step, "field0" );
+    for ( int i = 1; i <= length; i++ ) {
+      Vertex next = field( step, "field" + i );
+      derives( next, previous );
+      previous = next;
+    }
+  }
+
+  private Vertex step( String name ) {
+    return vertex( DictionaryConst.NODE_TYPE_TRANS_STEP, name );
+  }
+
+  private Vertex field( Vertex step, String name ) {
+    Vertex field = vertex( DictionaryConst.NODE_TYPE_TRANS_FIELD, name );
+    graph.addEdge( ids++, step, field, DictionaryConst.LINK_OUTPUTS );
+    return field;
+  }
+
+  private void derives( Vertex from, Vertex to ) {
+    graph.addEdge( ids++, from, to, DictionaryConst.LINK_DERIVES );
+  }
+
+  private void joins( Vertex from, Vertex to ) {
+    graph.addEdge( ids++, from, to, DictionaryConst.LINK_JOINS );
+  }
+
+  private Vertex vertex( String type, String name ) {
+    Vertex vertex = graph.addVertex( ids++ );
+    vertex.setProperty( DictionaryConst.PROPERTY_TYPE, type );
+    vertex.setProperty( DictionaryConst.PROPERTY_NAME, name );
+    return vertex;
+  }
+
+  @SafeVarargs
+  private static <T> Set<T> set( T... values ) {
+    return new HashSet<>( Arrays.asList( values ) );
+  }
+}
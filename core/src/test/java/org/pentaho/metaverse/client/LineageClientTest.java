@@ -23,10 +23,37 @@
 package org.pentaho.metaverse.client;
 
 import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
 import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
 import org.junit.Before;
 import org.junit.Test;
+import org.pentaho.di.core.KettleClientEnvironment;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.dictionary.DictionaryConst;
+import org.pentaho.metaverse.api.IDocumentAnalyzer;
+import org.pentaho.metaverse.api.IDocumentController;
+import org.pentaho.metaverse.api.StepField;
+import org.pentaho.metaverse.api.StepFieldOperations;
+import org.pentaho.metaverse.graph.LineageGraphCache;
 import org.pentaho.metaverse.graph.LineageGraphMap;
+import org.pentaho.metaverse.testutils.MetaverseTestUtils;
+import org.pentaho.metaverse.util.MetaverseUtil;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 
 public class LineageClientTest {
@@ -44,4 +71,78 @@ public class LineageClientTest {
   @Test
   public void testGetInstance( ) {
   }
+
+  @Test
+  public void testGetLineageGraphTask_resubmitsEvicted() throws Exception {
+    KettleClientEnvironment.getInstance().setClient( KettleClientEnvironment.ClientType.PAN );
+    IDocumentController docController = mock( IDocumentController.class );
+    when( docController.getMetaverseObjectFactory() ).thenReturn( MetaverseTestUtils.getMetaverseObjectFactory() );
+    when( docController.getDocumentAnalyzers( "ktr" ) )
+      .thenReturn( Collections.singletonList( mock( IDocumentAnalyzer.class ) ) );
+    MetaverseUtil.setDocumentController( docController );
+
+    TransMeta transMeta = mock( TransMeta.class );
+    when( transMeta.getName() ).thenReturn( "evicted" );
+    when( transMeta.getFilename() ).thenReturn( "/path/to/evicted.ktr" );
+    // never had a graph
+    assertNull( lineageClient.getLineageGraphTask( transMeta ) );
+
+    LineageGraphCache cache = LineageGraphMap.getCache();
+    int maxEntries = cache.getMaxEntries();
+    try {
+      cache.setMaxEntries( 1 );
+      FutureTask<Graph> analysis = new FutureTask<Graph>( mock( Runnable.class ), g );
+      analysis.run();
+      cache.put( transMeta, analysis );
+      FutureTask<Graph> other = new FutureTask<Graph>( mock( Runnable.class ), new TinkerGraph() );
+      other.run();
+      cache.put( "other", other );
+      assertTrue( cache.wasEvicted( transMeta ) );
+
+      // the transformation is still in use, so its analysis is submitted again
+      assertNotNull( lineageClient.getLineageGraphTask( transMeta ) );
+      assertFalse( cache.wasEvicted( transMeta ) );
+    } finally {
+      cache.setMaxEntries( maxEntries );
+      cache.clear();
+    }
+  }
+
+  @Test
+  public void testOriginIndex() throws Exception {
+    Vertex input = vertex( DictionaryConst.NODE_TYPE_TRANS_STEP, "Input" );
+    Vertex a = vertex( DictionaryConst.NODE_TYPE_TRANS_FIELD, "a" );
+    g.addEdge( null, input, a, DictionaryConst.LINK_OUTPUTS );
+    Vertex rename = vertex( DictionaryConst.NODE_TYPE_TRANS_STEP, "Rename" );
+    Vertex b = vertex( DictionaryConst.NODE_TYPE_TRANS_FIELD, "b" );
+    g.addEdge( null, rename, b, DictionaryConst.LINK_OUTPUTS );
+    g.addEdge( null, a, b, DictionaryConst.LINK_DERIVES );
+
+    TransMeta transMeta = mock( TransMeta.class );
+    Future<Graph> future = mock( Future.class );
+    when( future.get() ).thenReturn( g );
+    LineageGraphMap.getInstance().put( transMeta, future );
+
+    assertTrue( lineageClient.isUseOriginIndex() );
+    Map<String, Set<StepField>> originSteps =
+      lineageClient.getOriginSteps( transMeta, "Rename", Collections.singleton( "b" ) );
+    assertEquals( Collections.singleton( new StepField( "Input", "a" ) ), originSteps.get( "b" ) );
+    Map<String, Set<List<StepFieldOperations>>> operationPaths =
+      lineageClient.getOperationPaths( transMeta, "Rename", Collections.singleton( "b" ) );
+    assertEquals( Collections.singleton( Arrays.asList( new StepFieldOperations( "Input", "a", null ),
+      new StepFieldOperations( "Rename", "b", null ) ) ), operationPaths.get( "b" ) );
+
+    lineageClient.setUseOriginIndex( false );
+    assertEquals( originSteps, lineageClient.getOriginSteps( transMeta, "Rename", Collections.singleton( "b" ) ) );
+    assertEquals( operationPaths,
+      lineageClient.getOperationPaths( transMeta, "Rename", Collections.singleton( "b" ) ) );
+    FieldOriginIndex.remove( g );
+  }
+
+  private Vertex vertex( String type, String name ) {
+    Vertex vertex = g.addVertex( null );
+    vertex.setProperty( DictionaryConst.PROPERTY_TYPE, type );
+    vertex.setProperty( DictionaryConst.PROPERTY_NAME, name );
+    return vertex;
+  }
 }
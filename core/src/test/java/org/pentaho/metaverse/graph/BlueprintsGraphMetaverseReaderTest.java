@@ -35,13 +35,17 @@ import org.pentaho.metaverse.api.IMetaverseLink;
 import org.pentaho.metaverse.api.IMetaverseNode;
 import org.pentaho.metaverse.api.IMetaverseReader;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import static org.junit.Assert.*;
 
@@ -110,6 +114,26 @@ public class BlueprintsGraphMetaverseReaderTest {
 
   }
 
+  @Test
+  public void testExportToStream() throws Exception {
+
+    BlueprintsGraphMetaverseReader metaverseReader = new BlueprintsGraphMetaverseReader( graph );
+
+    for ( String format
+      : new String[] { IMetaverseReader.FORMAT_XML, IMetaverseReader.FORMAT_JSON, IMetaverseReader.FORMAT_CSV } ) {
+      final boolean[] closed = { false };
+      ByteArrayOutputStream out = new ByteArrayOutputStream() {
+        @Override
+        public void close() {
+          closed[ 0 ] = true;
+        }
+      };
+      metaverseReader.exportToStream( format, out );
+      assertFalse( "Stream was closed", closed[ 0 ] );
+      assertEquals( "Export content is wrong", metaverseReader.exportFormat( format ), out.toString() );
+    }
+  }
+
   @Test
   public void testExportJson() throws Exception {
 
@@ -211,6 +235,24 @@ public class BlueprintsGraphMetaverseReaderTest {
 
   }
 
+  @Test
+  public void testReadsDoNotModifyGraph() throws Exception {
+    BlueprintsGraphMetaverseReader metaverseReader = new BlueprintsGraphMetaverseReader( graph );
+    metaverseReader.exportToXml();
+    metaverseReader.findNode( "trans1.ktr" );
+    Graph metaverse = metaverseReader.getMetaverse();
+    assertEquals( DictionaryConst.COLOR_DOCUMENT,
+      metaverse.getVertex( "trans1.ktr" ).getProperty( DictionaryConst.PROPERTY_COLOR ) );
+
+    Vertex trans = graph.getVertex( "trans1.ktr" );
+    assertNull( trans.getProperty( DictionaryConst.PROPERTY_COLOR ) );
+    assertNull( trans.getProperty( DictionaryConst.PROPERTY_TYPE_LOCALIZED ) );
+    assertNull( trans.getProperty( DictionaryConst.PROPERTY_CATEGORY_LOCALIZED ) );
+    for ( Edge edge : graph.getEdges() ) {
+      assertTrue( edge.getPropertyKeys().isEmpty() );
+    }
+  }
+
   @Test
   public void testFindLink() throws Exception {
     BlueprintsGraphMetaverseReader metaverseReader = new BlueprintsGraphMetaverseReader( graph );
@@ -296,6 +338,147 @@ public class BlueprintsGraphMetaverseReaderTest {
 
   }
 
+  @Test
+  public void testSearchLimits() throws Exception {
+    BlueprintsGraphMetaverseReader metaverseReader = new BlueprintsGraphMetaverseReader( graph );
+    assertEquals( 0, metaverseReader.getMaxDepth() );
+    assertEquals( 0, metaverseReader.getMaxResults() );
+
+    List<String> types = new ArrayList<>();
+    List<String> ids = new ArrayList<>();
+    ids.add( "datasource1.table2.field1" );
+
+    metaverseReader.setMaxDepth( 1 );
+    Graph graph = metaverseReader.search( types, ids, false );
+    assertEquals( "Vertex count is wrong", 3, countVertices( graph ) );
+    assertEquals( "Edge count is wrong", 2, countEdges( graph ) );
+
+    metaverseReader.setMaxDepth( 0 );
+    metaverseReader.setMaxResults( 2 );
+    graph = metaverseReader.search( types, ids, false );
+    assertEquals( "Vertex count is wrong", 2, countVertices( graph ) );
+    assertEquals( "Edge count is wrong", 1, countEdges( graph ) );
+
+    GraphTraversal traversal = new GraphTraversal( types, true );
+    traversal.setDirection( Direction.IN );
+    traversal.setEdgeLabels( Arrays.asList( DictionaryConst.LINK_CONTAINS ) );
+    graph = metaverseReader.search( traversal, ids );
+    assertNotNull( graph.getVertex( "datasource1" ) );
+    assertEquals( "Vertex count is wrong", 3, countVertices( graph ) );
+    assertEquals( "Edge count is wrong", 2, countEdges( graph ) );
+  }
+
+  @Test
+  public void testReadsWaitForBulkLoads() throws Exception {
+    final BlueprintsGraphMetaverseReader metaverseReader = new BlueprintsGraphMetaverseReader( graph );
+    ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    metaverseReader.setLock( lock );
+    assertSame( lock, metaverseReader.getLock() );
+
+    final AtomicReference<IMetaverseNode> found = new AtomicReference<IMetaverseNode>();
+    Thread reader = new Thread( new Runnable() {
+      @Override
+      public void run() {
+        found.set( metaverseReader.findNode( "datasource1" ) );
+      }
+    } );
+    // a bulk load holds the exclusive side
+    lock.writeLock().lock();
+    try {
+      reader.start();
+      reader.join( 200 );
+      assertTrue( "The read did not wait for the load", reader.isAlive() );
+    } finally {
+      lock.writeLock().unlock();
+    }
+    reader.join( 5000 );
+    assertNotNull( found.get() );
+
+    // reads share the lock with single changes
+    lock.readLock().lock();
+    try {
+      assertNotNull( metaverseReader.findNode( "datasource1" ) );
+      assertNotNull( metaverseReader.exportFormat( IMetaverseReader.FORMAT_CSV ) );
+    } finally {
+      lock.readLock().unlock();
+    }
+    assertEquals( 0, lock.getReadLockCount() );
+  }
+
+  @Test
+  public void testExportToStreamWritesOutsideTheLock() throws Exception {
+    BlueprintsGraphMetaverseReader metaverseReader = new BlueprintsGraphMetaverseReader( graph );
+    final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    metaverseReader.setLock( lock );
+
+    final boolean[] lockedWhileWriting = { false };
+    ByteArrayOutputStream out = new ByteArrayOutputStream() {
+      @Override
+      public synchronized void write( byte[] b, int off, int len ) {
+        // a bulk load could go ahead while the client is written to
+        lockedWhileWriting[ 0 ] |= lock.getReadLockCount() > 0;
+        super.write( b, off, len );
+      }
+
+      @Override
+      public synchronized void write( int b ) {
+        lockedWhileWriting[ 0 ] |= lock.getReadLockCount() > 0;
+        super.write( b );
+      }
+    };
+    metaverseReader.exportToStream( IMetaverseReader.FORMAT_XML, out );
+
+    assertFalse( "The stream was written while holding the lock", lockedWhileWriting[ 0 ] );
+    assertEquals( metaverseReader.exportFormat( IMetaverseReader.FORMAT_XML ), out.toString() );
+    assertEquals( 0, lock.getReadLockCount() );
+  }
+
+  @Test
+  public void testGetGraphLimits() throws Exception {
+    BlueprintsGraphMetaverseReader metaverseReader = new BlueprintsGraphMetaverseReader( graph );
+    Graph g = metaverseReader.getGraph( "datasource1.table1.field1" );
+    assertEquals( "Vertex count is wrong", 12, countVertices( g ) );
+    assertEquals( "Edge count is wrong", 12, countEdges( g ) );
+
+    metaverseReader.setMaxDepth( 1 );
+    g = metaverseReader.getGraph( "datasource1.table1.field1" );
+    assertEquals( "Vertex count is wrong", 4, countVertices( g ) );
+    assertEquals( "Edge count is wrong", 3, countEdges( g ) );
+
+    metaverseReader.setMaxDepth( 0 );
+    metaverseReader.setMaxResults( 5 );
+    g = metaverseReader.getGraph( "datasource1.table1.field1" );
+    assertEquals( "Vertex count is wrong", 5, countVertices( g ) );
+  }
+
+  @Test
+  public void testLongDerivationChain() throws Exception {
+    // recursive traversals overflow the stack on chains this long
+    Graph chain = new TinkerGraph();
+    Vertex previous = null;
+    for ( int i = 0; i < 50000; i++ ) {
+      Vertex field = chain.addVertex( "field" + i );
+      field.setProperty( DictionaryConst.PROPERTY_TYPE, DictionaryConst.NODE_TYPE_TRANS_FIELD );
+      if ( previous != null ) {
+        chain.addEdge( null, previous, field, DictionaryConst.LINK_DERIVES );
+      }
+      previous = field;
+    }
+    BlueprintsGraphMetaverseReader metaverseReader = new BlueprintsGraphMetaverseReader( chain );
+    List<String> types = new ArrayList<>();
+    types.add( DictionaryConst.NODE_TYPE_TRANS_FIELD );
+    List<String> ids = new ArrayList<>();
+    ids.add( "field0" );
+
+    Graph g = metaverseReader.search( types, ids, true );
+    assertEquals( "Vertex count is wrong", 50000, countVertices( g ) );
+    assertEquals( "Edge count is wrong", 49999, countEdges( g ) );
+
+    g = metaverseReader.getGraph( "field25000" );
+    assertEquals( "Vertex count is wrong", 50000, countVertices( g ) );
+    assertEquals( "Edge count is wrong", 49999, countEdges( g ) );
+  }
+
   private int countEdges( Graph graph ) {
     Iterator<Edge> edges = graph.getEdges().iterator();
     int edgeCount = 0;
@@ -0,0 +1,191 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.metaverse.graph;
+
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.KeyIndexableGraph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import com.tinkerpop.blueprints.util.wrappers.id.IdGraph;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentGraphTest {
+
+  private ConcurrentGraph concurrentGraph;
+
+  @Before
+  public void setUp() throws Exception {
+    concurrentGraph = new ConcurrentGraph( new IdGraph<KeyIndexableGraph>( new TinkerGraph() ) );
+  }
+
+  @Test
+  public void testAddVertex_nullId() throws Exception {
+    Vertex v1 = concurrentGraph.addVertex( null );
+    Vertex v2 = concurrentGraph.addVertex( null );
+    assertNotNull( v1 );
+    assertNotNull( v2 );
+    assertNotEquals( v1.getId(), v2.getId() );
+  }
+
+  @Test
+  public void testAddVertex_withExistingId() throws Exception {
+    Vertex v1 = concurrentGraph.addVertex( "id" );
+    Vertex v2 = concurrentGraph.addVertex( "id" );
+    assertEquals( v1, v2 );
+    assertEquals( 1, count( concurrentGraph.getVertices() ) );
+  }
+
+  @Test
+  public void testAddEdge_withExistingId() throws Exception {
+    Vertex v1 = concurrentGraph.addVertex( "a" );
+    Vertex v2 = concurrentGraph.addVertex( "b" );
+    Edge e1 = concurrentGraph.addEdge( "a~link~b", v1, v2, "link" );
+    Edge e2 = concurrentGraph.addEdge( "a~link~b", v1, v2, "link" );
+    assertEquals( e1, e2 );
+    assertEquals( 1, count( concurrentGraph.getEdges() ) );
+    assertEquals( e1, concurrentGraph.getEdge( "a~link~b" ) );
+  }
+
+  @Test
+  public void testRemoveVertex_removesIncidentEdges() throws Exception {
+    Vertex v1 = concurrentGraph.addVertex( "a" );
+    Vertex v2 = concurrentGraph.addVertex( "b" );
+    concurrentGraph.addEdge( "a~link~b", v1, v2, "link" );
+
+    concurrentGraph.removeVertex( v1 );
+
+    assertNull( concurrentGraph.getVertex( "a" ) );
+    assertNull( concurrentGraph.getEdge( "a~link~b" ) );
+    assertNotNull( concurrentGraph.getVertex( "b" ) );
+
+    // re-adding after removal must create a new element rather than return the stale one
+    Vertex v3 = concurrentGraph.addVertex( "a" );
+    assertNotNull( v3 );
+    assertEquals( 2, count( concurrentGraph.getVertices() ) );
+  }
+
+  @Test
+  public void testRemoveEdge() throws Exception {
+    Vertex v1 = concurrentGraph.addVertex( "a" );
+    Vertex v2 = concurrentGraph.addVertex( "b" );
+    Edge e = concurrentGraph.addEdge( "a~link~b", v1, v2, "link" );
+    concurrentGraph.removeEdge( e );
+    assertNull( concurrentGraph.getEdge( "a~link~b" ) );
+  }
+
+  @Test
+  public void testGetVerticesByKey() throws Exception {
+    concurrentGraph.addVertex( "a" ).setProperty( "type", "Field" );
+    concurrentGraph.addVertex( "b" ).setProperty( "type", "Field" );
+    concurrentGraph.addVertex( "c" ).setProperty( "type", "Step" );
+    assertEquals( 2, count( concurrentGraph.getVertices( "type", "Field" ) ) );
+  }
+
+  @Test
+  public void testIterationToleratesChanges() throws Exception {
+    Vertex a = concurrentGraph.addVertex( "a" );
+    Vertex b = concurrentGraph.addVertex( "b" );
+    a.setProperty( "type", "Field" );
+    b.setProperty( "type", "Field" );
+    concurrentGraph.addEdge( "ab", a, b, "derives" );
+    concurrentGraph.addEdge( "ba", b, a, "derives" );
+
+    Iterator<Vertex> vertices = concurrentGraph.getVertices().iterator();
+    Iterator<Edge> edges = concurrentGraph.getEdges().iterator();
+    Iterator<Vertex> queried = concurrentGraph.query().has( "type", "Field" ).vertices().iterator();
+    vertices.next();
+    edges.next();
+    queried.next();
+
+    // modifying the graph does not disturb iterations in progress (TinkerGraph iterates what it held when asked)
+    Vertex c = concurrentGraph.addVertex( "c" );
+    c.setProperty( "type", "Field" );
+    concurrentGraph.addEdge( "ac", a, c, "derives" );
+    vertices.next();
+    edges.next();
+    queried.next();
+    assertFalse( vertices.hasNext() );
+    assertFalse( edges.hasNext() );
+    assertFalse( queried.hasNext() );
+
+    assertEquals( 3, count( concurrentGraph.getVertices() ) );
+    assertEquals( 3, count( concurrentGraph.getEdges() ) );
+    assertEquals( 3, count( concurrentGraph.query().has( "type", "Field" ).vertices() ) );
+  }
+
+  @Test
+  public void testConcurrentAddVertex_sameIds() throws Exception {
+    final int threads = 8;
+    final int ids = 500;
+    final CountDownLatch start = new CountDownLatch( 1 );
+    ExecutorService executor = Executors.newFixedThreadPool( threads );
+    List<Future<Void>> futures = new ArrayList<>();
+    for ( int t = 0; t < threads; t++ ) {
+      futures.add( executor.submit( new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          start.await();
+          for ( int i = 0; i < ids; i++ ) {
+            Vertex from = concurrentGraph.addVertex( "v" + i );
+            Vertex to = concurrentGraph.addVertex( "v" + ( i + 1 ) );
+            concurrentGraph.addEdge( "v" + i + "~next~v" + ( i + 1 ), from, to, "next" );
+          }
+          return null;
+        }
+      } ) );
+    }
+    start.countDown();
+    for ( Future<Void> future : futures ) {
+      future.get();
+    }
+    executor.shutdown();
+    executor.awaitTermination( 10, TimeUnit.SECONDS );
+
+    assertEquals( ids + 1, count( concurrentGraph.getVertices() ) );
+    assertEquals( ids, count( concurrentGraph.getEdges() ) );
+  }
+
+  private static int count( Iterable<?> iterable ) {
+    int count = 0;
+    Iterator<?> it = iterable.iterator();
+    while ( it.hasNext() ) {
+      it.next();
+      count++;
+    }
+    return count;
+  }
+}
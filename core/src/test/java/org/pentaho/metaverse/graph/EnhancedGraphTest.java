@@ -0,0 +1,182 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.graph;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.dictionary.DictionaryConst;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Iterator;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class EnhancedGraphTest {
+
+  private Graph graph;
+
+  private EnhancedGraph enhanced;
+
+  @Before
+  public void init() {
+    graph = new TinkerGraph();
+    Vertex trans = graph.addVertex( "trans" );
+    trans.setProperty( DictionaryConst.PROPERTY_TYPE, DictionaryConst.NODE_TYPE_TRANS );
+    trans.setProperty( DictionaryConst.PROPERTY_NAME, "trans.ktr" );
+    Vertex field = graph.addVertex( "field" );
+    field.setProperty( DictionaryConst.PROPERTY_TYPE, DictionaryConst.NODE_TYPE_TRANS_FIELD );
+    field.setProperty( DictionaryConst.PROPERTY_CATEGORY, "stale" );
+    graph.addEdge( "populates", trans, field, DictionaryConst.LINK_POPULATES );
+    graph.addEdge( "contains", trans, field, DictionaryConst.LINK_CONTAINS );
+    enhanced = new EnhancedGraph( graph );
+  }
+
+  @Test
+  public void testVertexProperties() {
+    Vertex trans = enhanced.getVertex( "trans" );
+    assertEquals( "trans", trans.getId() );
+    assertEquals( "trans.ktr", trans.getProperty( DictionaryConst.PROPERTY_NAME ) );
+    assertEquals( "Transformation", trans.getProperty( DictionaryConst.PROPERTY_TYPE_LOCALIZED ) );
+    assertEquals( DictionaryConst.CATEGORY_DOCUMENT, trans.getProperty( DictionaryConst.PROPERTY_CATEGORY ) );
+    assertEquals( "Document", trans.getProperty( DictionaryConst.PROPERTY_CATEGORY_LOCALIZED ) );
+    assertEquals( DictionaryConst.COLOR_DOCUMENT, trans.getProperty( DictionaryConst.PROPERTY_COLOR ) );
+
+    Set<String> keys = trans.getPropertyKeys();
+    assertTrue( keys.contains( DictionaryConst.PROPERTY_NAME ) );
+    assertTrue( keys.contains( DictionaryConst.PROPERTY_TYPE_LOCALIZED ) );
+    assertTrue( keys.contains( DictionaryConst.PROPERTY_CATEGORY ) );
+    assertTrue( keys.contains( DictionaryConst.PROPERTY_CATEGORY_LOCALIZED ) );
+    assertTrue( keys.contains( DictionaryConst.PROPERTY_COLOR ) );
+
+    // no localized type for fields, and the category is worked out from the type
+    Vertex field = enhanced.getVertex( "field" );
+    assertNull( field.getProperty( DictionaryConst.PROPERTY_TYPE_LOCALIZED ) );
+    assertFalse( field.getPropertyKeys().contains( DictionaryConst.PROPERTY_TYPE_LOCALIZED ) );
+    assertFalse( "stale".equals( field.getProperty( DictionaryConst.PROPERTY_CATEGORY ) ) );
+
+    assertNull( enhanced.getVertex( "bogus" ) );
+  }
+
+  @Test
+  public void testEdgeProperties() {
+    Edge edge = enhanced.getEdge( "populates" );
+    assertEquals( DictionaryConst.LINK_POPULATES, edge.getLabel() );
+    assertEquals( "Populates", edge.getProperty( DictionaryConst.PROPERTY_TYPE_LOCALIZED ) );
+    assertTrue( edge.getPropertyKeys().contains( DictionaryConst.PROPERTY_TYPE_LOCALIZED ) );
+    assertEquals( enhanced.getVertex( "trans" ), edge.getVertex( Direction.OUT ) );
+    assertEquals( "Transformation",
+      edge.getVertex( Direction.OUT ).getProperty( DictionaryConst.PROPERTY_TYPE_LOCALIZED ) );
+
+    assertNull( enhanced.getEdge( "contains" ).getProperty( DictionaryConst.PROPERTY_TYPE_LOCALIZED ) );
+    assertNull( enhanced.getEdge( "bogus" ) );
+  }
+
+  @Test
+  public void testNavigation() {
+    assertEquals( 2, count( enhanced.getVertices() ) );
+    assertEquals( 2, count( enhanced.getEdges() ) );
+    assertEquals( 1, count( enhanced.getVertices( DictionaryConst.PROPERTY_TYPE, DictionaryConst.NODE_TYPE_TRANS ) ) );
+    assertEquals( 0, count( enhanced.getEdges( DictionaryConst.PROPERTY_NAME, "bogus" ) ) );
+    assertEquals( 1, count( enhanced.query().has( DictionaryConst.PROPERTY_NAME, "trans.ktr" ).vertices() ) );
+
+    Vertex trans = enhanced.getVertex( "trans" );
+    Iterator<Edge> edges = trans.getEdges( Direction.OUT, DictionaryConst.LINK_POPULATES ).iterator();
+    assertEquals( "Populates", edges.next().getProperty( DictionaryConst.PROPERTY_TYPE_LOCALIZED ) );
+    assertFalse( edges.hasNext() );
+    Vertex field = trans.getVertices( Direction.OUT, DictionaryConst.LINK_CONTAINS ).iterator().next();
+    assertNotNull( field.getProperty( DictionaryConst.PROPERTY_COLOR ) );
+    assertEquals( 2, count( trans.query().direction( Direction.OUT ).edges() ) );
+  }
+
+  @Test
+  public void testLookupByDerivedProperty() {
+    // worked out from the type, not read from the underlying graph
+    assertEquals( "trans",
+      enhanced.getVertices( DictionaryConst.PROPERTY_TYPE_LOCALIZED, "Transformation" ).iterator().next().getId() );
+    assertEquals( 1, count(
+      enhanced.getVertices( DictionaryConst.PROPERTY_CATEGORY, DictionaryConst.CATEGORY_DOCUMENT ) ) );
+    assertEquals( 0, count( enhanced.getVertices( DictionaryConst.PROPERTY_CATEGORY, "stale" ) ) );
+    assertEquals( 1, count( enhanced.getVertices( DictionaryConst.PROPERTY_TYPE_LOCALIZED, null ) ) );
+
+    Edge edge = enhanced.getEdges( DictionaryConst.PROPERTY_TYPE_LOCALIZED, "Populates" ).iterator().next();
+    assertEquals( "populates", edge.getId() );
+    assertEquals( "Populates", edge.getProperty( DictionaryConst.PROPERTY_TYPE_LOCALIZED ) );
+    assertEquals( 1, count( enhanced.getEdges( DictionaryConst.PROPERTY_TYPE_LOCALIZED, "Populates" ) ) );
+  }
+
+  @Test
+  public void testUnderlyingGraphIsNotModified() throws Exception {
+    for ( Vertex vertex : enhanced.getVertices() ) {
+      for ( String key : vertex.getPropertyKeys() ) {
+        vertex.getProperty( key );
+      }
+    }
+    new GraphMLWriter().outputGraph( enhanced, new ByteArrayOutputStream() );
+
+    Vertex trans = graph.getVertex( "trans" );
+    assertEquals( 2, trans.getPropertyKeys().size() );
+    assertNull( trans.getProperty( DictionaryConst.PROPERTY_COLOR ) );
+    assertEquals( "stale", graph.getVertex( "field" ).getProperty( DictionaryConst.PROPERTY_CATEGORY ) );
+    assertTrue( graph.getEdge( "populates" ).getPropertyKeys().isEmpty() );
+    assertSame( graph, enhanced.getBaseGraph() );
+  }
+
+  @Test( expected = UnsupportedOperationException.class )
+  public void testSetPropertyIsUnsupported() {
+    enhanced.getVertex( "trans" ).setProperty( DictionaryConst.PROPERTY_NAME, "other" );
+  }
+
+  @Test( expected = UnsupportedOperationException.class )
+  public void testRemovePropertyIsUnsupported() {
+    enhanced.getEdge( "populates" ).removeProperty( DictionaryConst.PROPERTY_NAME );
+  }
+
+  @Test( expected = UnsupportedOperationException.class )
+  public void testAddVertexIsUnsupported() {
+    enhanced.addVertex( "other" );
+  }
+
+  @Test( expected = UnsupportedOperationException.class )
+  public void testAddEdgeIsUnsupported() {
+    enhanced.getVertex( "trans" ).addEdge( DictionaryConst.LINK_POPULATES, enhanced.getVertex( "field" ) );
+  }
+
+  @Test( expected = UnsupportedOperationException.class )
+  public void testRemoveVertexIsUnsupported() {
+    enhanced.removeVertex( enhanced.getVertex( "field" ) );
+  }
+
+  private int count( Iterable<?> elements ) {
+    int count = 0;
+    for ( Object ignored : elements ) {
+      count++;
+    }
+    return count;
+  }
+}
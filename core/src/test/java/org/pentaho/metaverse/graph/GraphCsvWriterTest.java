@@ -0,0 +1,151 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.graph;
+
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.dictionary.DictionaryConst;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+public class GraphCsvWriterTest {
+
+  private static final String HEADER = "\"SourceId\",\"SourceVirtual\",\"SourceFileType\",\"SourceName\","
+    + "\"SourceAuthor\",\"SourceModified\",\"LinkType\",\"DestinationId\",\"DestinationVirtual\","
+    + "\"DestinationFileType\",\"DestinationName\",\"DestinationAuthor\",\"DestinationModified\"\n";
+
+  private Graph graph;
+  private GraphCsvWriter writer;
+
+  @Before
+  public void setUp() throws Exception {
+    graph = new TinkerGraph();
+    writer = new GraphCsvWriter();
+  }
+
+  @Test
+  public void testOutputGraph() throws Exception {
+    Vertex step = vertex( "step", DictionaryConst.NODE_TYPE_TRANS_STEP, "Select values" );
+    step.setProperty( DictionaryConst.PROPERTY_AUTHOR, "admin" );
+    Vertex field = vertex( "field", DictionaryConst.NODE_TYPE_TRANS_FIELD, "name" );
+    field.setProperty( DictionaryConst.NODE_VIRTUAL, true );
+    graph.addEdge( "e", step, field, DictionaryConst.LINK_OUTPUTS );
+
+    assertEquals( HEADER
+        + "\"step\",,\"" + DictionaryConst.NODE_TYPE_TRANS_STEP + "\",\"Select values\",\"admin\",,\""
+        + DictionaryConst.LINK_OUTPUTS + "\",\"field\",true,\"" + DictionaryConst.NODE_TYPE_TRANS_FIELD
+        + "\",\"name\",,\n",
+      write() );
+  }
+
+  @Test
+  public void testEmptyGraph() throws Exception {
+    assertEquals( HEADER, write() );
+  }
+
+  @Test
+  public void testQuoting() throws Exception {
+    Vertex from = vertex( "a", "type", "say \"hi\", then\nleave" );
+    Vertex to = vertex( "b", "type", "\"" );
+    to.setProperty( DictionaryConst.PROPERTY_LAST_MODIFIED, new StringBuilder( "1,2" ) );
+    graph.addEdge( "e", from, to, "link" );
+    writer.setColumnNames( "SourceName, DestinationName,DestinationModified" );
+
+    assertEquals( "\"SourceName\",\"DestinationName\",\"DestinationModified\"\n"
+      + "\"say \"\"hi\"\", then\nleave\",\"\"\"\",\"1,2\"\n", write() );
+  }
+
+  @Test
+  public void testColumnSelection() throws Exception {
+    graph.addEdge( "e", vertex( "a", "type", "from" ), vertex( "b", "type", "to" ), "link" );
+    writer.setColumns( Arrays.asList( GraphCsvWriter.Column.LINK_TYPE, GraphCsvWriter.Column.SOURCE_NAME ) );
+
+    assertEquals( "\"LinkType\",\"SourceName\"\n\"link\",\"from\"\n", write() );
+
+    writer.setColumnNames( "" );
+    assertEquals( Arrays.asList( GraphCsvWriter.Column.values() ), writer.getColumns() );
+  }
+
+  @Test( expected = IllegalArgumentException.class )
+  public void testUnknownColumn() throws Exception {
+    writer.setColumnNames( "SourceName,Nope" );
+  }
+
+  @Test
+  public void testLargeGraph() throws Exception {
+    writer.setBufferSize( 16 );
+    Vertex previous = vertex( "v0", "type", "\u00e9t\u00e9 0" );
+    for ( int i = 1; i <= 1000; i++ ) {
+      Vertex next = vertex( "v" + i, "type", "\u00e9t\u00e9 " + i );
+      graph.addEdge( "e" + i, previous, next, "link" );
+      previous = next;
+    }
+    writer.setColumnNames( "SourceName,DestinationName" );
+
+    String csv = write();
+    assertEquals( 1001, csv.split( "\n" ).length );
+    assertTrue( csv.contains( "\"\u00e9t\u00e9 999\",\"\u00e9t\u00e9 1000\"\n" ) );
+  }
+
+  @Test
+  public void testStreamIsNotClosed() throws Exception {
+    OutputStream out = spy( new ByteArrayOutputStream() );
+    writer.outputGraph( graph, out );
+    verify( out ).flush();
+    verify( out, never() ).close();
+  }
+
+  @Test
+  @SuppressWarnings( "deprecation" )
+  public void testWriteCSVField() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    writer.writeCSVField( "a\"b", out, true, false );
+    writer.writeCSVField( 12, out, false, true );
+    assertEquals( "\"a\"\"b\",12\n", out.toString( "UTF-8" ) );
+  }
+
+  private Vertex vertex( String id, String type, String name ) {
+    Vertex vertex = graph.addVertex( id );
+    vertex.setProperty( DictionaryConst.PROPERTY_TYPE, type );
+    vertex.setProperty( DictionaryConst.PROPERTY_NAME, name );
+    return vertex;
+  }
+
+  private String write() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    writer.outputGraph( graph, out );
+    return out.toString( "UTF-8" );
+  }
+}
@@ -23,17 +23,24 @@
 package org.pentaho.metaverse.graph;
 
 import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
 import com.tinkerpop.blueprints.impls.tg.TinkerGraphFactory;
+import com.tinkerpop.blueprints.util.io.graphml.GraphMLReader;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author mburgess
@@ -79,4 +86,49 @@ public class GraphMLWriterTest {
     assertNotNull( outStream.toString() );
   }
 
+  @Test
+  public void testStreamedOutputReadsBack() throws IOException {
+    Graph g = TinkerGraphFactory.createTinkerGraph();
+    GraphMLWriter writer = new GraphMLWriter();
+    assertFalse( writer.isNormalize() );
+    ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+    writer.outputGraph( g, outStream );
+
+    Graph read = new TinkerGraph();
+    GraphMLReader.inputGraph( read, new ByteArrayInputStream( outStream.toByteArray() ) );
+    assertEquals( count( g.getVertices() ), count( read.getVertices() ) );
+    assertEquals( count( g.getEdges() ), count( read.getEdges() ) );
+    assertEquals( "marko", read.getVertex( "1" ).getProperty( "name" ) );
+    assertEquals( Integer.valueOf( 29 ), read.getVertex( "1" ).<Integer>getProperty( "age" ) );
+    assertEquals( "knows", read.getEdge( "7" ).getLabel() );
+  }
+
+  @Test
+  public void testNormalizedOutputIsSorted() throws IOException {
+    Graph g = new TinkerGraph();
+    Vertex nine = g.addVertex( "9" );
+    Vertex ten = g.addVertex( "10" );
+    g.addEdge( "e", nine, ten, "link" );
+    GraphMLWriter writer = new GraphMLWriter();
+    writer.setNormalize( true );
+
+    ByteArrayOutputStream first = new ByteArrayOutputStream();
+    writer.outputGraph( g, first );
+    String graphML = first.toString( "UTF-8" );
+    // ids are sorted as strings
+    assertTrue( graphML.indexOf( "id=\"10\"" ) < graphML.indexOf( "id=\"9\"" ) );
+
+    ByteArrayOutputStream second = new ByteArrayOutputStream();
+    writer.outputGraph( g, second );
+    assertEquals( graphML, second.toString( "UTF-8" ) );
+  }
+
+  private static int count( Iterable<?> elements ) {
+    int count = 0;
+    for ( Object element : elements ) {
+      count++;
+    }
+    return count;
+  }
+
 }
@@ -0,0 +1,332 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.graph;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.dictionary.DictionaryConst;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class GraphTraversalTest {
+
+  private static final String FIELD = DictionaryConst.NODE_TYPE_TRANS_FIELD;
+  private static final String STEP = DictionaryConst.NODE_TYPE_TRANS_STEP;
+
+  private Graph graph;
+
+  @Before
+  public void init() {
+    graph = new TinkerGraph();
+  }
+
+  @Test
+  public void testDefaults() {
+    GraphTraversal traversal = new GraphTraversal();
+    assertEquals( Direction.BOTH, traversal.getDirection() );
+    assertEquals( 0, traversal.getMaxDepth() );
+    assertEquals( 0, traversal.getMaxResults() );
+    assertNull( traversal.getEdgeLabels() );
+    assertNull( traversal.getResultTypes() );
+    assertTrue( traversal.isShortestOnly() );
+    assertFalse( traversal.isTruncated() );
+
+    traversal.setDirection( null );
+    traversal.setMaxDepth( -1 );
+    traversal.setMaxResults( -1 );
+    traversal.setEdgeLabels( Collections.<String>emptyList() );
+    assertEquals( Direction.BOTH, traversal.getDirection() );
+    assertEquals( 0, traversal.getMaxDepth() );
+    assertEquals( 0, traversal.getMaxResults() );
+    assertNull( traversal.getEdgeLabels() );
+
+    assertTrue( traversal.traverse( null ).isEmpty() );
+  }
+
+  @Test
+  public void testLongChain() {
+    // deep enough to overflow the stack of a recursive traversal
+    List<Vertex> chain = chain( 100000 );
+    GraphTraversal traversal = new GraphTraversal( Arrays.asList( FIELD ), true );
+
+    Collection<GraphPath> paths = traversal.traverse( chain.get( 0 ) );
+    assertEquals( chain.size(), paths.size() );
+    assertEquals( chain.size() * 2 - 1, maxLength( paths ) );
+
+    paths = traversal.traverse( chain.get( chain.size() - 1 ) );
+    assertEquals( chain.size(), paths.size() );
+
+    Graph g = new TinkerGraph();
+    GraphTraversal.addToGraph( paths, g );
+    assertEquals( chain.size(), count( g.getVertices() ) );
+    assertEquals( chain.size() - 1, count( g.getEdges() ) );
+  }
+
+  @Test
+  public void testMaxDepth() {
+    List<Vertex> chain = chain( 10 );
+    GraphTraversal traversal = new GraphTraversal( null, true );
+    traversal.setMaxDepth( 3 );
+
+    Graph g = new TinkerGraph();
+    traversal.traverse( chain.get( 5 ), g );
+    assertEquals( ids( "f2", "f3", "f4", "f5", "f6", "f7", "f8" ), ids( g ) );
+    assertEquals( 6, count( g.getEdges() ) );
+    assertFalse( traversal.isTruncated() );
+  }
+
+  @Test
+  public void testMaxDepthReachesAroundDeeperVisits() {
+    // a -> b -> c -> d and a -> d, d is first seen 3 edges deep, then again 1 edge deep
+    Vertex a = vertex( "a", FIELD );
+    Vertex b = vertex( "b", FIELD );
+    Vertex c = vertex( "c", FIELD );
+    Vertex d = vertex( "d", STEP );
+    Vertex e = vertex( "e", FIELD );
+    graph.addEdge( null, a, b, DictionaryConst.LINK_DERIVES );
+    graph.addEdge( null, b, c, DictionaryConst.LINK_DERIVES );
+    graph.addEdge( null, c, d, DictionaryConst.LINK_DERIVES );
+    graph.addEdge( null, a, d, DictionaryConst.LINK_DERIVES );
+    graph.addEdge( null, d, e, DictionaryConst.LINK_DERIVES );
+
+    GraphTraversal traversal = new GraphTraversal( Arrays.asList( FIELD ), true );
+    traversal.setDirection( Direction.OUT );
+    traversal.setMaxDepth( 3 );
+
+    Graph g = new TinkerGraph();
+    traversal.traverse( a, g );
+    assertEquals( ids( "a", "b", "c", "d", "e" ), ids( g ) );
+  }
+
+  @Test
+  public void testMaxResults() {
+    List<Vertex> chain = chain( 10 );
+    GraphTraversal traversal = new GraphTraversal( null, true );
+    traversal.setMaxResults( 4 );
+
+    Collection<GraphPath> paths = traversal.traverse( chain.get( 0 ) );
+    assertEquals( 4, paths.size() );
+    assertTrue( traversal.isTruncated() );
+
+    traversal.setMaxResults( 10 );
+    paths = traversal.traverse( chain.get( 0 ) );
+    assertEquals( 10, paths.size() );
+    assertFalse( traversal.isTruncated() );
+  }
+
+  @Test
+  public void testDirection() {
+    List<Vertex> chain = chain( 10 );
+    GraphTraversal traversal = new GraphTraversal( null, true );
+
+    traversal.setDirection( Direction.IN );
+    Graph g = new TinkerGraph();
+    traversal.traverse( chain.get( 5 ), g );
+    assertEquals( ids( "f0", "f1", "f2", "f3", "f4", "f5" ), ids( g ) );
+
+    // downstream vertices are climbed from for their structure, which here is the whole chain upstream
+    traversal.setDirection( Direction.OUT );
+    traversal.setEdgeLabels( Arrays.asList( DictionaryConst.LINK_DERIVES ) );
+    g = new TinkerGraph();
+    traversal.traverse( chain.get( 5 ), g );
+    assertEquals( ids( "f0", "f1", "f2", "f3", "f4", "f5", "f6", "f7", "f8", "f9" ), ids( g ) );
+
+    traversal.setMaxDepth( 1 );
+    g = new TinkerGraph();
+    traversal.traverse( chain.get( 5 ), g );
+    assertEquals( ids( "f5", "f6" ), ids( g ) );
+  }
+
+  @Test
+  public void testDownstreamStructure() {
+    Vertex step = vertex( "step", STEP );
+    Vertex in = vertex( "in", FIELD );
+    Vertex out = vertex( "out", FIELD );
+    graph.addEdge( null, in, out, DictionaryConst.LINK_DERIVES );
+    graph.addEdge( null, step, out, DictionaryConst.LINK_OUTPUTS );
+
+    GraphTraversal traversal = new GraphTraversal( Arrays.asList( STEP ), true );
+    traversal.setDirection( Direction.OUT );
+    Collection<GraphPath> paths = traversal.traverse( in );
+    assertEquals( 1, paths.size() );
+    assertEquals( "in->out->step", paths.iterator().next().toString() );
+
+    // the start vertex itself is not climbed from
+    assertTrue( traversal.traverse( out ).isEmpty() );
+  }
+
+  @Test
+  public void testEdgeLabels() {
+    Vertex a = vertex( "a", FIELD );
+    Vertex b = vertex( "b", FIELD );
+    Vertex c = vertex( "c", FIELD );
+    Vertex step = vertex( "step", STEP );
+    graph.addEdge( null, a, b, DictionaryConst.LINK_DERIVES );
+    graph.addEdge( null, b, c, DictionaryConst.LINK_DERIVES );
+    graph.addEdge( null, step, b, DictionaryConst.LINK_OUTPUTS );
+
+    GraphTraversal traversal = new GraphTraversal( null, true );
+    traversal.setEdgeLabels( Arrays.asList( DictionaryConst.LINK_DERIVES ) );
+    assertEquals( Arrays.asList( DictionaryConst.LINK_DERIVES ), new ArrayList<String>( traversal.getEdgeLabels() ) );
+    Graph g = new TinkerGraph();
+    traversal.traverse( a, g );
+    assertEquals( ids( "a", "b", "c" ), ids( g ) );
+
+    traversal.setEdgeLabels( null );
+    g = new TinkerGraph();
+    traversal.traverse( a, g );
+    assertEquals( ids( "a", "b", "c", "step" ), ids( g ) );
+  }
+
+  @Test
+  public void testCycles() {
+    Vertex a = vertex( "a", FIELD );
+    Vertex b = vertex( "b", FIELD );
+    Vertex c = vertex( "c", FIELD );
+    graph.addEdge( null, a, b, DictionaryConst.LINK_DERIVES );
+    graph.addEdge( null, b, c, DictionaryConst.LINK_DERIVES );
+    graph.addEdge( null, c, a, DictionaryConst.LINK_DERIVES );
+    graph.addEdge( null, c, c, DictionaryConst.LINK_DERIVES );
+
+    for ( boolean shortestOnly : new boolean[] { true, false } ) {
+      GraphTraversal traversal = new GraphTraversal( null, shortestOnly );
+      Graph g = new TinkerGraph();
+      traversal.traverse( a, g );
+      assertEquals( ids( "a", "b", "c" ), ids( g ) );
+      assertEquals( shortestOnly ? 2 : 4, count( g.getEdges() ) );
+    }
+  }
+
+  @Test
+  public void testAllPaths() {
+    // two ways from a to d
+    Vertex a = vertex( "a", FIELD );
+    Vertex b = vertex( "b", FIELD );
+    Vertex c = vertex( "c", FIELD );
+    Vertex d = vertex( "d", FIELD );
+    graph.addEdge( null, a, b, DictionaryConst.LINK_DERIVES );
+    graph.addEdge( null, a, c, DictionaryConst.LINK_DERIVES );
+    graph.addEdge( null, b, d, DictionaryConst.LINK_DERIVES );
+    graph.addEdge( null, c, d, DictionaryConst.LINK_DERIVES );
+
+    GraphTraversal traversal = new GraphTraversal( Arrays.asList( FIELD ), true );
+    traversal.setDirection( Direction.OUT );
+    assertEquals( 4, traversal.traverse( a ).size() );
+
+    traversal.setShortestOnly( false );
+    Set<String> paths = new HashSet<String>();
+    for ( GraphPath path : traversal.traverse( a ) ) {
+      paths.add( path.toString() );
+    }
+    assertTrue( paths.contains( "a->b->d" ) );
+    assertTrue( paths.contains( "a->c->d" ) );
+  }
+
+  @Test
+  public void testSharedPrefixes() {
+    List<Vertex> chain = chain( 3 );
+    Edge edge = chain.get( 1 ).getEdges( Direction.OUT ).iterator().next();
+
+    GraphPath path = new GraphPath();
+    assertEquals( 0, path.getLength() );
+    assertNull( path.getLast() );
+    path.addVertex( chain.get( 0 ) );
+    GraphPath clone = path.clone();
+    GraphPath longer = path.extend( chain.get( 1 ) );
+    clone.addEdge( edge );
+
+    assertEquals( 1, path.getLength() );
+    assertEquals( 2, clone.getLength() );
+    assertEquals( 2, longer.getLength() );
+    assertEquals( "f0->f1", longer.toString() );
+    assertEquals( Arrays.<Object>asList( chain.get( 0 ), edge ), clone.getElements() );
+    assertSame( edge, clone.pop() );
+    assertSame( chain.get( 0 ), clone.getLast() );
+    assertEquals( 1, clone.getLength() );
+    assertEquals( 2, longer.getLength() );
+  }
+
+  @Test( expected = IndexOutOfBoundsException.class )
+  public void testPopEmptyPath() {
+    new GraphPath().pop();
+  }
+
+  private List<Vertex> chain( int length ) {
+    List<Vertex> chain = new ArrayList<Vertex>( length );
+    for ( int i = 0; i < length; i++ ) {
+      Vertex field = vertex( "f" + i, FIELD );
+      if ( i > 0 ) {
+        graph.addEdge( null, chain.get( i - 1 ), field, DictionaryConst.LINK_DERIVES );
+      }
+      chain.add( field );
+    }
+    return chain;
+  }
+
+  private Vertex vertex( String id, String type ) {
+    Vertex vertex = graph.addVertex( id );
+    vertex.setProperty( DictionaryConst.PROPERTY_TYPE, type );
+    return vertex;
+  }
+
+  private int maxLength( Collection<GraphPath> paths ) {
+    int max = 0;
+    for ( GraphPath path : paths ) {
+      max = Math.max( max, path.getLength() );
+    }
+    return max;
+  }
+
+  private Set<String> ids( String... ids ) {
+    return new HashSet<String>( Arrays.asList( ids ) );
+  }
+
+  private Set<String> ids( Graph g ) {
+    Set<String> ids = new HashSet<String>();
+    for ( Vertex vertex : g.getVertices() ) {
+      ids.add( (String) vertex.getId() );
+    }
+    return ids;
+  }
+
+  private int count( Iterable<?> elements ) {
+    int count = 0;
+    for ( Object ignored : elements ) {
+      count++;
+    }
+    return count;
+  }
+}
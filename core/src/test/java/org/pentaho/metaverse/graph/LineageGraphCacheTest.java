@@ -0,0 +1,322 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.graph;
+
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class LineageGraphCacheTest {
+
+  private LineageGraphCache cache;
+
+  @Before
+  public void setUp() throws Exception {
+    cache = new LineageGraphCache();
+  }
+
+  private static Graph graph( int vertices ) {
+    Graph graph = new TinkerGraph();
+    Vertex previous = null;
+    for ( int i = 0; i < vertices; i++ ) {
+      Vertex vertex = graph.addVertex( null );
+      vertex.setProperty( "name", "vertex" + i );
+      if ( previous != null ) {
+        graph.addEdge( null, previous, vertex, "derives" );
+      }
+      previous = vertex;
+    }
+    return graph;
+  }
+
+  private static FutureTask<Graph> pending( final Graph graph ) {
+    return new FutureTask<Graph>( new Callable<Graph>() {
+      @Override
+      public Graph call() throws Exception {
+        return graph;
+      }
+    } );
+  }
+
+  private static FutureTask<Graph> done( Graph graph ) {
+    FutureTask<Graph> future = pending( graph );
+    future.run();
+    return future;
+  }
+
+  @Test
+  public void testMapOperations() throws Exception {
+    Future<Graph> future = done( graph( 1 ) );
+    assertNull( cache.put( "a", future ) );
+    assertTrue( cache.containsKey( "a" ) );
+    assertSame( future, cache.get( "a" ) );
+    assertNull( cache.get( "b" ) );
+    assertEquals( 1, cache.size() );
+    assertEquals( 1, cache.entrySet().size() );
+    assertEquals( 1, cache.getHitCount() );
+    assertEquals( 1, cache.getMissCount() );
+    assertTrue( cache.getTotalBytes() > 0 );
+
+    assertSame( future, cache.remove( "a" ) );
+    assertEquals( 0, cache.getTotalBytes() );
+    cache.put( "a", future );
+    cache.clear();
+    assertTrue( cache.isEmpty() );
+    assertEquals( 0, cache.getTotalBytes() );
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsed() throws Exception {
+    cache.setMaxEntries( 2 );
+    cache.put( "a", done( graph( 1 ) ) );
+    cache.put( "b", done( graph( 1 ) ) );
+    cache.get( "a" );
+    cache.put( "c", done( graph( 1 ) ) );
+    assertEquals( Arrays.<Object>asList( "a", "c" ), cache.getKeysInAccessOrder() );
+    assertEquals( 1, cache.getEvictionCount() );
+    assertTrue( cache.getEvictedBytes() > 0 );
+  }
+
+  @Test
+  public void testRemembersEvictedKeys() throws Exception {
+    cache.setMaxEntries( 1 );
+    cache.put( "a", done( graph( 1 ) ) );
+    assertFalse( cache.wasEvicted( "a" ) );
+    cache.put( "b", done( graph( 1 ) ) );
+    assertTrue( cache.wasEvicted( "a" ) );
+    assertFalse( cache.wasEvicted( "b" ) );
+    assertFalse( cache.wasEvicted( null ) );
+
+    assertNull( cache.get( "a" ) );
+    assertNull( cache.get( "c" ) );
+    assertEquals( 2, cache.getMissCount() );
+    assertEquals( 1, cache.getEvictedMissCount() );
+    assertEquals( 1L, cache.getMetrics().get( "evictedMissCount" ) );
+
+    // analyzed again
+    cache.put( "a", done( graph( 1 ) ) );
+    assertFalse( cache.wasEvicted( "a" ) );
+    assertTrue( cache.wasEvicted( "b" ) );
+    cache.remove( "a" );
+    cache.clear();
+    assertFalse( cache.wasEvicted( "b" ) );
+  }
+
+  @Test
+  public void testEvictsBySize() throws Exception {
+    Graph big = graph( 10 );
+    long bytes = LineageGraphCache.estimateBytes( big );
+    assertTrue( bytes > LineageGraphCache.estimateBytes( graph( 1 ) ) );
+    cache.setMaxBytes( bytes + 1 );
+    cache.put( "small", done( graph( 1 ) ) );
+    cache.put( "big", done( big ) );
+    assertFalse( cache.containsKey( "small" ) );
+    assertTrue( cache.containsKey( "big" ) );
+    assertEquals( bytes, cache.getTotalBytes() );
+  }
+
+  @Test
+  public void testKeepsGraphsInFlight() throws Exception {
+    cache.setMaxEntries( 1 );
+    FutureTask<Graph> first = pending( graph( 1 ) );
+    cache.put( "first", first );
+    cache.put( "second", pending( graph( 1 ) ) );
+    assertEquals( 2, cache.size() );
+    assertEquals( 2, cache.getInFlightCount() );
+    assertSame( first, cache.get( "first" ) );
+
+    // reads don't trim the map, the analysis completing does
+    first.run();
+    assertNull( cache.get( "third" ) );
+    assertEquals( 2, cache.size() );
+    cache.completed( first );
+    assertEquals( 1, cache.size() );
+    assertTrue( cache.containsKey( "second" ) );
+    assertEquals( 1, cache.getInFlightCount() );
+  }
+
+  @Test
+  public void testWeighsGraphOnce() throws Exception {
+    final int[] weighed = { 0 };
+    Graph graph = new TinkerGraph() {
+      @Override
+      public Iterable<Vertex> getVertices() {
+        weighed[ 0 ]++;
+        return super.getVertices();
+      }
+    };
+    graph.addVertex( null );
+    FutureTask<Graph> future = done( graph );
+    cache.put( "a", future );
+    cache.completed( future );
+    cache.get( "a" );
+    cache.put( "b", done( graph( 1 ) ) );
+    cache.get( "a" );
+    assertEquals( 1, weighed[ 0 ] );
+    assertEquals( LineageGraphCache.estimateBytes( graph ) + LineageGraphCache.estimateBytes( graph( 1 ) ),
+      cache.getTotalBytes() );
+
+    // a graph that completes after it was put is weighed once it has completed
+    FutureTask<Graph> inFlight = pending( graph( 10 ) );
+    cache.put( "c", inFlight );
+    long before = cache.getTotalBytes();
+    inFlight.run();
+    cache.completed( inFlight );
+    cache.completed( inFlight );
+    assertEquals( before + LineageGraphCache.estimateBytes( graph( 10 ) ), cache.getTotalBytes() );
+    assertEquals( 0, cache.getInFlightCount() );
+
+    // nothing to weigh for a graph that is no longer in the map
+    cache.remove( "c" );
+    cache.completed( inFlight );
+    assertEquals( before, cache.getTotalBytes() );
+  }
+
+  @Test
+  public void testGetOrRebuild() throws Exception {
+    final AtomicInteger rebuilds = new AtomicInteger();
+    Callable<Void> rebuild = new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        rebuilds.incrementAndGet();
+        cache.put( "a", done( graph( 1 ) ) );
+        return null;
+      }
+    };
+    assertNull( cache.getOrRebuild( "a", rebuild ) );
+    assertEquals( 0, rebuilds.get() );
+
+    cache.setMaxEntries( 1 );
+    cache.put( "a", done( graph( 1 ) ) );
+    cache.put( "b", done( graph( 1 ) ) );
+    assertTrue( cache.wasEvicted( "a" ) );
+
+    Future<Graph> rebuilt = cache.getOrRebuild( "a", rebuild );
+    assertNotNull( rebuilt );
+    assertSame( rebuilt, cache.getOrRebuild( "a", rebuild ) );
+    assertEquals( 1, rebuilds.get() );
+  }
+
+  @Test
+  public void testGetOrRebuildConcurrently() throws Exception {
+    cache.setMaxEntries( 1 );
+    cache.put( "a", done( graph( 1 ) ) );
+    cache.put( "b", done( graph( 1 ) ) );
+
+    final AtomicInteger rebuilds = new AtomicInteger();
+    final CountDownLatch rebuilding = new CountDownLatch( 1 );
+    final CountDownLatch release = new CountDownLatch( 1 );
+    final Callable<Void> rebuild = new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        rebuilds.incrementAndGet();
+        rebuilding.countDown();
+        release.await( 5, TimeUnit.SECONDS );
+        cache.put( "a", done( graph( 1 ) ) );
+        return null;
+      }
+    };
+    final List<Future<Graph>> results = Collections.synchronizedList( new ArrayList<Future<Graph>>() );
+    Runnable client = new Runnable() {
+      @Override
+      public void run() {
+        try {
+          results.add( cache.getOrRebuild( "a", rebuild ) );
+        } catch ( Exception e ) {
+          throw new IllegalStateException( e );
+        }
+      }
+    };
+
+    Thread first = new Thread( client );
+    first.start();
+    assertTrue( rebuilding.await( 5, TimeUnit.SECONDS ) );
+    Thread second = new Thread( client );
+    second.start();
+    // the second client waits for the first one's rebuild rather than starting its own
+    long deadline = System.currentTimeMillis() + 5000;
+    while ( second.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline ) {
+      Thread.sleep( 10 );
+    }
+    release.countDown();
+    first.join( 5000 );
+    second.join( 5000 );
+
+    assertEquals( 1, rebuilds.get() );
+    assertEquals( 2, results.size() );
+    assertNotNull( results.get( 0 ) );
+    assertSame( results.get( 0 ), results.get( 1 ) );
+  }
+
+  @Test
+  public void testReplacedGraphIsReweighed() throws Exception {
+    Graph graph = graph( 1 );
+    cache.put( "a", done( graph ) );
+    long before = cache.getTotalBytes();
+    cache.put( "a", done( graph( 10 ) ) );
+    assertTrue( cache.getTotalBytes() > before );
+    assertEquals( LineageGraphCache.estimateBytes( cache.get( "a" ).get() ), cache.getTotalBytes() );
+  }
+
+  @Test
+  public void testNoLimits() throws Exception {
+    cache.setMaxEntries( 0 );
+    cache.setMaxBytes( 0 );
+    for ( int i = 0; i < LineageGraphCache.DEFAULT_MAX_ENTRIES + 1; i++ ) {
+      cache.put( i, done( graph( 1 ) ) );
+    }
+    assertEquals( LineageGraphCache.DEFAULT_MAX_ENTRIES + 1, cache.size() );
+    assertEquals( 0, cache.getEvictionCount() );
+    assertEquals( cache.size(), cache.getMetrics().get( "size" ) );
+  }
+
+  @Test
+  public void testFailedAnalysisIsEvictable() throws Exception {
+    cache.setMaxEntries( 1 );
+    FutureTask<Graph> failed = new FutureTask<Graph>( new Callable<Graph>() {
+      @Override
+      public Graph call() throws Exception {
+        throw new IllegalStateException( "failed" );
+      }
+    } );
+    failed.run();
+    cache.put( "failed", failed );
+    cache.put( "ok", done( graph( 1 ) ) );
+    assertFalse( cache.containsKey( "failed" ) );
+  }
+}
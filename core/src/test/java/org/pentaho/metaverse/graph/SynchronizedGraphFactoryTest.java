@@ -81,7 +81,7 @@ public class SynchronizedGraphFactoryTest {
     Graph g = new TinkerGraph();
     SynchronizedGraph wrapped = (SynchronizedGraph) SynchronizedGraphFactory.wrapGraph( g );
 
-    assertTrue( wrapped instanceof SynchronizedGraph );
+    assertTrue( wrapped instanceof ConcurrentGraph );
     assertTrue( wrapped.graph instanceof IdGraph );
     assertTrue( wrapped.graph instanceof KeyIndexableGraph );
 
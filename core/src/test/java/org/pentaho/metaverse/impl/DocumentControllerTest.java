@@ -34,9 +34,12 @@ import org.pentaho.metaverse.api.IDocument;
 import org.pentaho.metaverse.api.IDocumentAnalyzer;
 import org.pentaho.metaverse.api.IDocumentEvent;
 import org.pentaho.metaverse.api.IMetaverseBuilder;
+import org.pentaho.metaverse.api.IMetaverseBulkLoad;
+import org.pentaho.metaverse.api.IMetaverseBulkLoader;
 import org.pentaho.metaverse.api.IMetaverseLink;
 import org.pentaho.metaverse.api.IMetaverseNode;
 import org.pentaho.metaverse.api.IMetaverseObjectFactory;
+import org.pentaho.metaverse.api.MetaverseAnalyzerException;
 
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -199,6 +202,25 @@ public class DocumentControllerTest {
     verify( testAndDummyAnalyzer ).analyze( any( IComponentDescriptor.class ), eq( mockDoc ) );
   }
 
+  @Test
+  public void testOnEvent_reportsAnalyses() throws Exception {
+    when( mockDoc.getExtension() ).thenReturn( "dummy" );
+    when( testAndDummyAnalyzer.analyze( any( IComponentDescriptor.class ), eq( mockDoc ) ) )
+      .thenThrow( new MetaverseAnalyzerException( "failed" ) );
+    DocumentEvent event = new DocumentEvent();
+    event.setDocument( mockDoc );
+    DocumentEvent.AnalysisListener listener = mock( DocumentEvent.AnalysisListener.class );
+    event.setAnalysisListener( listener );
+
+    docController.onEvent( event );
+    // the notification is done
+    event.analysisFinished( true );
+    MetaverseCompletionService.getInstance().waitTillEmpty();
+
+    verify( dummyAnalyzer ).analyze( any( IComponentDescriptor.class ), eq( mockDoc ) );
+    verify( listener ).analyzed( event, false );
+  }
+
   @Test
   public void testOnEvent_notAllAnalyzersFire() throws Exception {
     when( mockEvent.getDocument() ).thenReturn( mockDoc );
@@ -279,4 +301,22 @@ public class DocumentControllerTest {
     verify( mockBuilder ).getMetaverseObjectFactory();
   }
 
+  @Test
+  public void testBeginBulkLoad() throws Exception {
+    docController.setMetaverseBuilder( mockBuilder );
+    IMetaverseBulkLoad load = docController.beginBulkLoad();
+    assertTrue( load instanceof MetaverseBulkLoad );
+    assertTrue( load.isOpen() );
+  }
+
+  @Test
+  public void testBeginBulkLoad_delegates() throws Exception {
+    IMetaverseBuilder builder =
+      mock( IMetaverseBuilder.class, withSettings().extraInterfaces( IMetaverseBulkLoader.class ) );
+    IMetaverseBulkLoad load = mock( IMetaverseBulkLoad.class );
+    when( ( (IMetaverseBulkLoader) builder ).beginBulkLoad() ).thenReturn( load );
+    docController.setMetaverseBuilder( builder );
+    assertSame( load, docController.beginBulkLoad() );
+  }
+
 }
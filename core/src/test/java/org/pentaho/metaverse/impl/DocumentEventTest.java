@@ -34,6 +34,11 @@ import org.mockito.runners.MockitoJUnitRunner;
 import org.pentaho.metaverse.api.IDocument;
 
 import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 /**
  * @author mburgess
@@ -98,4 +103,31 @@ public class DocumentEventTest {
     docEvent.setEventType( "myType" );
     assertEquals( docEvent.getEventType(), "myType" );
   }
+
+  @Test
+  public void testAnalysisListener() {
+    DocumentEvent.AnalysisListener listener = mock( DocumentEvent.AnalysisListener.class );
+    docEvent.setAnalysisListener( listener );
+    assertSame( listener, docEvent.getAnalysisListener() );
+
+    docEvent.analysisStarted();
+    docEvent.analysisStarted();
+    docEvent.analysisFinished( true );
+    // the notification itself is done, one analysis still runs
+    docEvent.analysisFinished( true );
+    verify( listener, never() ).analyzed( any( DocumentEvent.class ), anyBoolean() );
+    docEvent.analysisFinished( true );
+    verify( listener ).analyzed( docEvent, true );
+  }
+
+  @Test
+  public void testAnalysisListener_failed() {
+    DocumentEvent.AnalysisListener listener = mock( DocumentEvent.AnalysisListener.class );
+    docEvent.setAnalysisListener( listener );
+
+    docEvent.analysisStarted();
+    docEvent.analysisFinished( false );
+    docEvent.analysisFinished( true );
+    verify( listener ).analyzed( docEvent, false );
+  }
 }
@@ -38,7 +38,9 @@ import org.pentaho.metaverse.impl.model.ExecutionData;
 import org.pentaho.metaverse.impl.model.ExecutionProfile;
 
 import java.io.File;
+import java.util.Calendar;
 import java.util.Date;
+import java.util.GregorianCalendar;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.spy;
@@ -127,6 +129,15 @@ public class FileSystemLineageWriterTest {
     assertTrue( folder.getPath().startsWith( "root" + File.separator + writer.dateFolderFormat.format( now ) ) );
   }
 
+  @Test
+  public void testGetDateFolder_endOfYear() {
+    // 2024-12-30 falls in week 1 of 2025, the calendar year must still be used
+    holder.getExecutionProfile().getExecutionData().setStartTime(
+      new GregorianCalendar( 2024, Calendar.DECEMBER, 30, 12, 0 ).getTime() );
+    File folder = writer.getDateFolder( "root", holder );
+    assertEquals( "root" + File.separator + "20241230", folder.getPath() );
+  }
+
   @Test
   public void testGetSetGraphOutputStream() {
     assertNull( writer.getGraphOutputStream( null ) );
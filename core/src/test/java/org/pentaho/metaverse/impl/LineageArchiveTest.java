@@ -0,0 +1,191 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LineageArchiveTest {
+
+  @After
+  public void tearDown() {
+    // clear the interrupted status a test may have left behind
+    Thread.interrupted();
+  }
+
+  @Test
+  public void testAddEntries() throws Exception {
+    byte[] big = new byte[ 3 * LineageArchive.DEFAULT_BUFFER_SIZE + 17 ];
+    Arrays.fill( big, (byte) 'x' );
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try ( LineageArchive archive = new LineageArchive( out ) ) {
+      assertTrue( archive.addEntry( "a/one.json", new ByteArrayInputStream( "one".getBytes( "UTF-8" ) ) ) );
+      assertTrue( archive.addEntry( "b/big.xml", new ByteArrayInputStream( big ) ) );
+      archive.finish();
+      assertEquals( 2, archive.getEntryCount() );
+    }
+
+    ZipInputStream zis = new ZipInputStream( new ByteArrayInputStream( out.toByteArray() ) );
+    assertEquals( "a/one.json", zis.getNextEntry().getName() );
+    assertEquals( "one", IOUtils.toString( zis, "UTF-8" ) );
+    assertEquals( "b/big.xml", zis.getNextEntry().getName() );
+    assertArrayEquals( big, IOUtils.toByteArray( zis ) );
+    assertNull( zis.getNextEntry() );
+  }
+
+  @Test
+  public void testCompressionLevel() throws Exception {
+    byte[] content = new byte[ 100000 ];
+    Arrays.fill( content, (byte) 'x' );
+    assertTrue( archiveSize( content, 0 ) > content.length );
+    assertTrue( archiveSize( content, 9 ) < content.length / 10 );
+  }
+
+  @Test( expected = IllegalArgumentException.class )
+  public void testInvalidCompressionLevel() throws Exception {
+    new LineageArchive( new ByteArrayOutputStream(), 10, 0, false );
+  }
+
+  @Test
+  @SuppressWarnings( "unchecked" )
+  public void testManifest() throws Exception {
+    byte[] content = "content".getBytes( "UTF-8" );
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try ( LineageArchive archive = new LineageArchive( out, -1, 2, true ) ) {
+      archive.addEntry( "one", new ByteArrayInputStream( content ) );
+      assertFalse( archive.addEntry( "broken", new FailingInputStream() ) );
+      archive.skip( "missing" );
+      archive.finish();
+    }
+
+    ZipInputStream zis = new ZipInputStream( new ByteArrayInputStream( out.toByteArray() ) );
+    ZipEntry entry;
+    Map<String, Object> manifest = null;
+    while ( ( entry = zis.getNextEntry() ) != null ) {
+      if ( LineageArchive.MANIFEST_ENTRY.equals( entry.getName() ) ) {
+        manifest = new ObjectMapper().readValue( IOUtils.toByteArray( zis ), Map.class );
+      }
+    }
+    CRC32 crc = new CRC32();
+    crc.update( content );
+
+    List<Map<String, Object>> entries = (List<Map<String, Object>>) manifest.get( "entries" );
+    assertEquals( 1, entries.size() );
+    assertEquals( "one", entries.get( 0 ).get( "name" ) );
+    assertEquals( content.length, ( (Number) entries.get( 0 ).get( "size" ) ).intValue() );
+    assertEquals( Long.toHexString( crc.getValue() ), entries.get( 0 ).get( "crc" ) );
+    assertEquals( Arrays.asList( "broken", "missing" ), manifest.get( "skipped" ) );
+  }
+
+  @Test
+  public void testWriteFailureStopsReading() throws Exception {
+    CountingInputStream in = new CountingInputStream( new byte[ 1000000 ] );
+    LineageArchive archive = new LineageArchive( new FailingOutputStream(), 0, 0, false );
+    try {
+      archive.addEntry( "one", in );
+      fail( "Writing to a closed stream should fail" );
+    } catch ( IOException e ) {
+      // expected
+    }
+    // the zip stream buffers less than a read, so the copy stopped soon after the first write failure
+    assertTrue( in.reads > 0 );
+    assertTrue( in.reads < 10 );
+  }
+
+  @Test( expected = InterruptedIOException.class )
+  public void testInterrupted() throws Exception {
+    LineageArchive archive = new LineageArchive( new ByteArrayOutputStream() );
+    Thread.currentThread().interrupt();
+    archive.addEntry( "one", new ByteArrayInputStream( new byte[ 10 ] ) );
+  }
+
+  private long archiveSize( byte[] content, int level ) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try ( LineageArchive archive = new LineageArchive( out, level, 0, false ) ) {
+      archive.addEntry( "content", new ByteArrayInputStream( content ) );
+      archive.finish();
+    }
+    return out.size();
+  }
+
+  private static class FailingInputStream extends InputStream {
+    private int available = 5;
+
+    @Override
+    public int read() throws IOException {
+      if ( available == 0 ) {
+        throw new IOException( "Read failed" );
+      }
+      available--;
+      return 'x';
+    }
+  }
+
+  private static class CountingInputStream extends ByteArrayInputStream {
+    private int reads;
+
+    CountingInputStream( byte[] content ) {
+      super( content );
+    }
+
+    @Override
+    public synchronized int read( byte[] b, int off, int len ) {
+      reads++;
+      return super.read( b, off, len );
+    }
+  }
+
+  private static class FailingOutputStream extends OutputStream {
+    private int available = 4096;
+
+    @Override
+    public void write( int b ) throws IOException {
+      if ( available == 0 ) {
+        throw new IOException( "Client disconnected" );
+      }
+      available--;
+    }
+  }
+}
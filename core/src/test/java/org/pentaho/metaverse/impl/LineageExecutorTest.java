@@ -0,0 +1,223 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class LineageExecutorTest {
+
+  LineageExecutor executor;
+  CountDownLatch release;
+
+  @Before
+  public void setUp() throws Exception {
+    executor = new LineageExecutor( 1 );
+    executor.setQueueSize( 1 );
+    release = new CountDownLatch( 1 );
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    release.countDown();
+    executor.shutdown();
+  }
+
+  /**
+   * Occupies the only worker until the test releases it
+   */
+  private void blockWorker() throws Exception {
+    final CountDownLatch started = new CountDownLatch( 1 );
+    executor.execute( new Runnable() {
+      @Override
+      public void run() {
+        started.countDown();
+        try {
+          release.await();
+        } catch ( InterruptedException e ) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    } );
+    assertTrue( started.await( 5, TimeUnit.SECONDS ) );
+  }
+
+  private static final Runnable NOOP = new Runnable() {
+    @Override
+    public void run() {
+    }
+  };
+
+  @Test
+  public void testExecute() throws Exception {
+    final CountDownLatch done = new CountDownLatch( 1 );
+    final AtomicReference<String> threadName = new AtomicReference<String>();
+    executor.execute( new Runnable() {
+      @Override
+      public void run() {
+        threadName.set( Thread.currentThread().getName() );
+        done.countDown();
+      }
+    } );
+    assertTrue( done.await( 5, TimeUnit.SECONDS ) );
+    assertTrue( threadName.get().startsWith( "metaverse-lineage-" ) );
+    assertEquals( 1, executor.getSubmittedCount() );
+  }
+
+  @Test
+  public void testCallerRunsWhenQueueIsFull() throws Exception {
+    blockWorker();
+    executor.execute( NOOP );
+    assertEquals( 1, executor.getQueueDepth() );
+    assertEquals( 1, executor.getActiveCount() );
+
+    final AtomicReference<Thread> ranOn = new AtomicReference<Thread>();
+    executor.execute( new Runnable() {
+      @Override
+      public void run() {
+        ranOn.set( Thread.currentThread() );
+      }
+    } );
+    assertSame( Thread.currentThread(), ranOn.get() );
+    assertEquals( 1, executor.getRejectedCount() );
+    assertEquals( 1, executor.getCallerRunsCount() );
+    assertEquals( 1, executor.getCompletedCount() );
+  }
+
+  @Test
+  public void testAbortWhenQueueIsFull() throws Exception {
+    executor.setRejectionPolicy( "abort" );
+    assertEquals( LineageExecutor.RejectionPolicy.ABORT, executor.getRejectionPolicy() );
+    blockWorker();
+    executor.execute( NOOP );
+    try {
+      executor.execute( NOOP );
+      fail( "expected the task to be refused" );
+    } catch ( RejectedExecutionException e ) {
+      // expected
+    }
+    assertEquals( 1, executor.getRejectedCount() );
+    assertEquals( 0, executor.getCallerRunsCount() );
+    assertEquals( 1, executor.getQueueDepth() );
+  }
+
+  @Test
+  public void testRejectionPolicyFromString() throws Exception {
+    assertEquals( LineageExecutor.RejectionPolicy.CALLER_RUNS, LineageExecutor.RejectionPolicy.fromString( null ) );
+    assertEquals( LineageExecutor.RejectionPolicy.CALLER_RUNS,
+      LineageExecutor.RejectionPolicy.fromString( "Caller-Runs" ) );
+    assertEquals( LineageExecutor.RejectionPolicy.ABORT, LineageExecutor.RejectionPolicy.fromString( " ABORT " ) );
+    assertEquals( LineageExecutor.RejectionPolicy.CALLER_RUNS, LineageExecutor.RejectionPolicy.fromString( "bogus" ) );
+  }
+
+  @Test
+  public void testFailedTaskIsCounted() throws Exception {
+    final CountDownLatch done = new CountDownLatch( 1 );
+    executor.execute( new Runnable() {
+      @Override
+      public void run() {
+        done.countDown();
+        throw new IllegalStateException( "test" );
+      }
+    } );
+    assertTrue( done.await( 5, TimeUnit.SECONDS ) );
+    executor.shutdown();
+    assertEquals( 1, executor.getFailedCount() );
+    assertEquals( 0, executor.getCompletedCount() );
+  }
+
+  @Test
+  public void testShutdownDrainsQueue() throws Exception {
+    executor.setQueueSize( 10 );
+    final CountDownLatch done = new CountDownLatch( 3 );
+    for ( int i = 0; i < 3; i++ ) {
+      executor.execute( new Runnable() {
+        @Override
+        public void run() {
+          done.countDown();
+        }
+      } );
+    }
+    executor.shutdown();
+    assertTrue( executor.isShutdown() );
+    assertEquals( 0, done.getCount() );
+    assertEquals( 3, executor.getCompletedCount() );
+    assertEquals( 0, executor.getQueueDepth() );
+
+    // a shut down executor starts fresh workers when it is used again
+    final CountDownLatch again = new CountDownLatch( 1 );
+    executor.execute( new Runnable() {
+      @Override
+      public void run() {
+        again.countDown();
+      }
+    } );
+    assertTrue( again.await( 5, TimeUnit.SECONDS ) );
+    assertFalse( executor.isShutdown() );
+  }
+
+  @Test
+  public void testShutdownTimeout() throws Exception {
+    executor.setShutdownTimeout( 50 );
+    assertEquals( 50, executor.getShutdownTimeout() );
+    blockWorker();
+    executor.execute( NOOP );
+    // the blocked worker is interrupted and the queued task dropped
+    executor.shutdown();
+    assertTrue( executor.awaitTermination( 5, TimeUnit.SECONDS ) );
+    assertEquals( 0, executor.getQueueDepth() );
+  }
+
+  @Test
+  public void testSetThreads() throws Exception {
+    executor.setThreads( 4 );
+    assertEquals( 4, executor.getThreads() );
+    executor.setThreads( 2 );
+    assertEquals( 2, executor.getThreads() );
+    executor.setThreads( 0 );
+    assertTrue( executor.getThreads() >= 2 );
+  }
+
+  @Test
+  public void testMetrics() throws Exception {
+    executor.execute( NOOP );
+    executor.shutdown();
+    Map<String, Object> metrics = executor.getMetrics();
+    assertEquals( 1L, metrics.get( "completedCount" ) );
+    assertEquals( 0, metrics.get( "queueDepth" ) );
+    assertEquals( "CALLER_RUNS", metrics.get( "rejectionPolicy" ) );
+    assertTrue( executor.getAverageRunTime() >= 0 );
+    assertTrue( executor.getMaxQueueTime() >= 0 );
+    assertTrue( executor.toString().contains( "completedCount" ) );
+    assertSame( LineageExecutor.getInstance(), LineageExecutor.getInstance() );
+  }
+}
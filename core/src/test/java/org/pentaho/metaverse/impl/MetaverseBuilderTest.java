@@ -556,4 +556,78 @@ public class MetaverseBuilderTest {
     Vertex newVertex = builder.getVertexForNode( node );
     assertEquals( vertex, newVertex );
   }
+
+  @Test
+  public void testLogicalIdIndexRebuiltFromExistingGraph() {
+    builder.addNode( node );
+    Vertex vertex = builder.getVertexForNode( node );
+
+    MetaverseBuilder other = new MetaverseBuilder( graph );
+    assertEquals( builder.getLogicalIdIndexSize(), other.getLogicalIdIndexSize() );
+    node.setStringID( "diff string id" );
+    assertEquals( vertex, other.getVertexForNode( node ) );
+  }
+
+  @Test
+  public void testLogicalIdIndexFollowsRemovals() {
+    builder.addNode( node );
+    int size = builder.getLogicalIdIndexSize();
+    node.setStringID( "diff string id" );
+    Vertex vertex = builder.getVertexForNode( node );
+    assertNotNull( vertex );
+
+    // removed behind the builder's back
+    graph.removeVertex( vertex );
+    assertNull( builder.getVertexForNode( node ) );
+    assertEquals( size - 1, builder.getLogicalIdIndexSize() );
+
+    // removed through the builder
+    builder.addNode( node );
+    assertEquals( size, builder.getLogicalIdIndexSize() );
+    builder.deleteNode( node );
+    assertEquals( size - 1, builder.getLogicalIdIndexSize() );
+  }
+
+  @Test
+  public void testLogicalIdIndexSeesVerticesAfterRebuild() {
+    Vertex vertex = graph.addVertex( "added elsewhere" );
+    vertex.setProperty( DictionaryConst.PROPERTY_LOGICAL_ID, node.getLogicalId() );
+    // the graph is not scanned on a miss
+    assertNull( builder.getVertexForNode( node ) );
+
+    builder.rebuildLogicalIdIndex();
+    assertEquals( vertex, builder.getVertexForNode( node ) );
+  }
+
+  @Test
+  public void testLogicalIdIndexDropsStaleEntries() {
+    builder.addNode( node );
+    Vertex vertex = graph.getVertex( node.getStringID() );
+    int indexed = builder.getLogicalIdIndexSize();
+
+    // removed behind the builder's back, as BaseLocator and TransformationAnalyzer do
+    graph.removeVertex( vertex );
+    assertNull( builder.getVertexByLogicalId( node.getLogicalId() ) );
+    assertEquals( indexed - 1, builder.getLogicalIdIndexSize() );
+
+    builder.addNode( node );
+    assertEquals( graph.getVertex( node.getStringID() ), builder.getVertexByLogicalId( node.getLogicalId() ) );
+  }
+
+  @Test
+  public void testGetLogicalIdSource() {
+    String digest = "0123456789abcdef0123456789abcdef";
+    assertNull( builder.getLogicalIdSource( digest ) );
+    assertNull( builder.getLogicalIdSource( null ) );
+
+    Vertex vertex = graph.addVertex( "hashed" );
+    vertex.setProperty( DictionaryConst.PROPERTY_LOGICAL_ID, digest );
+    vertex.setProperty( DictionaryConst.PROPERTY_LOGICAL_ID_SOURCE, "{\"name\":\"a\"}" );
+    builder.rebuildLogicalIdIndex();
+    assertEquals( "{\"name\":\"a\"}", builder.getLogicalIdSource( digest ) );
+
+    // not hashed
+    builder.addNode( node );
+    assertNull( builder.getLogicalIdSource( node.getLogicalId() ) );
+  }
 }
@@ -0,0 +1,234 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.impl;
+
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.pentaho.dictionary.DictionaryConst;
+import org.pentaho.dictionary.MetaverseTransientNode;
+import org.pentaho.metaverse.api.IMetaverseBuilder;
+import org.pentaho.metaverse.api.IMetaverseBulkLoad;
+import org.pentaho.metaverse.api.IMetaverseLink;
+import org.pentaho.metaverse.api.IMetaverseNode;
+import org.pentaho.metaverse.api.MetaverseException;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+
+public class MetaverseBulkLoadTest {
+
+  TinkerGraph graph;
+  MetaverseBuilder builder;
+
+  @Before
+  public void setUp() throws Exception {
+    graph = new TinkerGraph();
+    builder = new MetaverseBuilder( graph );
+  }
+
+  private static MetaverseTransientNode node( String name ) {
+    MetaverseTransientNode node = new MetaverseTransientNode( name );
+    node.setName( name );
+    node.setType( DictionaryConst.NODE_TYPE_TRANS_FIELD );
+    return node;
+  }
+
+  private static int count( Iterable<?> elements ) {
+    int count = 0;
+    for ( Object ignored : elements ) {
+      count++;
+    }
+    return count;
+  }
+
+  @Test
+  public void testStagedCallsAreDeduplicatedAndApplied() throws Exception {
+    int vertices = count( graph.getVertices() );
+    IMetaverseBulkLoad load = builder.beginBulkLoad();
+    MetaverseTransientNode a = node( "a" );
+    MetaverseTransientNode b = node( "b" );
+    load.addNode( a );
+    a.setProperty( DictionaryConst.PROPERTY_DESCRIPTION, "changed after staging" );
+    load.addNode( node( "a" ) );
+    load.addNode( b );
+    load.addLink( a, DictionaryConst.LINK_DERIVES, b );
+    load.addLink( a, DictionaryConst.LINK_DERIVES, b );
+    assertEquals( 2, load.getNodeCount() );
+    assertEquals( 1, load.getLinkCount() );
+
+    // nothing is visible until committed
+    assertEquals( vertices, count( graph.getVertices() ) );
+    load.commit();
+    assertFalse( load.isOpen() );
+
+    Vertex va = builder.getVertexForNode( a );
+    Vertex vb = builder.getVertexForNode( b );
+    assertNotNull( va );
+    assertNotNull( vb );
+    assertEquals( false, va.getProperty( DictionaryConst.NODE_VIRTUAL ) );
+    // set after the node was staged, and picked up from the link staged after that
+    assertEquals( "changed after staging", va.getProperty( DictionaryConst.PROPERTY_DESCRIPTION ) );
+    assertEquals( 1, count( va.getEdges( com.tinkerpop.blueprints.Direction.OUT, DictionaryConst.LINK_DERIVES ) ) );
+  }
+
+  @Test
+  public void testNodePropertiesSetBeforeLinkingAreKept() throws Exception {
+    // the way a step analyzer adds its step, sets more properties on it, and then has it linked to the transformation
+    IMetaverseBulkLoad load = builder.beginBulkLoad();
+    MetaverseTransientNode trans = node( "trans" );
+    MetaverseTransientNode step = node( "step" );
+    load.addNode( trans );
+    load.addNode( step );
+    step.setProperty( "truncateTable", true );
+    load.addLink( trans, DictionaryConst.LINK_CONTAINS, step );
+    // a property set on the node after the link is not seen, as with the builder itself
+    step.setProperty( DictionaryConst.PROPERTY_DESCRIPTION, "after linking" );
+    load.commit();
+
+    Vertex vertex = builder.getVertexForNode( step );
+    assertEquals( true, vertex.getProperty( "truncateTable" ) );
+    assertNull( vertex.getProperty( DictionaryConst.PROPERTY_DESCRIPTION ) );
+  }
+
+  @Test
+  public void testLinkToUnstagedNodeCreatesVirtualNode() throws Exception {
+    IMetaverseBulkLoad load = builder.beginBulkLoad();
+    MetaverseTransientNode a = node( "a" );
+    MetaverseTransientNode b = node( "b" );
+    load.addNode( a );
+    load.addLink( a, DictionaryConst.LINK_DERIVES, b );
+    load.commit();
+    assertEquals( true, builder.getVertexForNode( b ).getProperty( DictionaryConst.NODE_VIRTUAL ) );
+  }
+
+  @Test
+  public void testUpdateAndDeleteInLoad() throws Exception {
+    MetaverseTransientNode existing = node( "existing" );
+    builder.addNode( existing );
+
+    IMetaverseBulkLoad load = builder.beginBulkLoad();
+    MetaverseTransientNode a = node( "a" );
+    load.addNode( a );
+    MetaverseTransientNode update = node( "a" );
+    update.setProperty( DictionaryConst.PROPERTY_DESCRIPTION, "updated" );
+    load.updateNode( update );
+    MetaverseTransientNode gone = node( "gone" );
+    load.addNode( gone );
+    load.addLink( a, DictionaryConst.LINK_DERIVES, gone );
+    load.deleteNode( gone );
+    load.deleteNode( existing );
+    assertEquals( 1, load.getNodeCount() );
+    assertEquals( 0, load.getLinkCount() );
+    load.commit();
+
+    assertEquals( "updated", builder.getVertexForNode( a ).getProperty( DictionaryConst.PROPERTY_DESCRIPTION ) );
+    assertNull( builder.getVertexForNode( gone ) );
+    assertNull( builder.getVertexForNode( existing ) );
+  }
+
+  @Test
+  public void testRollback() throws Exception {
+    int vertices = count( graph.getVertices() );
+    IMetaverseBulkLoad load = builder.beginBulkLoad();
+    load.addNode( node( "a" ) );
+    load.rollback();
+    assertFalse( load.isOpen() );
+    assertEquals( 0, load.getNodeCount() );
+    assertEquals( vertices, count( graph.getVertices() ) );
+    // rolling back twice is harmless
+    load.rollback();
+  }
+
+  @Test( expected = IllegalStateException.class )
+  public void testStagingAfterCommit() throws Exception {
+    IMetaverseBulkLoad load = builder.beginBulkLoad();
+    load.commit();
+    load.addNode( node( "a" ) );
+  }
+
+  @Test
+  public void testFailedCommitIsUndone() throws Exception {
+    graph = new TinkerGraph() {
+      @Override
+      public Edge addEdge( Object id, Vertex outVertex, Vertex inVertex, String label ) {
+        if ( "boom".equals( label ) ) {
+          throw new IllegalStateException( "boom" );
+        }
+        return super.addEdge( id, outVertex, inVertex, label );
+      }
+    };
+    builder = new MetaverseBuilder( graph );
+    MetaverseTransientNode existing = node( "existing" );
+    existing.setProperty( DictionaryConst.PROPERTY_DESCRIPTION, "before" );
+    builder.addNode( existing );
+    int vertices = count( graph.getVertices() );
+    int edges = count( graph.getEdges() );
+
+    IMetaverseBulkLoad load = builder.beginBulkLoad();
+    MetaverseTransientNode changed = node( "existing" );
+    changed.setProperty( DictionaryConst.PROPERTY_DESCRIPTION, "after" );
+    changed.setProperty( "extra", "value" );
+    load.addNode( changed );
+    MetaverseTransientNode a = node( "a" );
+    load.addNode( a );
+    load.addLink( a, DictionaryConst.LINK_DERIVES, changed );
+    load.addLink( a, "boom", changed );
+    try {
+      load.commit();
+      fail( "expected the commit to fail" );
+    } catch ( MetaverseException e ) {
+      // expected
+    }
+
+    assertEquals( vertices, count( graph.getVertices() ) );
+    assertEquals( edges, count( graph.getEdges() ) );
+    Vertex vertex = builder.getVertexForNode( existing );
+    assertEquals( "before", vertex.getProperty( DictionaryConst.PROPERTY_DESCRIPTION ) );
+    assertNull( vertex.getProperty( "extra" ) );
+    assertNull( builder.getVertexForNode( a ) );
+  }
+
+  @Test
+  public void testCommitToOtherBuilder() throws Exception {
+    IMetaverseBuilder target = mock( IMetaverseBuilder.class );
+    IMetaverseBulkLoad load = new MetaverseBulkLoad( target );
+    MetaverseTransientNode a = node( "a" );
+    MetaverseTransientNode b = node( "b" );
+    load.addLink( a, DictionaryConst.LINK_DERIVES, b );
+    load.addNode( a );
+    load.deleteNode( node( "c" ) );
+    load.commit();
+
+    InOrder order = inOrder( target );
+    order.verify( target ).deleteNode( any( IMetaverseNode.class ) );
+    order.verify( target, times( 1 ) ).addNode( any( IMetaverseNode.class ) );
+    order.verify( target, times( 1 ) ).addLink( any( IMetaverseLink.class ) );
+  }
+}
@@ -0,0 +1,119 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.impl;
+
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.dictionary.DictionaryConst;
+import org.pentaho.dictionary.MetaverseTransientNode;
+import org.pentaho.metaverse.api.IMetaverseBuilder;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class RecordingMetaverseBuilderTest {
+
+  private Graph graph;
+  private MetaverseBuilder target;
+  private RecordingMetaverseBuilder recording;
+  private MetaverseTransientNode node1;
+  private MetaverseTransientNode node2;
+
+  @Before
+  public void before() {
+    graph = new TinkerGraph();
+    target = new MetaverseBuilder( graph );
+    recording = new RecordingMetaverseBuilder( target );
+
+    node1 = new MetaverseTransientNode( "node1" );
+    node1.setName( "node1 name" );
+    node1.setType( "test type" );
+    node2 = new MetaverseTransientNode( "node2" );
+    node2.setName( "node2 name" );
+    node2.setType( "test type" );
+  }
+
+  @Test
+  public void testCallsAreNotAppliedUntilReplayed() {
+    recording.addNode( node1 );
+    recording.addLink( node1, DictionaryConst.LINK_CONTAINS, node2 );
+
+    assertEquals( 2, recording.size() );
+    assertNull( graph.getVertex( "node1" ) );
+
+    assertSame( target, recording.replay() );
+    assertEquals( 0, recording.size() );
+
+    Vertex v1 = graph.getVertex( "node1" );
+    assertNotNull( v1 );
+    assertNotNull( graph.getVertex( "node2" ) );
+    assertEquals( 1, count( graph.getEdges() ) );
+  }
+
+  @Test
+  public void testReplayKeepsOrder() {
+    recording.addNode( node1 );
+    recording.deleteNode( node1 );
+    recording.replay();
+    assertNull( graph.getVertex( "node1" ) );
+
+    recording.deleteNode( node1 );
+    recording.addNode( node1 );
+    recording.replay();
+    assertNotNull( graph.getVertex( "node1" ) );
+  }
+
+  @Test
+  public void testNodesAreCopiedWhenRecorded() {
+    recording.addNode( node1 );
+    node1.setName( "changed after the call" );
+    recording.replay();
+
+    assertEquals( "node1 name", graph.getVertex( "node1" ).getProperty( DictionaryConst.PROPERTY_NAME ) );
+  }
+
+  @Test
+  public void testDelegatesToTarget() {
+    assertSame( target.getGraph(), recording.getGraph() );
+    assertSame( target.getMetaverseObjectFactory(), recording.getMetaverseObjectFactory() );
+  }
+
+  @Test
+  public void testSetGraph() {
+    IMetaverseBuilder mockTarget = mock( IMetaverseBuilder.class );
+    new RecordingMetaverseBuilder( mockTarget ).setGraph( graph );
+    verify( mockTarget ).setGraph( graph );
+  }
+
+  private static int count( Iterable<?> iterable ) {
+    int count = 0;
+    for ( Object o : iterable ) {
+      count++;
+    }
+    return count;
+  }
+}
@@ -0,0 +1,152 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.vfs2.FileObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.di.core.vfs.KettleVFS;
+
+public class VfsLineageCatalogTest {
+
+  private File root;
+  private String outputFolder;
+  private VfsLineageCatalog catalog;
+
+  @Before
+  public void setUp() throws Exception {
+    root = new File( "target/outputfiles/catalog" + System.nanoTime() ).getCanonicalFile();
+    FileUtils.copyDirectory( new File( "src/test/resources/pentaho-lineage-output" ), root );
+    outputFolder = "file://" + root.getPath();
+    catalog = new VfsLineageCatalog( outputFolder );
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    FileUtils.deleteDirectory( root );
+  }
+
+  @Test
+  public void testRebuild() throws Exception {
+    assertFalse( catalog.exists() );
+    assertEquals( 6, catalog.rebuild() );
+    assertTrue( catalog.exists() );
+    assertTrue( new File( root, VfsLineageCatalog.CATALOG_FILE_NAME ).isFile() );
+
+    // a fresh catalog reads what was saved
+    assertEquals( 6, new VfsLineageCatalog( outputFolder ).size() );
+  }
+
+  @Test
+  public void testFindArtifacts() throws Exception {
+    catalog.rebuild();
+
+    List<VfsLineageCatalog.Artifact> mergeJoin = catalog.findArtifacts( "validation/merge_join.ktr", null, null );
+    assertEquals( 4, mergeJoin.size() );
+    assertEquals( "20150706", mergeJoin.get( 0 ).getDay() );
+    assertEquals( "repo/validation/merge_join.ktr", mergeJoin.get( 0 ).getDocumentPath() );
+    assertEquals( 1436208018952L, mergeJoin.get( 0 ).getTimestamp() );
+
+    assertEquals( 4, catalog.findArtifacts( "/repo/validation/merge_join.ktr", null, null ).size() );
+    assertEquals( 2, catalog.findArtifacts( "merge_join.ktr", catalog.parseDay( "20150707" ), null ).size() );
+    assertEquals( 2, catalog.findArtifacts( "strings_cut.ktr", null, null ).size() );
+    assertEquals( 0, catalog.findArtifacts( "join.ktr", null, null ).size() );
+    assertEquals( 0, catalog.findArtifacts( "repo/validation/XYZ.ktr", null, null ).size() );
+    assertEquals( 2, catalog.findArtifacts( catalog.parseDay( "20150707" ), null ).size() );
+  }
+
+  @Test
+  public void testAddAndRemoveAreJournaled() throws Exception {
+    catalog.rebuild();
+
+    File runFolder = new File( root, "20150708/repo/validation/merge_join.ktr" );
+    File artifact = new File( runFolder, "1436300000000_merge_join.graphml" );
+    FileUtils.write( artifact, "<graphml/>" );
+    catalog.add( KettleVFS.getFileObject( artifact.getPath() ) );
+    assertEquals( 5, catalog.findArtifacts( "merge_join.ktr", null, null ).size() );
+    assertEquals( 5, new VfsLineageCatalog( outputFolder ).findArtifacts( "merge_join.ktr", null, null ).size() );
+
+    FileObject folder = KettleVFS.getFileObject( new File( root, "20150706/repo/validation" ).getPath() );
+    catalog.removeFolder( folder );
+    assertEquals( 3, catalog.findArtifacts( "merge_join.ktr", null, null ).size() );
+    assertEquals( 0, catalog.findArtifacts( "strings_cut.ktr", null, null ).size() );
+
+    VfsLineageCatalog reloaded = new VfsLineageCatalog( outputFolder );
+    assertEquals( 3, reloaded.size() );
+    assertEquals( 0, reloaded.findArtifacts( "strings_cut.ktr", null, null ).size() );
+  }
+
+  @Test
+  public void testCheck() throws Exception {
+    catalog.rebuild();
+    assertTrue( catalog.check( false ).isConsistent() );
+
+    FileUtils.deleteDirectory( new File( root, "20150707" ) );
+    FileUtils.write( new File( root, "20150709/other/doc.ktr/1_doc.graphml" ), "<graphml/>" );
+
+    VfsLineageCatalog.CheckResult result = catalog.check( false );
+    assertFalse( result.isConsistent() );
+    assertEquals( 2, result.getMissing().size() );
+    assertEquals( 1, result.getUnindexed().size() );
+    assertEquals( "20150709/other/doc.ktr/1_doc.graphml", result.getUnindexed().get( 0 ) );
+
+    assertFalse( catalog.check( true ).isConsistent() );
+    assertTrue( catalog.check( false ).isConsistent() );
+    assertEquals( 5, new VfsLineageCatalog( outputFolder ).size() );
+  }
+
+  @Test
+  public void testCollectorUsesCatalog() throws Exception {
+    VfsLineageCollector collector = new VfsLineageCollector();
+    collector.setOutputFolder( root.getPath() );
+    List<String> walked = collector.listArtifactsForFile( "validation/merge_join.ktr" );
+
+    assertEquals( 6, collector.rebuildCatalog() );
+    List<String> indexed = collector.listArtifactsForFile( "validation/merge_join.ktr" );
+    assertEquals( 4, indexed.size() );
+    // the same artifacts as walking the folders, though not necessarily in the same order
+    Collections.sort( walked );
+    Collections.sort( indexed );
+    assertEquals( walked, indexed );
+    assertEquals( 2, collector.listArtifacts( "20150707" ).size() );
+    assertTrue( collector.checkCatalog( false ).isConsistent() );
+  }
+
+  @Test
+  public void testNormalize() {
+    assertEquals( "repo/a.ktr", VfsLineageCatalog.normalize( "/repo/a.ktr" ) );
+    assertEquals( "repo/a.ktr", VfsLineageCatalog.normalize( "repo\\a.ktr\\" ) );
+    assertEquals( "C/repo/a.ktr", VfsLineageCatalog.normalize( "C:\\repo\\a.ktr" ) );
+    assertEquals( "", VfsLineageCatalog.normalize( null ) );
+  }
+}
@@ -27,12 +27,22 @@ import static org.junit.Assert.assertNotNull;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import org.apache.commons.io.FilenameUtils;
 import org.junit.Before;
@@ -112,6 +122,40 @@ public class VfsLineageCollectorTest {
 
   }
 
+  @Test
+  public void testCompressArtifacts_manifest() throws Exception {
+    List<String> artifacts = collector.listArtifacts();
+    collector.setManifestEnabled( true );
+    collector.setCompressionLevel( Deflater.BEST_SPEED );
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    collector.compressArtifacts( artifacts, out );
+
+    List<String> names = new ArrayList<>();
+    ZipInputStream zis = new ZipInputStream( new ByteArrayInputStream( out.toByteArray() ) );
+    ZipEntry entry;
+    while ( ( entry = zis.getNextEntry() ) != null ) {
+      names.add( entry.getName() );
+    }
+    assertEquals( 7, names.size() );
+    assertEquals( LineageArchive.MANIFEST_ENTRY, names.get( 6 ) );
+  }
+
+  @Test
+  public void testCompressArtifacts_clientGone() throws Exception {
+    List<String> artifacts = collector.listArtifacts();
+    OutputStream out = mock( OutputStream.class );
+    doThrow( new IOException( "Broken pipe" ) ).when( out ).write( any( byte[].class ), anyInt(), anyInt() );
+    doThrow( new IOException( "Broken pipe" ) ).when( out ).write( anyInt() );
+
+    // the failure is logged rather than thrown, and the remaining artifacts are not read
+    collector.compressArtifacts( artifacts, out );
+  }
+
+  @Test( expected = IllegalArgumentException.class )
+  public void testSetCompressionLevel_invalid() throws Exception {
+    collector.setCompressionLevel( 11 );
+  }
+
   @Test
   public void testGetArtifactsForFile_mergeJoin() throws Exception {
     // we have artifacts for merge_join on 2 days (execution profile + graph for each day)
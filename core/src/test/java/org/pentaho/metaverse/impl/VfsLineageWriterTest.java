@@ -23,15 +23,20 @@
 package org.pentaho.metaverse.impl;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.spy;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Calendar;
 import java.util.Date;
+import java.util.GregorianCalendar;
 import java.util.Random;
 
 import org.apache.commons.io.FilenameUtils;
@@ -138,6 +143,19 @@ public class VfsLineageWriterTest {
     writer.outputExecutionProfile( holder );
   }
 
+  @Test
+  public void testOutputCompactExecutionProfile() throws Exception {
+    assertFalse( writer.isCompactProfiles() );
+    writer.setCompactProfiles( true );
+    assertTrue( writer.isCompactProfiles() );
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    doReturn( out ).when( writer ).getProfileOutputStream( holder );
+    writer.outputExecutionProfile( holder );
+    String json = out.toString( "UTF-8" ).trim();
+    assertTrue( json.startsWith( "{" ) );
+    assertFalse( json.contains( "\n" ) );
+  }
+
   @Test
   public void testGetProfileOutputStream() throws Exception {
     try ( OutputStream os = writer.getProfileOutputStream( holder ) ) {
@@ -173,6 +191,15 @@ public class VfsLineageWriterTest {
     assertTrue( folder.getName().getPath().endsWith( "root" + "/" + VfsLineageWriter.dateFolderFormat.format( now ) ) );
   }
 
+  @Test
+  public void testGetDateFolder_endOfYear() throws KettleFileException, FileSystemException {
+    // 2024-12-30 falls in week 1 of 2025, the calendar year must still be used
+    holder.getExecutionProfile().getExecutionData().setStartTime(
+      new GregorianCalendar( 2024, Calendar.DECEMBER, 30, 12, 0 ).getTime() );
+    FileObject folder = writer.getDateFolder( holder );
+    assertEquals( "20241230", folder.getName().getBaseName() );
+  }
+
   @Test
   public void testSetGraphOutputStream() throws IOException {
     try ( OutputStream graphOutputStream = writer.getGraphOutputStream( null ) ) {
@@ -135,6 +135,15 @@ public class ExecutionDataTest {
 
   }
 
+  @Test
+  public void testGetSetExternalResourcesDropped() {
+    assertEquals( executionData.getExternalResourcesDropped().size(), 0 );
+    Map<String, Long> dropped = new HashMap<String, Long>();
+    dropped.put( "testStep", 42L );
+    executionData.setExternalResourcesDropped( dropped );
+    assertEquals( executionData.getExternalResourcesDropped().get( "testStep" ), Long.valueOf( 42 ) );
+  }
+
   @Test
   public void testPutGetArgument() {
     assertEquals( executionData.getArguments().size(), 0 );
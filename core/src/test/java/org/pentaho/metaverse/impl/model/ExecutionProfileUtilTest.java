@@ -22,24 +22,40 @@
 
 package org.pentaho.metaverse.impl.model;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.pentaho.metaverse.api.model.IExecutionProfile;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.PrintStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 public class ExecutionProfileUtilTest {
   IExecutionProfile executionProfile;
 
   @Before
   public void setUp() throws Exception {
-    executionProfile = new ExecutionProfile();
+    executionProfile = new ExecutionProfile( "profile", "/path/to/profile.ktr", "Transformation", "A profile" );
+    executionProfile.getExecutionData().addParameter( new ParamInfo( "param", "value", "default" ) );
   }
 
   @Test
@@ -55,8 +71,66 @@ public class ExecutionProfileUtilTest {
 
   @Test( expected = IOException.class )
   public void testOutputExecutionProfileWithException() throws IOException {
-    PrintStream mockStream = mock( PrintStream.class );
-    doThrow( JsonProcessingException.class ).when( mockStream ).println( Mockito.anyString() );
+    OutputStream mockStream = mock( OutputStream.class );
+    doThrow( IOException.class ).when( mockStream )
+      .write( Mockito.any( byte[].class ), Mockito.anyInt(), Mockito.anyInt() );
     ExecutionProfileUtil.outputExecutionProfile( mockStream, executionProfile );
   }
+
+  @Test
+  public void testIndentedAndCompact() throws Exception {
+    ByteArrayOutputStream indented = new ByteArrayOutputStream();
+    ExecutionProfileUtil.outputExecutionProfile( indented, executionProfile );
+    ByteArrayOutputStream compact = new ByteArrayOutputStream();
+    ExecutionProfileUtil.outputExecutionProfile( compact, executionProfile, true );
+
+    String indentedJson = indented.toString( "UTF-8" ).trim();
+    String compactJson = compact.toString( "UTF-8" ).trim();
+    assertTrue( indentedJson.contains( "\n" ) );
+    assertFalse( compactJson.contains( "\n" ) );
+    assertTrue( compactJson.length() < indentedJson.length() );
+
+    ObjectMapper mapper = new ObjectMapper();
+    JsonNode expected = mapper.readTree( indentedJson );
+    assertEquals( expected, mapper.readTree( compactJson ) );
+    assertEquals( "profile", expected.get( "name" ).asText() );
+    assertEquals( "/path/to/profile.ktr", expected.get( "path" ).asText() );
+  }
+
+  @Test
+  public void testStreamIsFlushedNotClosed() throws Exception {
+    OutputStream mockStream = mock( OutputStream.class );
+    ExecutionProfileUtil.outputExecutionProfile( mockStream, executionProfile, true );
+    verify( mockStream ).flush();
+    verify( mockStream, never() ).close();
+  }
+
+  @Test
+  public void testSharedWriters() throws Exception {
+    assertSame( ExecutionProfileUtil.getWriter( true ), ExecutionProfileUtil.getWriter( true ) );
+    assertSame( ExecutionProfileUtil.getWriter( false ), ExecutionProfileUtil.getWriter( false ) );
+    assertNotSame( ExecutionProfileUtil.getWriter( true ), ExecutionProfileUtil.getWriter( false ) );
+
+    final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    ExecutionProfileUtil.outputExecutionProfile( expected, executionProfile );
+    ExecutorService executor = Executors.newFixedThreadPool( 8 );
+    try {
+      List<Future<String>> results = new ArrayList<Future<String>>();
+      for ( int i = 0; i < 64; i++ ) {
+        results.add( executor.submit( new Callable<String>() {
+          @Override
+          public String call() throws Exception {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ExecutionProfileUtil.outputExecutionProfile( out, executionProfile );
+            return out.toString( "UTF-8" );
+          }
+        } ) );
+      }
+      for ( Future<String> result : results ) {
+        assertEquals( expected.toString( "UTF-8" ), result.get() );
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
 }
@@ -0,0 +1,191 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.impl.model;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.metaverse.api.model.BaseResourceInfo;
+import org.pentaho.metaverse.api.model.IExternalResourceInfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ExternalResourceCaptureTest {
+
+  List<IExternalResourceInfo> target;
+
+  @Before
+  public void setUp() throws Exception {
+    target = new ArrayList<IExternalResourceInfo>();
+  }
+
+  @Test
+  public void testModeFromString() {
+    assertEquals( ExternalResourceCapture.Mode.ALL, ExternalResourceCapture.Mode.fromString( " all " ) );
+    assertEquals( ExternalResourceCapture.Mode.DISTINCT, ExternalResourceCapture.Mode.fromString( "Distinct" ) );
+    assertEquals( ExternalResourceCapture.Mode.DISTINCT, ExternalResourceCapture.Mode.fromString( null ) );
+    assertEquals( ExternalResourceCapture.Mode.DISTINCT, ExternalResourceCapture.Mode.fromString( "bogus" ) );
+  }
+
+  @Test
+  public void testCaptureAll() {
+    ExternalResourceCapture capture = new ExternalResourceCapture( target, ExternalResourceCapture.Mode.ALL, 1 );
+    for ( int i = 0; i < 5; i++ ) {
+      capture.capture( Arrays.<IExternalResourceInfo>asList(
+        resource( "http://host/a", "GET" ), resource( "http://host/b", "GET" ) ) );
+    }
+    assertEquals( 10, target.size() );
+    assertEquals( 0, capture.getDistinctCount() );
+    assertEquals( 0, capture.getDroppedCount() );
+    assertFalse( target.get( 0 ).getAttributes().containsKey( ExternalResourceCapture.ATTRIBUTE_HIT_COUNT ) );
+  }
+
+  @Test
+  public void testCaptureDistinct() {
+    ExternalResourceCapture capture = new ExternalResourceCapture( target, ExternalResourceCapture.Mode.DISTINCT, 10 );
+    for ( int i = 0; i < 5; i++ ) {
+      capture.capture( Arrays.<IExternalResourceInfo>asList(
+        resource( "http://host/a", "GET" ), resource( "http://host/a", "POST" ) ) );
+    }
+    capture.capture( Collections.<IExternalResourceInfo>singletonList( resource( "http://host/a", "GET" ) ) );
+
+    assertEquals( 2, target.size() );
+    assertEquals( 2, capture.getDistinctCount() );
+    assertEquals( 0, capture.getDroppedCount() );
+
+    Map<Object, Object> get = target.get( 0 ).getAttributes();
+    assertEquals( "GET", get.get( "method" ) );
+    assertEquals( 6L, get.get( ExternalResourceCapture.ATTRIBUTE_HIT_COUNT ) );
+    long firstSeen = (Long) get.get( ExternalResourceCapture.ATTRIBUTE_FIRST_SEEN );
+    long lastSeen = (Long) get.get( ExternalResourceCapture.ATTRIBUTE_LAST_SEEN );
+    assertTrue( firstSeen <= lastSeen );
+    assertEquals( 5L, target.get( 1 ).getAttributes().get( ExternalResourceCapture.ATTRIBUTE_HIT_COUNT ) );
+  }
+
+  @Test
+  public void testCaptureDistinctRecognizesReportedInstance() {
+    ExternalResourceCapture capture = new ExternalResourceCapture( target, ExternalResourceCapture.Mode.DISTINCT, 10 );
+    BaseResourceInfo resource = resource( "http://host/a", "GET" );
+    capture.capture( Collections.<IExternalResourceInfo>singletonList( resource ) );
+    capture.capture( Collections.<IExternalResourceInfo>singletonList( resource ) );
+    assertEquals( 1, target.size() );
+    assertEquals( 2L, resource.getAttributes().get( ExternalResourceCapture.ATTRIBUTE_HIT_COUNT ) );
+  }
+
+  @Test
+  public void testCaptureDistinctDropped() {
+    ExternalResourceCapture capture = new ExternalResourceCapture( target, ExternalResourceCapture.Mode.DISTINCT, 3 );
+    for ( int i = 0; i < 10; i++ ) {
+      capture.capture( Collections.<IExternalResourceInfo>singletonList( resource( "http://host/" + i, "GET" ) ) );
+    }
+    // known resources are still counted once the limit is reached
+    capture.capture( Collections.<IExternalResourceInfo>singletonList( resource( "http://host/0", "GET" ) ) );
+
+    assertEquals( 3, target.size() );
+    assertEquals( 3, capture.getDistinctCount() );
+    assertEquals( 7, capture.getDroppedCount() );
+    assertEquals( 2L, target.get( 0 ).getAttributes().get( ExternalResourceCapture.ATTRIBUTE_HIT_COUNT ) );
+
+    // occurrences are counted, not distinct resources
+    capture.capture( Collections.<IExternalResourceInfo>singletonList( resource( "http://host/9", "GET" ) ) );
+    assertEquals( 8, capture.getDroppedCount() );
+  }
+
+  @Test
+  public void testCaptureFromSeveralThreads() throws Exception {
+    final ExternalResourceCapture capture =
+      new ExternalResourceCapture( target, ExternalResourceCapture.Mode.DISTINCT, 50 );
+    Thread[] threads = new Thread[4];
+    for ( int t = 0; t < threads.length; t++ ) {
+      threads[t] = new Thread( new Runnable() {
+        @Override
+        public void run() {
+          for ( int i = 0; i < 1000; i++ ) {
+            capture.capture(
+              Collections.<IExternalResourceInfo>singletonList( resource( "http://host/" + ( i % 100 ), "GET" ) ) );
+          }
+        }
+      } );
+      threads[t].start();
+    }
+    for ( Thread thread : threads ) {
+      thread.join();
+    }
+
+    assertEquals( 50, target.size() );
+    assertEquals( 50, capture.getDistinctCount() );
+    // half of the 4000 occurrences are of resources beyond the limit
+    assertEquals( 2000, capture.getDroppedCount() );
+    long hits = 0;
+    for ( IExternalResourceInfo resource : target ) {
+      hits += (Long) resource.getAttributes().get( ExternalResourceCapture.ATTRIBUTE_HIT_COUNT );
+    }
+    assertEquals( 2000, hits );
+  }
+
+  @Test
+  public void testCaptureDistinctByTypeAndDirection() {
+    ExternalResourceCapture capture = new ExternalResourceCapture( target, ExternalResourceCapture.Mode.DISTINCT, 10 );
+    BaseResourceInfo output = resource( "http://host/a", "GET" );
+    output.setInput( false );
+    BaseResourceInfo otherType = resource( "http://host/a", "GET" );
+    otherType.setType( "FILE" );
+    capture.capture( Arrays.<IExternalResourceInfo>asList( resource( "http://host/a", "GET" ), output, otherType ) );
+    assertEquals( 3, target.size() );
+  }
+
+  @Test
+  public void testCaptureWithUnmodifiableAttributes() {
+    ExternalResourceCapture capture = new ExternalResourceCapture( target, ExternalResourceCapture.Mode.DISTINCT, 10 );
+    IExternalResourceInfo resource = mock( IExternalResourceInfo.class );
+    when( resource.getName() ).thenReturn( "fixed" );
+    when( resource.getAttributes() ).thenReturn( Collections.<Object, Object>singletonMap( "a", "b" ) );
+    capture.capture( Arrays.asList( resource, resource, null ) );
+    capture.capture( null );
+    assertEquals( 1, target.size() );
+    assertEquals( 1, capture.getDistinctCount() );
+  }
+
+  @Test
+  public void testDefaults() {
+    ExternalResourceCapture capture = new ExternalResourceCapture( target, null, -1 );
+    assertEquals( ExternalResourceCapture.Mode.DISTINCT, capture.getMode() );
+    assertEquals( ExternalResourceCapture.DEFAULT_MAX_DISTINCT, capture.getMaxDistinct() );
+  }
+
+  private static BaseResourceInfo resource( String url, String method ) {
+    BaseResourceInfo resource = new BaseResourceInfo();
+    resource.setName( url );
+    resource.setType( "URL" );
+    resource.setInput( true );
+    resource.putAttribute( "method", method );
+    return resource;
+  }
+}
@@ -31,6 +31,7 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.di.core.ProgressMonitorListener;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMetaInterface;
@@ -201,7 +202,8 @@ public class AbstractStepMetaJsonSerializerTest {
     vml.add( col3 );
     when( rmi.getValueMetaList() ).thenReturn( vml );
 
-    when( spyParentTrans.getStepFields( any( StepMeta.class ) ) ).thenReturn( rmi );
+    when( spyParentTrans.getStepFields( any( StepMeta.class ), any( ProgressMonitorListener.class ) ) )
+      .thenReturn( rmi );
     serializer.writeOutputFields( spyParent, json );
 
     verify( json, times( 3 ) ).writeObject( any( IFieldInfo.class ) );
@@ -22,7 +22,11 @@
 
 package org.pentaho.metaverse.locator;
 
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
 import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -30,12 +34,16 @@ import org.junit.runner.RunWith;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.pentaho.di.core.KettleEnvironment;
 import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.dictionary.DictionaryConst;
+import org.pentaho.metaverse.api.FileDocumentContent;
+import org.pentaho.metaverse.api.IDocumentContent;
 import org.pentaho.metaverse.api.IDocumentEvent;
 import org.pentaho.metaverse.api.IDocumentListener;
 import org.pentaho.metaverse.api.IMetaverseBuilder;
 import org.pentaho.metaverse.api.MetaverseDocument;
 import org.pentaho.metaverse.api.MetaverseLocatorException;
 import org.pentaho.metaverse.graph.GraphMLWriter;
+import org.pentaho.metaverse.impl.DocumentEvent;
 import org.pentaho.metaverse.impl.MetaverseBuilder;
 import org.pentaho.metaverse.impl.MetaverseCompletionService;
 import org.pentaho.metaverse.testutils.MetaverseTestUtils;
@@ -43,11 +51,18 @@ import org.pentaho.metaverse.util.MetaverseUtil;
 
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 
 /**
  * Test class for the FileSystemLocator
@@ -148,9 +163,9 @@ public class FileSystemLocatorTest implements IDocumentListener {
       assertNotNull( event.getDocument() );
       MetaverseDocument document = (MetaverseDocument) event.getDocument();
       if ( document.getExtension().equals( "ktr" ) ) {
-        assertTrue( document.getContent() instanceof String );
+        assertTrue( document.getContent() instanceof IDocumentContent );
       } else if ( document.getExtension().equals( "kjb" ) ) {
-        assertTrue( document.getContent() instanceof String );
+        assertTrue( document.getContent() instanceof IDocumentContent );
       }
     }
 
@@ -201,9 +216,9 @@ public class FileSystemLocatorTest implements IDocumentListener {
       assertNotNull( event.getDocument() );
       MetaverseDocument document = (MetaverseDocument) event.getDocument();
       if ( document.getExtension().equals( "ktr" ) ) {
-        assertTrue( document.getContent() instanceof String );
+        assertTrue( document.getContent() instanceof IDocumentContent );
       } else if ( document.getExtension().equals( "kjb" ) ) {
-        assertTrue( document.getContent() instanceof String );
+        assertTrue( document.getContent() instanceof IDocumentContent );
       }
     }
 
@@ -214,6 +229,215 @@ public class FileSystemLocatorTest implements IDocumentListener {
     assertEquals( "", spyLocator.getContents( new File( "not-a-file.txt" ) ) );
   }
 
+  @Test
+  public void testParallelScan() throws Exception {
+    spyLocator.setMetaverseBuilder( new MetaverseBuilder( new TinkerGraph() ) );
+    spyLocator.setRepositoryId( "testrepo" );
+    spyLocator.addDocumentListener( this );
+    spyLocator.setRootFolder( "src/test/resources/solution" );
+    spyLocator.setWorkers( 4 );
+    spyLocator.setMaxInFlightDocuments( 2 );
+    assertEquals( 4, spyLocator.getWorkers() );
+    assertEquals( 2, spyLocator.getMaxInFlightDocuments() );
+    TestFileSystemLocator.delay = 0;
+
+    events = Collections.synchronizedList( new ArrayList<IDocumentEvent>() );
+    spyLocator.startScan();
+    MetaverseCompletionService.getInstance().waitTillEmpty();
+
+    assertEquals( "Event count is wrong", 7, events.size() );
+    Map<String, Object> progress = spyLocator.getScanProgress();
+    assertEquals( 7, progress.get( "documentCount" ) );
+    assertEquals( 3, progress.get( "folderCount" ) );
+    assertEquals( 0, progress.get( "inFlightCount" ) );
+  }
+
+  /**
+   * Checks that the documents handed to the analyzers carry a stream of the file's content rather than the content
+   * itself: the file is read again whenever the stream is opened, not when the document is located
+   */
+  @Test
+  public void testScanPassesContentAsStream() throws Exception {
+    File root = new File( OUTPUT_FOLDER, "streamed" );
+    FileUtils.deleteDirectory( root );
+    File file = new File( root, "streamed.ktr" );
+    FileUtils.writeStringToFile( file, "<transformation><info><name>before</name></info></transformation>", "UTF-8" );
+
+    spyLocator.setMetaverseBuilder( new MetaverseBuilder( new TinkerGraph() ) );
+    spyLocator.setRepositoryId( "testrepo" );
+    spyLocator.addDocumentListener( this );
+    spyLocator.setRootFolder( root.getPath() );
+    TestFileSystemLocator.delay = 0;
+
+    events = Collections.synchronizedList( new ArrayList<IDocumentEvent>() );
+    spyLocator.startScan();
+    MetaverseCompletionService.getInstance().waitTillEmpty();
+
+    assertEquals( "Event count is wrong", 1, events.size() );
+    Object content = events.get( 0 ).getDocument().getContent();
+    assertTrue( content instanceof IDocumentContent );
+    assertTrue( content instanceof FileDocumentContent );
+    assertEquals( file.getCanonicalFile(), ( (FileDocumentContent) content ).getFile().getCanonicalFile() );
+
+    // the located document holds no copy of the content, so it sees what is on disk when it is analyzed
+    String after = "<transformation><info><name>after</name></info></transformation>";
+    FileUtils.writeStringToFile( file, after, "UTF-8" );
+    assertEquals( after.length(), ( (IDocumentContent) content ).getLength() );
+    InputStream in = ( (IDocumentContent) content ).openStream();
+    try {
+      assertEquals( after, IOUtils.toString( in, "UTF-8" ) );
+    } finally {
+      in.close();
+    }
+  }
+
+  @Test
+  public void testIncrementalScan() throws Exception {
+    File root = new File( OUTPUT_FOLDER, "incremental" );
+    FileUtils.deleteDirectory( root );
+    FileUtils.copyDirectory( new File( "src/test/resources/solution/folder 2" ), root );
+
+    spyLocator.setMetaverseBuilder( new MetaverseBuilder( new TinkerGraph() ) );
+    spyLocator.setRepositoryId( "testrepo" );
+    spyLocator.addDocumentListener( this );
+    spyLocator.setRootFolder( root.getPath() );
+    spyLocator.setIncremental( true );
+    assertTrue( spyLocator.isIncremental() );
+    TestFileSystemLocator.delay = 0;
+
+    events = new ArrayList<IDocumentEvent>();
+    spyLocator.startScan();
+    MetaverseCompletionService.getInstance().waitTillEmpty();
+    assertEquals( "Event count is wrong", 5, events.size() );
+    assertTrue( new File( root, ScanManifest.DEFAULT_FILE_NAME ).isFile() );
+
+    // nothing changed
+    events = new ArrayList<IDocumentEvent>();
+    spyLocator.startScan();
+    MetaverseCompletionService.getInstance().waitTillEmpty();
+    assertEquals( "Event count is wrong", 0, events.size() );
+
+    File changed = new File( root, "parse.ktr" );
+    FileUtils.writeStringToFile( changed, FileUtils.readFileToString( changed ) + " " );
+    File deleted = new File( root, "files job.kjb" );
+    assertTrue( deleted.delete() );
+    events = new ArrayList<IDocumentEvent>();
+    spyLocator.startScan();
+    MetaverseCompletionService.getInstance().waitTillEmpty();
+    assertEquals( "Event count is wrong", 1, events.size() );
+    assertEquals( changed.getCanonicalPath(), events.get( 0 ).getDocument().getStringID() );
+    verify( spyLocator ).removeDocument( changed.getCanonicalPath() );
+    verify( spyLocator ).removeDocument( deleted.getCanonicalPath() );
+
+    events = new ArrayList<IDocumentEvent>();
+    spyLocator.startFullScan();
+    MetaverseCompletionService.getInstance().waitTillEmpty();
+    assertEquals( "Event count is wrong", 4, events.size() );
+  }
+
+  @Test
+  public void testIncrementalScanAfterFailedAnalysis() throws Exception {
+    File root = new File( OUTPUT_FOLDER, "failed" );
+    FileUtils.deleteDirectory( root );
+    FileUtils.copyDirectory( new File( "src/test/resources/solution/folder 2" ), root );
+    FileUtils.writeStringToFile( new File( root, "data.csv" ), "a,b\n1,2\n" );
+    File manifestFile = new File( root, ScanManifest.DEFAULT_FILE_NAME );
+    String failing = new File( root, "parse.ktr" ).getCanonicalPath();
+
+    spyLocator.setMetaverseBuilder( new MetaverseBuilder( new TinkerGraph() ) );
+    spyLocator.setRepositoryId( "testrepo" );
+    spyLocator.setRootFolder( root.getPath() );
+    spyLocator.setIncremental( true );
+    TestFileSystemLocator.delay = 0;
+
+    // a listener that analyzes in the background, and is told when to finish
+    final List<DocumentEvent> analyzing = Collections.synchronizedList( new ArrayList<DocumentEvent>() );
+    IDocumentListener background = new IDocumentListener() {
+      @Override
+      public void onEvent( IDocumentEvent event ) {
+        ( (DocumentEvent) event ).analysisStarted();
+        analyzing.add( (DocumentEvent) event );
+      }
+    };
+    spyLocator.addDocumentListener( background );
+    spyLocator.startScan();
+    MetaverseCompletionService.getInstance().waitTillEmpty();
+    assertEquals( 6, analyzing.size() );
+    assertFalse( "The manifest was saved before the analyses finished", manifestFile.exists() );
+
+    for ( DocumentEvent event : analyzing ) {
+      event.analysisFinished( !failing.equals( event.getDocument().getStringID() ) );
+    }
+    ScanManifest manifest = new ScanManifest( manifestFile ).load();
+    // only the transformations and jobs that were analyzed are kept
+    assertEquals( 4, manifest.size() );
+    assertNull( manifest.get( failing ) );
+    assertNull( manifest.get( new File( root, "data.csv" ).getCanonicalPath() ) );
+
+    // the failed document is analyzed again, other files are always passed on
+    spyLocator.removeDocumentListener( background );
+    spyLocator.addDocumentListener( this );
+    events = Collections.synchronizedList( new ArrayList<IDocumentEvent>() );
+    spyLocator.startScan();
+    MetaverseCompletionService.getInstance().waitTillEmpty();
+    Set<String> ids = new HashSet<String>();
+    for ( IDocumentEvent event : events ) {
+      ids.add( event.getDocument().getStringID() );
+    }
+    assertEquals( new HashSet<String>( Arrays.asList( failing, new File( root, "data.csv" ).getCanonicalPath() ) ),
+      ids );
+    assertEquals( 5, new ScanManifest( manifestFile ).load().size() );
+  }
+
+  @Test
+  public void testManifestFile() throws Exception {
+    File root = new File( "src/test/resources/solution" );
+    assertEquals( new File( root, ScanManifest.DEFAULT_FILE_NAME ), spyLocator.getManifest( root ) );
+    spyLocator.setManifestFile( OUTPUT_FOLDER + "manifest.properties" );
+    assertEquals( OUTPUT_FOLDER + "manifest.properties", spyLocator.getManifestFile() );
+    assertEquals( new File( OUTPUT_FOLDER + "manifest.properties" ), spyLocator.getManifest( root ) );
+  }
+
+  private static Vertex addVertex( Graph graph, String id, String type, String path ) {
+    Vertex vertex = graph.addVertex( id );
+    vertex.setProperty( DictionaryConst.PROPERTY_TYPE, type );
+    if ( path != null ) {
+      vertex.setProperty( DictionaryConst.PROPERTY_PATH, path );
+    }
+    return vertex;
+  }
+
+  @Test
+  public void testRemoveDocument() throws Exception {
+    TinkerGraph graph = new TinkerGraph();
+    spyLocator.setMetaverseBuilder( new MetaverseBuilder( graph ) );
+
+    Vertex trans = addVertex( graph, "trans", DictionaryConst.NODE_TYPE_TRANS, "/a.ktr" );
+    Vertex step = addVertex( graph, "step", DictionaryConst.NODE_TYPE_TRANS_STEP, null );
+    Vertex field = addVertex( graph, "field", DictionaryConst.NODE_TYPE_TRANS_FIELD, null );
+    Vertex onlyHere = addVertex( graph, "onlyHere", DictionaryConst.NODE_TYPE_FILE, "/in.txt" );
+    Vertex shared = addVertex( graph, "shared", DictionaryConst.NODE_TYPE_FILE, "/shared.txt" );
+    graph.addEdge( null, trans, step, DictionaryConst.LINK_CONTAINS );
+    graph.addEdge( null, step, field, DictionaryConst.LINK_OUTPUTS );
+    graph.addEdge( null, onlyHere, step, DictionaryConst.LINK_READBY );
+    graph.addEdge( null, shared, step, DictionaryConst.LINK_READBY );
+
+    Vertex other = addVertex( graph, "other", DictionaryConst.NODE_TYPE_TRANS, "/b.ktr" );
+    Vertex otherStep = addVertex( graph, "otherStep", DictionaryConst.NODE_TYPE_TRANS_STEP, null );
+    graph.addEdge( null, other, otherStep, DictionaryConst.LINK_CONTAINS );
+    graph.addEdge( null, shared, otherStep, DictionaryConst.LINK_READBY );
+
+    assertEquals( 0, spyLocator.removeDocument( "/not/there.ktr" ) );
+    assertEquals( 4, spyLocator.removeDocument( "/a.ktr" ) );
+    assertNull( graph.getVertex( "trans" ) );
+    assertNull( graph.getVertex( "step" ) );
+    assertNull( graph.getVertex( "field" ) );
+    assertNull( graph.getVertex( "onlyHere" ) );
+    assertNotNull( graph.getVertex( "shared" ) );
+    assertNotNull( graph.getVertex( "other" ) );
+    assertNotNull( graph.getVertex( "otherStep" ) );
+  }
+
   @Override
   public void onEvent( IDocumentEvent event ) {
     events.add( event );
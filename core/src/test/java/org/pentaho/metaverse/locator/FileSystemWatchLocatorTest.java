@@ -0,0 +1,182 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.locator;
+
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.metaverse.api.IDocumentEvent;
+import org.pentaho.metaverse.api.IDocumentListener;
+import org.pentaho.metaverse.api.MetaverseLocatorException;
+import org.pentaho.metaverse.impl.MetaverseBuilder;
+import org.pentaho.metaverse.impl.MetaverseCompletionService;
+import org.pentaho.metaverse.testutils.MetaverseTestUtils;
+import org.pentaho.metaverse.util.MetaverseUtil;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FileSystemWatchLocatorTest implements IDocumentListener {
+
+  private final List<IDocumentEvent> events = Collections.synchronizedList( new ArrayList<IDocumentEvent>() );
+
+  private final List<String> removed = Collections.synchronizedList( new ArrayList<String>() );
+
+  private FileSystemWatchLocator locator;
+
+  private File root;
+
+  @Before
+  public void setUp() throws Exception {
+    KettleEnvironment.init();
+    MetaverseUtil.setDocumentController( MetaverseTestUtils.getDocumentController() );
+
+    root = new File( FileSystemLocatorTest.OUTPUT_FOLDER, "watch" );
+    FileUtils.deleteDirectory( root );
+    FileUtils.copyDirectory( new File( "src/test/resources/solution/folder 2" ), root );
+
+    locator = new FileSystemWatchLocator( new ArrayList<IDocumentListener>() ) {
+      @Override
+      protected int removeDocument( String id ) {
+        removed.add( id );
+        return super.removeDocument( id );
+      }
+    };
+    locator.setMetaverseBuilder( new MetaverseBuilder( new TinkerGraph() ) );
+    locator.setRepositoryId( "watchrepo" );
+    locator.setRootFolder( root.getPath() );
+    locator.addDocumentListener( this );
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    locator.stopWatching();
+    MetaverseCompletionService.getInstance().waitTillEmpty();
+  }
+
+  @Test
+  public void testDefaults() {
+    assertTrue( locator.isIncremental() );
+    assertEquals( FileSystemWatchLocator.DEFAULT_COALESCE_MILLIS, locator.getCoalesceMillis() );
+    assertEquals( FileSystemWatchLocator.DEFAULT_POLL_INTERVAL_MILLIS, locator.getPollIntervalMillis() );
+    assertFalse( locator.isPolling() );
+    assertFalse( locator.isWatching() );
+    assertTrue( new FileSystemWatchLocator().isIncremental() );
+  }
+
+  @Test
+  public void testCoalesce() {
+    locator.setCoalesceMillis( 200 );
+    File a = new File( root, "a.ktr" );
+    File b = new File( root, "b.ktr" );
+    assertTrue( locator.changed( a, 100 ) );
+    assertTrue( locator.changed( b, 150 ) );
+    assertTrue( locator.changed( a, 300 ) );
+    assertFalse( locator.changed( new File( root, ScanManifest.DEFAULT_FILE_NAME ), 300 ) );
+    assertEquals( 1, locator.getCoalescedCount() );
+
+    assertEquals( Collections.emptyList(), locator.takeSettledChanges( 200 ) );
+    assertEquals( Arrays.asList( b ), locator.takeSettledChanges( 400 ) );
+    assertEquals( Arrays.asList( a ), locator.takeSettledChanges( 500 ) );
+    assertEquals( Collections.emptyList(), locator.takeSettledChanges( 1000 ) );
+  }
+
+  @Test
+  public void testWatch() throws Exception {
+    locator.setCoalesceMillis( 100 );
+    locator.startWatching();
+    assertTrue( locator.isWatching() );
+    MetaverseCompletionService.getInstance().waitTillEmpty();
+    assertEquals( "Event count is wrong", 5, events.size() );
+
+    events.clear();
+    File changed = new File( root, "parse.ktr" );
+    FileUtils.writeStringToFile( changed, FileUtils.readFileToString( changed ) + " " );
+    File deleted = new File( root, "files job.kjb" );
+    assertTrue( deleted.delete() );
+
+    String changedPath = changed.getCanonicalPath();
+    String deletedPath = deleted.getCanonicalPath();
+    for ( int i = 0; i < 100 && ( events.isEmpty() || !removed.contains( deletedPath ) ); i++ ) {
+      Thread.sleep( 100 );
+    }
+    MetaverseCompletionService.getInstance().waitTillEmpty();
+
+    assertEquals( "Event count is wrong", 1, events.size() );
+    assertEquals( changedPath, events.get( 0 ).getDocument().getStringID() );
+    assertTrue( removed.contains( changedPath ) );
+    assertTrue( removed.contains( deletedPath ) );
+    assertTrue( locator.getEventCount() > 0 );
+    assertTrue( locator.getBatchCount() > 0 );
+
+    locator.stopWatching();
+    assertFalse( locator.isWatching() );
+  }
+
+  @Test
+  public void testPolling() throws Exception {
+    locator.setPolling( true );
+    locator.setPollIntervalMillis( 100 );
+    locator.startWatching();
+    assertTrue( locator.isPollingActive() );
+    MetaverseCompletionService.getInstance().waitTillEmpty();
+    assertEquals( "Event count is wrong", 5, events.size() );
+
+    events.clear();
+    File added = new File( root, "copy.ktr" );
+    FileUtils.copyFile( new File( root, "parse.ktr" ), added );
+    for ( int i = 0; i < 100 && events.isEmpty(); i++ ) {
+      Thread.sleep( 100 );
+    }
+    MetaverseCompletionService.getInstance().waitTillEmpty();
+
+    assertEquals( "Event count is wrong", 1, events.size() );
+    assertEquals( added.getCanonicalPath(), events.get( 0 ).getDocument().getStringID() );
+    assertTrue( locator.getPollCount() > 0 );
+  }
+
+  @Test
+  public void testStartWatchingBadRoot() throws Exception {
+    locator.setRootFolder( "bogus" );
+    try {
+      locator.startWatching();
+      fail();
+    } catch ( MetaverseLocatorException e ) {
+      assertFalse( locator.isWatching() );
+    }
+  }
+
+  @Override
+  public void onEvent( IDocumentEvent event ) {
+    events.add( event );
+  }
+
+}
@@ -40,6 +40,10 @@ import org.pentaho.metaverse.api.MetaverseDocument;
 import org.pentaho.metaverse.api.MetaverseException;
 
 import java.io.File;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
 import static org.mockito.Matchers.any;
@@ -161,4 +165,77 @@ public class LocatorRunnerTest {
     when( baseLocator.getContents( any( Object.class ) ) ).thenThrow( MetaverseException.class );
     stringLocatorRunner.processFile( namespace, "test.ktr", "myKTR", spyFile );
   }
+  @Test
+  public void testParallelDispatch() throws Exception {
+    final int tasks = 50;
+    final AtomicInteger ran = new AtomicInteger();
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maxRunning = new AtomicInteger();
+    final AtomicInteger ranAtFinish = new AtomicInteger( -1 );
+    final Set<String> threads = Collections.synchronizedSet( new HashSet<String>() );
+    LocatorRunner<String> runner = new LocatorRunner<String>() {
+      @Override
+      protected void locate( String root ) {
+        for ( int i = 0; i < tasks; i++ ) {
+          dispatch( new Runnable() {
+            @Override
+            public void run() {
+              int now = running.incrementAndGet();
+              synchronized ( maxRunning ) {
+                maxRunning.set( Math.max( now, maxRunning.get() ) );
+              }
+              threads.add( Thread.currentThread().getName() );
+              try {
+                Thread.sleep( 5 );
+              } catch ( InterruptedException e ) {
+                // done early
+              }
+              running.decrementAndGet();
+              ran.incrementAndGet();
+            }
+          } );
+        }
+      }
+
+      @Override
+      protected void finish() {
+        ranAtFinish.set( ran.get() );
+      }
+    };
+    runner.setWorkers( 4 );
+    runner.setMaxInFlight( 2 );
+    assertEquals( 2, runner.getMaxInFlight() );
+    runner.run();
+
+    assertEquals( tasks, ran.get() );
+    assertEquals( tasks, ranAtFinish.get() );
+    assertEquals( 0, runner.getInFlightCount() );
+    assertFalse( runner.isRunning() );
+    // two in flight on the workers, plus the dispatching thread running the overflow
+    assertTrue( maxRunning.get() <= 3 );
+    assertTrue( threads.size() > 1 );
+    assertTrue( runner.getCallerRunsCount() > 0 );
+  }
+
+  @Test
+  public void testSingleWorkerRunsInline() throws Exception {
+    final Set<Thread> threads = new HashSet<Thread>();
+    LocatorRunner<String> runner = new LocatorRunner<String>() {
+      @Override
+      protected void locate( String root ) {
+        dispatch( new Runnable() {
+          @Override
+          public void run() {
+            threads.add( Thread.currentThread() );
+          }
+        } );
+      }
+    };
+    assertEquals( 4, runner.getMaxInFlight() );
+    runner.run();
+    assertEquals( Collections.singleton( Thread.currentThread() ), threads );
+    assertEquals( 0, runner.getCallerRunsCount() );
+    assertEquals( Boolean.FALSE, runner.getProgress().get( "running" ) );
+  }
+
 }
@@ -0,0 +1,119 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.locator;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class ScanManifestTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testUpdate() throws Exception {
+    File file = folder.newFile( "a.ktr" );
+    FileUtils.writeStringToFile( file, "content" );
+    ScanManifest manifest = new ScanManifest( null );
+
+    assertTrue( manifest.update( "a", file ) );
+    assertFalse( manifest.update( "a", file ) );
+    ScanManifest.Entry entry = manifest.get( "a" );
+    assertEquals( file.length(), entry.getSize() );
+    assertEquals( file.lastModified(), entry.getLastModified() );
+    assertEquals( ScanManifest.hash( file ), entry.getHash() );
+    assertEquals( 64, entry.getHash().length() );
+
+    // touched but not changed
+    assertTrue( file.setLastModified( file.lastModified() - 60000L ) );
+    assertFalse( manifest.update( "a", file ) );
+    assertEquals( file.lastModified(), manifest.get( "a" ).getLastModified() );
+
+    FileUtils.writeStringToFile( file, "changed" );
+    assertTrue( manifest.update( "a", file ) );
+  }
+
+  @Test
+  public void testCheck() throws Exception {
+    File file = folder.newFile( "a.ktr" );
+    FileUtils.writeStringToFile( file, "content" );
+    ScanManifest manifest = new ScanManifest( null );
+
+    ScanManifest.Entry entry = manifest.check( "a", file );
+    assertEquals( ScanManifest.hash( file ), entry.getHash() );
+    // checking leaves the manifest alone
+    assertNull( manifest.get( "a" ) );
+
+    manifest.put( "a", entry );
+    assertSame( entry, manifest.check( "a", file ) );
+    FileUtils.writeStringToFile( file, "changed" );
+    assertFalse( entry.getHash().equals( manifest.check( "a", file ).getHash() ) );
+    assertSame( entry, manifest.get( "a" ) );
+  }
+
+  @Test
+  public void testSaveAndLoad() throws Exception {
+    File file = new File( folder.getRoot(), "manifest.properties" );
+    ScanManifest manifest = new ScanManifest( file );
+    assertEquals( 0, manifest.load().size() );
+    manifest.put( "/path/with spaces, and=signs.ktr", new ScanManifest.Entry( 10, 20, "abc" ) );
+    manifest.put( "/b.kjb", new ScanManifest.Entry( 1, 2, "def" ) );
+    assertTrue( manifest.save() );
+    assertTrue( file.isFile() );
+    assertFalse( new File( file.getAbsolutePath() + ".tmp" ).exists() );
+
+    ScanManifest loaded = new ScanManifest( file ).load();
+    assertEquals( 2, loaded.size() );
+    ScanManifest.Entry entry = loaded.get( "/path/with spaces, and=signs.ktr" );
+    assertEquals( 10, entry.getSize() );
+    assertEquals( 20, entry.getLastModified() );
+    assertEquals( "abc", entry.getHash() );
+    assertEquals( loaded.getPaths(), manifest.getPaths() );
+
+    assertNotNull( loaded.remove( "/b.kjb" ) );
+    assertTrue( loaded.save() );
+    assertEquals( 1, new ScanManifest( file ).load().size() );
+  }
+
+  @Test
+  public void testLoadIgnoresBadEntries() throws Exception {
+    File file = folder.newFile( "manifest.properties" );
+    FileUtils.writeStringToFile( file, "good=1,2,abc\nbad=x,2,abc\nshort=1\n" );
+    ScanManifest manifest = new ScanManifest( file ).load();
+    assertEquals( 1, manifest.size() );
+    assertNotNull( manifest.get( "good" ) );
+  }
+
+  @Test
+  public void testNoFile() throws Exception {
+    ScanManifest manifest = new ScanManifest( null );
+    assertEquals( 0, manifest.load().size() );
+    assertFalse( manifest.save() );
+  }
+}
@@ -159,6 +159,30 @@ public class MetaverseUtilTest {
     MetaverseUtil.enhanceVertex( v1 );
   }
 
+  @Test
+  public void testEnhanceTransVertex() {
+    Graph graph = new TinkerGraph();
+    Vertex v1 = graph.addVertex( 1 );
+    v1.setProperty( DictionaryConst.PROPERTY_TYPE, DictionaryConst.NODE_TYPE_TRANS );
+    MetaverseUtil.enhanceVertex( v1 );
+    assertEquals( "Transformation", v1.getProperty( DictionaryConst.PROPERTY_TYPE_LOCALIZED ) );
+    assertEquals( DictionaryConst.CATEGORY_DOCUMENT, v1.getProperty( DictionaryConst.PROPERTY_CATEGORY ) );
+    assertEquals( "Document", v1.getProperty( DictionaryConst.PROPERTY_CATEGORY_LOCALIZED ) );
+    assertEquals( DictionaryConst.COLOR_DOCUMENT, v1.getProperty( DictionaryConst.PROPERTY_COLOR ) );
+  }
+
+  @Test
+  public void testGetLocalizedTypes() {
+    assertEquals( "Transformation", MetaverseUtil.getLocalizedNodeType( DictionaryConst.NODE_TYPE_TRANS ) );
+    assertEquals( "Populates", MetaverseUtil.getLocalizedLinkType( DictionaryConst.LINK_POPULATES ) );
+    assertEquals( "Document", MetaverseUtil.getLocalizedCategory( DictionaryConst.CATEGORY_DOCUMENT ) );
+    assertNull( MetaverseUtil.getLocalizedNodeType( "bogus" ) );
+    assertNull( MetaverseUtil.getLocalizedLinkType( null ) );
+    // cached lookups give the same answers
+    assertEquals( "Transformation", MetaverseUtil.getLocalizedNodeType( DictionaryConst.NODE_TYPE_TRANS ) );
+    assertNull( MetaverseUtil.getLocalizedNodeType( "bogus" ) );
+  }
+
   @Test
   public void testConvertOperationsStringToMap() {
     // Test null string
@@ -111,7 +111,8 @@ public class MetaverseService {
    *     <a href="http://graphml.graphdrawing.org/">graphml</a>
    *   </li>
    * </ul>
-   * If there is an error encountered, an Error status is returned
+   * The export is streamed to the client as it is written. If there is an error encountered, an Error status is
+   * returned
    */
   @GET
   @Path( "/export" )
@@ -142,7 +143,7 @@ public class MetaverseService {
     if ( metaverseReader == null ) {
       return Response.serverError().entity( Messages.getString( "ERROR.MetaverseReader.IsNull" ) ).build();
     }
-    return Response.ok( metaverseReader.exportFormat( format ), mediaType ).build();
+    return Response.ok( new GraphExportStreamingOutput( metaverseReader, format ), mediaType ).build();
   }
 
   /**
@@ -0,0 +1,53 @@
+/*! ******************************************************************************
+ *
+ * Pentaho Data Integration
+ *
+ * Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+ *
+ *******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.metaverse.service;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.pentaho.metaverse.api.IMetaverseReader;
+
+import java.io.OutputStream;
+
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.verify;
+
+@RunWith( MockitoJUnitRunner.class )
+public class GraphExportStreamingOutputTest {
+
+  @Mock
+  IMetaverseReader reader;
+  @Mock
+  OutputStream outputStream;
+
+  @Test
+  public void testWrite() throws Exception {
+    GraphExportStreamingOutput stream = new GraphExportStreamingOutput( reader, IMetaverseReader.FORMAT_CSV );
+
+    stream.write( outputStream );
+
+    verify( reader ).exportToStream( eq( IMetaverseReader.FORMAT_CSV ), eq( outputStream ) );
+    verify( outputStream ).flush();
+  }
+}
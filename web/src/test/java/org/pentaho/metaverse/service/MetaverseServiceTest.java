@@ -26,6 +26,8 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.pentaho.metaverse.api.IDocumentLocator;
 import org.pentaho.metaverse.api.IDocumentLocatorProvider;
@@ -39,6 +41,10 @@ import javax.ws.rs.BadRequestException;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -47,7 +53,9 @@ import java.util.concurrent.ExecutionException;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
 
 @RunWith( MockitoJUnitRunner.class )
@@ -116,47 +124,48 @@ public class MetaverseServiceTest {
   }
 
   @Test
-  public void testExport_xml() throws MetaverseLocatorException {
-    when( mockReader.exportFormat( anyString() ) ).thenReturn( TEST_XML );
+  public void testExport_xml() throws Exception {
+    stubExport( TEST_XML );
     when( mockProvider.getDocumentLocators() ).thenReturn( locators );
 
     Response response = service.export( mockHeadersXml );
     assertNotNull( response );
     assertEquals( 200, response.getStatus() );
     assertNotNull( response.getEntity() );
-    assertEquals( TEST_XML, response.getEntity().toString() );
+    assertEquals( TEST_XML, exportOf( response ) );
     verify( mockLocator, times( 1 ) ).startScan();
   }
 
   @Test
-  public void testExport_json() throws MetaverseLocatorException {
-    when( mockReader.exportFormat( anyString() ) ).thenReturn( TEST_JSON );
+  public void testExport_json() throws Exception {
+    stubExport( TEST_JSON );
     when( mockProvider.getDocumentLocators() ).thenReturn( locators );
 
     Response response = service.export( mockHeadersJson );
     assertNotNull( response );
     assertEquals( 200, response.getStatus() );
     assertNotNull( response.getEntity() );
-    assertEquals( TEST_JSON, response.getEntity().toString() );
+    assertEquals( TEST_JSON, exportOf( response ) );
+    verify( mockReader ).exportToStream( eq( IMetaverseReader.FORMAT_JSON ), any( OutputStream.class ) );
     verify( mockLocator, times( 1 ) ).startScan();
   }
 
   @Test
-  public void testExport_csv() throws MetaverseLocatorException {
-    when( mockReader.exportFormat( anyString() ) ).thenReturn( TEST_CSV );
+  public void testExport_csv() throws Exception {
+    stubExport( TEST_CSV );
     when( mockProvider.getDocumentLocators() ).thenReturn( locators );
 
     Response response = service.export( mockHeadersText );
     assertNotNull( response );
     assertEquals( 200, response.getStatus() );
     assertNotNull( response.getEntity() );
-    assertEquals( TEST_CSV, response.getEntity().toString() );
+    assertEquals( TEST_CSV, exportOf( response ) );
     verify( mockLocator, times( 1 ) ).startScan();
   }
 
   @Test
-  public void testExport_MultipleCalls() throws MetaverseLocatorException {
-    when( mockReader.exportFormat( anyString() ) ).thenReturn( TEST_XML );
+  public void testExport_MultipleCalls() throws Exception {
+    stubExport( TEST_XML );
     when( mockProvider.getDocumentLocators() ).thenReturn( locators );
 
     Response response = service.export( mockHeadersXml );
@@ -164,7 +173,7 @@ public class MetaverseServiceTest {
     assertNotNull( response );
     assertEquals( 200, response.getStatus() );
     assertNotNull( response.getEntity() );
-    assertEquals( TEST_XML, response.getEntity().toString() );
+    assertEquals( TEST_XML, exportOf( response ) );
     verify( mockLocator, times( 1 ) ).startScan();
 
     response = service.export( mockHeadersXml );
@@ -172,29 +181,28 @@ public class MetaverseServiceTest {
     assertNotNull( response );
     assertEquals( 200, response.getStatus() );
     assertNotNull( response.getEntity() );
-    assertEquals( TEST_XML, response.getEntity().toString() );
+    assertEquals( TEST_XML, exportOf( response ) );
     verify( mockLocator, times( 1 ) ).startScan();
 
   }
 
 
   @Test
-  public void testExport_NoLocators() throws MetaverseLocatorException {
-    when( mockReader.exportFormat( anyString() ) ).thenReturn( "" );
+  public void testExport_NoLocators() throws Exception {
+    stubExport( "" );
     when( mockProvider.getDocumentLocators() ).thenReturn( null );
 
     Response response = service.export( mockHeadersXml );
     assertNotNull( response );
     assertEquals( 200, response.getStatus() );
     assertNotNull( response.getEntity() );
-    assertEquals( "", response.getEntity().toString() );
+    assertEquals( "", exportOf( response ) );
 
     verify( mockLocator, times( 0 ) ).startScan();
   }
 
   @Test
   public void testExport_NullReader() throws Exception {
-    when( mockReader.exportFormat( anyString() ) ).thenReturn( TEST_XML );
     when( mockProvider.getDocumentLocators() ).thenReturn( locators );
 
     service = new MetaverseService( null, mockProvider );
@@ -206,13 +214,13 @@ public class MetaverseServiceTest {
 
   @Test
   public void testExport_NullProvider() throws Exception {
-    when( mockReader.exportFormat( anyString() ) ).thenReturn( "" );
+    stubExport( "" );
 
     service = new MetaverseService( mockReader, null );
     Response response = service.export( mockHeadersXml );
     assertNotNull( response );
     assertEquals( 200, response.getStatus() );
-    assertEquals( "", response.getEntity().toString() );
+    assertEquals( "", exportOf( response ) );
   }
 
   @Test
@@ -419,4 +427,20 @@ public class MetaverseServiceTest {
     request.setPath( path );
     Response response = service.downloadFile( request, dateString );
   }
+
+  private void stubExport( final String export ) throws IOException {
+    doAnswer( new Answer<Void>() {
+      @Override
+      public Void answer( InvocationOnMock invocation ) throws Throwable {
+        ( (OutputStream) invocation.getArguments()[ 1 ] ).write( export.getBytes() );
+        return null;
+      }
+    } ).when( mockReader ).exportToStream( anyString(), any( OutputStream.class ) );
+  }
+
+  private static String exportOf( Response response ) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ( (StreamingOutput) response.getEntity() ).write( out );
+    return out.toString();
+  }
 }